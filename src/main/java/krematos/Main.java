@@ -1,11 +1,14 @@
 package krematos;
 
+import krematos.config.NativeRuntimeHints;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.ImportRuntimeHints;
 import org.springframework.retry.annotation.EnableRetry;
 
 @SpringBootApplication
 @EnableRetry
+@ImportRuntimeHints(NativeRuntimeHints.class)
 public class  Main {
     public static void main(String[] args) {
         SpringApplication.run(Main.class, args);
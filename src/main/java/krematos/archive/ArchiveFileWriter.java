@@ -0,0 +1,148 @@
+package krematos.archive;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import krematos.model.TransactionAudit;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Zapisuje řádky jako gzip NDJSON (jeden JSON objekt na řádek) do souborů po maxRowsPerFile řádcích.
+ * Soubor se píše jako .part a na finální název se přejmenuje až po fsync - rozpracovaný soubor
+ * tak nikdy nevypadá jako hotový. Manifest se zapisuje stejně, jako poslední krok exportu.
+ * Není thread-safe, řádky musí chodit sekvenčně.
+ */
+@Slf4j
+class ArchiveFileWriter implements Closeable {
+
+    private static final String PART_SUFFIX = ".part";
+
+    private final Path directory;
+    private final String baseName;
+    private final long maxRowsPerFile;
+    private final ObjectMapper objectMapper;
+
+    private final List<ArchiveManifest.ArchivedFile> files = new ArrayList<>();
+    private long totalRows;
+    private Long minId;
+    private Long maxId;
+
+    private CurrentFile current;
+    private boolean finished;
+
+    ArchiveFileWriter(Path directory, String baseName, long maxRowsPerFile, ObjectMapper objectMapper) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.baseName = baseName;
+        this.maxRowsPerFile = maxRowsPerFile;
+        this.objectMapper = objectMapper;
+    }
+
+    void append(TransactionAudit audit) throws IOException {
+        if (current == null) {
+            current = new CurrentFile(directory.resolve(String.format("%s-%04d.ndjson.gz", baseName, files.size() + 1)));
+        }
+        current.write(objectMapper.writeValueAsBytes(audit));
+        totalRows++;
+        minId = minId == null ? audit.getId() : Math.min(minId, audit.getId());
+        maxId = maxId == null ? audit.getId() : Math.max(maxId, audit.getId());
+
+        if (current.rows >= maxRowsPerFile) {
+            files.add(current.complete());
+            current = null;
+        }
+    }
+
+    // Uzavře poslední soubor a zapíše manifest; teprve potom je export považován za hotový
+    ArchiveManifest finish() throws IOException {
+        if (current != null) {
+            files.add(current.complete());
+            current = null;
+        }
+        ArchiveManifest manifest = new ArchiveManifest(baseName, Instant.now(), totalRows, minId, maxId, List.copyOf(files));
+        Path manifestFile = directory.resolve(baseName + ".manifest.json");
+        Path part = Path.of(manifestFile + PART_SUFFIX);
+        try (FileOutputStream out = new FileOutputStream(part.toFile())) {
+            out.write(objectMapper.writerWithDefaultPrettyPrinter().writeValueAsBytes(manifest));
+            out.getChannel().force(true);
+        }
+        Files.move(part, manifestFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        finished = true;
+        return manifest;
+    }
+
+    // Nedokončený export (chyba, zrušení) po sobě nechá jen hotové soubory bez manifestu - další běh je přepíše
+    @Override
+    public void close() throws IOException {
+        if (current != null) {
+            current.discard();
+            current = null;
+        }
+        if (!finished) {
+            log.warn("Archivace {} nedokončena, manifest nezapsán", baseName);
+        }
+    }
+
+    private static final class CurrentFile {
+
+        private final Path target;
+        private final Path part;
+        private final FileOutputStream fileOut;
+        private final MessageDigest digest;
+        private final GZIPOutputStream gzip;
+        private long rows;
+
+        private CurrentFile(Path target) throws IOException {
+            this.target = target;
+            this.part = Path.of(target + PART_SUFFIX);
+            this.fileOut = new FileOutputStream(part.toFile());
+            this.digest = sha256();
+            this.gzip = new GZIPOutputStream(new BufferedOutputStream(new DigestOutputStream(fileOut, digest), 64 * 1024), 64 * 1024);
+        }
+
+        private void write(byte[] json) throws IOException {
+            gzip.write(json);
+            gzip.write('\n');
+            rows++;
+        }
+
+        private ArchiveManifest.ArchivedFile complete() throws IOException {
+            gzip.finish();
+            gzip.flush();
+            fileOut.getChannel().force(true);
+            gzip.close();
+            Files.move(part, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return new ArchiveManifest.ArchivedFile(target.getFileName().toString(), rows, Files.size(target),
+                    HexFormat.of().formatHex(digest.digest()));
+        }
+
+        private void discard() throws IOException {
+            try {
+                gzip.close();
+            } finally {
+                Files.deleteIfExists(part);
+            }
+        }
+
+        private static MessageDigest sha256() {
+            try {
+                return MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 není dostupný", e);
+            }
+        }
+    }
+}
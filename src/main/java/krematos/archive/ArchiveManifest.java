@@ -0,0 +1,20 @@
+package krematos.archive;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Manifest jednoho exportu (partition nebo staré řádky z default partition).
+ * Kontrolní součty jsou počítány ze zkomprimovaných souborů tak, jak leží na disku
+ * (ověření: sha256sum transaction_audit_p20250101-0001.ndjson.gz).
+ */
+public record ArchiveManifest(String source,
+                              Instant archivedAt,
+                              long rows,
+                              Long minId,
+                              Long maxId,
+                              List<ArchivedFile> files) {
+
+    public record ArchivedFile(String name, long rows, long bytes, String sha256) {
+    }
+}
@@ -0,0 +1,111 @@
+package krematos.archive;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import krematos.model.TransactionAudit;
+import krematos.repository.TransactionPartitionRepository;
+import krematos.config.VirtualThreadConfig;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+
+/**
+ * Studený archiv starých auditů: partition (nebo staré řádky z default partition) se streamuje
+ * server-side kurzorem do gzip NDJSON souborů s manifestem a kontrolními součty.
+ * Zdrojová data se odstraní až po zapsání manifestu.
+ * Paměť je konstantní: limitRate drží demand vůči DB na fetch-size řádcích, zápis na disk
+ * běží na virtuálních vláknech (blockingScheduler) s frontou stejné velikosti.
+ */
+@Component
+@Slf4j
+public class TransactionAuditArchiver {
+
+    private final TransactionPartitionRepository partitionRepository;
+    private final ObjectMapper objectMapper;
+    private final Scheduler blockingScheduler;
+
+    private final Path directory;
+    private final long maxRowsPerFile;
+    private final int fetchSize;
+
+    private final Counter rowsCounter;
+    private final Counter filesCounter;
+
+    public TransactionAuditArchiver(TransactionPartitionRepository partitionRepository,
+                                    ObjectMapper objectMapper,
+                                    MeterRegistry meterRegistry,
+                                    @Value("${archive.directory:./archive}") String directory,
+                                    @Value("${archive.max-rows-per-file:500000}") long maxRowsPerFile,
+                                    @Value("${archive.fetch-size:1000}") int fetchSize,
+                                    @Qualifier(VirtualThreadConfig.BLOCKING_SCHEDULER) Scheduler blockingScheduler) {
+        this.partitionRepository = partitionRepository;
+        this.objectMapper = objectMapper;
+        this.blockingScheduler = blockingScheduler;
+        this.directory = Path.of(directory);
+        this.maxRowsPerFile = maxRowsPerFile;
+        this.fetchSize = fetchSize;
+
+        this.rowsCounter = meterRegistry.counter("archive.rows");
+        this.filesCounter = meterRegistry.counter("archive.files");
+    }
+
+    // Partition musí být už odpojená od transaction_audit - nové zápisy do ní nemůžou přibýt
+    public Mono<ArchiveManifest> archiveDetachedPartition(LocalDate day) {
+        String source = TransactionPartitionRepository.partitionName(day);
+        return export(source, partitionRepository.streamPartition(day, fetchSize))
+                .flatMap(manifest -> partitionRepository.dropPartition(day)
+                        .doOnSuccess(v -> log.info("Partition {} archivována ({} řádků, {} souborů) a smazána",
+                                source, manifest.rows(), manifest.files().size()))
+                        .thenReturn(manifest));
+    }
+
+    public Mono<ArchiveManifest> archiveDefaultPartitionBefore(LocalDate boundary) {
+        Instant boundaryInstant = boundary.atStartOfDay(ZoneOffset.UTC).toInstant();
+        String source = "transaction_audit_default-before-" + boundary;
+        return export(source, partitionRepository.streamDefaultPartitionBefore(boundaryInstant, fetchSize))
+                .flatMap(manifest -> manifest.rows() == 0
+                        ? Mono.just(manifest)
+                        : partitionRepository.deleteDefaultPartitionBefore(boundaryInstant, manifest.maxId())
+                                .doOnNext(deleted -> log.info("Z default partition archivováno a smazáno {} řádků", deleted))
+                                .thenReturn(manifest));
+    }
+
+    private Mono<ArchiveManifest> export(String source, Flux<TransactionAudit> rows) {
+        return Mono.using(
+                        () -> new ArchiveFileWriter(directory, source, maxRowsPerFile, objectMapper),
+                        writer -> rows
+                                .limitRate(fetchSize)
+                                .publishOn(blockingScheduler, fetchSize)
+                                .doOnNext(audit -> {
+                                    try {
+                                        writer.append(audit);
+                                    } catch (IOException e) {
+                                        throw new UncheckedIOException(e);
+                                    }
+                                    rowsCounter.increment();
+                                })
+                                .then(Mono.fromCallable(writer::finish))
+                                .doOnNext(manifest -> filesCounter.increment(manifest.files().size())),
+                        writer -> {
+                            try {
+                                writer.close();
+                            } catch (IOException e) {
+                                log.warn("Nepodařilo se uklidit rozpracovaný archiv {}", source, e);
+                            }
+                        })
+                // Zakládání souborů je blokující I/O - ne na event loopu R2DBC
+                .subscribeOn(blockingScheduler);
+    }
+}
@@ -0,0 +1,77 @@
+package krematos.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Další platební konektory (connectors.instances) a směrování požadavků na ně (connectors.routes).
+ * Bez konfigurace jde všechno přes výchozí konektor (external.api.*).
+ * Strukturovaná konfigurace (mapa instancí, seznam pravidel) se přes @Value zapsat nedá.
+ */
+@ConfigurationProperties("connectors")
+public record ConnectorProperties(Map<String, Instance> instances, List<Route> routes) {
+
+    public ConnectorProperties {
+        instances = instances == null ? Map.of() : instances;
+        routes = routes == null ? List.of() : routes;
+    }
+
+    /**
+     * Jedna instance konektoru - vlastní pool spojení, timeout, retry politika a limit souběžnosti.
+     * oauthRegistration = id OAuth2 klienta ze spring.security.oauth2.client (prázdné = bez OAuth2).
+     * outlier = prahy vyřazování endpointů, chybějící hodnoty se berou z external.api.outlier.*.
+     */
+    public record Instance(String baseUrl,
+                           List<String> endpoints,
+                           String oauthRegistration,
+                           Duration timeout,
+                           Integer maxRetries,
+                           Duration retryDelay,
+                           Integer maxConcurrency,
+                           Integer maxConnections,
+                           Duration pendingAcquireTimeout,
+                           Outlier outlier) {
+
+        public Instance {
+            endpoints = endpoints == null ? List.of() : endpoints;
+            timeout = timeout == null ? Duration.ofSeconds(10) : timeout;
+            maxRetries = maxRetries == null ? 3 : maxRetries;
+            retryDelay = retryDelay == null ? Duration.ofSeconds(1) : retryDelay;
+            maxConcurrency = maxConcurrency == null ? 100 : maxConcurrency;
+            maxConnections = maxConnections == null ? 50 : maxConnections;
+            pendingAcquireTimeout = pendingAcquireTimeout == null ? Duration.ofSeconds(5) : pendingAcquireTimeout;
+            outlier = outlier == null ? Outlier.UNSET : outlier;
+        }
+    }
+
+    /**
+     * Prahy health trackingu endpointů (význam jako external.api.outlier.* a external.api.latency-decay).
+     */
+    public record Outlier(Integer consecutiveFailures,
+                          Duration baseEjectionTime,
+                          Duration maxEjectionTime,
+                          Integer maxEjectionPercent,
+                          Duration latencyDecay) {
+
+        static final Outlier UNSET = new Outlier(null, null, null, null, null);
+
+        // Nenastavené hodnoty doplní z defaults
+        public Outlier orElse(Outlier defaults) {
+            return new Outlier(
+                    consecutiveFailures != null ? consecutiveFailures : defaults.consecutiveFailures(),
+                    baseEjectionTime != null ? baseEjectionTime : defaults.baseEjectionTime(),
+                    maxEjectionTime != null ? maxEjectionTime : defaults.maxEjectionTime(),
+                    maxEjectionPercent != null ? maxEjectionPercent : defaults.maxEjectionPercent(),
+                    latencyDecay != null ? latencyDecay : defaults.latencyDecay());
+        }
+    }
+
+    /**
+     * Pravidlo směrování: typ služby a/nebo měna -> název instance. Chybějící pole = libovolná hodnota.
+     */
+    public record Route(String serviceType, String currency, String connector) {
+    }
+}
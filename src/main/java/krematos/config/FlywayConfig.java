@@ -0,0 +1,28 @@
+package krematos.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.flyway.FlywayMigrationStrategy;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Migrace při startu jde vypnout za běhu (db.migrate-on-startup=false), i když je Flyway bean
+ * v AOT buildu napevno - spring.flyway.enabled se vyhodnotí už při AOT zpracování.
+ * Používá tréninkový běh CDS archivu v Dockerfile, který nemá k dispozici databázi.
+ */
+@Slf4j
+@Configuration
+public class FlywayConfig {
+
+    @Bean
+    public FlywayMigrationStrategy flywayMigrationStrategy(@Value("${db.migrate-on-startup:true}") boolean migrateOnStartup) {
+        return flyway -> {
+            if (migrateOnStartup) {
+                flyway.migrate();
+            } else {
+                log.warn("Migrace databáze při startu vypnuta (db.migrate-on-startup=false)");
+            }
+        };
+    }
+}
@@ -0,0 +1,59 @@
+package krematos.config;
+
+import krematos.archive.ArchiveManifest;
+import krematos.dto.ApiError;
+import krematos.exception.ErrorResponse;
+import krematos.model.AcceptedTransactionResponse;
+import krematos.model.AuditSearchResult;
+import krematos.model.BulkStatusRequest;
+import krematos.model.BulkStatusResponse;
+import krematos.model.ExternalApiRequest;
+import krematos.model.ExternalApiResponse;
+import krematos.model.InternalRequest;
+import krematos.model.InternalResponse;
+import krematos.model.TransactionAudit;
+import krematos.model.TransactionReportRow;
+import krematos.model.TransactionStatusResponse;
+import krematos.spool.SpooledDeadLetter;
+import org.springframework.aot.hint.BindingReflectionHintsRegistrar;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+
+import java.lang.reflect.Type;
+import java.util.List;
+
+/**
+ * Runtime hints pro GraalVM native image (mvn -Pnative). Spring AOT sám pokryje beany, controllery,
+ * actuator endpointy, R2DBC entity repozitářů i Flyway migrace v db/migration. Ručně se doplňuje:
+ * - JSON typy - část jde přes vlastní ObjectMapper / WebClient mimo controllery (RabbitMQ zprávy,
+ *   archiv, spool DLQ, volání externího API), gettery/settery generuje Lombok při kompilaci a Jackson je hledá reflexí
+ * - resources čtené knihovnami přes getResource (verze klienta amqp-client)
+ * Knihovny bez vlastních metadat (Caffeine, ...) pokrývá GraalVM reachability metadata repository.
+ */
+public class NativeRuntimeHints implements RuntimeHintsRegistrar {
+
+    static final List<Class<?>> JSON_TYPES = List.of(
+            InternalRequest.class,
+            InternalResponse.class,
+            AcceptedTransactionResponse.class,
+            ExternalApiRequest.class,
+            ExternalApiResponse.class,
+            TransactionStatusResponse.class,
+            BulkStatusRequest.class,
+            BulkStatusResponse.class,
+            AuditSearchResult.class,
+            TransactionReportRow.class,
+            TransactionAudit.class,
+            ArchiveManifest.class,
+            SpooledDeadLetter.class,
+            ApiError.class,
+            ErrorResponse.class);
+
+    private final BindingReflectionHintsRegistrar bindingRegistrar = new BindingReflectionHintsRegistrar();
+
+    @Override
+    public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+        bindingRegistrar.registerReflectionHints(hints.reflection(), JSON_TYPES.toArray(Type[]::new));
+        hints.resources().registerPattern("rabbitmq-amqp-client.properties");
+    }
+}
@@ -0,0 +1,99 @@
+package krematos.config;
+
+import net.javacrumbs.shedlock.core.LockConfiguration;
+import net.javacrumbs.shedlock.support.AbstractStorageAccessor;
+import net.javacrumbs.shedlock.support.LockException;
+import net.javacrumbs.shedlock.support.StorageBasedLockProvider;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+/**
+ * ShedLock nad stávajícím R2DBC poolem - bez samostatného JDBC DataSource jen kvůli zámkům.
+ * Stejná tabulka shedlock (V1) i stejná sémantika jako dřívější JdbcTemplateLockProvider.usingDbTime():
+ * časy zámku počítá DB (UTC), takže nevadí rozjeté hodiny mezi pody.
+ * Volá se synchronně z vlákna scheduleru (ShedLock API je blokující), nikdy z event loopu.
+ */
+public class R2dbcLockProvider extends StorageBasedLockProvider {
+
+    public R2dbcLockProvider(DatabaseClient databaseClient, Duration timeout) {
+        super(new R2dbcStorageAccessor(databaseClient, timeout));
+    }
+
+    static class R2dbcStorageAccessor extends AbstractStorageAccessor {
+
+        private static final String NOW = "timezone('utc', CURRENT_TIMESTAMP)";
+
+        // Nový zámek, nebo převzetí vypršelého (ON CONFLICT ... WHERE)
+        private static final String INSERT = "INSERT INTO shedlock (name, lock_until, locked_at, locked_by) " +
+                "VALUES (:name, " + NOW + " + CAST(:lockAtMostFor AS interval), " + NOW + ", :lockedBy) " +
+                "ON CONFLICT (name) DO UPDATE SET lock_until = " + NOW + " + CAST(:lockAtMostFor AS interval), " +
+                "locked_at = " + NOW + ", locked_by = :lockedBy " +
+                "WHERE shedlock.lock_until <= " + NOW;
+
+        private static final String UPDATE = "UPDATE shedlock SET lock_until = " + NOW + " + CAST(:lockAtMostFor AS interval), " +
+                "locked_at = " + NOW + ", locked_by = :lockedBy " +
+                "WHERE name = :name AND lock_until <= " + NOW;
+
+        private static final String EXTEND = "UPDATE shedlock SET lock_until = " + NOW + " + CAST(:lockAtMostFor AS interval) " +
+                "WHERE name = :name AND locked_by = :lockedBy AND lock_until > " + NOW;
+
+        // Zámek drží nejméně lockAtLeastFor od zamčení
+        private static final String UNLOCK = "UPDATE shedlock SET lock_until = " +
+                "CASE WHEN locked_at + CAST(:lockAtLeastFor AS interval) > " + NOW +
+                " THEN locked_at + CAST(:lockAtLeastFor AS interval) ELSE " + NOW + " END " +
+                "WHERE name = :name AND locked_by = :lockedBy";
+
+        private final DatabaseClient databaseClient;
+        private final Duration timeout;
+
+        R2dbcStorageAccessor(DatabaseClient databaseClient, Duration timeout) {
+            this.databaseClient = databaseClient;
+            this.timeout = timeout;
+        }
+
+        @Override
+        public boolean insertRecord(LockConfiguration lockConfiguration) {
+            return execute(INSERT, lockConfiguration) > 0;
+        }
+
+        @Override
+        public boolean updateRecord(LockConfiguration lockConfiguration) {
+            return execute(UPDATE, lockConfiguration) > 0;
+        }
+
+        @Override
+        public boolean extend(LockConfiguration lockConfiguration) {
+            return execute(EXTEND, lockConfiguration) > 0;
+        }
+
+        @Override
+        public void unlock(LockConfiguration lockConfiguration) {
+            execute(UNLOCK, lockConfiguration);
+        }
+
+        private long execute(String sql, LockConfiguration lockConfiguration) {
+            DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(sql)
+                    .bind("name", lockConfiguration.getName())
+                    .bind("lockedBy", getHostname());
+            if (sql.contains(":lockAtMostFor")) {
+                spec = spec.bind("lockAtMostFor", interval(lockConfiguration.getLockAtMostFor()));
+            }
+            if (sql.contains(":lockAtLeastFor")) {
+                spec = spec.bind("lockAtLeastFor", interval(lockConfiguration.getLockAtLeastFor()));
+            }
+            Long rows = spec.fetch().rowsUpdated()
+                    .timeout(timeout)
+                    .onErrorMap(error -> new LockException(
+                            "Příkaz nad tabulkou shedlock selhal (" + lockConfiguration.getName() + ")", error))
+                    .switchIfEmpty(Mono.just(0L))
+                    .block();
+            return rows == null ? 0 : rows;
+        }
+
+        private static String interval(Duration duration) {
+            return duration.toMillis() + " milliseconds";
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package krematos.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.r2dbc.pool.ConnectionPool;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Instrumentace R2DBC poolu (velikost, timeouty a validace jsou v spring.r2dbc.pool.*).
+ * Gauge r2dbc.pool.acquired / pending / idle / allocated registruje Spring Boot Actuator sám,
+ * chybí jen doba čekání na spojení - tu měří TimedConnectionPool kolem ConnectionPool.create().
+ */
+@Slf4j
+@Configuration
+public class R2dbcPoolConfig {
+
+    // Static: BeanPostProcessor musí vzniknout dřív než ostatní beany této konfigurace
+    @Bean
+    public static BeanPostProcessor connectionPoolTimingPostProcessor(ObjectProvider<MeterRegistry> meterRegistry) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof ConnectionPool pool) {
+                    log.info("R2DBC pool '{}': měření doby získání spojení zapnuto", beanName);
+                    return new TimedConnectionPool(pool, meterRegistry.getObject(), beanName);
+                }
+                return bean;
+            }
+        };
+    }
+}
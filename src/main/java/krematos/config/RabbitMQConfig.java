@@ -1,45 +1,125 @@
 package krematos.config;
 
 
+import com.rabbitmq.client.Connection;
 import com.rabbitmq.client.ConnectionFactory;
 import org.springframework.amqp.core.Binding;
 import org.springframework.amqp.core.BindingBuilder;
+import org.springframework.amqp.core.Declarable;
+import org.springframework.amqp.core.Declarables;
 import org.springframework.amqp.core.DirectExchange;
 import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.core.QueueBuilder;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.convert.DurationStyle;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import reactor.core.scheduler.Schedulers;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
 import reactor.rabbitmq.*;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 @Configuration
 public class RabbitMQConfig {
 
+    // Názvy topologie - jediné místo pravdy pro publisher i konzumenta
+    public static final String FAILED_TRANSACTION_QUEUE = "failed.transaction.queue";
+    public static final String FAILED_TRANSACTION_EXCHANGE = "failed.transactions.exchange";
+    public static final String FAILED_TRANSACTION_ROUTING_KEY = "failed.transaction.routingkey";
+
+    // Zpožděné opakování - TTL fronty, které po vypršení vrací zprávu zpět do pracovní fronty
+    public static final String RETRY_DELAY_EXCHANGE = "failed.transactions.delay.exchange";
+    public static final String RETRY_ATTEMPT_HEADER = "x-retry-attempt";
+    // Původní typ služby - podle něj se volí prioritní pruh a obnoví se InternalRequest při retry
+    public static final String SERVICE_TYPE_HEADER = "x-service-type";
+    public static final String PARKING_QUEUE = "failed.transaction.parking";
+    public static final String PARKING_ROUTING_KEY = "parking";
+
     @Bean
     public Queue retryQueue() {
-        return new Queue("failed.transaction.queue", true);
+        return new Queue(RetryLane.LOW.queueName(), true);
+    }
+
+    // Prioritní pruh - transakce s vysokou hodnotou, konzument je odebírá přednostně
+    @Bean
+    public Queue highPriorityRetryQueue() {
+        return new Queue(RetryLane.HIGH.queueName(), true);
     }
 
     @Bean
     public DirectExchange exchange() {
-        return new DirectExchange("failed.transactions.exchange");
+        return new DirectExchange(FAILED_TRANSACTION_EXCHANGE);
     }
 
     @Bean
-    public Binding binding(Queue retryQueue, DirectExchange exchange) {
+    public Binding binding(@Qualifier("retryQueue") Queue retryQueue, @Qualifier("exchange") DirectExchange exchange) {
         return BindingBuilder
                 .bind(retryQueue)
                 .to(exchange)
-                .with("failed.transaction.routingkey");
+                .with(RetryLane.LOW.routingKey());
+    }
+
+    @Bean
+    public Binding highPriorityBinding(@Qualifier("highPriorityRetryQueue") Queue highPriorityRetryQueue,
+            @Qualifier("exchange") DirectExchange exchange) {
+        return BindingBuilder
+                .bind(highPriorityRetryQueue)
+                .to(exchange)
+                .with(RetryLane.HIGH.routingKey());
+    }
+
+    @Bean
+    public RetryTiers retryTiers(@Value("${messaging.retry.delays:10s,1m,10m,1h}") String[] delays) {
+        return new RetryTiers(Arrays.stream(delays)
+                .map(String::trim)
+                .map(DurationStyle::detectAndParse)
+                .toList());
+    }
+
+    @Bean
+    public DirectExchange retryDelayExchange() {
+        return new DirectExchange(RETRY_DELAY_EXCHANGE);
+    }
+
+    /**
+     * Pro každý pruh a stupeň žebříčku: fronta s x-message-ttl, která po vypršení
+     * dead-letteruje zprávu zpět na failed.transactions.exchange do pracovní fronty téhož pruhu.
+     * Plus parkovací fronta pro zprávy, které vyčerpaly všechny stupně.
+     */
+    @Bean
+    public Declarables retryDelayTopology(RetryTiers retryTiers,
+            @Qualifier("retryDelayExchange") DirectExchange retryDelayExchange) {
+        List<Declarable> declarables = new ArrayList<>();
+        for (RetryLane lane : RetryLane.values()) {
+            for (RetryTiers.Tier tier : retryTiers.all()) {
+                Queue delayQueue = QueueBuilder.durable(tier.queueName(lane))
+                        .ttl((int) tier.delay().toMillis())
+                        .deadLetterExchange(FAILED_TRANSACTION_EXCHANGE)
+                        .deadLetterRoutingKey(lane.routingKey())
+                        .build();
+                declarables.add(delayQueue);
+                declarables.add(BindingBuilder.bind(delayQueue).to(retryDelayExchange).with(tier.routingKey(lane)));
+            }
+        }
+
+        Queue parkingQueue = QueueBuilder.durable(PARKING_QUEUE).build();
+        declarables.add(parkingQueue);
+        declarables.add(BindingBuilder.bind(parkingQueue).to(retryDelayExchange).with(PARKING_ROUTING_KEY));
+        return new Declarables(declarables);
     }
 
     // (Příjemce) Receiver pro přijímání zpráv z RabbitMQ
+    // Otevření spojení je blokující - běží na virtuálních vláknech (VirtualThreadConfig)
     @Bean
-    public Receiver receiver(@Qualifier("monoConnectionFactory") ConnectionFactory connectionFactory) {
+    public Receiver receiver(@Qualifier("monoConnectionFactory") ConnectionFactory connectionFactory,
+            @Qualifier(VirtualThreadConfig.BLOCKING_SCHEDULER) Scheduler blockingScheduler) {
         return RabbitFlux.createReceiver(new ReceiverOptions()
                 .connectionFactory(connectionFactory)
-                .connectionSubscriptionScheduler(Schedulers.boundedElastic()));
+                .connectionSubscriptionScheduler(blockingScheduler));
     }
 
     // (Připojení) ConnectionFactory pro reaktivní přístup k RabbitMQ
@@ -57,11 +137,31 @@ public class RabbitMQConfig {
         return connectionFactory;
     }
 
+    // Jedno sdílené (lazy) spojení pro odesílání - otevře se až při prvním publish
+    @Bean
+    public Mono<? extends Connection> senderConnectionMono(@Qualifier("monoConnectionFactory") ConnectionFactory connectionFactory) {
+        return Utils.singleConnectionMono(connectionFactory, cf -> cf.newConnection("krematos-sender"));
+    }
+
+    // Pool kanálů - publisher si kanál půjčí na dávku a vrátí ho, místo otevírání kanálu pro každou zprávu
+    // Bez vlastního scheduleru by si pool založil další boundedElastic pro otevírání spojení a kanálů
+    @Bean
+    public ChannelPool senderChannelPool(@Qualifier("senderConnectionMono") Mono<? extends Connection> senderConnectionMono,
+            @Value("${messaging.publisher.channel-pool-size:5}") int channelPoolSize,
+            @Qualifier(VirtualThreadConfig.BLOCKING_SCHEDULER) Scheduler blockingScheduler) {
+        return ChannelPoolFactory.createChannelPool(senderConnectionMono,
+                new ChannelPoolOptions().maxCacheSize(channelPoolSize).subscriptionScheduler(blockingScheduler));
+    }
+
     // (Odesílatel) Sender pro odesílání zpráv do RabbitMQ
     @Bean
-    public Sender sender(@Qualifier("monoConnectionFactory") ConnectionFactory connectionFactory) {
+    public Sender sender(@Qualifier("senderConnectionMono") Mono<? extends Connection> senderConnectionMono,
+            ChannelPool senderChannelPool,
+            @Qualifier(VirtualThreadConfig.BLOCKING_SCHEDULER) Scheduler blockingScheduler) {
         return RabbitFlux.createSender(new SenderOptions()
-                .connectionFactory(connectionFactory)
-                .resourceManagementScheduler(Schedulers.boundedElastic()));
+                .connectionMono(senderConnectionMono)
+                .channelPool(senderChannelPool)
+                .connectionSubscriptionScheduler(blockingScheduler)
+                .resourceManagementScheduler(blockingScheduler));
     }
 }
@@ -0,0 +1,32 @@
+package krematos.config;
+
+/**
+ * Prioritní pruhy retry fronty.
+ * HIGH = transakce s vysokou částkou nebo prioritním typem služby, konzument je odebírá přednostně.
+ * LOW = vše ostatní (původní fronta failed.transaction.queue).
+ */
+public enum RetryLane {
+    HIGH(RabbitMQConfig.FAILED_TRANSACTION_QUEUE + ".high", RabbitMQConfig.FAILED_TRANSACTION_ROUTING_KEY + ".high"),
+    LOW(RabbitMQConfig.FAILED_TRANSACTION_QUEUE, RabbitMQConfig.FAILED_TRANSACTION_ROUTING_KEY);
+
+    private final String queueName;
+    private final String routingKey;
+
+    RetryLane(String queueName, String routingKey) {
+        this.queueName = queueName;
+        this.routingKey = routingKey;
+    }
+
+    public String queueName() {
+        return queueName;
+    }
+
+    public String routingKey() {
+        return routingKey;
+    }
+
+    // Krátký štítek pro názvy front a tagy metrik
+    public String label() {
+        return name().toLowerCase();
+    }
+}
@@ -0,0 +1,68 @@
+package krematos.config;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Žebříček zpožďovacích front pro opakování neúspěšných transakcí (např. 10s, 1m, 10m, 1h).
+ * Každý stupeň je fronta s TTL, ze které zpráva po vypršení "propadne" (dead-letter)
+ * zpět do pracovní fronty svého prioritního pruhu.
+ */
+public class RetryTiers {
+
+    private final List<Tier> tiers;
+
+    public RetryTiers(List<Duration> delays) {
+        List<Tier> list = new ArrayList<>();
+        for (int i = 0; i < delays.size(); i++) {
+            list.add(new Tier(i, delays.get(i), format(delays.get(i))));
+        }
+        this.tiers = Collections.unmodifiableList(list);
+    }
+
+    public List<Tier> all() {
+        return tiers;
+    }
+
+    /**
+     * Vrátí stupeň pro zprávu, která selhala už failedAttempts-krát.
+     * Prázdné Optional = žebříček je vyčerpán a zpráva jde do parkovací fronty.
+     */
+    public Optional<Tier> forFailedAttempts(int failedAttempts) {
+        int index = failedAttempts - 1;
+        if (index < 0 || index >= tiers.size()) {
+            return Optional.empty();
+        }
+        return Optional.of(tiers.get(index));
+    }
+
+    // 10s / 1m / 10m / 1h - čitelné názvy front
+    private static String format(Duration delay) {
+        long seconds = delay.toSeconds();
+        if (seconds > 0 && seconds % 3600 == 0) {
+            return seconds / 3600 + "h";
+        }
+        if (seconds > 0 && seconds % 60 == 0) {
+            return seconds / 60 + "m";
+        }
+        if (delay.toMillis() % 1000 == 0) {
+            return seconds + "s";
+        }
+        return delay.toMillis() + "ms";
+    }
+
+    public record Tier(int index, Duration delay, String label) {
+
+        // Každý pruh má vlastní žebříček, aby se zpráva po zpoždění vrátila do stejného pruhu
+        public String queueName(RetryLane lane) {
+            return lane.queueName() + ".delay." + label;
+        }
+
+        public String routingKey(RetryLane lane) {
+            return "delay." + label + "." + lane.label();
+        }
+    }
+}
@@ -2,16 +2,14 @@ package krematos.config;
 
 import lombok.extern.slf4j.Slf4j;
 import net.javacrumbs.shedlock.core.LockProvider;
-import net.javacrumbs.shedlock.provider.jdbctemplate.JdbcTemplateLockProvider;
 import net.javacrumbs.shedlock.spring.annotation.EnableSchedulerLock;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.boot.jdbc.DataSourceBuilder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.r2dbc.core.DatabaseClient;
 import org.springframework.scheduling.annotation.EnableScheduling;
 
-import javax.sql.DataSource;
+import java.time.Duration;
 
 @Slf4j
 @Configuration
@@ -19,39 +17,11 @@ import javax.sql.DataSource;
 @EnableSchedulerLock(defaultLockAtMostFor = "10m")
 public class SchedulerConfig {
 
-    // Načte hodnoty z application.yml ručně
-    @Value("${spring.datasource.url}")
-    private String dbUrl;
-
-    @Value("${spring.datasource.username}")
-    private String dbUsername;
-
-    @Value("${spring.datasource.password}")
-    private String dbPassword;
-
-    @Value("${spring.datasource.driver-class-name}")
-    private String dbDriver;
-
-    // 1. RUČNĚ VYTVOŘÍ DATASOURCE
+    // Konfigurace ShedLock pro zajištění, že naplánované úlohy neběží současně na více instancích aplikace.
+    // Zámky jdou přes R2DBC pool aplikace - žádný druhý (JDBC) pool ani Hikari vlákna navíc.
     @Bean
-    public DataSource dataSource() {
-        return DataSourceBuilder.create()
-                .url(dbUrl)
-                .username(dbUsername)
-                .password(dbPassword)
-                .driverClassName(dbDriver)
-                .build();
+    public LockProvider lockProvider(DatabaseClient databaseClient,
+                                     @Value("${scheduler.lock.timeout:10s}") Duration timeout) {
+        return new R2dbcLockProvider(databaseClient, timeout);
     }
-    // Konfigurace ShedLock pro zajištění, že naplánované úlohy neběží současně na více instancích aplikace
-    @Bean
-    public LockProvider lockProvider(DataSource dataSource) {
-        return new JdbcTemplateLockProvider(
-                JdbcTemplateLockProvider.Configuration.builder()
-                        .withJdbcTemplate(new JdbcTemplate(dataSource)) // Název tabulky pro zámky
-                        .usingDbTime() // Používá čas databáze pro lepší synchronizaci
-                        .build()
-        );
-    }
-
-
 }
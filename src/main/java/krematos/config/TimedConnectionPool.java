@@ -0,0 +1,69 @@
+package krematos.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.ConnectionFactoryMetadata;
+import io.r2dbc.spi.Wrapped;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+
+/**
+ * ConnectionPool s měřením doby získání spojení (r2dbc.pool.acquire): čekání ve frontě poolu,
+ * případně i otevření nového spojení. Selhání (max-acquire-time) má tag result=failure.
+ * Přes Wrapped.unwrap() najde Actuator původní pool pro své gauge.
+ */
+class TimedConnectionPool implements ConnectionFactory, Wrapped<ConnectionPool>, Disposable {
+
+    private final ConnectionPool pool;
+    private final Timer acquired;
+    private final Timer failed;
+
+    TimedConnectionPool(ConnectionPool pool, MeterRegistry meterRegistry, String name) {
+        this.pool = pool;
+        this.acquired = acquireTimer(meterRegistry, name, "success");
+        this.failed = acquireTimer(meterRegistry, name, "failure");
+    }
+
+    @Override
+    public Mono<Connection> create() {
+        return Mono.defer(() -> {
+            Timer.Sample sample = Timer.start();
+            return pool.create()
+                    .doOnSuccess(connection -> sample.stop(acquired))
+                    .doOnError(error -> sample.stop(failed));
+        });
+    }
+
+    @Override
+    public ConnectionFactoryMetadata getMetadata() {
+        return pool.getMetadata();
+    }
+
+    @Override
+    public ConnectionPool unwrap() {
+        return pool;
+    }
+
+    // Spring volá destroyMethod "dispose" z definice beanu ConnectionPool
+    @Override
+    public void dispose() {
+        pool.dispose();
+    }
+
+    @Override
+    public boolean isDisposed() {
+        return pool.isDisposed();
+    }
+
+    private static Timer acquireTimer(MeterRegistry meterRegistry, String name, String result) {
+        return Timer.builder("r2dbc.pool.acquire")
+                .description("Doba získání spojení z R2DBC poolu")
+                .tag("name", name)
+                .tag("result", result)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+}
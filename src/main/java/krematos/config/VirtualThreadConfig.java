@@ -0,0 +1,35 @@
+package krematos.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Blokující ostrůvky běží na virtuálních vláknech (Java 21), nikdy na Netty event loopu:
+ * - blockingScheduler: Reactor Scheduler pro RabbitMQ (spojení, kanály, confirmSelect) a zápis archivu
+ *   místo Schedulers.boundedElastic - každý úkol má vlastní virtuální vlákno, takže čekání na broker
+ *   nebo disk neváže platform vlákna. Metriky: executor / executor.idle s tagem name=blockingScheduler.
+ * - @Scheduled joby (rescuer, úklid, partitions, rollupy) a ShedLock nad R2DBC čekají přes block()
+ *   na dokončení běhu - na virtuální vlákna je přepne Spring Boot sám (spring.threads.virtual.enabled),
+ *   vlastní scheduler tu proto není.
+ * Že na event loopu žádné blokování nezbylo, hlídá BlockHound test (EventLoopBlockingTest).
+ */
+@Configuration
+public class VirtualThreadConfig {
+
+    public static final String BLOCKING_SCHEDULER = "blockingScheduler";
+
+    @Bean(name = BLOCKING_SCHEDULER, destroyMethod = "dispose")
+    public Scheduler blockingScheduler(MeterRegistry meterRegistry) {
+        ExecutorService executor = Executors.newThreadPerTaskExecutor(
+                Thread.ofVirtual().name("vt-blocking-", 0).factory());
+        return Schedulers.fromExecutorService(
+                ExecutorServiceMetrics.monitor(meterRegistry, executor, BLOCKING_SCHEDULER), "vt-blocking");
+    }
+}
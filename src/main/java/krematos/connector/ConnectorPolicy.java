@@ -0,0 +1,14 @@
+package krematos.connector;
+
+import java.time.Duration;
+
+/**
+ * Politika jedné instance konektoru.
+ * timeout = max. doba jednoho pokusu (null = bez timeoutu), maxRetries = počet opakování po prvním pokusu,
+ * maxConcurrency = souběžně rozpracované požadavky (0 = bez limitu).
+ */
+public record ConnectorPolicy(Duration timeout, int maxRetries, Duration retryDelay, int maxConcurrency) {
+
+    // Výchozí konektor (external.api.*) - chování před zavedením registru konektorů
+    public static final ConnectorPolicy DEFAULT = new ConnectorPolicy(null, 3, Duration.ofSeconds(1), 0);
+}
@@ -0,0 +1,307 @@
+package krematos.connector;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+
+/**
+ * Regionální endpointy externího API (external.api.endpoints, bez nich jediný external.api.base-url).
+ * Volba endpointu pro každý pokus:
+ * - cena = (rozpracované požadavky + 1) x peak-EWMA latence - pomalý nebo zahlcený endpoint dostává méně
+ *   provozu, takže neurčuje p99; při více než dvou endpointech se porovnávají dva náhodné (power of two choices)
+ * - opakovaný pokus jde přednostně na jiný endpoint než předchozí
+ * Pasivní health tracking (outlier ejection): po consecutive-failures chybách v řadě (5xx, spojení, timeout)
+ * je endpoint vyřazen na base-ejection-time x počet vyřazení (max max-ejection-time), pak se vrací do rotace.
+ * Vyřadit lze nejvýš max-ejection-percent endpointů; jsou-li mimo rotaci všechny, volí se ze všech.
+ */
+@Slf4j
+@Component
+public class ExternalEndpointPool {
+
+    // Neznámá latence (endpoint ještě neodpověděl) - nový endpoint dostane provoz, ale ne zadarmo
+    private static final long MIN_LATENCY_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final List<Endpoint> endpoints;
+    private final int consecutiveFailures;
+    private final long baseEjectionNanos;
+    private final long maxEjectionNanos;
+    private final int maxEjectionPercent;
+    private final double decayNanos;
+    private final LongSupplier clock;
+
+    @Autowired
+    public ExternalEndpointPool(MeterRegistry meterRegistry,
+                                @Value("${external.api.endpoints:}") String[] endpoints,
+                                @Value("${external.api.base-url}") String baseUrl,
+                                @Value("${external.api.outlier.consecutive-failures:5}") int consecutiveFailures,
+                                @Value("${external.api.outlier.base-ejection-time:30s}") Duration baseEjectionTime,
+                                @Value("${external.api.outlier.max-ejection-time:5m}") Duration maxEjectionTime,
+                                @Value("${external.api.outlier.max-ejection-percent:50}") int maxEjectionPercent,
+                                @Value("${external.api.latency-decay:10s}") Duration latencyDecay) {
+        this(meterRegistry, ExternalSystemConnector.DEFAULT_NAME, endpoints, baseUrl, consecutiveFailures,
+                baseEjectionTime, maxEjectionTime, maxEjectionPercent, latencyDecay, System::nanoTime);
+    }
+
+    // connector = název instance konektoru (tag metrik), PaymentConnectorRegistry zakládá pool pro každou
+    ExternalEndpointPool(MeterRegistry meterRegistry, String connector, String[] endpoints, String baseUrl,
+                         int consecutiveFailures, Duration baseEjectionTime, Duration maxEjectionTime,
+                         int maxEjectionPercent, Duration latencyDecay, LongSupplier clock) {
+        List<String> urls = Arrays.stream(endpoints)
+                .map(String::trim)
+                .filter(s -> !s.isEmpty())
+                .distinct()
+                .toList();
+        this.endpoints = (urls.isEmpty() ? List.of(baseUrl) : urls).stream()
+                .map(url -> new Endpoint(url, connector, meterRegistry))
+                .toList();
+        this.consecutiveFailures = consecutiveFailures;
+        this.baseEjectionNanos = baseEjectionTime.toNanos();
+        this.maxEjectionNanos = maxEjectionTime.toNanos();
+        this.maxEjectionPercent = maxEjectionPercent;
+        this.decayNanos = latencyDecay.toNanos();
+        this.clock = clock;
+        log.info("Externí API [{}]: {} endpointů {}", connector, this.endpoints.size(),
+                this.endpoints.stream().map(Endpoint::baseUrl).toList());
+    }
+
+    public List<Endpoint> endpoints() {
+        return endpoints;
+    }
+
+    /**
+     * Jeden pokus volání na zvolený endpoint. Zvolený endpoint se přidá do tried - další pokus téhož
+     * požadavku (retry) pak jde jinam, pokud je kam. endpointFailure určuje, které chyby jdou za endpointem
+     * (ostatní, např. 4xx, jsou platná odpověď a počítají se jako úspěch).
+     */
+    public <T> Mono<T> route(Collection<Endpoint> tried, Function<Endpoint, Mono<T>> call,
+                             Predicate<Throwable> endpointFailure) {
+        return Mono.defer(() -> {
+            Endpoint endpoint = select(tried);
+            tried.add(endpoint);
+            long start = clock.getAsLong();
+            endpoint.outstanding.incrementAndGet();
+            return call.apply(endpoint)
+                    .doOnSuccess(result -> endpoint.onSuccess(clock.getAsLong() - start))
+                    .doOnError(error -> {
+                        if (endpointFailure.test(error)) {
+                            onFailure(endpoint, clock.getAsLong() - start);
+                        } else {
+                            endpoint.onSuccess(clock.getAsLong() - start);
+                        }
+                    })
+                    .doFinally(signal -> endpoint.outstanding.decrementAndGet());
+        });
+    }
+
+    Endpoint select(Collection<Endpoint> tried) {
+        if (endpoints.size() == 1) {
+            return endpoints.get(0);
+        }
+        long now = clock.getAsLong();
+        List<Endpoint> candidates = new ArrayList<>(endpoints.size());
+        for (Endpoint endpoint : endpoints) {
+            if (endpoint.isAvailable(now) && !tried.contains(endpoint)) {
+                candidates.add(endpoint);
+            }
+        }
+        if (candidates.isEmpty()) {
+            for (Endpoint endpoint : endpoints) {
+                if (endpoint.isAvailable(now)) {
+                    candidates.add(endpoint);
+                }
+            }
+        }
+        if (candidates.isEmpty()) {
+            // Vyřazené jsou všechny - lepší zkusit kterýkoli než odmítnout provoz
+            candidates.addAll(endpoints);
+        }
+        if (candidates.size() == 1) {
+            return candidates.get(0);
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Endpoint first;
+        Endpoint second;
+        if (candidates.size() == 2) {
+            first = candidates.get(0);
+            second = candidates.get(1);
+        } else {
+            int i = random.nextInt(candidates.size());
+            int j = random.nextInt(candidates.size() - 1);
+            first = candidates.get(i);
+            second = candidates.get(j >= i ? j + 1 : j);
+        }
+        double firstCost = first.cost();
+        double secondCost = second.cost();
+        if (firstCost == secondCost) {
+            return random.nextBoolean() ? first : second;
+        }
+        return firstCost < secondCost ? first : second;
+    }
+
+    private void onFailure(Endpoint endpoint, long latencyNanos) {
+        long now = clock.getAsLong();
+        int failures = endpoint.onFailure(latencyNanos);
+        if (failures < consecutiveFailures || !canEject(now)) {
+            return;
+        }
+        synchronized (endpoint) {
+            if (endpoint.ejectedUntil != 0 || endpoint.consecutiveFailures < consecutiveFailures) {
+                return; // Vyřadil ho souběžně jiný požadavek
+            }
+            endpoint.ejections++;
+            long ejection = Math.min(baseEjectionNanos * endpoint.ejections, maxEjectionNanos);
+            endpoint.ejectedUntil = now + ejection;
+            endpoint.consecutiveFailures = 0;
+            endpoint.ejected.increment();
+            log.warn("Endpoint {} vyřazen z rotace na {} ms po {} chybách v řadě (vyřazení č. {})",
+                    endpoint.baseUrl, TimeUnit.NANOSECONDS.toMillis(ejection), failures, endpoint.ejections);
+        }
+    }
+
+    private boolean canEject(long now) {
+        long ejected = endpoints.stream().filter(e -> !e.isAvailable(now)).count();
+        return (ejected + 1) * 100 <= (long) maxEjectionPercent * endpoints.size();
+    }
+
+    /**
+     * Stav jednoho endpointu. Čítač rozpracovaných požadavků je lock-free, ostatní stav
+     * se mění pod zámkem endpointu (krátké úseky bez I/O, bezpečné i na event loopu).
+     */
+    public final class Endpoint {
+
+        private final String baseUrl;
+        private final AtomicInteger outstanding = new AtomicInteger();
+        private final Timer succeeded;
+        private final Timer failed;
+        private final Counter ejected;
+
+        private volatile double latencyNanos;
+        private long lastObservedAt;
+        private int consecutiveFailures;
+        private int ejections;
+        private volatile long ejectedUntil; // 0 = v rotaci
+
+        private Endpoint(String baseUrl, String connector, MeterRegistry meterRegistry) {
+            this.baseUrl = baseUrl;
+            this.succeeded = requestTimer(meterRegistry, connector, baseUrl, "success");
+            this.failed = requestTimer(meterRegistry, connector, baseUrl, "failure");
+            this.ejected = Counter.builder("external.api.endpoint.ejections")
+                    .description("Počet vyřazení endpointu z rotace (outlier ejection)")
+                    .tag("connector", connector)
+                    .tag("endpoint", baseUrl)
+                    .register(meterRegistry);
+            Gauge.builder("external.api.endpoint.outstanding", outstanding, AtomicInteger::get)
+                    .description("Rozpracované požadavky na endpoint")
+                    .tag("connector", connector)
+                    .tag("endpoint", baseUrl)
+                    .register(meterRegistry);
+            Gauge.builder("external.api.endpoint.latency.ewma", this, e -> e.latencyNanos / 1e9)
+                    .description("Peak-EWMA latence endpointu použitá pro balancování")
+                    .tag("connector", connector)
+                    .tag("endpoint", baseUrl)
+                    .baseUnit("seconds")
+                    .register(meterRegistry);
+            Gauge.builder("external.api.endpoint.ejected", this, e -> e.isAvailable(clock.getAsLong()) ? 0 : 1)
+                    .description("1 = endpoint je vyřazený z rotace")
+                    .tag("connector", connector)
+                    .tag("endpoint", baseUrl)
+                    .register(meterRegistry);
+        }
+
+        public String baseUrl() {
+            return baseUrl;
+        }
+
+        public URI resolve(String path) {
+            return UriComponentsBuilder.fromUriString(baseUrl).path(path).build().toUri();
+        }
+
+        public int outstanding() {
+            return outstanding.get();
+        }
+
+        // Po uplynutí doby vyřazení se endpoint vrací do rotace; první požadavky slouží jako sonda
+        boolean isAvailable(long now) {
+            long until = ejectedUntil;
+            if (until == 0) {
+                return true;
+            }
+            if (now - until < 0) {
+                return false;
+            }
+            synchronized (this) {
+                if (ejectedUntil != 0) {
+                    ejectedUntil = 0;
+                    log.info("Endpoint {} vrácen do rotace", baseUrl);
+                }
+            }
+            return true;
+        }
+
+        private double cost() {
+            return (outstanding.get() + 1) * Math.max(latencyNanos, MIN_LATENCY_NANOS);
+        }
+
+        private synchronized void onSuccess(long nanos) {
+            succeeded.record(nanos, TimeUnit.NANOSECONDS);
+            observe(nanos);
+            consecutiveFailures = 0;
+            // Úspěch po návratu do rotace - další vyřazení začne zase od base-ejection-time
+            ejections = 0;
+        }
+
+        // Rychlá chyba (503, odmítnuté spojení) nesmí snížit latenci - vadný endpoint by vypadal nejrychleji
+        private synchronized int onFailure(long nanos) {
+            failed.record(nanos, TimeUnit.NANOSECONDS);
+            observe(Math.max(nanos, (long) latencyNanos));
+            return ++consecutiveFailures;
+        }
+
+        // Peak-EWMA: zpomalení se projeví hned, zlepšení postupně s časovou konstantou latency-decay
+        private void observe(long nanos) {
+            long now = clock.getAsLong();
+            if (latencyNanos == 0 || nanos > latencyNanos) {
+                latencyNanos = nanos;
+            } else {
+                double weight = Math.exp(-(now - lastObservedAt) / decayNanos);
+                latencyNanos = latencyNanos * weight + nanos * (1 - weight);
+            }
+            lastObservedAt = now;
+        }
+
+        @Override
+        public String toString() {
+            return baseUrl;
+        }
+    }
+
+    private static Timer requestTimer(MeterRegistry meterRegistry, String connector, String endpoint, String result) {
+        return Timer.builder("external.api.endpoint.requests")
+                .description("Doba volání endpointu externího API")
+                .tag("connector", connector)
+                .tag("endpoint", endpoint)
+                .tag("result", result)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+}
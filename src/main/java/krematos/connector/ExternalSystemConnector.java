@@ -2,44 +2,51 @@ package krematos.connector;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import krematos.exception.ExternalServiceException;
+import com.rabbitmq.client.AMQP;
+import krematos.config.RabbitMQConfig;
+import krematos.config.RetryLane;
 import krematos.model.ExternalApiRequest;
 import krematos.model.ExternalApiResponse;
+import krematos.publisher.RabbitMessagePublisher;
+import krematos.publisher.RetryLaneSelector;
+import krematos.spool.DeadLetterSpool;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.HttpStatusCode;
 import org.springframework.security.oauth2.client.ReactiveOAuth2AuthorizedClientManager;
 import org.springframework.security.oauth2.client.registration.ReactiveClientRegistrationRepository;
 import org.springframework.security.oauth2.client.web.reactive.function.client.ServerOAuth2AuthorizedClientExchangeFilterFunction;
 import org.springframework.security.oauth2.client.web.server.ServerOAuth2AuthorizedClientRepository;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.client.WebClient;
-import org.springframework.web.reactive.function.client.WebClientResponseException;
 import reactor.core.publisher.Mono;
-import reactor.rabbitmq.OutboundMessage;
-import reactor.rabbitmq.Sender;
-import reactor.util.retry.Retry;
+import reactor.core.scheduler.Schedulers;
 
-import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
- * Konektor pro komunikaci s externím platebním systémem
+ * Výchozí konektor (PaymentConnector "default") pro komunikaci s externím platebním systémem
  * Obsahuje logiku pro:
  * - OAuth2 autentizaci
  * - Exponenciální retry s backoff
  * - Odesílání chybných requestů do Dead Letter Queue (DLQ)
+ * - Lokální spool pro DLQ zprávy, když RabbitMQ není dostupný
+ * - Balancování mezi regionálními endpointy s vyřazováním nezdravých (ExternalEndpointPool)
  */
 @Slf4j
 @Component
-public class ExternalSystemConnector {
+public class ExternalSystemConnector implements PaymentConnector {
 
-        private final WebClient webClient;
-        private final Sender rabbitSender; // Neblokující Sender (reactor-rabbitmq)
+        private final HttpPaymentConnector http; // Volání externího API (retry, endpointy)
+        private final RabbitMessagePublisher rabbitPublisher; // Dávkový publisher s publisher confirms
         private final ObjectMapper objectMapper; // Pro serializaci JSONu
+        private final RetryLaneSelector retryLaneSelector; // Volba prioritního pruhu DLQ
+        private final DeadLetterSpool deadLetterSpool; // Záloha DLQ na disku při výpadku RabbitMQ
 
-        // Konstanty pro Retry logiku
-        private static final int MAX_ATTEMPTS = 3;
-        private static final int RETRY_DELAY_MS = 1000;
+        // Klíč v Reactor Contextu - volající (TransactionService) sem vkládá typ služby,
+        // ExternalApiRequest ho nenese, protože se posílá 1:1 do externího API
+        public static final String SERVICE_TYPE_CONTEXT_KEY = "krematos.serviceType";
+
+        public static final String DEFAULT_NAME = "default";
         private static final String SERVICE_NAME = "External Payment API";
 
         /**
@@ -50,12 +57,21 @@ public class ExternalSystemConnector {
         public ExternalSystemConnector(
                         WebClient.Builder webClientBuilder,
                         ReactiveOAuth2AuthorizedClientManager authorizedClientManager,
-                        Sender rabbitSender,
+                        RabbitMessagePublisher rabbitPublisher,
+                        RetryLaneSelector retryLaneSelector,
+                        DeadLetterSpool deadLetterSpool,
                         ObjectMapper objectMapper,
-                        @Value("${external.api.base-url}") String baseUrl) {
-                this.rabbitSender = rabbitSender;
+                        ExternalEndpointPool endpointPool) {
+                this.rabbitPublisher = rabbitPublisher;
+                this.retryLaneSelector = retryLaneSelector;
+                this.deadLetterSpool = deadLetterSpool;
                 this.objectMapper = objectMapper;
 
+                // Fail-fast: routing key obou pruhů DLQ musí odpovídat bindingům z RabbitMQConfig
+                for (RetryLane lane : RetryLane.values()) {
+                        rabbitPublisher.verifyRoute(RabbitMQConfig.FAILED_TRANSACTION_EXCHANGE, lane.routingKey());
+                }
+
                 // 3. Vytvoření filtru pro OAuth2
                 ServerOAuth2AuthorizedClientExchangeFilterFunction oauth = new ServerOAuth2AuthorizedClientExchangeFilterFunction(
                                 authorizedClientManager);
@@ -63,79 +79,81 @@ public class ExternalSystemConnector {
                 // 4. Nastavení, který klient se má použít (odpovídá application.yml)
                 oauth.setDefaultClientRegistrationId("external-api-client");
 
-                this.webClient = webClientBuilder
-                                .baseUrl(baseUrl)
+                // Bez baseUrl - absolutní URL zvoleného endpointu se skládá pro každý pokus
+                WebClient webClient = webClientBuilder
                                 .filter(oauth)
                                 .defaultHeader("Content-Type", "application/json")
                                 .build();
+
+                // Výchozí politika (3 opakování, bez timeoutu a limitu souběžnosti), po vyčerpání pokusů DLQ
+                this.http = new HttpPaymentConnector(DEFAULT_NAME, SERVICE_NAME, webClient, endpointPool,
+                                ConnectorPolicy.DEFAULT, this::sendToDeadLetter, null);
         }
 
+        @Override
+        public String name() {
+                return DEFAULT_NAME;
+        }
+
+        @Override
         public Mono<ExternalApiResponse> sendRequest(ExternalApiRequest request) {
-                log.info("Volání externího API pro transakci: {}", request.getTransactionId());
-
-                return webClient.post()
-                        .uri("/v1/process")
-                        .bodyValue(request)
-                        .retrieve()
-                        // Zpracování 4xx chyb
-                        .onStatus(HttpStatusCode::is4xxClientError,
-                                clientResponse -> clientResponse.bodyToMono(String.class)
-                                        .flatMap(errorBody -> {
-                                                log.error("Chyba klienta (4xx): {} - {}", clientResponse.statusCode(), errorBody);
-                                                return Mono.error(new ExternalServiceException("Chybný požadavek do externího systému: "
-                                                        + clientResponse.statusCode(), SERVICE_NAME,
-                                                        clientResponse.statusCode().value(),
-                                                        request.getTransactionId(), errorBody, null));
-                                        }))
-                        // Zpracování 5xx chyb (chyba na straně externího serveru)
-                        .onStatus(HttpStatusCode::is5xxServerError,
-                                clientResponse -> Mono.error(WebClientResponseException.create(
-                                        clientResponse.statusCode().value(),
-                                        "Externí server selhal.", null, null, null)))
-                        .bodyToMono(ExternalApiResponse.class)
-
-                        // --- REACTIVE RETRY s exponenciálním backoff ---
-                        // Opakuje pouze dočasné chyby (5xx, timeouty, connection errors)
-                        .retryWhen(Retry.backoff(MAX_ATTEMPTS, Duration.ofMillis(RETRY_DELAY_MS))
-                                .filter(this::isRetryable)
-                                .doBeforeRetry(retrySignal -> log.warn(
-                                        "Opakuji volání (pokus {}/{}). Chyba: {}",
-                                        retrySignal.totalRetries() + 1, MAX_ATTEMPTS,
-                                        retrySignal.failure().getMessage())))
-
-                        .doOnSuccess(response -> log.info("-> Externí volání OK: {}", request.getTransactionId()))
-                        // --- FALLBACK (DLQ) ---
-                        // Pokud všechny pokusy selhaly, odešle zprávu do Dead Letter Queue
-                                .onErrorResume(throwable -> {
-                                        log.error("Externí volání selhalo po všech pokusech: {}", throwable.getMessage());
-                                        return sendToDeadLetter(request)
-                                                .then(Mono.error(new ExternalServiceException(
-                                                        "Externí služba není dostupná po " + MAX_ATTEMPTS + " pokusech. Požadavek uložen do DLQ.",
-                                                        SERVICE_NAME, request.getTransactionId(), throwable)));
-                                });
+                return http.sendRequest(request);
         }
 
         /**
-         * Určuje zda chyba je dočasná a má smysl ji opakovat
-         * Opakuje pouze:
-         * - 503 Service Unavailable (server je dočasně nedostupný)
-         * - 504 Gateway Timeout (timeout při proxy/gateway)
-         * - 500 Internal Server Error (může být dočasná chyba serveru)
-         * - Connection errors (síťové problémy)
-         * NEOPAKUJE 4xx chyby - ty indikují problém v našem požadavku
+         * Varianta bez DLQ fallbacku pro retry konzumenta.
+         * O dalším pokusu rozhoduje konzument sám (zpožďovací fronty), takže se zpráva nesmí
+         * okamžitě vracet do pracovní fronty. 4xx chyby zůstávají ExternalServiceException se status kódem.
          */
-        private boolean isRetryable(Throwable ex) {
-                return ex instanceof WebClientResponseException.ServiceUnavailable ||
-                                ex instanceof WebClientResponseException.GatewayTimeout ||
-                                ex instanceof WebClientResponseException.InternalServerError ||
-                                ex instanceof java.net.ConnectException;
+        @Override
+        public Mono<ExternalApiResponse> sendRequestWithoutFallback(ExternalApiRequest request) {
+                return http.sendRequestWithoutFallback(request);
         }
 
         /**
          * Odešle chybný request do RabbitMQ Dead Letter Queue pro pozdější zpracování
-         * Používá se když externí API selže po všech retry pokusech
+         * Používá se když externí API selže po všech retry pokusech.
+         * Typ služby se čte z Reactor Contextu (SERVICE_TYPE_CONTEXT_KEY), pokud ho volající nastavil.
          */
         public Mono<Void> sendToDeadLetter(ExternalApiRequest request) {
+                return Mono.deferContextual(ctx -> sendToDeadLetter(request,
+                                ctx.<String>getOrEmpty(SERVICE_TYPE_CONTEXT_KEY).orElse(null)));
+        }
+
+        /**
+         * Když RabbitMQ zprávu nepotvrdí, uloží se do lokálního spoolu a DeadLetterSpoolReplayer ji
+         * odešle po obnovení brokeru. Dokud ve spoolu něco čeká, jdou nové zprávy rovnou za ně -
+         * do DLQ tak dorazí v pořadí, v jakém selhaly.
+         */
+        public Mono<Void> sendToDeadLetter(ExternalApiRequest request, String serviceType) {
+                if (deadLetterSpool.hasPending()) {
+                        return spool(request, serviceType);
+                }
+                return publishToDeadLetter(request, serviceType)
+                                .onErrorResume(e -> {
+                                        log.warn("RabbitMQ zprávu {} nepotvrdil, ukládám do spoolu: {}",
+                                                        request.getTransactionId(), e.getMessage());
+                                        return spool(request, serviceType);
+                                });
+        }
+
+        // Mimo event loop - zápis může založit nový segment a ve fsync=always čeká na disk
+        private Mono<Void> spool(ExternalApiRequest request, String serviceType) {
+                return Mono.<Void>fromRunnable(() -> {
+                        if (!deadLetterSpool.append(request, serviceType)) {
+                                log.error("CRITICAL: Zprávu {} se nepodařilo zapsat do RabbitMQ ani do spoolu!",
+                                                request.getTransactionId());
+                        }
+                })
+                                .subscribeOn(Schedulers.boundedElastic());
+        }
+
+        /**
+         * Stejné jako sendToDeadLetter, ale chybu nespolkne - volající (např. rescuer)
+         * potřebuje vědět, které zprávy broker skutečně potvrdil.
+         */
+        public Mono<Void> publishToDeadLetter(ExternalApiRequest request, String serviceType) {
+                RetryLane lane = retryLaneSelector.select(request.getAmount(), serviceType);
                 return Mono.fromCallable(() -> {
                         try {
                                 return objectMapper.writeValueAsBytes(request);
@@ -143,14 +161,25 @@ public class ExternalSystemConnector {
                                 throw new RuntimeException("Chyba serializace pro DLQ", e);
                         }
                 })
-                                .map(jsonBytes -> new OutboundMessage(
-                                                "failed.transactions.exchange",
-                                                "retry.key",
+                                .flatMap(jsonBytes -> rabbitPublisher.publish(
+                                                RabbitMQConfig.FAILED_TRANSACTION_EXCHANGE,
+                                                lane.routingKey(),
+                                                dlqProperties(serviceType),
                                                 jsonBytes))
-                                .flatMap(msg -> rabbitSender.send(Mono.just(msg)))
-                                .doOnSuccess(v -> log.info("Zpráva úspěšně odložena do RabbitMQ DLQ"))
-                                .doOnError(e -> log.error("CRITICAL: Nepodařilo se zapsat do RabbitMQ!", e))
-                                .onErrorResume(e -> Mono.empty())
+                                .doOnSuccess(v -> log.info("Zpráva úspěšně odložena do RabbitMQ DLQ, pruh {} (potvrzeno brokerem)", lane))
                                 .then();
         }
+
+        // Perzistentní JSON zpráva (deliveryMode 2 = přežije restart brokeru)
+        private static AMQP.BasicProperties dlqProperties(String serviceType) {
+                Map<String, Object> headers = new HashMap<>();
+                if (serviceType != null) {
+                        headers.put(RabbitMQConfig.SERVICE_TYPE_HEADER, serviceType);
+                }
+                return new AMQP.BasicProperties.Builder()
+                                .contentType("application/json")
+                                .deliveryMode(2)
+                                .headers(headers)
+                                .build();
+        }
 }
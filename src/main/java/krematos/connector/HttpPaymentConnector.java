@@ -0,0 +1,198 @@
+package krematos.connector;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import krematos.exception.ExternalServiceException;
+import krematos.exception.PaymentOutcomeUnknownException;
+import krematos.model.ExternalApiRequest;
+import krematos.model.ExternalApiResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * HTTP volání platebního poskytovatele podle ConnectorPolicy: endpoint z vlastního ExternalEndpointPool,
+ * timeout pokusu, exponenciální retry a limit souběžných požadavků (bulkhead).
+ * Nad limitem se požadavek hned odmítne (503) - pomalý poskytovatel tak nezadrží vlákna ani spojení ostatních
+ * a s DLQ fallbackem se požadavek zopakuje později přes retry frontu.
+ * Timeout pokusu (ConnectorPolicy.timeout) se neopakuje ani nejde do DLQ - požadavek mohl projít,
+ * volající dostane PaymentOutcomeUnknownException a transakce čeká na rekonciliaci.
+ * Vlastní WebClient (pool spojení) a DLQ dostává od PaymentConnectorRegistry, resp. ExternalSystemConnector.
+ */
+@Slf4j
+final class HttpPaymentConnector implements PaymentConnector {
+
+        private static final String PROCESS_PATH = "/v1/process";
+
+        private final String name;
+        private final String serviceName;
+        private final WebClient webClient;
+        private final ExternalEndpointPool endpointPool;
+        private final ConnectorPolicy policy;
+        private final Function<ExternalApiRequest, Mono<Void>> deadLetter;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final Counter rejected;
+
+        // meterRegistry může být null jen bez limitu souběžnosti (výchozí konektor)
+        HttpPaymentConnector(String name, String serviceName, WebClient webClient, ExternalEndpointPool endpointPool,
+                             ConnectorPolicy policy, Function<ExternalApiRequest, Mono<Void>> deadLetter,
+                             MeterRegistry meterRegistry) {
+                this.name = name;
+                this.serviceName = serviceName;
+                this.webClient = webClient;
+                this.endpointPool = endpointPool;
+                this.policy = policy;
+                this.deadLetter = deadLetter;
+                if (policy.maxConcurrency() > 0) {
+                        Gauge.builder("connector.in.flight", inFlight, AtomicInteger::get)
+                                        .description("Rozpracované požadavky konektoru")
+                                        .tag("connector", name)
+                                        .register(meterRegistry);
+                        this.rejected = Counter.builder("connector.rejected")
+                                        .description("Požadavky odmítnuté nad limitem souběžnosti konektoru")
+                                        .tag("connector", name)
+                                        .register(meterRegistry);
+                } else {
+                        this.rejected = null;
+                }
+        }
+
+        @Override
+        public String name() {
+                return name;
+        }
+
+        @Override
+        public Mono<ExternalApiResponse> sendRequest(ExternalApiRequest request) {
+                return call(request)
+                        // --- FALLBACK (DLQ) ---
+                        // Pokud všechny pokusy selhaly, odešle zprávu do Dead Letter Queue
+                                .onErrorResume(throwable -> !(throwable instanceof PaymentOutcomeUnknownException), throwable -> {
+                                        log.error("Externí volání [{}] selhalo po všech pokusech: {}", name, throwable.getMessage());
+                                        return deadLetter.apply(request)
+                                                .then(Mono.error(new ExternalServiceException(
+                                                        "Externí služba není dostupná po " + policy.maxRetries() + " pokusech. Požadavek uložen do DLQ.",
+                                                        serviceName, request.getTransactionId(), throwable)));
+                                });
+        }
+
+        @Override
+        public Mono<ExternalApiResponse> sendRequestWithoutFallback(ExternalApiRequest request) {
+                return call(request)
+                        .onErrorMap(throwable -> !(throwable instanceof ExternalServiceException),
+                                throwable -> new ExternalServiceException(
+                                        "Externí služba není dostupná po " + policy.maxRetries() + " pokusech.",
+                                        serviceName, request.getTransactionId(), throwable));
+        }
+
+        private Mono<ExternalApiResponse> call(ExternalApiRequest request) {
+                return Mono.defer(() -> {
+                                if (!tryAcquire()) {
+                                        log.warn("Konektor [{}] odmítl transakci {} - limit {} souběžných požadavků",
+                                                        name, request.getTransactionId(), policy.maxConcurrency());
+                                        return Mono.error(new ExternalServiceException(
+                                                        "Externí služba je přetížená (limit souběžných požadavků)",
+                                                        serviceName, null, request.getTransactionId(),
+                                                        "max-concurrency=" + policy.maxConcurrency(), null,
+                                                        HttpStatus.SERVICE_UNAVAILABLE));
+                                }
+                                log.info("Volání externího API [{}] pro transakci: {}", name, request.getTransactionId());
+                                // Endpointy vyzkoušené tímto požadavkem - retry jde přednostně na jiný
+                                List<ExternalEndpointPool.Endpoint> tried = new ArrayList<>(policy.maxRetries() + 1);
+                                return endpointPool.route(tried, endpoint -> post(endpoint, request), HttpPaymentConnector::isEndpointFailure)
+                                        // --- REACTIVE RETRY s exponenciálním backoff ---
+                                        // Opakuje pouze dočasné chyby (5xx, connection errors)
+                                        .retryWhen(Retry.backoff(policy.maxRetries(), policy.retryDelay())
+                                                .filter(HttpPaymentConnector::isRetryable)
+                                                .doBeforeRetry(retrySignal -> log.warn(
+                                                        "Opakuji volání [{}] (pokus {}/{}). Chyba: {}", name,
+                                                        retrySignal.totalRetries() + 1, policy.maxRetries(),
+                                                        retrySignal.failure().getMessage())))
+                                        .onErrorMap(TimeoutException.class, e -> {
+                                                log.error("Externí volání [{}] pro transakci {} bez odpovědi do {}, výsledek neznámý",
+                                                                name, request.getTransactionId(), policy.timeout());
+                                                return new PaymentOutcomeUnknownException(serviceName, request.getTransactionId(), e);
+                                        })
+                                        .doFinally(signal -> release());
+                        })
+                        .doOnSuccess(response -> log.info("-> Externí volání OK: {}", request.getTransactionId()));
+        }
+
+        private Mono<ExternalApiResponse> post(ExternalEndpointPool.Endpoint endpoint, ExternalApiRequest request) {
+                Mono<ExternalApiResponse> response = webClient.post()
+                        .uri(endpoint.resolve(PROCESS_PATH))
+                        .bodyValue(request)
+                        .retrieve()
+                        // Zpracování 4xx chyb
+                        .onStatus(HttpStatusCode::is4xxClientError,
+                                clientResponse -> clientResponse.bodyToMono(String.class)
+                                        .flatMap(errorBody -> {
+                                                log.error("Chyba klienta (4xx): {} - {}", clientResponse.statusCode(), errorBody);
+                                                return Mono.error(new ExternalServiceException("Chybný požadavek do externího systému: "
+                                                        + clientResponse.statusCode(), serviceName,
+                                                        clientResponse.statusCode().value(),
+                                                        request.getTransactionId(), errorBody, null));
+                                        }))
+                        // Zpracování 5xx chyb (chyba na straně externího serveru)
+                        .onStatus(HttpStatusCode::is5xxServerError,
+                                clientResponse -> Mono.error(WebClientResponseException.create(
+                                        clientResponse.statusCode().value(),
+                                        "Externí server selhal.", null, null, null)))
+                        .bodyToMono(ExternalApiResponse.class);
+                // Timeout pokusu se počítá endpointu jako chyba, ale neopakuje se ani nejde do DLQ - platba mohla projít
+                return policy.timeout() == null ? response : response.timeout(policy.timeout());
+        }
+
+        private boolean tryAcquire() {
+                if (policy.maxConcurrency() <= 0) {
+                        return true;
+                }
+                if (inFlight.incrementAndGet() > policy.maxConcurrency()) {
+                        inFlight.decrementAndGet();
+                        rejected.increment();
+                        return false;
+                }
+                return true;
+        }
+
+        private void release() {
+                if (policy.maxConcurrency() > 0) {
+                        inFlight.decrementAndGet();
+                }
+        }
+
+        // 4xx (ExternalServiceException) je platná odpověď endpointu - za zdravím endpointu jdou jen ostatní chyby
+        private static boolean isEndpointFailure(Throwable ex) {
+                return !(ex instanceof ExternalServiceException);
+        }
+
+        /**
+         * Určuje zda chyba je dočasná a má smysl ji opakovat
+         * Opakuje pouze:
+         * - 503 Service Unavailable (server je dočasně nedostupný)
+         * - 504 Gateway Timeout (timeout při proxy/gateway)
+         * - 500 Internal Server Error (může být dočasná chyba serveru)
+         * - Connection errors (síťové problémy)
+         * NEOPAKUJE 4xx chyby - ty indikují problém v našem požadavku
+         */
+        private static boolean isRetryable(Throwable ex) {
+                return ex instanceof WebClientResponseException.ServiceUnavailable ||
+                                ex instanceof WebClientResponseException.GatewayTimeout ||
+                                ex instanceof WebClientResponseException.InternalServerError ||
+                                ex instanceof java.net.ConnectException ||
+                                // WebClient obaluje odmítnuté spojení - s více endpointy jde pokus na jiný region
+                                (ex instanceof WebClientRequestException && ex.getCause() instanceof java.net.ConnectException);
+        }
+}
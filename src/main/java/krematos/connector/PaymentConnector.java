@@ -0,0 +1,25 @@
+package krematos.connector;
+
+import krematos.model.ExternalApiRequest;
+import krematos.model.ExternalApiResponse;
+import reactor.core.publisher.Mono;
+
+/**
+ * SPI platebního konektoru. TransactionService volí instanci přes PaymentConnectorRegistry
+ * podle typu služby a měny požadavku; výchozí instance je ExternalSystemConnector (external.api.*).
+ */
+public interface PaymentConnector {
+
+    // Název instance z konfigurace (connectors.instances.<name>), výchozí konektor "default"
+    String name();
+
+    /**
+     * Volání s DLQ fallbackem - po vyčerpání pokusů se požadavek uloží do DLQ a vrátí se ExternalServiceException.
+     */
+    Mono<ExternalApiResponse> sendRequest(ExternalApiRequest request);
+
+    /**
+     * Varianta bez DLQ fallbacku pro retry konzumenta; 4xx chyby zůstávají ExternalServiceException se status kódem.
+     */
+    Mono<ExternalApiResponse> sendRequestWithoutFallback(ExternalApiRequest request);
+}
@@ -0,0 +1,148 @@
+package krematos.connector;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import krematos.config.ConnectorProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.security.oauth2.client.ReactiveOAuth2AuthorizedClientManager;
+import org.springframework.security.oauth2.client.web.reactive.function.client.ServerOAuth2AuthorizedClientExchangeFilterFunction;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Registr platebních konektorů: výchozí ExternalSystemConnector + instance z connectors.instances.
+ * Každá instance má vlastní pool spojení (Reactor Netty ConnectionProvider), timeout, retry politiku,
+ * limit souběžnosti a endpointy - poskytovatelé s různou latencí se navzájem neblokují.
+ * Směrování podle connectors.routes je nejvýš trojice lookupů v HashMap (O(1)), v pořadí:
+ * typ služby + měna, jen typ služby, jen měna, jinak výchozí konektor.
+ * Prahy vyřazování endpointů jsou external.api.outlier.*, instance je může přepsat v connectors.instances.<název>.outlier.
+ * Chybná konfigurace (neznámá instance, duplicitní pravidlo) shodí start aplikace.
+ */
+@Slf4j
+@Component
+public class PaymentConnectorRegistry implements DisposableBean {
+
+    private final PaymentConnector defaultConnector;
+    private final Map<String, PaymentConnector> connectors = new HashMap<>();
+    private final Map<RouteKey, PaymentConnector> routes = new HashMap<>();
+    private final List<ConnectionProvider> connectionProviders = new ArrayList<>();
+
+    public PaymentConnectorRegistry(ExternalSystemConnector defaultConnector,
+                                    ConnectorProperties properties,
+                                    WebClient.Builder webClientBuilder,
+                                    ReactiveOAuth2AuthorizedClientManager authorizedClientManager,
+                                    MeterRegistry meterRegistry,
+                                    @Value("${external.api.outlier.consecutive-failures:5}") int consecutiveFailures,
+                                    @Value("${external.api.outlier.base-ejection-time:30s}") Duration baseEjectionTime,
+                                    @Value("${external.api.outlier.max-ejection-time:5m}") Duration maxEjectionTime,
+                                    @Value("${external.api.outlier.max-ejection-percent:50}") int maxEjectionPercent,
+                                    @Value("${external.api.latency-decay:10s}") Duration latencyDecay) {
+        this.defaultConnector = defaultConnector;
+        connectors.put(defaultConnector.name(), defaultConnector);
+        ConnectorProperties.Outlier outlierDefaults = new ConnectorProperties.Outlier(consecutiveFailures,
+                baseEjectionTime, maxEjectionTime, maxEjectionPercent, latencyDecay);
+
+        properties.instances().forEach((name, instance) -> {
+            if (connectors.containsKey(name)) {
+                throw new IllegalStateException("Konektor '" + name + "' je rezervovaný pro external.api.*");
+            }
+            connectors.put(name, create(name, instance, instance.outlier().orElse(outlierDefaults), webClientBuilder,
+                    authorizedClientManager, defaultConnector, meterRegistry));
+        });
+
+        for (ConnectorProperties.Route route : properties.routes()) {
+            PaymentConnector connector = connectors.get(route.connector());
+            if (connector == null) {
+                throw new IllegalStateException("Pravidlo " + route + " odkazuje na neznámý konektor");
+            }
+            if (route.serviceType() == null && route.currency() == null) {
+                throw new IllegalStateException("Pravidlo " + route + " musí mít serviceType nebo currency");
+            }
+            if (routes.putIfAbsent(RouteKey.of(route.serviceType(), route.currency()), connector) != null) {
+                throw new IllegalStateException("Duplicitní pravidlo směrování " + route);
+            }
+        }
+        log.info("Platební konektory: {}, pravidel směrování: {}", connectors.keySet(), routes.size());
+    }
+
+    /**
+     * Konektor pro požadavek podle typu služby a měny; bez shody výchozí konektor.
+     */
+    public PaymentConnector resolve(String serviceType, String currency) {
+        if (routes.isEmpty()) {
+            return defaultConnector;
+        }
+        PaymentConnector connector = routes.get(RouteKey.of(serviceType, currency));
+        if (connector == null && serviceType != null) {
+            connector = routes.get(RouteKey.of(serviceType, null));
+        }
+        if (connector == null && currency != null) {
+            connector = routes.get(RouteKey.of(null, currency));
+        }
+        return connector != null ? connector : defaultConnector;
+    }
+
+    public PaymentConnector get(String name) {
+        return connectors.get(name);
+    }
+
+    @Override
+    public void destroy() {
+        connectionProviders.forEach(ConnectionProvider::dispose);
+    }
+
+    private PaymentConnector create(String name, ConnectorProperties.Instance instance, ConnectorProperties.Outlier outlier,
+                                    WebClient.Builder webClientBuilder,
+                                    ReactiveOAuth2AuthorizedClientManager authorizedClientManager,
+                                    ExternalSystemConnector deadLetters, MeterRegistry meterRegistry) {
+        if ((instance.baseUrl() == null || instance.baseUrl().isBlank()) && instance.endpoints().isEmpty()) {
+            throw new IllegalStateException("Konektor '" + name + "' nemá base-url ani endpoints");
+        }
+        // Vlastní pool spojení - pomalý poskytovatel nevyčerpá spojení ostatním (metriky reactor.netty.connection.provider.*)
+        ConnectionProvider provider = ConnectionProvider.builder("connector-" + name)
+                .maxConnections(instance.maxConnections())
+                .pendingAcquireTimeout(instance.pendingAcquireTimeout())
+                .metrics(true)
+                .build();
+        connectionProviders.add(provider);
+        HttpClient httpClient = HttpClient.create(provider).responseTimeout(instance.timeout());
+
+        WebClient.Builder builder = webClientBuilder.clone()
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .defaultHeader("Content-Type", "application/json");
+        if (instance.oauthRegistration() != null && !instance.oauthRegistration().isBlank()) {
+            ServerOAuth2AuthorizedClientExchangeFilterFunction oauth =
+                    new ServerOAuth2AuthorizedClientExchangeFilterFunction(authorizedClientManager);
+            oauth.setDefaultClientRegistrationId(instance.oauthRegistration());
+            builder.filter(oauth);
+        }
+
+        ExternalEndpointPool endpointPool = new ExternalEndpointPool(meterRegistry, name,
+                instance.endpoints().toArray(String[]::new), instance.baseUrl(), outlier.consecutiveFailures(),
+                outlier.baseEjectionTime(), outlier.maxEjectionTime(), outlier.maxEjectionPercent(),
+                outlier.latencyDecay(), System::nanoTime);
+        ConnectorPolicy policy = new ConnectorPolicy(instance.timeout(), instance.maxRetries(),
+                instance.retryDelay(), instance.maxConcurrency());
+        return new HttpPaymentConnector(name, name, builder.build(), endpointPool, policy,
+                deadLetters::sendToDeadLetter, meterRegistry);
+    }
+
+    // Měna bez ohledu na velikost písmen; null = libovolná hodnota
+    private record RouteKey(String serviceType, String currency) {
+
+        static RouteKey of(String serviceType, String currency) {
+            return new RouteKey(serviceType, currency == null ? null : currency.toUpperCase(Locale.ROOT));
+        }
+    }
+}
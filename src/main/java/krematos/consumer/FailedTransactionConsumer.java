@@ -1,58 +1,318 @@
 package krematos.consumer;
 
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rabbitmq.client.AMQP;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import krematos.config.RabbitMQConfig;
+import krematos.config.RetryLane;
+import krematos.config.RetryTiers;
+import krematos.exception.ExternalServiceException;
+import krematos.exception.PaymentOutcomeUnknownException;
+import krematos.exception.ValidationException;
 import krematos.model.ExternalApiRequest;
 import krematos.model.InternalRequest;
+import krematos.publisher.RabbitMessagePublisher;
 import krematos.service.TransactionService;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.context.annotation.Bean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.rabbitmq.AcknowledgableDelivery;
+import reactor.rabbitmq.ConsumeOptions;
+import reactor.rabbitmq.Receiver;
+import reactor.util.retry.Retry;
 
+import java.time.Duration;
 import java.time.Instant;
-import java.util.function.Function;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Konzument retry front (pruhy HIGH a LOW) postavený na reactor-rabbitmq Receiveru.
+ * - prefetch (QoS) omezuje, kolik nepotvrzených zpráv broker pošle najednou
+ * - flatMapSequential s omezenou concurrency chrání externí API před zahlcením
+ * - potvrzení se posílají dávkově (basic.ack s multiple=true)
+ * - výsledek zpracování rozhoduje o ack / nack / requeue
+ * - neúspěšný pokus se neposílá hned zpět, ale do dalšího stupně zpožďovacích front (10s, 1m, 10m, 1h),
+ *   počet pokusů nese hlavička x-retry-attempt; po vyčerpání žebříčku jde zpráva do parkovací fronty
+ * - oba pruhy sdílejí limit concurrency přes WeightedLaneGate: HIGH má přednost v poměru high-weight:1,
+ *   LOW ale nikdy nehladoví; zpráva se vrací ze zpožďovací fronty do stejného pruhu
+ */
 @Slf4j
 @Component
-@RequiredArgsConstructor
+@ConditionalOnProperty(name = "messaging.consumer.enabled", havingValue = "true", matchIfMissing = true)
 public class FailedTransactionConsumer {
 
     private final TransactionService transactionService;
+    private final Receiver receiver;
+    private final ObjectMapper objectMapper;
+    private final RabbitMessagePublisher rabbitPublisher;
+    private final RetryTiers retryTiers;
 
+    private final int prefetch;
+    private final int concurrency;
+    private final int ackBatchSize;
+    private final Duration ackWindow;
+    private final WeightedLaneGate laneGate;
 
-    //  Function<Flux, Mono<Void>> pro plně reaktivní stream
-    @Bean
-    public Function<Flux<ExternalApiRequest>, Mono<Void>> processFailedTransaction() {
-        return flux -> flux
-                .flatMap(this::processSingleRequest) // flatMap zpracovává paralelně
-                .then(); // Po zpracování celého streamu (nebo při běhu) vrací signál dokončení
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Timer processingTimer;
+    private final MeterRegistry meterRegistry;
+
+    private Disposable subscription;
+
+    public FailedTransactionConsumer(TransactionService transactionService,
+                                     Receiver receiver,
+                                     ObjectMapper objectMapper,
+                                     RabbitMessagePublisher rabbitPublisher,
+                                     RetryTiers retryTiers,
+                                     MeterRegistry meterRegistry,
+                                     @Value("${messaging.consumer.prefetch:50}") int prefetch,
+                                     @Value("${messaging.consumer.concurrency:10}") int concurrency,
+                                     @Value("${messaging.consumer.ack-batch-size:20}") int ackBatchSize,
+                                     @Value("${messaging.consumer.ack-window-ms:200}") long ackWindowMs,
+                                     @Value("${messaging.consumer.high-weight:4}") int highWeight) {
+        this.transactionService = transactionService;
+        this.receiver = receiver;
+        this.objectMapper = objectMapper;
+        this.rabbitPublisher = rabbitPublisher;
+        this.retryTiers = retryTiers;
+        this.meterRegistry = meterRegistry;
+        this.prefetch = prefetch;
+        this.concurrency = concurrency;
+        this.ackBatchSize = ackBatchSize;
+        this.ackWindow = Duration.ofMillis(ackWindowMs);
+        this.laneGate = new WeightedLaneGate(concurrency, highWeight);
+
+        this.processingTimer = Timer.builder("retry.consumer.processing")
+                .description("Doba zpracování jedné zprávy z retry fronty")
+                .register(meterRegistry);
+        meterRegistry.gauge("retry.consumer.inflight", inFlight);
+        for (RetryLane lane : RetryLane.values()) {
+            meterRegistry.gauge("retry.consumer.waiting", Tags.of("lane", lane.label()),
+                    laneGate, gate -> gate.waiting(lane));
+        }
+
+        // Fail-fast: každý stupeň žebříčku (v obou pruzích) i parkovací fronta musí mít binding
+        for (RetryLane lane : RetryLane.values()) {
+            retryTiers.all().forEach(tier ->
+                    rabbitPublisher.verifyRoute(RabbitMQConfig.RETRY_DELAY_EXCHANGE, tier.routingKey(lane)));
+        }
+        rabbitPublisher.verifyRoute(RabbitMQConfig.RETRY_DELAY_EXCHANGE, RabbitMQConfig.PARKING_ROUTING_KEY);
     }
 
-    private Mono<Void> processSingleRequest(ExternalApiRequest externalApiRequest) {
+    // Spustí konzumaci až po startu aplikace (ne během inicializace kontextu)
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        log.info("RETRY CONSUMER: Start (prefetch={}, concurrency={})", prefetch, concurrency);
+        subscription = consume().subscribe();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (subscription != null) {
+            subscription.dispose();
+        }
+    }
+
+    Flux<List<ProcessedDelivery>> consume() {
+        return Flux.merge(consumeLane(RetryLane.HIGH), consumeLane(RetryLane.LOW));
+    }
+
+    // Každý pruh má vlastní kanál (a tím vlastní sekvenci delivery tagů pro multiple-ack)
+    Flux<List<ProcessedDelivery>> consumeLane(RetryLane lane) {
+        return receiver.consumeManualAck(lane.queueName(), new ConsumeOptions().qos(prefetch))
+                // flatMapSequential zachová pořadí výsledků = pořadí delivery tagů, což umožní multiple-ack
+                .flatMapSequential(delivery -> processDelivery(delivery, lane), concurrency, prefetch)
+                .bufferTimeout(ackBatchSize, ackWindow)
+                .doOnNext(batch -> acknowledge(batch, lane))
+                // Při výpadku brokeru se kanál zavře - zkouší se znovu připojit s backoff
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1))
+                        .maxBackoff(Duration.ofSeconds(30))
+                        .doBeforeRetry(signal -> log.warn("RETRY CONSUMER: Obnovuji spojení pruhu {} po chybě: {}",
+                                lane, signal.failure().getMessage())));
+    }
+
+    private Mono<ProcessedDelivery> processDelivery(AcknowledgableDelivery delivery, RetryLane lane) {
+        ExternalApiRequest externalApiRequest;
+        try {
+            externalApiRequest = objectMapper.readValue(delivery.getBody(), ExternalApiRequest.class);
+        } catch (Exception e) {
+            log.error("RETRY CONSUMER: Nečitelná zpráva, zahazuji: {}", e.getMessage());
+            return Mono.just(new ProcessedDelivery(delivery, Outcome.REJECT));
+        }
+
+        int attempt = readAttempt(delivery);
+        String serviceType = readServiceType(delivery);
+        // Místo ve sdíleném limitu se uvolní i při zrušení (usingWhen volá release v každém případě)
+        return Mono.usingWhen(laneGate.acquire(lane).thenReturn(lane),
+                        acquired -> {
+                            inFlight.incrementAndGet();
+                            Timer.Sample sample = Timer.start(meterRegistry);
+                            return processSingleRequest(externalApiRequest, serviceType)
+                                    .flatMap(outcome -> switch (outcome) {
+                                        case RETRY -> scheduleRetry(delivery, externalApiRequest, lane, attempt + 1);
+                                        case PARK -> park(delivery, externalApiRequest);
+                                        default -> Mono.just(outcome);
+                                    })
+                                    .doFinally(signal -> {
+                                        inFlight.decrementAndGet();
+                                        sample.stop(processingTimer);
+                                    });
+                        },
+                        acquired -> Mono.fromRunnable(laneGate::release))
+                .map(outcome -> new ProcessedDelivery(delivery, outcome));
+    }
+
+    private Mono<Outcome> processSingleRequest(ExternalApiRequest externalApiRequest, String serviceType) {
         log.info("RETRY CONSUMER: Přijata zpráva k opakování: {}", externalApiRequest.getTransactionId());
 
-        InternalRequest internalRequest = mapToInternal(externalApiRequest);
+        InternalRequest internalRequest = mapToInternal(externalApiRequest, serviceType);
 
-        // Volá service.process (který vrací Mono)
-        return transactionService.process(internalRequest)
+        // Volá service.processRetry (bez okamžitého návratu do DLQ při selhání)
+        return transactionService.processRetry(internalRequest)
                 .doOnSuccess(s -> log.info("RETRY ÚSPĚŠNÉ pro ID: {}", externalApiRequest.getTransactionId()))
-                .doOnError(e -> log.error("RETRY SELHALO pro ID: {}. Chyba: {}", externalApiRequest.getTransactionId(), e.getMessage()))
-                .onErrorResume(e -> Mono.empty()) // Chybu "spolkne", aby neshodila celý stream 
-                .then();
+                .thenReturn(Outcome.ACK)
+                .onErrorResume(e -> {
+                    log.error("RETRY SELHALO pro ID: {}. Chyba: {}", externalApiRequest.getTransactionId(), e.getMessage());
+                    return Mono.just(classifyFailure(e));
+                });
+    }
+
+    /**
+     * Rozhodne, co se zprávou po neúspěchu:
+     * - ValidationException nebo 4xx od externího systému: opakování nepomůže, zpráva se zaparkuje
+     * - timeout bez odpovědi (PaymentOutcomeUnknownException): platba mohla projít, zaparkuje se k rekonciliaci
+     * - ostatní (nedostupné API, výpadek DB): další stupeň zpožďovacích front
+     */
+    private Outcome classifyFailure(Throwable error) {
+        if (error instanceof ValidationException || error instanceof PaymentOutcomeUnknownException) {
+            return Outcome.PARK;
+        }
+        if (error instanceof ExternalServiceException ese
+                && ese.getExternalStatusCode() != null
+                && ese.getExternalStatusCode() >= 400 && ese.getExternalStatusCode() < 500) {
+            return Outcome.PARK;
+        }
+        return Outcome.RETRY;
     }
 
-    private InternalRequest mapToInternal(ExternalApiRequest request) {
+    /**
+     * Pošle zprávu do stupně odpovídajícího počtu neúspěšných pokusů.
+     * Originál se potvrdí až po potvrzení publish brokerem, jinak se vrátí do fronty.
+     */
+    private Mono<Outcome> scheduleRetry(AcknowledgableDelivery delivery, ExternalApiRequest request,
+                                        RetryLane lane, int failedAttempts) {
+        return retryTiers.forFailedAttempts(failedAttempts)
+                .map(tier -> {
+                    log.warn("RETRY CONSUMER: {} - pokus {} selhal, další za {} (pruh {})",
+                            request.getTransactionId(), failedAttempts, tier.delay(), lane);
+                    meterRegistry.counter("retry.consumer.scheduled", "tier", tier.label(), "lane", lane.label()).increment();
+                    return republish(delivery, RabbitMQConfig.RETRY_DELAY_EXCHANGE, tier.routingKey(lane), failedAttempts);
+                })
+                .orElseGet(() -> {
+                    log.error("RETRY CONSUMER: {} - vyčerpáno {} pokusů, parkuji", request.getTransactionId(), failedAttempts);
+                    return park(delivery, request);
+                });
+    }
+
+    private Mono<Outcome> park(AcknowledgableDelivery delivery, ExternalApiRequest request) {
+        log.error("RETRY CONSUMER: Transakce {} přesunuta do parkovací fronty {}",
+                request.getTransactionId(), RabbitMQConfig.PARKING_QUEUE);
+        return republish(delivery, RabbitMQConfig.RETRY_DELAY_EXCHANGE, RabbitMQConfig.PARKING_ROUTING_KEY,
+                readAttempt(delivery));
+    }
+
+    private Mono<Outcome> republish(AcknowledgableDelivery delivery, String exchange, String routingKey, int attempt) {
+        return rabbitPublisher.publish(exchange, routingKey, withAttempt(delivery.getProperties(), attempt), delivery.getBody())
+                .thenReturn(Outcome.ACK)
+                .onErrorResume(e -> {
+                    log.error("RETRY CONSUMER: Přeposlání do {} selhalo, vracím zprávu do fronty: {}", routingKey, e.getMessage());
+                    return Mono.just(Outcome.REQUEUE);
+                });
+    }
+
+    private static int readAttempt(AcknowledgableDelivery delivery) {
+        AMQP.BasicProperties properties = delivery.getProperties();
+        if (properties == null || properties.getHeaders() == null) {
+            return 0;
+        }
+        Object value = properties.getHeaders().get(RabbitMQConfig.RETRY_ATTEMPT_HEADER);
+        return value instanceof Number number ? number.intValue() : 0;
+    }
+
+    private static String readServiceType(AcknowledgableDelivery delivery) {
+        AMQP.BasicProperties properties = delivery.getProperties();
+        if (properties == null || properties.getHeaders() == null) {
+            return null;
+        }
+        // Hlavičky z brokeru přicházejí jako LongString, ne String
+        Object value = properties.getHeaders().get(RabbitMQConfig.SERVICE_TYPE_HEADER);
+        return value != null ? value.toString() : null;
+    }
+
+    private static AMQP.BasicProperties withAttempt(AMQP.BasicProperties original, int attempt) {
+        AMQP.BasicProperties base = original != null ? original : new AMQP.BasicProperties.Builder()
+                .contentType("application/json")
+                .deliveryMode(2)
+                .build();
+        Map<String, Object> headers = base.getHeaders() != null ? new HashMap<>(base.getHeaders()) : new HashMap<>();
+        headers.put(RabbitMQConfig.RETRY_ATTEMPT_HEADER, attempt);
+        return base.builder().headers(headers).build();
+    }
+
+    /**
+     * Nejdřív jednotlivě nackne neúspěšné zprávy, pak jedním basic.ack (multiple=true)
+     * potvrdí všechny zbývající až po poslední zprávu v dávce.
+     */
+    private void acknowledge(List<ProcessedDelivery> batch, RetryLane lane) {
+        ProcessedDelivery lastAck = null;
+        for (ProcessedDelivery processed : batch) {
+            meterRegistry.counter("retry.consumer.messages", "outcome", processed.outcome().name().toLowerCase(),
+                    "lane", lane.label()).increment();
+            switch (processed.outcome()) {
+                case ACK -> lastAck = processed;
+                case REQUEUE -> processed.delivery().nack(false, true);
+                case REJECT -> processed.delivery().nack(false, false);
+                // RETRY / PARK se před potvrzením vždy převedou na ACK nebo REQUEUE
+                default -> throw new IllegalStateException("Nevyřešený výsledek: " + processed.outcome());
+            }
+        }
+        if (lastAck != null) {
+            lastAck.delivery().ack(true);
+        }
+    }
+
+    private InternalRequest mapToInternal(ExternalApiRequest request, String serviceType) {
         return new InternalRequest(
                 request.getTransactionId(),
                 request.getAmount(),
                 request.getCurrency(),
-                "RETRY_SERVICE",
+                serviceType != null ? serviceType : "RETRY_SERVICE",
                 Instant.now()
         );
     }
 
+    enum Outcome {
+        ACK,
+        RETRY,
+        PARK,
+        REQUEUE,
+        REJECT
+    }
 
+    record ProcessedDelivery(AcknowledgableDelivery delivery, Outcome outcome) {
+    }
 
 }
@@ -1,54 +1,165 @@
 package krematos.consumer;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import krematos.connector.ExternalSystemConnector;
 import krematos.model.ExternalApiRequest;
 import krematos.model.TransactionAudit;
 import krematos.repository.TransactionRepository;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import net.javacrumbs.shedlock.spring.annotation.SchedulerLock;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.time.Duration;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Záchrana FAILED transakcí, které se nepodařilo odložit do DLQ.
+ * Zpracovává se po chuncích s keyset stránkováním (id > lastId ORDER BY id LIMIT n):
+ * - celý chunk se publikuje najednou (publisher ho odešle v dávkách s publisher confirms)
+ * - potvrzené řádky se označí jedním UPDATE ... WHERE id = ANY(:ids)
+ * - zprávy, které broker nepotvrdil, zůstanou neoznačené a zkusí se v dalším běhu
+ * - hledá se jen mezi transakcemi vytvořenými v posledních lookback-days (pruning denních partitions)
+ */
 @Slf4j
 @Component
-@RequiredArgsConstructor
 public class FailedTransactionRescuer {
 
     private final TransactionRepository transactionRepository;
     private final ExternalSystemConnector externalSystemConnector;
+    private final MeterRegistry meterRegistry;
 
-    // Spouští se každou minutu
+    private final int chunkSize;
+    private final Duration maxRunDuration;
+    private final Duration lookback;
+
+    private final Counter rescuedCounter;
+    private final Counter failedCounter;
+    private final Counter chunkCounter;
+    private final Timer runTimer;
+    private final AtomicLong lastProcessedId = new AtomicLong();
+    private final AtomicLong lastRunRescued = new AtomicLong();
+
+    public FailedTransactionRescuer(TransactionRepository transactionRepository,
+                                    ExternalSystemConnector externalSystemConnector,
+                                    MeterRegistry meterRegistry,
+                                    @Value("${messaging.rescuer.chunk-size:500}") int chunkSize,
+                                    @Value("${messaging.rescuer.max-run-ms:240000}") long maxRunMs,
+                                    @Value("${messaging.rescuer.lookback-days:7}") int lookbackDays) {
+        this.transactionRepository = transactionRepository;
+        this.externalSystemConnector = externalSystemConnector;
+        this.meterRegistry = meterRegistry;
+        this.chunkSize = chunkSize;
+        this.maxRunDuration = Duration.ofMillis(maxRunMs);
+        this.lookback = Duration.ofDays(lookbackDays);
+
+        this.rescuedCounter = meterRegistry.counter("rescuer.rows", "result", "rescued");
+        this.failedCounter = meterRegistry.counter("rescuer.rows", "result", "failed");
+        this.chunkCounter = meterRegistry.counter("rescuer.chunks");
+        this.runTimer = Timer.builder("rescuer.run")
+                .description("Doba jednoho běhu záchrany zaseklých transakcí")
+                .register(meterRegistry);
+        meterRegistry.gauge("rescuer.last.id", lastProcessedId);
+        meterRegistry.gauge("rescuer.last.run.rescued", lastRunRescued);
+    }
+
+    // Spouští se každou minutu, díky ShedLock jen na jednom uzlu
     @Scheduled(fixedDelay = 60000)
+    @SchedulerLock(name = "rescueStuckTransactions", lockAtLeastFor = "10s", lockAtMostFor = "5m")
     public void rescueStuckTransactions() {
         Instant limit = Instant.now().minus(1, ChronoUnit.MINUTES);
         log.debug("RESCUER: Hledám zaseklé transakce starší než {}", limit);
 
-        transactionRepository.findStuckFailedTransactions(limit)
-                .flatMap(this::processRescue)
-                .subscribe(count -> log.info(" Úspěšně zachráněno/zpracováno {} transakcí.", count),
-                        error -> log.error(" Celý proces záchrany selhal na neočekávané chybě!", error)); // V Scheduled metodě musí zavolat subscribe(), jinak se Reactive Stream nespustí!
+        // Čeká se na dokončení (block), aby zámek ShedLock platil po celou dobu běhu, ne jen do subscribe().
+        // Běží na vlákně scheduleru, ne na event loopu.
+        rescue(limit)
+                .timeout(maxRunDuration)
+                .doOnNext(count -> {
+                    if (count > 0) {
+                        log.info(" Úspěšně zachráněno/zpracováno {} transakcí.", count);
+                    }
+                })
+                .onErrorResume(error -> {
+                    log.error(" Celý proces záchrany selhal na neočekávané chybě!", error);
+                    return Mono.empty();
+                })
+                .block();
     }
 
-    private Mono<Void> processRescue(TransactionAudit audit) {
-        log.info("RESCUER: Nalezena zaseklá transakce ID: {}", audit.getInternalOrderId());
+    Mono<Long> rescue(Instant cutoffTime) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        AtomicLong rescued = new AtomicLong();
+        Instant createdAfter = cutoffTime.minus(lookback);
+        // expand: každý chunk vrací poslední id jako kurzor pro další dotaz, prázdno = konec
+        return Mono.just(0L)
+                .expand(lastId -> rescueChunk(cutoffTime, createdAfter, lastId, rescued))
+                .then(Mono.fromSupplier(rescued::get))
+                .doOnSuccess(count -> {
+                    lastRunRescued.set(count);
+                    sample.stop(runTimer);
+                });
+    }
 
-        // Mapování Audit -> ExternalApiRequest
-        ExternalApiRequest request = new ExternalApiRequest(
+    private Mono<Long> rescueChunk(Instant cutoffTime, Instant createdAfter, long lastId, AtomicLong rescued) {
+        return transactionRepository.findStuckFailedTransactions(cutoffTime, createdAfter, lastId, chunkSize)
+                .collectList()
+                .filter(chunk -> !chunk.isEmpty())
+                .flatMap(chunk -> {
+                    long nextLastId = chunk.get(chunk.size() - 1).getId();
+                    log.info("RESCUER: Chunk {} transakcí (id {} - {})", chunk.size(), chunk.get(0).getId(), nextLastId);
+                    return publishChunk(chunk)
+                            .flatMap(this::markNotified)
+                            .doOnNext(count -> {
+                                rescued.addAndGet(count);
+                                chunkCounter.increment();
+                                lastProcessedId.set(nextLastId);
+                            })
+                            // Neúplný chunk = poslední stránka, další dotaz není potřeba
+                            .then(chunk.size() < chunkSize ? Mono.<Long>empty() : Mono.just(nextLastId));
+                });
+    }
+
+    // Vrátí řádky, jejichž zprávu broker potvrdil
+    private Mono<List<TransactionAudit>> publishChunk(List<TransactionAudit> chunk) {
+        return Flux.fromIterable(chunk)
+                .flatMap(audit -> externalSystemConnector.publishToDeadLetter(toRequest(audit), audit.getServiceType())
+                                .thenReturn(audit)
+                                .doOnNext(confirmed -> rescuedCounter.increment())
+                                .onErrorResume(e -> {
+                                    failedCounter.increment();
+                                    log.error("RESCUER: Nepodařilo se zachránit transakci {}: {}", audit.getInternalOrderId(), e.getMessage());
+                                    return Mono.empty();
+                                }),
+                        chunk.size())
+                .collectList();
+    }
+
+    private Mono<Integer> markNotified(List<TransactionAudit> confirmed) {
+        if (confirmed.isEmpty()) {
+            return Mono.just(0);
+        }
+        Long[] ids = confirmed.stream().map(TransactionAudit::getId).toArray(Long[]::new);
+        // Rozsah created_at potvrzených řádků omezí UPDATE na jejich partitions
+        Instant createdFrom = confirmed.stream().map(TransactionAudit::getCreatedAt).min(Instant::compareTo).orElseThrow();
+        Instant createdTo = confirmed.stream().map(TransactionAudit::getCreatedAt).max(Instant::compareTo).orElseThrow();
+        return transactionRepository.markAsNotified(ids, createdFrom, createdTo);
+    }
+
+    // Mapování Audit -> ExternalApiRequest
+    private ExternalApiRequest toRequest(TransactionAudit audit) {
+        return new ExternalApiRequest(
                 audit.getInternalOrderId(),
                 audit.getAmount(),
                 audit.getCurrency()
         );
-
-        // 1. Pošle do DLQ (používá public metodu z Connectoru)
-        return externalSystemConnector.sendToDeadLetter(request)
-                .then(transactionRepository.markAsNotified(audit.getId())) // 2. Pokud OK, označí v DB
-                .doOnSuccess(v -> log.info("RESCUER: Transakce {} úspěšně zachráněna a odeslána do DLQ.", audit.getInternalOrderId()))
-                .doOnError(e -> log.error("RESCUER: Nepodařilo se zachránit transakci {}: {}", audit.getInternalOrderId(), e.getMessage()))
-                .onErrorResume(e -> Mono.empty()); // Chybu "spolkne", aby neshodila celý stream
     }
 
 }
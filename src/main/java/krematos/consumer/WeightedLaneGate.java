@@ -0,0 +1,102 @@
+package krematos.consumer;
+
+import krematos.config.RetryLane;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Sdílený limit souběžného zpracování pro oba prioritní pruhy.
+ * Když čekají oba pruhy, uvolněné místo dostane HIGH, ale po každých highWeight
+ * přiděleních HIGH přijde na řadu jedna LOW zpráva - LOW pruh tak nikdy nehladoví.
+ * Když čeká jen jeden pruh, dostane celou kapacitu (žádná rezervovaná, nevyužitá místa).
+ */
+class WeightedLaneGate {
+
+    private final int highWeight;
+    private final Map<RetryLane, Deque<Sinks.One<Void>>> waiters = new EnumMap<>(RetryLane.class);
+    private int available;
+    private int highStreak;
+
+    WeightedLaneGate(int permits, int highWeight) {
+        this.available = permits;
+        this.highWeight = Math.max(1, highWeight);
+        for (RetryLane lane : RetryLane.values()) {
+            waiters.put(lane, new ArrayDeque<>());
+        }
+    }
+
+    /**
+     * Mono dokončené v okamžiku přidělení místa. Po dokončení práce je nutné zavolat release().
+     */
+    Mono<Void> acquire(RetryLane lane) {
+        return Mono.defer(() -> {
+            Sinks.One<Void> sink;
+            synchronized (this) {
+                if (available > 0 && noneWaiting()) {
+                    available--;
+                    recordGrant(lane);
+                    return Mono.empty();
+                }
+                sink = Sinks.one();
+                waiters.get(lane).addLast(sink);
+            }
+            return sink.asMono().doOnCancel(() -> cancel(lane, sink));
+        });
+    }
+
+    void release() {
+        Sinks.One<Void> next;
+        synchronized (this) {
+            next = pollNext();
+            if (next == null) {
+                available++;
+                return;
+            }
+        }
+        // Emituje se mimo zámek - navazující zpracování může běžet synchronně
+        next.tryEmitEmpty();
+    }
+
+    synchronized int waiting(RetryLane lane) {
+        return waiters.get(lane).size();
+    }
+
+    private void cancel(RetryLane lane, Sinks.One<Void> sink) {
+        boolean removed;
+        synchronized (this) {
+            removed = waiters.get(lane).remove(sink);
+        }
+        // Místo už bylo přiděleno, ale odběratel mezitím zrušil - vrátí se dalšímu čekajícímu
+        if (!removed) {
+            release();
+        }
+    }
+
+    private Sinks.One<Void> pollNext() {
+        Deque<Sinks.One<Void>> high = waiters.get(RetryLane.HIGH);
+        Deque<Sinks.One<Void>> low = waiters.get(RetryLane.LOW);
+        RetryLane lane;
+        if (!high.isEmpty() && (low.isEmpty() || highStreak < highWeight)) {
+            lane = RetryLane.HIGH;
+        } else if (!low.isEmpty()) {
+            lane = RetryLane.LOW;
+        } else {
+            return null;
+        }
+        recordGrant(lane);
+        return waiters.get(lane).pollFirst();
+    }
+
+    private void recordGrant(RetryLane lane) {
+        highStreak = lane == RetryLane.HIGH ? highStreak + 1 : 0;
+    }
+
+    private boolean noneWaiting() {
+        return waiters.values().stream().allMatch(Deque::isEmpty);
+    }
+}
@@ -0,0 +1,60 @@
+package krematos.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import krematos.model.AuditSearchResult;
+import krematos.service.TransactionAuditSearchService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+
+import java.time.Instant;
+
+@Slf4j
+@RestController
+@RequestMapping("/api/middleware/v1/audit")
+@RequiredArgsConstructor
+@Tag(name = "Audit API", description = "Vyhledávání v auditu transakcí pro podporu")
+public class AuditSearchController {
+    private final TransactionAuditSearchService auditSearchService;
+
+    // NDJSON - každý řádek se odešle hned, jak přijde z DB kurzoru; pomalý klient zpomalí čtení z DB (backpressure)
+    @Operation(summary = "Vyhledat audity transakcí",
+            description = "Streamuje audity jako NDJSON seřazené podle (createdAt, id). Každý řádek nese cursor - "
+                    + "pro další stránku se předá hodnota cursor posledního řádku jako parametr after.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Stream nalezených auditů",
+                    content = @Content(mediaType = MediaType.APPLICATION_NDJSON_VALUE,
+                            schema = @Schema(implementation = AuditSearchResult.class))),
+            @ApiResponse(responseCode = "400", description = "Neplatný filtr, limit nebo continuation token",
+                    content = @Content),
+            @ApiResponse(responseCode = "403", description = "Neplatný API Key",
+                    content = @Content)
+    })
+    @GetMapping(value = "/transactions", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<AuditSearchResult> searchTransactions(
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) String currency,
+            @RequestParam(required = false) String serviceType,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant createdFrom,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant createdTo,
+            @Parameter(description = "Max. počet řádků (výchozí audit.search.default-limit)")
+            @RequestParam(required = false) Integer limit,
+            @Parameter(description = "Continuation token - cursor posledního přijatého řádku")
+            @RequestParam(required = false) String after) {
+        log.debug("Vyhledávání auditů: status={}, currency={}, serviceType={}, createdFrom={}, createdTo={}",
+                status, currency, serviceType, createdFrom, createdTo);
+        return auditSearchService.search(status, currency, serviceType, createdFrom, createdTo, limit, after);
+    }
+}
@@ -6,6 +6,7 @@ import krematos.connector.ExternalApiException;
 import lombok.extern.slf4j.Slf4j;
 import org.slf4j.MDC;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.FieldError;
@@ -229,7 +230,11 @@ public class GlobalExceptionHandler {
                                         .errorCode(ex.getErrorCode())
                                         .build();
 
-                        return Mono.just(ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).body(apiError));
+                        ResponseEntity.BodyBuilder response = ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS);
+                        if (ex.getRetryAfterSeconds() != null) {
+                                response.header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()));
+                        }
+                        return Mono.just(response.body(apiError));
                 } finally {
                         clearMDC();
                 }
@@ -7,26 +7,45 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
+import krematos.model.AcceptedTransactionResponse;
+import krematos.model.BulkStatusRequest;
+import krematos.model.BulkStatusResponse;
 import krematos.model.InternalRequest;
 import krematos.model.InternalResponse;
+import krematos.model.TransactionStatusResponse;
+import krematos.service.AsyncTransactionQueue;
 import krematos.service.TransactionService;
+import krematos.service.TransactionStatusService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.net.URI;
+
 @Slf4j
 @RestController
-@RequestMapping("/api/middleware/v1")
+@RequestMapping(MiddlewareController.BASE_PATH)
 @RequiredArgsConstructor
 @Tag(name = "Middleware API", description = "API pro zpracování transakcí prostřednictvím middleware")
 public class MiddlewareController {
+    static final String BASE_PATH = "/api/middleware/v1";
+
     private final TransactionService transactionService;
+    private final TransactionStatusService transactionStatusService;
+    private final AsyncTransactionQueue asyncTransactionQueue;
 
 
     // Používá Mono/Flux (reaktivní) pro neblokující chování
@@ -49,4 +68,94 @@ public class MiddlewareController {
                 .map(ResponseEntity::ok); // Zabalí do ResponseEntity s 200 OK
 
     }
+
+    @Operation(summary = "Přijmout transakci ke zpracování na pozadí", description = "Ověří požadavek, zapíše audit (PENDING), zařadí transakci do fronty a hned vrátí 202 s tracking ID. Výsledek je k dispozici přes status API nebo stream událostí. Fronta je jen v paměti - transakci ztracenou při restartu uzlu ještě před zpracováním zařadí sweeper znovu zhruba do 1,5 minuty; transakce ztracená během volání externího API zůstane PENDING až do nočního úklidu (24 h).")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "202", description = "Transakce přijata, Location ukazuje na její stav",
+                    content = @Content(schema = @Schema(implementation = AcceptedTransactionResponse.class))),
+            @ApiResponse(responseCode = "400", description = "Neplatná data (validace selhala)",
+                    content = @Content),
+            @ApiResponse(responseCode = "409", description = "Transakce s tímto ID již byla přijata",
+                    content = @Content),
+            @ApiResponse(responseCode = "429", description = "Fronta asynchronního zpracování je plná (Retry-After)",
+                    content = @Content),
+            @ApiResponse(responseCode = "403", description = "Neplatný API Key",
+                    content = @Content)
+    })
+    @PostMapping("/transaction/async")
+    public Mono<ResponseEntity<AcceptedTransactionResponse>> acceptTransaction(@Valid @RequestBody InternalRequest request) {
+        log.info("Přijat požadavek na asynchronní zpracování transakce: {}", request);
+        return asyncTransactionQueue.submit(request)
+                .map(audit -> {
+                    URI statusUri = statusUri(audit.getInternalOrderId(), false);
+                    return ResponseEntity.accepted()
+                            .location(statusUri)
+                            .body(new AcceptedTransactionResponse(audit.getInternalOrderId(), audit.getStatus(),
+                                    statusUri.toString(), statusUri(audit.getInternalOrderId(), true).toString()));
+                });
+    }
+
+    @Operation(summary = "Zjistit stav transakce", description = "Vrátí stav transakce podle interního ID. Podporuje ETag / If-None-Match pro opakované dotazování.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Stav transakce",
+                    content = @Content(schema = @Schema(implementation = TransactionStatusResponse.class))),
+            @ApiResponse(responseCode = "304", description = "Stav se od posledního dotazu nezměnil (If-None-Match)",
+                    content = @Content),
+            @ApiResponse(responseCode = "404", description = "Transakce neexistuje",
+                    content = @Content),
+            @ApiResponse(responseCode = "403", description = "Neplatný API Key",
+                    content = @Content)
+    })
+    @GetMapping("/transaction/{internalOrderId}")
+    public Mono<ResponseEntity<TransactionStatusResponse>> getTransactionStatus(@PathVariable String internalOrderId) {
+        // Shodu ETag s If-None-Match vyhodnotí WebFlux (ResponseEntityResultHandler) a vrátí 304 bez těla
+        return transactionStatusService.findStatus(internalOrderId)
+                .map(entry -> ResponseEntity.ok()
+                        .eTag(entry.etag())
+                        .cacheControl(CacheControl.noCache())
+                        .body(entry.status()));
+    }
+
+    @Operation(summary = "Sledovat výsledek transakce", description = "Server-Sent Events: aktuální stav a každá jeho změna, stream skončí konečným stavem (SUCCESS / FAILED) nebo po status.watch.timeout.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Stream stavů transakce",
+                    content = @Content(mediaType = MediaType.TEXT_EVENT_STREAM_VALUE,
+                            schema = @Schema(implementation = TransactionStatusResponse.class))),
+            @ApiResponse(responseCode = "404", description = "Transakce neexistuje",
+                    content = @Content),
+            @ApiResponse(responseCode = "403", description = "Neplatný API Key",
+                    content = @Content)
+    })
+    @GetMapping(value = "/transaction/{internalOrderId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<TransactionStatusResponse>> watchTransaction(@PathVariable String internalOrderId) {
+        return transactionStatusService.watchStatus(internalOrderId)
+                .map(entry -> ServerSentEvent.builder(entry.status())
+                        .id(entry.etag())
+                        .event(entry.status().getStatus())
+                        .build());
+    }
+
+    @Operation(summary = "Hromadně zjistit stav transakcí", description = "Vrátí stavy až status.bulk.max-ids transakcí jedním dotazem (rekonciliace).")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Mapa internalOrderId -> stav a seznam nenalezených ID",
+                    content = @Content(schema = @Schema(implementation = BulkStatusResponse.class))),
+            @ApiResponse(responseCode = "400", description = "Prázdný seznam nebo příliš mnoho ID",
+                    content = @Content),
+            @ApiResponse(responseCode = "403", description = "Neplatný API Key",
+                    content = @Content)
+    })
+    @PostMapping("/transactions/status")
+    public Mono<ResponseEntity<BulkStatusResponse>> getTransactionStatuses(@Valid @RequestBody BulkStatusRequest request) {
+        return transactionStatusService.findStatuses(request.getInternalOrderIds())
+                .map(ResponseEntity::ok);
+    }
+
+    // ID objednávky jako jeden (zakódovaný) segment cesty
+    private static URI statusUri(String internalOrderId, boolean events) {
+        UriComponentsBuilder builder = UriComponentsBuilder.fromPath(BASE_PATH).pathSegment("transaction", internalOrderId);
+        if (events) {
+            builder.pathSegment("events");
+        }
+        return builder.build().encode().toUri();
+    }
 }
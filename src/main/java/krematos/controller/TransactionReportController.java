@@ -0,0 +1,55 @@
+package krematos.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import krematos.model.ReportGranularity;
+import krematos.model.TransactionReportRow;
+import krematos.service.TransactionReportService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+
+import java.time.Instant;
+
+@Slf4j
+@RestController
+@RequestMapping("/api/middleware/v1/reports")
+@RequiredArgsConstructor
+@Tag(name = "Report API", description = "Agregované počty a částky transakcí z minutových rollupů")
+public class TransactionReportController {
+    private final TransactionReportService reportService;
+
+    @Operation(summary = "Report transakcí po obdobích",
+            description = "Počty a součty částek konečných stavů podle stavu, měny a typu služby. "
+                    + "Čte jen tabulku transaction_rollup, data jsou zpožděná o interval flushe.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Agregace po obdobích",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE,
+                            array = @ArraySchema(schema = @Schema(implementation = TransactionReportRow.class)))),
+            @ApiResponse(responseCode = "400", description = "Neplatné období nebo granularita",
+                    content = @Content),
+            @ApiResponse(responseCode = "403", description = "Neplatný API Key",
+                    content = @Content)
+    })
+    @GetMapping(value = "/transactions", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Flux<TransactionReportRow> transactionReport(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,
+            @Parameter(description = "MINUTE, HOUR nebo DAY (hranice v UTC)")
+            @RequestParam(defaultValue = "HOUR") ReportGranularity granularity) {
+        log.debug("Report transakcí: from={}, to={}, granularity={}", from, to, granularity);
+        return reportService.report(from, to, granularity);
+    }
+}
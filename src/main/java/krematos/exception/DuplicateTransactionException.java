@@ -0,0 +1,23 @@
+package krematos.exception;
+
+import org.springframework.http.HttpStatus;
+
+/**
+ * Výjimka pro opakované odeslání transakce se stejným internalOrderId
+ * Vrací 409 Conflict - objednávka už byla přijata ke zpracování
+ */
+public class DuplicateTransactionException extends BusinessException {
+
+    private static final String ERROR_CODE = "DUPLICATE_TRANSACTION";
+
+    /**
+     * Konstruktor s reference ID
+     *
+     * @param message     chybová zpráva
+     * @param referenceId internalOrderId duplicitní transakce
+     * @param cause       původní výjimka z DB (porušení unikátního indexu)
+     */
+    public DuplicateTransactionException(String message, String referenceId, Throwable cause) {
+        super(message, cause != null ? cause.getMessage() : null, HttpStatus.CONFLICT, ERROR_CODE, referenceId, cause);
+    }
+}
@@ -0,0 +1,23 @@
+package krematos.exception;
+
+import org.springframework.http.HttpStatus;
+
+/**
+ * Výjimka pro pokus, na který externí systém neodpověděl do timeoutu konektoru
+ * Požadavek mohl být zpracován - neopakuje se ani nejde do DLQ, transakce zůstane UNCERTAIN k rekonciliaci
+ * Vrací 504 Gateway Timeout - výsledek se později zjistí přes status API
+ */
+public class PaymentOutcomeUnknownException extends ExternalServiceException {
+
+    /**
+     * Konstruktor s původní výjimkou
+     *
+     * @param serviceName název služby
+     * @param referenceId ID transakce
+     * @param cause       timeout pokusu
+     */
+    public PaymentOutcomeUnknownException(String serviceName, String referenceId, Throwable cause) {
+        super("Externí služba neodpověděla včas, výsledek platby není znám", serviceName, null, referenceId,
+                cause != null ? cause.getMessage() : null, cause, HttpStatus.GATEWAY_TIMEOUT);
+    }
+}
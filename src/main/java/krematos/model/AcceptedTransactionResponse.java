@@ -0,0 +1,22 @@
+package krematos.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AcceptedTransactionResponse {
+    // Tracking ID = interní ID objednávky, pod kterým je transakce v auditu
+    private String internalOrderId;
+
+    // Stav v okamžiku přijetí (PENDING)
+    private String status;
+
+    // GET - aktuální stav (ETag / If-None-Match)
+    private String statusUrl;
+
+    // GET text/event-stream - stav při každé změně až do konečného výsledku
+    private String eventsUrl;
+}
@@ -0,0 +1,16 @@
+package krematos.model;
+
+import java.time.Instant;
+
+/**
+ * Filtry vyhledávání auditů. Prázdné (null) hodnoty se neaplikují.
+ * afterCreatedAt + afterId je pozice posledního vráceného řádku (keyset), null = od začátku.
+ */
+public record AuditSearchCriteria(String status,
+                                  String currency,
+                                  String serviceType,
+                                  Instant createdFrom,
+                                  Instant createdTo,
+                                  Instant afterCreatedAt,
+                                  Long afterId) {
+}
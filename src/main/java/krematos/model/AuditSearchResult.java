@@ -0,0 +1,27 @@
+package krematos.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class AuditSearchResult {
+    private String internalOrderId;
+    private BigDecimal amount;
+    private String currency;
+    private String serviceType;
+    private String status;
+    private String details;
+    private Instant createdAt;
+    private Instant updatedAt;
+
+    // Continuation token - předá se jako parametr "after" pro pokračování za tímto řádkem
+    private String cursor;
+}
@@ -3,5 +3,7 @@ package krematos.model;
 public enum AuditStatus {
     PENDING,
     SUCCESS,
-    FAILED
+    FAILED,
+    // Externí systém neodpověděl do timeoutu - platba mohla projít, čeká na rekonciliaci (neopakuje se)
+    UNCERTAIN
 }
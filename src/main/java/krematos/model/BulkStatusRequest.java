@@ -0,0 +1,17 @@
+package krematos.model;
+
+import jakarta.validation.constraints.NotEmpty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkStatusRequest {
+    // Interní ID objednávek, max. počet určuje status.bulk.max-ids
+    @NotEmpty(message = "Seznam internalOrderIds nesmí být prázdný")
+    private List<String> internalOrderIds;
+}
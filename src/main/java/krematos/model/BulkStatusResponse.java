@@ -0,0 +1,19 @@
+package krematos.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkStatusResponse {
+    // internalOrderId -> stav (PENDING / SUCCESS / FAILED)
+    private Map<String, String> statuses;
+
+    // ID, ke kterým neexistuje žádná transakce
+    private List<String> notFound;
+}
@@ -0,0 +1,29 @@
+package krematos.model;
+
+import java.time.Duration;
+
+/**
+ * Granularita reportu nad transaction_rollup - nejjemnější je minuta (granularita rollupu).
+ */
+public enum ReportGranularity {
+    MINUTE("minute", Duration.ofMinutes(1)),
+    HOUR("hour", Duration.ofHours(1)),
+    DAY("day", Duration.ofDays(1));
+
+    private final String truncUnit;
+    private final Duration period;
+
+    ReportGranularity(String truncUnit, Duration period) {
+        this.truncUnit = truncUnit;
+        this.period = period;
+    }
+
+    // Jednotka pro date_trunc
+    public String truncUnit() {
+        return truncUnit;
+    }
+
+    public Duration period() {
+        return period;
+    }
+}
@@ -0,0 +1,15 @@
+package krematos.model;
+
+import java.time.Instant;
+
+/**
+ * Přírůstek do jednoho řádku transaction_rollup (minuta + stav + měna + typ služby).
+ * Částka je v setinách (NUMERIC(19, 2) bez desetinné čárky), aby šla sčítat v LongAdder.
+ */
+public record RollupDelta(Instant bucketStart,
+                          String status,
+                          String currency,
+                          String serviceType,
+                          long count,
+                          long amountMinor) {
+}
@@ -13,7 +13,7 @@ import java.time.Instant;
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
-@Builder
+@Builder(toBuilder = true)
 @Table("transaction_audit")
 public class TransactionAudit {
 
@@ -32,4 +32,8 @@ public class TransactionAudit {
 
     private String externalReferenceId;
 
+    // 1 = první pokus, každý retry z DLQ ho zvýší na stejném řádku
+    @Builder.Default
+    private int attemptCount = 1;
+
 }
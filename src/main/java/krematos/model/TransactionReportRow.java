@@ -0,0 +1,23 @@
+package krematos.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class TransactionReportRow {
+    // Začátek období (UTC) podle zvolené granularity
+    private Instant periodStart;
+    private String status;
+    private String currency;
+    private String serviceType;
+    private long count;
+    private BigDecimal amount;
+}
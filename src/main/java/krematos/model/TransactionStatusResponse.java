@@ -0,0 +1,39 @@
+package krematos.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class TransactionStatusResponse {
+    private String internalOrderId;
+
+    // PENDING / SUCCESS / FAILED (AuditStatus)
+    private String status;
+
+    // Potvrzení z externího systému nebo důvod selhání
+    private String details;
+
+    private Instant createdAt;
+    private Instant updatedAt;
+
+    // Počet pokusů o zpracování (první + retry z DLQ)
+    private int attemptCount;
+
+    public static TransactionStatusResponse from(TransactionAudit audit) {
+        return TransactionStatusResponse.builder()
+                .internalOrderId(audit.getInternalOrderId())
+                .status(audit.getStatus())
+                .details(audit.getDetails())
+                .createdAt(audit.getCreatedAt())
+                .updatedAt(audit.getUpdatedAt())
+                .attemptCount(audit.getAttemptCount())
+                .build();
+    }
+}
@@ -0,0 +1,23 @@
+package krematos.publisher;
+
+import lombok.Getter;
+
+/**
+ * Výjimka pro zprávy, které broker nepotvrdil (nack), vrátil jako nesměrovatelné (mandatory return)
+ * nebo které se vůbec nepodařilo odeslat.
+ */
+@Getter
+public class PublishException extends RuntimeException {
+    private final String exchange;
+    private final String routingKey;
+
+    public PublishException(String message, String exchange, String routingKey) {
+        this(message, exchange, routingKey, null);
+    }
+
+    public PublishException(String message, String exchange, String routingKey, Throwable cause) {
+        super(message, cause);
+        this.exchange = exchange;
+        this.routingKey = routingKey;
+    }
+}
@@ -0,0 +1,242 @@
+package krematos.publisher;
+
+import com.rabbitmq.client.AMQP;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import krematos.service.BatchingQueue;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.Binding;
+import org.springframework.amqp.core.Declarables;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.rabbitmq.CorrelableOutboundMessage;
+import reactor.rabbitmq.OutboundMessageResult;
+import reactor.rabbitmq.SendOptions;
+import reactor.rabbitmq.Sender;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+/**
+ * Spolehlivé odesílání zpráv do RabbitMQ.
+ * - Zprávy z celé aplikace se sbírají do dávek (max. batch-size nebo batch-window, BatchingQueue)
+ * - Každá dávka jde přes sendWithPublishConfirms na kanálu z poolu
+ * - Zprávy se posílají s mandatory flagem, nesměrovatelné zprávy se vrací jako chyba
+ * - Volající dostane Mono, které skončí až po potvrzení (ack) od brokeru; zpráva, která do confirm-timeout
+ *   nebyla předána kanálu, selže a z dávky se vyřadí (jinak by ji spool volajícího poslal podruhé),
+ *   odeslaná zpráva čeká na potvrzení celé dávky (také nejvýše confirm-timeout)
+ * - když všechny dávky čekají na potvrzení (flow control brokeru), okno dávky počká na volný slot
+ * - pokud pipeline přesto skončí chybou, rozpracované zprávy selžou (volající je uloží do spoolu)
+ *   a pipeline se založí znovu nad novou frontou
+ */
+@Slf4j
+@Component
+public class RabbitMessagePublisher {
+
+    private final Sender sender;
+    private final List<Binding> declaredBindings;
+    private final Duration confirmTimeout;
+
+    // trackReturned(true) = mandatory flag + sledování basic.return
+    private final SendOptions sendOptions = new SendOptions().trackReturned(true);
+
+    private final BatchingQueue<CorrelableOutboundMessage<PendingPublish>> queue;
+    // Zprávy čekající na potvrzení - při pádu pipeline se jim vrátí chyba
+    private final Set<PendingPublish> pending = ConcurrentHashMap.newKeySet();
+
+    private final Timer publishLatency;
+    private final Timer confirmLag;
+    private final DistributionSummary batchSizeSummary;
+    private final Counter acked;
+    private final Counter nacked;
+    private final Counter returned;
+    private final Counter failed;
+
+    public RabbitMessagePublisher(Sender sender,
+                                  List<Binding> bindings,
+                                  List<Declarables> declarables,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${messaging.publisher.batch-size:100}") int batchSize,
+                                  @Value("${messaging.publisher.batch-window-ms:20}") long batchWindowMs,
+                                  @Value("${messaging.publisher.buffer-size:10000}") int bufferSize,
+                                  @Value("${messaging.publisher.max-concurrent-batches:4}") int maxConcurrentBatches,
+                                  @Value("${messaging.publisher.confirm-timeout:10s}") Duration confirmTimeout) {
+        this.sender = sender;
+        // Bindingy deklarované samostatně i uvnitř Declarables (např. žebříček zpožďovacích front)
+        this.declaredBindings = Stream.concat(bindings.stream(),
+                        declarables.stream().flatMap(d -> d.getDeclarablesByType(Binding.class).stream()))
+                .toList();
+        this.confirmTimeout = confirmTimeout;
+
+        this.publishLatency = Timer.builder("rabbit.publish.latency")
+                .description("Doba od zařazení zprávy po potvrzení brokerem")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.confirmLag = Timer.builder("rabbit.publish.confirm.lag")
+                .description("Doba od odeslání dávky po publisher confirm")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.batchSizeSummary = DistributionSummary.builder("rabbit.publish.batch.size")
+                .description("Počet zpráv v jedné odeslané dávce")
+                .register(meterRegistry);
+        this.acked = meterRegistry.counter("rabbit.publish.results", "result", "ack");
+        this.nacked = meterRegistry.counter("rabbit.publish.results", "result", "nack");
+        this.returned = meterRegistry.counter("rabbit.publish.results", "result", "returned");
+        this.failed = meterRegistry.counter("rabbit.publish.results", "result", "error");
+        meterRegistry.gaugeCollectionSize("rabbit.publish.pending", Tags.empty(), pending);
+        this.queue = new BatchingQueue<>("publisheru", batchSize, Duration.ofMillis(batchWindowMs), bufferSize,
+                maxConcurrentBatches, meterRegistry.counter("rabbit.publish.pipeline.restarts"),
+                this::sendBatch, this::failOrphaned);
+    }
+
+    @PostConstruct
+    void start() {
+        queue.start();
+    }
+
+    @PreDestroy
+    void stop() {
+        queue.stop();
+    }
+
+    /**
+     * Pipeline skončila chybou a BatchingQueue ji zakládá znovu. Zprávy ze staré fronty i z rozpracovaných dávek
+     * selžou, takže žádný volající nečeká navždy. Zabrání se i jejich odeslání, kdyby se mezitím dostaly do nové fronty.
+     */
+    private void failOrphaned(Throwable error) {
+        List.copyOf(pending).forEach(pendingPublish -> {
+            pendingPublish.claimed().set(true);
+            if (fail(pendingPublish, new PublishException("Pipeline publisheru selhala",
+                    pendingPublish.exchange(), pendingPublish.routingKey(), error))) {
+                failed.increment();
+            }
+        });
+    }
+
+    /**
+     * Ověří, že pro exchange + routing key existuje deklarovaný binding.
+     * Volá se při startu, aby se překlep v routing key neprojevil až tichou ztrátou zpráv.
+     */
+    public void verifyRoute(String exchange, String routingKey) {
+        boolean routable = declaredBindings.stream()
+                .anyMatch(b -> exchange.equals(b.getExchange()) && routingKey.equals(b.getRoutingKey()));
+        if (!routable) {
+            throw new IllegalStateException(String.format(
+                    "Routing key '%s' nemá na exchange '%s' žádný deklarovaný binding", routingKey, exchange));
+        }
+        log.debug("Route {} -> {} ověřena", exchange, routingKey);
+    }
+
+    /**
+     * Zařadí zprávu do dávky. Mono skončí po potvrzení brokerem,
+     * chybou PublishException při nack / return / selhání kanálu, pokud se zpráva do confirm-timeout nedostala
+     * ke kanálu, nebo když odeslaná dávka není potvrzena do confirm-timeout od odeslání.
+     */
+    public Mono<Void> publish(String exchange, String routingKey, AMQP.BasicProperties properties, byte[] body) {
+        return Mono.defer(() -> {
+            PendingPublish pendingPublish = new PendingPublish(Sinks.one(), new AtomicBoolean(), exchange, routingKey,
+                    System.nanoTime());
+            CorrelableOutboundMessage<PendingPublish> message =
+                    new CorrelableOutboundMessage<>(exchange, routingKey, properties, body, pendingPublish);
+
+            pending.add(pendingPublish);
+            Sinks.EmitResult result = queue.emit(message);
+            if (result.isFailure()) {
+                pending.remove(pendingPublish);
+                failed.increment();
+                return Mono.error(new PublishException(
+                        "Publisher nepřijal zprávu (" + result + ")", exchange, routingKey));
+            }
+            return pendingPublish.result().asMono()
+                    .timeout(confirmTimeout, Mono.defer(() -> {
+                        // Zprávu už převzal kanál - výsledek (nejpozději timeout dávky) přijde ze sendBatch
+                        if (!pendingPublish.claimed().compareAndSet(false, true)) {
+                            return pendingPublish.result().asMono();
+                        }
+                        PublishException timeout = new PublishException(
+                                "Broker zprávu nepotvrdil do " + confirmTimeout, exchange, routingKey);
+                        if (fail(pendingPublish, timeout)) {
+                            failed.increment();
+                            return Mono.error(timeout);
+                        }
+                        // Zprávu mezitím nechala selhat obnova pipeline
+                        return pendingPublish.result().asMono();
+                    }));
+        });
+    }
+
+    private Mono<Void> sendBatch(List<CorrelableOutboundMessage<PendingPublish>> batch) {
+        batchSizeSummary.record(batch.size());
+        long sentAt = System.nanoTime();
+
+        // Zprávu opuštěnou volajícím (timeout ve frontě) kanál nedostane - volající ji už uložil do spoolu
+        Flux<CorrelableOutboundMessage<PendingPublish>> messages = Flux.fromIterable(batch)
+                .filter(message -> message.getCorrelationMetadata().claimed().compareAndSet(false, true));
+
+        return sender.sendWithTypedPublishConfirms(messages, sendOptions)
+                .doOnNext(result -> complete(result, sentAt))
+                // Dávka bez potvrzení uvolní slot ve flatMap, jinak by zablokovala další dávky
+                .timeout(confirmTimeout)
+                .onErrorResume(e -> {
+                    log.error("Odeslání dávky ({} zpráv) do RabbitMQ selhalo: {}", batch.size(), e.getMessage());
+                    batch.forEach(message -> {
+                        if (fail(message.getCorrelationMetadata(), new PublishException("Odeslání dávky selhalo",
+                                message.getExchange(), message.getRoutingKey(), e))) {
+                            failed.increment();
+                        }
+                    });
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    private void complete(OutboundMessageResult<CorrelableOutboundMessage<PendingPublish>> result, long sentAt) {
+        CorrelableOutboundMessage<PendingPublish> message = result.getOutboundMessage();
+        PendingPublish pendingPublish = message.getCorrelationMetadata();
+        long now = System.nanoTime();
+        confirmLag.record(now - sentAt, TimeUnit.NANOSECONDS);
+
+        if (result.isReturned()) {
+            returned.increment();
+            log.error("Zpráva vrácena brokerem jako nesměrovatelná: {} -> {}", message.getExchange(), message.getRoutingKey());
+            fail(pendingPublish, new PublishException("Zpráva je nesměrovatelná (basic.return)",
+                    message.getExchange(), message.getRoutingKey()));
+        } else if (!result.isAck()) {
+            nacked.increment();
+            fail(pendingPublish, new PublishException("Broker zprávu nepotvrdil (nack)",
+                    message.getExchange(), message.getRoutingKey()));
+        } else if (pendingPublish.result().tryEmitEmpty().isSuccess()) {
+            acked.increment();
+            pending.remove(pendingPublish);
+            publishLatency.record(now - pendingPublish.enqueuedAt(), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private boolean fail(PendingPublish pendingPublish, PublishException error) {
+        // Zpráva už mohla být potvrzena - tryEmitError pak nic neudělá
+        if (pendingPublish.result().tryEmitError(error).isSuccess()) {
+            pending.remove(pendingPublish);
+            return true;
+        }
+        return false;
+    }
+
+    // Identita podle Sinks.One - každá zpráva je v množině pending právě jednou.
+    // claimed si zabere první z nich: odeslání do kanálu, nebo timeout volajícího
+    private record PendingPublish(Sinks.One<Void> result, AtomicBoolean claimed, String exchange, String routingKey,
+                                  long enqueuedAt) {
+    }
+}
@@ -0,0 +1,42 @@
+package krematos.publisher;
+
+import krematos.config.RetryLane;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Rozhoduje, do kterého prioritního pruhu retry fronty zpráva patří.
+ * HIGH = částka >= prahu nebo typ služby z konfigurovaného seznamu, jinak LOW.
+ * Práh je jednotný napříč měnami - jde o hrubé třídění, ne o přesný kurzový přepočet.
+ */
+@Component
+public class RetryLaneSelector {
+
+    private final BigDecimal highAmountThreshold;
+    private final Set<String> highServiceTypes;
+
+    public RetryLaneSelector(
+            @Value("${messaging.priority.high-amount-threshold:100000}") BigDecimal highAmountThreshold,
+            @Value("${messaging.priority.high-service-types:}") String[] highServiceTypes) {
+        this.highAmountThreshold = highAmountThreshold;
+        this.highServiceTypes = Arrays.stream(highServiceTypes)
+                .map(String::trim)
+                .filter(s -> !s.isEmpty())
+                .collect(Collectors.toUnmodifiableSet());
+    }
+
+    public RetryLane select(BigDecimal amount, String serviceType) {
+        if (serviceType != null && highServiceTypes.contains(serviceType)) {
+            return RetryLane.HIGH;
+        }
+        if (amount != null && amount.compareTo(highAmountThreshold) >= 0) {
+            return RetryLane.HIGH;
+        }
+        return RetryLane.LOW;
+    }
+}
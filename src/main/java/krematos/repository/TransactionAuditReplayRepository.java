@@ -0,0 +1,106 @@
+package krematos.repository;
+
+import krematos.model.TransactionAudit;
+import lombok.RequiredArgsConstructor;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Přehrání snímků auditu z write-ahead logu (degradovaný režim) do transaction_audit.
+ * Celá dávka jde jedním příkazem přes unnest() polí - jeden round-trip, jedna transakce.
+ * Časy se předávají jako mikrosekundy od epochy (přesnost Postgresu), částky jako text.
+ */
+@Repository
+@RequiredArgsConstructor
+public class TransactionAuditReplayRepository {
+
+    /*
+     * - insert: snímky objednávek, které v DB ještě nejsou (PENDING nešel zapsat); při více snímcích téže
+     *   objednávky s různým created_at (duplicitní příjem během výpadku) vyhrává první přijatý, ostatní se přeskočí
+     * - update: výsledek pro řádek, který v DB už je (podle internal_order_id + created_at);
+     *   starší snímek nepřepíše novější stav (updated_at)
+     * Oba CTE vidí stejný snapshot - UPDATE nesahá na řádky vložené v témže příkazu.
+     */
+    private static final String REPLAY = """
+            WITH d AS (
+                SELECT v.internal_order_id, v.amount::numeric AS amount, v.currency, v.service_type, v.status, v.details,
+                       timestamptz 'epoch' + v.created_micros * interval '1 microsecond' AS created_at,
+                       timestamptz 'epoch' + v.updated_micros * interval '1 microsecond' AS updated_at
+                FROM unnest(:orderIds::varchar[], :amounts::text[], :currencies::varchar[], :serviceTypes::varchar[],
+                            :statuses::varchar[], :details::text[], :created::bigint[], :updated::bigint[])
+                     AS v(internal_order_id, amount, currency, service_type, status, details, created_micros, updated_micros)
+            ),
+            inserted AS (
+                INSERT INTO transaction_audit (internal_order_id, amount, currency, service_type, status, details,
+                                               created_at, updated_at)
+                SELECT DISTINCT ON (d.internal_order_id)
+                       d.internal_order_id, d.amount, d.currency, d.service_type, d.status, d.details,
+                       d.created_at, d.updated_at
+                FROM d
+                WHERE NOT EXISTS (SELECT 1 FROM transaction_order_key k WHERE k.internal_order_id = d.internal_order_id)
+                ORDER BY d.internal_order_id, d.created_at
+                RETURNING 1
+            ),
+            updated AS (
+                UPDATE transaction_audit t
+                SET status = d.status, details = d.details, updated_at = d.updated_at
+                FROM d
+                WHERE t.internal_order_id = d.internal_order_id AND t.created_at = d.created_at
+                  AND d.updated_at IS NOT NULL AND (t.updated_at IS NULL OR t.updated_at <= d.updated_at)
+                RETURNING 1
+            )
+            SELECT (SELECT count(*) FROM inserted) + (SELECT count(*) FROM updated) AS applied
+            """;
+
+    private final DatabaseClient databaseClient;
+
+    /**
+     * Zapíše dávku snímků; klíč (internal_order_id, created_at) musí být v dávce unikátní
+     * (UPDATE ... FROM nesmí trefit řádek dvakrát). Vrací počet vložených a aktualizovaných řádků,
+     * rozdíl proti velikosti dávky jsou přeskočené duplicity a zastaralé snímky.
+     */
+    public Mono<Long> replay(List<TransactionAudit> audits) {
+        if (audits.isEmpty()) {
+            return Mono.just(0L);
+        }
+        int size = audits.size();
+        String[] orderIds = new String[size];
+        String[] amounts = new String[size];
+        String[] currencies = new String[size];
+        String[] serviceTypes = new String[size];
+        String[] statuses = new String[size];
+        String[] details = new String[size];
+        Long[] created = new Long[size];
+        Long[] updated = new Long[size];
+        for (int i = 0; i < size; i++) {
+            TransactionAudit audit = audits.get(i);
+            orderIds[i] = audit.getInternalOrderId();
+            amounts[i] = audit.getAmount() == null ? null : audit.getAmount().toPlainString();
+            currencies[i] = audit.getCurrency();
+            serviceTypes[i] = audit.getServiceType();
+            statuses[i] = audit.getStatus();
+            details[i] = audit.getDetails();
+            created[i] = toMicros(audit.getCreatedAt());
+            updated[i] = toMicros(audit.getUpdatedAt());
+        }
+        return databaseClient.sql(REPLAY)
+                .bind("orderIds", orderIds)
+                .bind("amounts", amounts)
+                .bind("currencies", currencies)
+                .bind("serviceTypes", serviceTypes)
+                .bind("statuses", statuses)
+                .bind("details", details)
+                .bind("created", created)
+                .bind("updated", updated)
+                .map(row -> row.get("applied", Long.class))
+                .one();
+    }
+
+    private static Long toMicros(Instant instant) {
+        return instant == null ? null : instant.getEpochSecond() * 1_000_000 + instant.getNano() / 1_000;
+    }
+}
@@ -0,0 +1,81 @@
+package krematos.repository;
+
+import krematos.model.AuditSearchCriteria;
+import krematos.model.TransactionAudit;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.r2dbc.convert.R2dbcConverter;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Vyhledávání auditů s dynamickými filtry (R2dbcRepository @Query neumí volitelné podmínky).
+ * Keyset stránkování na (created_at, id) místo OFFSET - každá stránka začíná index seekem.
+ * Výsledek se streamuje server-side kurzorem (fetchSize) podle demand odběratele.
+ */
+@Repository
+@RequiredArgsConstructor
+public class TransactionAuditSearchRepository {
+
+    private final DatabaseClient databaseClient;
+    private final R2dbcConverter converter;
+
+    public Flux<TransactionAudit> search(AuditSearchCriteria criteria, int limit, int fetchSize) {
+        SearchQuery query = SearchQuery.of(criteria, limit);
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(query.sql());
+        for (Map.Entry<String, Object> binding : query.bindings().entrySet()) {
+            spec = spec.bind(binding.getKey(), binding.getValue());
+        }
+        return spec
+                .filter(statement -> statement.fetchSize(fetchSize))
+                .map((row, metadata) -> converter.read(TransactionAudit.class, row, metadata))
+                .all();
+    }
+
+    record SearchQuery(String sql, Map<String, Object> bindings) {
+
+        static SearchQuery of(AuditSearchCriteria criteria, int limit) {
+            List<String> conditions = new ArrayList<>();
+            Map<String, Object> bindings = new LinkedHashMap<>();
+
+            if (criteria.status() != null) {
+                conditions.add("status = :status");
+                bindings.put("status", criteria.status());
+            }
+            if (criteria.currency() != null) {
+                conditions.add("currency = :currency");
+                bindings.put("currency", criteria.currency());
+            }
+            if (criteria.serviceType() != null) {
+                conditions.add("service_type = :serviceType");
+                bindings.put("serviceType", criteria.serviceType());
+            }
+            // Rozsah created_at zároveň omezí prohledávané partitions
+            if (criteria.createdFrom() != null) {
+                conditions.add("created_at >= :createdFrom");
+                bindings.put("createdFrom", criteria.createdFrom());
+            }
+            if (criteria.createdTo() != null) {
+                conditions.add("created_at < :createdTo");
+                bindings.put("createdTo", criteria.createdTo());
+            }
+            if (criteria.afterCreatedAt() != null && criteria.afterId() != null) {
+                // Row comparison = jeden seek v indexu (…, created_at, id);
+                // samostatná podmínka na created_at navíc vyřadí partitions před kurzorem
+                conditions.add("(created_at, id) > (:afterCreatedAt, :afterId)");
+                conditions.add("created_at >= :afterCreatedAt");
+                bindings.put("afterCreatedAt", criteria.afterCreatedAt());
+                bindings.put("afterId", criteria.afterId());
+            }
+            bindings.put("limit", limit);
+
+            String where = conditions.isEmpty() ? "" : " WHERE " + String.join(" AND ", conditions);
+            return new SearchQuery("SELECT * FROM transaction_audit" + where + " ORDER BY created_at, id LIMIT :limit", bindings);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package krematos.repository;
+
+import krematos.model.TransactionAudit;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.r2dbc.convert.R2dbcConverter;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.Optional;
+
+/**
+ * Správa denních partitions tabulky transaction_audit (DDL nejde přes R2dbcRepository).
+ * Název partition je vždy odvozen z data (transaction_audit_pYYYYMMDD), do SQL se tak nikdy
+ * nedostane libovolný text.
+ */
+@Repository
+@RequiredArgsConstructor
+public class TransactionPartitionRepository {
+
+    static final String PARTITION_PREFIX = "transaction_audit_p";
+    private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.BASIC_ISO_DATE;
+
+    static final String DEFAULT_PARTITION = "transaction_audit_default";
+
+    private final DatabaseClient databaseClient;
+    private final R2dbcConverter converter;
+
+    public static String partitionName(LocalDate day) {
+        return PARTITION_PREFIX + PARTITION_SUFFIX.format(day);
+    }
+
+    // Den partition podle názvu; prázdné pro default partition a cizí tabulky
+    public static Optional<LocalDate> partitionDay(String tableName) {
+        if (tableName == null || !tableName.startsWith(PARTITION_PREFIX)) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(LocalDate.parse(tableName.substring(PARTITION_PREFIX.length()), PARTITION_SUFFIX));
+        } catch (RuntimeException e) {
+            return Optional.empty();
+        }
+    }
+
+    // Idempotentní - DDL je v DB funkci z migrace V3 (V7: řádky téhož dne z default partition přesune).
+    // Vrací název jen nově založené partition, pro existující prázdné Mono (V9: funkce vrací NULL).
+    // Chyba (např. přesun z default partition selhal) se propaguje.
+    public Mono<String> createPartition(LocalDate day) {
+        return databaseClient.sql("SELECT create_transaction_audit_partition(:day)")
+                .bind("day", day)
+                .map(row -> Optional.ofNullable(row.get(0, String.class)))
+                .one()
+                .flatMap(Mono::justOrEmpty);
+    }
+
+    // Dny všech připojených denních partitions
+    public Flux<LocalDate> findAttachedPartitionDays() {
+        return databaseClient.sql("SELECT c.relname FROM pg_inherits i " +
+                        "JOIN pg_class c ON c.oid = i.inhrelid " +
+                        "WHERE i.inhparent = 'transaction_audit'::regclass")
+                .map(row -> row.get(0, String.class))
+                .all()
+                .flatMapIterable(name -> partitionDay(name).stream().toList())
+                .sort();
+    }
+
+    // Partitions odpojené od transaction_audit (retence DETACH nebo přerušená archivace)
+    public Flux<LocalDate> findDetachedPartitionDays() {
+        return databaseClient.sql("SELECT c.relname FROM pg_class c " +
+                        "WHERE c.relkind = 'r' AND NOT c.relispartition " +
+                        "AND c.relname LIKE 'transaction\\_audit\\_p%' AND pg_table_is_visible(c.oid)")
+                .map(row -> row.get(0, String.class))
+                .all()
+                .flatMapIterable(name -> partitionDay(name).stream().toList())
+                .sort();
+    }
+
+    /**
+     * Streamuje celou (odpojenou) partition. fetchSize přepne driver na server-side kurzor -
+     * řádky chodí po dávkách podle demand, v paměti nikdy není celá tabulka.
+     */
+    public Flux<TransactionAudit> streamPartition(LocalDate day, int fetchSize) {
+        return databaseClient.sql("SELECT * FROM " + partitionName(day) + " ORDER BY id")
+                .filter(statement -> statement.fetchSize(fetchSize))
+                .map((row, metadata) -> converter.read(TransactionAudit.class, row, metadata))
+                .all();
+    }
+
+    // Staré řádky, které skončily v default partition (data z migrace, výpadek údržby)
+    public Flux<TransactionAudit> streamDefaultPartitionBefore(Instant boundary, int fetchSize) {
+        return databaseClient.sql("SELECT * FROM " + DEFAULT_PARTITION + " WHERE created_at < :boundary ORDER BY id")
+                .bind("boundary", boundary)
+                .filter(statement -> statement.fetchSize(fetchSize))
+                .map((row, metadata) -> converter.read(TransactionAudit.class, row, metadata))
+                .all();
+    }
+
+    // Smaže jen to, co export prokazatelně zapsal (id <= maxId)
+    public Mono<Long> deleteDefaultPartitionBefore(Instant boundary, long maxId) {
+        return databaseClient.sql("DELETE FROM " + DEFAULT_PARTITION + " WHERE created_at < :boundary AND id <= :maxId")
+                .bind("boundary", boundary)
+                .bind("maxId", maxId)
+                .fetch()
+                .rowsUpdated();
+    }
+
+    public Mono<Void> detachPartition(LocalDate day) {
+        return databaseClient.sql("ALTER TABLE transaction_audit DETACH PARTITION " + partitionName(day))
+                .then();
+    }
+
+    public Mono<Void> dropPartition(LocalDate day) {
+        return databaseClient.sql("DROP TABLE IF EXISTS " + partitionName(day))
+                .then();
+    }
+
+    // Klíče unikátnosti jen pro řádky, které v transaction_audit už nejsou (odpojené/smazané partitions,
+    // archivované řádky default partition); staré řádky, které v default partition zůstaly, klíč drží dál
+    public Mono<Long> deleteOrderKeysCreatedBefore(Instant boundary) {
+        return databaseClient.sql("DELETE FROM transaction_order_key k WHERE k.created_at < :boundary " +
+                        "AND NOT EXISTS (SELECT 1 FROM transaction_audit a " +
+                        "WHERE a.internal_order_id = k.internal_order_id AND a.created_at = k.created_at " +
+                        "AND a.created_at < :boundary)")
+                .bind("boundary", boundary)
+                .fetch()
+                .rowsUpdated();
+    }
+}
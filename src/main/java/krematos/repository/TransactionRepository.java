@@ -1,6 +1,7 @@
 package krematos.repository;
 
 import krematos.model.TransactionAudit;
+import org.springframework.data.r2dbc.repository.Modifying;
 import org.springframework.data.r2dbc.repository.Query;
 import org.springframework.data.r2dbc.repository.R2dbcRepository;
 import reactor.core.publisher.Flux;
@@ -8,23 +9,93 @@ import reactor.core.publisher.Mono;
 
 import java.time.Instant;
 
+/**
+ * transaction_audit je partitionovaná podle created_at (denní partitions).
+ * Každý dotaz proto nese podmínku na created_at, aby Postgres prohledal jen odpovídající partitions
+ * (partition pruning) - dotaz jen podle id by sahal do všech partitions.
+ */
 public interface TransactionRepository extends R2dbcRepository<TransactionAudit, Long> {
 
-    Flux<TransactionAudit> findByStatusAndCreatedAtBefore(String status, Instant before);
-
+    // Keyset stránkování (id > :lastId) - každá stránka je levný index range scan, bez OFFSET.
+    // FAILED záznam aktualizovaný před cutoffTime vznikl také před ním -> horní mez created_at pro pruning.
     @Query("SELECT * FROM transaction_audit " +
             "WHERE status = 'FAILED' " +
             "AND notification_sent = FALSE " +
-            "AND updated_at < :cutoffTime")
-    Flux<TransactionAudit> findStuckFailedTransactions(Instant cutoffTime);
+            "AND updated_at < :cutoffTime " +
+            "AND created_at >= :createdAfter AND created_at < :cutoffTime " +
+            "AND id > :lastId " +
+            "ORDER BY id " +
+            "LIMIT :limit")
+    Flux<TransactionAudit> findStuckFailedTransactions(Instant cutoffTime, Instant createdAfter, Long lastId, int limit);
+
+    // Jeden UPDATE pro celý chunk místo UPDATE pro každý řádek; rozsah created_at chunku omezí partitions
+    @Modifying
+    @Query("UPDATE transaction_audit SET notification_sent = TRUE " +
+            "WHERE id = ANY(:ids) AND created_at >= :createdFrom AND created_at <= :createdTo")
+    Mono<Integer> markAsNotified(Long[] ids, Instant createdFrom, Instant createdTo);
+
+    /**
+     * Set-based úklid jednoho chunku: označí až :limit PENDING transakcí vytvořených mezi :createdAfter a :cutoffTime jako FAILED.
+     * FOR UPDATE SKIP LOCKED přeskočí řádky, se kterými právě pracuje živý provoz (nečeká na jejich zámky).
+     * Vrací id změněných řádků (checkpoint pro keyset stránkování).
+     */
+    @Query("UPDATE transaction_audit " +
+            "SET status = 'FAILED', details = 'Timeout - automaticky zrušeno schedulerem', updated_at = now() " +
+            "WHERE created_at >= :createdAfter AND created_at < :cutoffTime " +
+            "AND (id, created_at) IN (" +
+            "  SELECT id, created_at FROM transaction_audit " +
+            "  WHERE status = 'PENDING' AND created_at >= :createdAfter AND created_at < :cutoffTime AND id > :lastId " +
+            "  ORDER BY id LIMIT :limit " +
+            "  FOR UPDATE SKIP LOCKED) " +
+            "RETURNING id")
+    Flux<Long> failStalePendingChunk(Instant cutoffTime, Instant createdAfter, Long lastId, int limit);
 
-    @Query("UPDATE transaction_audit SET notification_sent = TRUE WHERE id = :id")
-    Mono<Void> markAsNotified(Long id);
+    // Výsledek zpracování - UPDATE podle celého primárního klíče (id, created_at) trefí jedinou partition
+    @Modifying
+    @Query("UPDATE transaction_audit SET status = :status, details = :details, updated_at = :updatedAt " +
+            "WHERE id = :id AND created_at = :createdAt")
+    Mono<Integer> updateOutcome(Long id, Instant createdAt, String status, String details, Instant updatedAt);
 
-    @Query("UPDATE transaction_audit SET status = 'FAILED' AND notification_sent = false LIMIT 50")
-    Flux<TransactionAudit> findFailedAnoNotNotified();
+    /**
+     * Další pokus z retry fronty na stejném řádku: PENDING + zvýšení čítače pokusů.
+     * Podmínka na stav zajistí, že transakce dokončená mezitím jinou cestou se znovu neotevře -
+     * pak nevrátí nic. Vrací nový počet pokusů.
+     */
+    @Query("UPDATE transaction_audit SET status = 'PENDING', attempt_count = attempt_count + 1, updated_at = :updatedAt " +
+            "WHERE id = :id AND created_at = :createdAt AND status <> 'SUCCESS' " +
+            "RETURNING attempt_count")
+    Mono<Integer> startRetryAttempt(Long id, Instant createdAt, Instant updatedAt);
 
-    // Pro integrační testy - vyhledání transakce podle interního ID
+    /**
+     * Asynchronně přijatá transakce (attempt_count = 0) - první pokus si řádek zabere.
+     * 0 řádků = transakci už zabral jiný worker (i na jiném uzlu) nebo ji mezitím uzavřel úklid.
+     */
+    @Modifying
+    @Query("UPDATE transaction_audit SET attempt_count = 1 " +
+            "WHERE id = :id AND created_at = :createdAt AND status = 'PENDING' AND attempt_count = 0")
+    Mono<Integer> claimAcceptedAttempt(Long id, Instant createdAt);
+
+    // Přijaté transakce, které žádný worker nezačal zpracovávat (fronta ztracená při restartu / pádu)
+    @Query("SELECT * FROM transaction_audit " +
+            "WHERE status = 'PENDING' AND attempt_count = 0 " +
+            "AND created_at >= :createdAfter AND created_at < :cutoffTime " +
+            "ORDER BY created_at " +
+            "LIMIT :limit")
+    Flux<TransactionAudit> findUnclaimedAccepted(Instant cutoffTime, Instant createdAfter, int limit);
+
+    // Vyhledání transakce podle interního ID (retry konzument, integrační testy).
+    // created_at z transaction_order_key vybere jedinou partition (run-time pruning).
+    @Query("SELECT * FROM transaction_audit " +
+            "WHERE internal_order_id = :internalOrderId " +
+            "AND created_at = (SELECT created_at FROM transaction_order_key WHERE internal_order_id = :internalOrderId)")
     Mono<TransactionAudit> findByInternalOrderId(String internalOrderId);
 
+    // Hromadné vyhledání jedním dotazem; rozsah created_at z transaction_order_key omezí partitions
+    // na období, ve kterém hledané objednávky vznikly (run-time pruning)
+    @Query("SELECT * FROM transaction_audit " +
+            "WHERE internal_order_id = ANY(:internalOrderIds) " +
+            "AND created_at >= (SELECT min(created_at) FROM transaction_order_key WHERE internal_order_id = ANY(:internalOrderIds)) " +
+            "AND created_at <= (SELECT max(created_at) FROM transaction_order_key WHERE internal_order_id = ANY(:internalOrderIds))")
+    Flux<TransactionAudit> findAllByInternalOrderIds(String[] internalOrderIds);
+
 }
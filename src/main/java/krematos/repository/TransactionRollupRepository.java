@@ -0,0 +1,94 @@
+package krematos.repository;
+
+import krematos.model.RollupDelta;
+import krematos.model.TransactionReportRow;
+import lombok.RequiredArgsConstructor;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Minutové agregace v transaction_rollup (migrace V5).
+ * Upsert jde jedním příkazem přes unnest() polí - jeden round-trip na celý flush.
+ */
+@Repository
+@RequiredArgsConstructor
+public class TransactionRollupRepository {
+
+    private static final String UPSERT = """
+            INSERT INTO transaction_rollup AS r (bucket_start, status, currency, service_type, tx_count, amount_sum)
+            SELECT to_timestamp(d.bucket), d.status, d.currency, d.service_type, d.tx_count, d.amount_minor::numeric / 100
+            FROM unnest(:buckets::bigint[], :statuses::varchar[], :currencies::varchar[], :serviceTypes::varchar[],
+                        :counts::bigint[], :amounts::bigint[])
+                 AS d(bucket, status, currency, service_type, tx_count, amount_minor)
+            ON CONFLICT (bucket_start, status, currency, service_type) DO UPDATE
+            SET tx_count = r.tx_count + EXCLUDED.tx_count,
+                amount_sum = r.amount_sum + EXCLUDED.amount_sum
+            """;
+
+    // Hranice období v UTC nezávisle na časové zóně session; rozsah bucket_start jde přes primární klíč
+    private static final String REPORT = """
+            SELECT date_trunc(:unit, bucket_start AT TIME ZONE 'UTC') AT TIME ZONE 'UTC' AS period_start,
+                   status, currency, service_type, sum(tx_count)::bigint AS tx_count, sum(amount_sum) AS amount_sum
+            FROM transaction_rollup
+            WHERE bucket_start >= :from AND bucket_start < :to
+            GROUP BY 1, 2, 3, 4
+            ORDER BY 1, 2, 3, 4
+            """;
+
+    private final DatabaseClient databaseClient;
+
+    // Přičte přírůstky; klíče v jednom volání musí být unikátní (ON CONFLICT nesmí trefit řádek dvakrát)
+    public Mono<Long> upsert(List<RollupDelta> deltas) {
+        if (deltas.isEmpty()) {
+            return Mono.just(0L);
+        }
+        int size = deltas.size();
+        Long[] buckets = new Long[size];
+        String[] statuses = new String[size];
+        String[] currencies = new String[size];
+        String[] serviceTypes = new String[size];
+        Long[] counts = new Long[size];
+        Long[] amounts = new Long[size];
+        for (int i = 0; i < size; i++) {
+            RollupDelta delta = deltas.get(i);
+            buckets[i] = delta.bucketStart().getEpochSecond();
+            statuses[i] = delta.status();
+            currencies[i] = delta.currency();
+            serviceTypes[i] = delta.serviceType();
+            counts[i] = delta.count();
+            amounts[i] = delta.amountMinor();
+        }
+        return databaseClient.sql(UPSERT)
+                .bind("buckets", buckets)
+                .bind("statuses", statuses)
+                .bind("currencies", currencies)
+                .bind("serviceTypes", serviceTypes)
+                .bind("counts", counts)
+                .bind("amounts", amounts)
+                .fetch()
+                .rowsUpdated();
+    }
+
+    // unit: minute / hour / day (hodnota pro date_trunc)
+    public Flux<TransactionReportRow> report(Instant from, Instant to, String unit) {
+        return databaseClient.sql(REPORT)
+                .bind("unit", unit)
+                .bind("from", from)
+                .bind("to", to)
+                .map(row -> TransactionReportRow.builder()
+                        .periodStart(row.get("period_start", Instant.class))
+                        .status(row.get("status", String.class))
+                        .currency(row.get("currency", String.class))
+                        .serviceType(row.get("service_type", String.class))
+                        .count(row.get("tx_count", Long.class))
+                        .amount(row.get("amount_sum", BigDecimal.class))
+                        .build())
+                .all();
+    }
+}
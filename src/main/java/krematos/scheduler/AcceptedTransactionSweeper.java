@@ -0,0 +1,73 @@
+package krematos.scheduler;
+
+import krematos.repository.TransactionRepository;
+import krematos.service.AsyncTransactionQueue;
+import lombok.extern.slf4j.Slf4j;
+import net.javacrumbs.shedlock.spring.annotation.SchedulerLock;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Obnova asynchronně přijatých transakcí, které žádný worker nezačal zpracovávat
+ * (fronta v paměti ztracená při nasazení nebo pádu uzlu, volající už dostal 202).
+ * Každých sweep.interval najde PENDING řádky s attempt_count = 0 starší než sweep.stale-after
+ * a zařadí je do fronty tohoto uzlu (metrika transaction.async.requests{result=resubmitted}).
+ * Transakce, které ve frontě tohoto uzlu ještě čekají (attempt_count = 0 až do začátku zpracování),
+ * se přeskočí, aby duplicity nezabíraly kapacitu fronty. Worker si řádek před voláním API zabere,
+ * takže transakce, která ještě čeká ve frontě jiného uzlu, se neprovede dvakrát.
+ * Starší než den řeší noční TransactionCleanupSchedular.
+ */
+@Slf4j
+@Component
+public class AcceptedTransactionSweeper {
+
+    private static final Duration LOOKBACK = Duration.ofDays(1);
+
+    private final TransactionRepository transactionRepository;
+    private final AsyncTransactionQueue asyncTransactionQueue;
+    private final Duration staleAfter;
+    private final int batchSize;
+
+    public AcceptedTransactionSweeper(TransactionRepository transactionRepository,
+                                      AsyncTransactionQueue asyncTransactionQueue,
+                                      @Value("${transaction.async.sweep.stale-after:1m}") Duration staleAfter,
+                                      @Value("${transaction.async.sweep.batch-size:500}") int batchSize) {
+        this.transactionRepository = transactionRepository;
+        this.asyncTransactionQueue = asyncTransactionQueue;
+        this.staleAfter = staleAfter;
+        this.batchSize = batchSize;
+    }
+
+    // Běží synchronně na vlákně scheduleru, aby zámek ShedLock platil po celou dobu běhu
+    @Scheduled(fixedDelayString = "${transaction.async.sweep.interval:30s}")
+    @SchedulerLock(name = "sweepAcceptedTransactions", lockAtLeastFor = "5s", lockAtMostFor = "2m")
+    public void sweepAcceptedTransactions() {
+        sweep(Instant.now())
+                .onErrorResume(error -> {
+                    log.error("SWEEPER: Obnova přijatých transakcí selhala: {}", error.getMessage());
+                    return Mono.empty();
+                })
+                .block();
+    }
+
+    Mono<Long> sweep(Instant now) {
+        Instant cutoff = now.minus(staleAfter).truncatedTo(ChronoUnit.MICROS);
+        return transactionRepository.findUnclaimedAccepted(cutoff, cutoff.minus(LOOKBACK), batchSize)
+                .filter(audit -> !asyncTransactionQueue.isQueued(audit.getInternalOrderId()))
+                // Plná fronta - zbytek zůstane pro další běh
+                .takeWhile(asyncTransactionQueue::resubmit)
+                .count()
+                .doOnNext(count -> {
+                    if (count > 0) {
+                        log.warn("SWEEPER: {} přijatých transakcí bez zpracování starších než {} znovu zařazeno",
+                                count, staleAfter);
+                    }
+                });
+    }
+}
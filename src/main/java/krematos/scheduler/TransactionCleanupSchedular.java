@@ -1,48 +1,135 @@
 package krematos.scheduler;
 
-import krematos.model.AuditStatus;
-import krematos.model.TransactionAudit;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import krematos.repository.TransactionRepository;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import net.javacrumbs.shedlock.core.LockExtender;
 import net.javacrumbs.shedlock.spring.annotation.SchedulerLock;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
-import reactor.core.publisher.Mono;
 
+import java.time.Duration;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Noční úklid PENDING transakcí starších než 24h (označí je jako FAILED).
+ * - set-based: jeden UPDATE ... WHERE id IN (SELECT ... LIMIT n FOR UPDATE SKIP LOCKED) na chunk
+ * - chunky jdou keysetem podle id (checkpoint jen v paměti, metrika cleanup.checkpoint.id); každý běh začíná
+ *   od začátku - přerušený běh se neobnovuje, protože už označené řádky nejsou PENDING a partial index je
+ *   přeskočí, takže opakovaný průchod nic nestojí
+ * - mezi chunky je pauza, aby živý provoz neztratil kapacitu DB
+ * - ShedLock zámek se po každém chunku prodlouží, takže dlouhý běh nemůže souběžně spustit jiný uzel
+ * - hledá se jen v okně lookback-days před cutoff, takže UPDATE sahá jen na odpovídající denní partitions
+ *   (starší data řeší retence partitions v TransactionPartitionMaintenance)
+ */
 @Component
 @Slf4j
-@RequiredArgsConstructor
 public class TransactionCleanupSchedular {
 
+    static final String JOB_NAME = "cleanupOldPendingTransactions";
+
     private final TransactionRepository transactionRepository;
 
+    private final int chunkSize;
+    private final Duration lookback;
+    private final Duration pauseBetweenChunks;
+    private final Duration lockExtension;
+
+    private final Counter cleanedCounter;
+    private final Timer runTimer;
+    private final AtomicLong rowsPerSecond = new AtomicLong();
+    private final AtomicLong checkpointId = new AtomicLong();
+
+    public TransactionCleanupSchedular(TransactionRepository transactionRepository,
+                                      MeterRegistry meterRegistry,
+                                      @Value("${scheduler.cleanup.chunk-size:1000}") int chunkSize,
+                                      @Value("${scheduler.cleanup.pause-ms:200}") long pauseMs,
+                                      @Value("${scheduler.cleanup.lock-extension:5m}") Duration lockExtension,
+                                      @Value("${scheduler.cleanup.lookback-days:7}") int lookbackDays) {
+        this.transactionRepository = transactionRepository;
+        this.chunkSize = chunkSize;
+        this.pauseBetweenChunks = Duration.ofMillis(pauseMs);
+        this.lockExtension = lockExtension;
+        this.lookback = Duration.ofDays(lookbackDays);
+
+        this.cleanedCounter = meterRegistry.counter("cleanup.rows");
+        this.runTimer = Timer.builder("cleanup.run")
+                .description("Doba jednoho běhu úklidu PENDING transakcí")
+                .register(meterRegistry);
+        meterRegistry.gauge("cleanup.rows.per.second", rowsPerSecond);
+        meterRegistry.gauge("cleanup.checkpoint.id", checkpointId);
+    }
+
+    // Běží synchronně na vlákně scheduleru: LockExtender funguje jen ve vlákně, které drží zámek
     @Scheduled(cron = "0 0 2 * * *")
-    @SchedulerLock(name = "cleanupOldPendingTransactions", lockAtLeastFor = "15s", lockAtMostFor = "30s")
+    @SchedulerLock(name = JOB_NAME, lockAtLeastFor = "15s", lockAtMostFor = "5m")
     public void cleanupOldPendingTransactions() {
         log.info("Spouštím úklid starých PENDING transakcí...");
+        try {
+            long cleaned = cleanup(Instant.now().minus(24, ChronoUnit.HOURS));
+            log.info("Úklid transakcí dokončen. Označeno jako FAILED: {}", cleaned);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Úklid transakcí přerušen na checkpointu {}", checkpointId.get());
+        } catch (RuntimeException error) {
+            log.error("Chyba při čištění starých PENDING transakcí (checkpoint {})", checkpointId.get(), error);
+        }
+    }
 
-        Instant cutoffTime = Instant.now().minus(24, ChronoUnit.HOURS);
+    long cleanup(Instant cutoffTime) throws InterruptedException {
+        long lastId = 0;
+        checkpointId.set(0);
 
-        transactionRepository.findByStatusAndCreatedAtBefore(AuditStatus.PENDING.name(), cutoffTime)
-                .flatMap(this::processStuckTransaction)
-                .doOnComplete(() -> log.info("Úklid transakcí dokončen."))
-                .doOnError(error -> log.error("Chyba při čištění starých PENDING transakcí", error))
-                .subscribe();
-    }
+        Instant createdAfter = cutoffTime.minus(lookback);
+        long startNanos = System.nanoTime();
+        long total = 0;
+        while (true) {
+            List<Long> ids = transactionRepository.failStalePendingChunk(cutoffTime, createdAfter, lastId, chunkSize)
+                    .collectList()
+                    .block();
+            if (ids == null || ids.isEmpty()) {
+                break;
+            }
+
+            // RETURNING nezaručuje pořadí - kurzor je největší id v chunku
+            lastId = ids.stream().mapToLong(Long::longValue).max().getAsLong();
+            total += ids.size();
+            cleanedCounter.increment(ids.size());
+            checkpointId.set(lastId);
+            recordThroughput(total, startNanos);
+            log.debug("Úklid: chunk {} řádků, checkpoint {}", ids.size(), lastId);
 
-    private Mono<TransactionAudit> processStuckTransaction(TransactionAudit audit) {
-        log.warn("Nalezena zaseknutá transakce ID: {} (vytvořena: {}). Označuji jako FAILED.",
-                audit.getInternalOrderId(), audit.getCreatedAt());
+            if (ids.size() < chunkSize) {
+                break;
+            }
+            extendLock();
+            Thread.sleep(pauseBetweenChunks.toMillis());
+        }
 
-        audit.setStatus("FAILED");
-        audit.setDetails("Timeout - automaticky zrušeno schedulerem");
-        audit.setUpdatedAt(Instant.now());
+        checkpointId.set(0);
+        recordThroughput(total, startNanos);
+        runTimer.record(Duration.ofNanos(System.nanoTime() - startNanos));
+        return total;
+    }
+
+    private void extendLock() {
+        try {
+            LockExtender.extendActiveLock(lockExtension, Duration.ZERO);
+        } catch (LockExtender.NoActiveLockException e) {
+            // Ruční spuštění mimo @SchedulerLock (např. testy) - není co prodlužovat
+            log.debug("Úklid běží bez aktivního ShedLock zámku");
+        }
+    }
 
-        return transactionRepository.save(audit);
+    private void recordThroughput(long total, long startNanos) {
+        double seconds = Math.max((System.nanoTime() - startNanos) / 1_000_000_000d, 0.001);
+        rowsPerSecond.set(Math.round(total / seconds));
     }
 
 }
@@ -0,0 +1,173 @@
+package krematos.scheduler;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import krematos.archive.TransactionAuditArchiver;
+import krematos.repository.TransactionPartitionRepository;
+import krematos.spool.AuditWriteAheadLog;
+import lombok.extern.slf4j.Slf4j;
+import net.javacrumbs.shedlock.spring.annotation.SchedulerLock;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Údržba denních partitions tabulky transaction_audit:
+ * - předem založí partitions na days-ahead dní dopředu (jinak by nové řádky padaly do default partition);
+ *   řádky téhož dne, které už v default partition jsou, se při založení přesunou do nové partition
+ * - když partition založit nejde, start aplikace selže a plánovaný běh zvýší partitions.failures
+ *   (nedostupná DB při startu se jen zaloguje)
+ * - partitions starší než retention-days odpojí (DETACH) a podle retention-mode smaže (DROP) -
+ *   retence tak je metadata operace místo DELETE po řádcích, bez bloatu a zátěže vacuum
+ * - v režimu archive partition po odpojení vyexportuje do studeného archivu (TransactionAuditArchiver)
+ *   a smaže ji; stejně archivuje staré řádky z default partition a dříve odpojené partitions
+ * - smaže klíče unikátnosti (transaction_order_key) jen pro řádky, které už v transaction_audit nejsou
+ */
+@Component
+@Slf4j
+public class TransactionPartitionMaintenance {
+
+    public enum RetentionMode {
+        DROP,
+        // Partition zůstane jako samostatná tabulka
+        DETACH,
+        // Export do gzip NDJSON s manifestem, potom DROP
+        ARCHIVE
+    }
+
+    private static final Duration STARTUP_TIMEOUT = Duration.ofSeconds(30);
+
+    private final TransactionPartitionRepository partitionRepository;
+    private final TransactionAuditArchiver archiver;
+
+    private final int daysAhead;
+    private final int retentionDays;
+    private final RetentionMode retentionMode;
+
+    private final Counter createdCounter;
+    private final Counter retiredCounter;
+    private final Counter failureCounter;
+    private final AtomicLong attachedPartitions = new AtomicLong();
+
+    public TransactionPartitionMaintenance(TransactionPartitionRepository partitionRepository,
+                                           TransactionAuditArchiver archiver,
+                                           MeterRegistry meterRegistry,
+                                           @Value("${scheduler.partitions.days-ahead:7}") int daysAhead,
+                                           @Value("${scheduler.partitions.retention-days:90}") int retentionDays,
+                                           @Value("${scheduler.partitions.retention-mode:drop}") String retentionMode) {
+        this.partitionRepository = partitionRepository;
+        this.archiver = archiver;
+        this.daysAhead = daysAhead;
+        this.retentionDays = retentionDays;
+        this.retentionMode = RetentionMode.valueOf(retentionMode.toUpperCase(Locale.ROOT));
+
+        this.createdCounter = meterRegistry.counter("partitions.created");
+        this.retiredCounter = meterRegistry.counter("partitions.retired", "mode", this.retentionMode.name().toLowerCase(Locale.ROOT));
+        this.failureCounter = meterRegistry.counter("partitions.failures");
+        meterRegistry.gauge("partitions.attached", attachedPartitions);
+    }
+
+    // Při startu jen zakládání (idempotentní, bez zámku) - nasazení po výpadku scheduleru nezačne psát do default partition.
+    // Nedostupnou DB jen zaloguje (zopakuje plánovaný běh); chyba samotného založení (např. přesun řádků
+    // z default partition) start zastaví - instance by jinak tiše plnila default partition.
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensurePartitionsOnStartup() {
+        ensureUpcomingPartitions(today())
+                .timeout(STARTUP_TIMEOUT)
+                .doOnNext(count -> log.info("Partitions transaction_audit připraveny na {} dní dopředu", daysAhead))
+                .onErrorResume(AuditWriteAheadLog::isDatabaseUnavailable, error -> {
+                    failureCounter.increment();
+                    log.error("Nepodařilo se založit partitions transaction_audit při startu - DB nedostupná", error);
+                    return Mono.empty();
+                })
+                .onErrorMap(error -> new IllegalStateException("Nepodařilo se založit partitions transaction_audit při startu", error))
+                .block();
+    }
+
+    // Čeká se na dokončení (block), aby ShedLock zámek platil po celou dobu DDL.
+    // lockAtMostFor pokrývá i export velkých partitions v režimu archive.
+    @Scheduled(cron = "${scheduler.partitions.cron:0 30 0 * * *}", zone = "UTC")
+    @SchedulerLock(name = "maintainTransactionPartitions", lockAtLeastFor = "15s", lockAtMostFor = "3h")
+    public void maintainPartitions() {
+        LocalDate today = today();
+        log.info("Spouštím údržbu partitions transaction_audit...");
+        ensureUpcomingPartitions(today)
+                .then(applyRetention(today))
+                .doOnNext(retired -> log.info("Údržba partitions dokončena. Odstraněno ({}): {}", retentionMode, retired))
+                .onErrorResume(error -> {
+                    failureCounter.increment();
+                    log.error("Chyba při údržbě partitions transaction_audit", error);
+                    return Mono.empty();
+                })
+                .block();
+    }
+
+    // Počet nově založených partitions - existující dny repository vrátí jako prázdné Mono
+    Mono<Long> ensureUpcomingPartitions(LocalDate today) {
+        return Flux.range(0, daysAhead + 1)
+                .map(today::plusDays)
+                .concatMap(partitionRepository::createPartition)
+                .doOnNext(name -> createdCounter.increment())
+                .count();
+    }
+
+    Mono<Long> applyRetention(LocalDate today) {
+        LocalDate boundary = today.minusDays(retentionDays);
+        return archiveLeftovers(boundary)
+                .then(retireExpired(boundary))
+                .flatMap(retired -> partitionRepository.deleteOrderKeysCreatedBefore(boundary.atStartOfDay(ZoneOffset.UTC).toInstant())
+                        .doOnNext(keys -> log.debug("Smazáno {} klíčů transaction_order_key před {}", keys, boundary))
+                        .thenReturn(retired));
+    }
+
+    private Mono<Long> retireExpired(LocalDate boundary) {
+        return partitionRepository.findAttachedPartitionDays()
+                .collectList()
+                .doOnNext(days -> attachedPartitions.set(days.size()))
+                .flatMapMany(Flux::fromIterable)
+                .filter(day -> day.isBefore(boundary))
+                // Postupně - každý DETACH/DROP bere krátký exkluzivní zámek na transaction_audit
+                .concatMap(day -> retire(day).thenReturn(day))
+                .count();
+    }
+
+    private Mono<Void> retire(LocalDate day) {
+        Mono<Void> detach = partitionRepository.detachPartition(day)
+                .doOnSuccess(v -> {
+                    retiredCounter.increment();
+                    attachedPartitions.decrementAndGet();
+                    log.info("Partition {} odpojena", TransactionPartitionRepository.partitionName(day));
+                });
+        return switch (retentionMode) {
+            case DROP -> detach.then(partitionRepository.dropPartition(day));
+            case DETACH -> detach;
+            case ARCHIVE -> detach.then(archiver.archiveDetachedPartition(day)).then();
+        };
+    }
+
+    // Archive: dříve odpojené partitions (přerušený běh, dřívější režim detach) a staré řádky z default partition
+    private Mono<Void> archiveLeftovers(LocalDate boundary) {
+        if (retentionMode != RetentionMode.ARCHIVE) {
+            return Mono.empty();
+        }
+        return partitionRepository.findDetachedPartitionDays()
+                .filter(day -> day.isBefore(boundary))
+                .concatMap(archiver::archiveDetachedPartition)
+                .then(archiver.archiveDefaultPartitionBefore(boundary))
+                .then();
+    }
+
+    private static LocalDate today() {
+        return LocalDate.now(ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,81 @@
+package krematos.scheduler;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import krematos.model.RollupDelta;
+import krematos.repository.TransactionRollupRepository;
+import krematos.stats.TransactionRollupCollector;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Periodicky přičte přírůstky z TransactionRollupCollector do transaction_rollup.
+ * Běží na každé instanci (bez ShedLock) - každá zapisuje jen své přírůstky a upsert je sčítá.
+ * Při chybě DB se přírůstky vrátí do collectoru a zapíšou se při dalším běhu (at-least-once -
+ * upsert, který v DB doběhl až po timeoutu, se přičte dvakrát).
+ */
+@Component
+@Slf4j
+public class TransactionRollupFlusher {
+
+    private final TransactionRollupCollector collector;
+    private final TransactionRollupRepository rollupRepository;
+    private final Duration flushTimeout;
+
+    private final Counter flushedRows;
+    private final Counter failedFlushes;
+
+    public TransactionRollupFlusher(TransactionRollupCollector collector,
+                                    TransactionRollupRepository rollupRepository,
+                                    MeterRegistry meterRegistry,
+                                    @Value("${rollup.flush-timeout:30s}") Duration flushTimeout) {
+        this.collector = collector;
+        this.rollupRepository = rollupRepository;
+        this.flushTimeout = flushTimeout;
+
+        this.flushedRows = meterRegistry.counter("rollup.flush.rows");
+        this.failedFlushes = meterRegistry.counter("rollup.flush.failures");
+        meterRegistry.gauge("rollup.pending.keys", collector, TransactionRollupCollector::pendingKeys);
+    }
+
+    @Scheduled(fixedDelayString = "${rollup.flush-interval:10s}")
+    public void flushPeriodically() {
+        flush()
+                .onErrorResume(error -> Mono.empty())
+                .block();
+    }
+
+    // Poslední přírůstky před vypnutím, jinak by se ztratily
+    @PreDestroy
+    public void flushOnShutdown() {
+        flushPeriodically();
+    }
+
+    Mono<Long> flush() {
+        return Mono.defer(() -> {
+            List<RollupDelta> deltas = collector.drain();
+            if (deltas.isEmpty()) {
+                return Mono.just(0L);
+            }
+            return rollupRepository.upsert(deltas)
+                    .timeout(flushTimeout)
+                    .doOnSuccess(rows -> {
+                        flushedRows.increment(deltas.size());
+                        log.debug("Rollup: zapsáno {} přírůstků", deltas.size());
+                    })
+                    .doOnError(error -> {
+                        // Po timeoutu mohl upsert v DB doběhnout - riziko dvojího přičtení je menší zlo než ztráta
+                        collector.restore(deltas);
+                        failedFlushes.increment();
+                        log.warn("Rollup: zápis {} přírůstků selhal, zkusí se znovu: {}", deltas.size(), error.getMessage());
+                    });
+        });
+    }
+}
@@ -0,0 +1,201 @@
+package krematos.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import krematos.exception.RateLimitException;
+import krematos.model.InternalRequest;
+import krematos.model.TransactionAudit;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.util.concurrent.Queues;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Asynchronní režim příjmu transakcí (202 Accepted).
+ * Request jen projde validací a zapíše PENDING audit, pak se zařadí do omezené fronty v paměti
+ * a volající hned dostane odpověď. Externí API volá pool workerů (flatMap s omezenou concurrency).
+ * - kapacita = čekající + rozpracované transakce; plná fronta = 429 s Retry-After ještě před zápisem auditu
+ * - při ukončení aplikace se fronta dokončí (drain-timeout)
+ * - nezačatá transakce ztracená při restartu nebo pádu zůstane PENDING s attempt_count = 0;
+ *   AcceptedTransactionSweeper ji po transaction.async.sweep.stale-after znovu zařadí (resubmit);
+ *   transakce, které na tomto uzlu ještě čekají ve frontě (queuedOrderIds), přeskočí
+ * - worker si řádek před voláním API zabere, takže ani dvakrát zařazená transakce neodejde dvakrát
+ */
+@Slf4j
+@Component
+public class AsyncTransactionQueue {
+
+    private final TransactionService transactionService;
+    private final int capacity;
+    private final int workers;
+    private final Duration drainTimeout;
+
+    private final Sinks.Many<AcceptedTransaction> queue;
+    private final AtomicInteger pending = new AtomicInteger();
+    // ID transakcí zařazených na tomto uzlu, dokud je worker nedokončí
+    private final Set<String> queuedOrderIds = ConcurrentHashMap.newKeySet();
+    private final CountDownLatch drained = new CountDownLatch(1);
+
+    private final Counter accepted;
+    private final Counter rejected;
+    private final Counter resubmitted;
+    private final Timer queueWait;
+
+    private Disposable pipeline;
+
+    public AsyncTransactionQueue(TransactionService transactionService,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${transaction.async.queue-capacity:1000}") int capacity,
+                                 @Value("${transaction.async.workers:32}") int workers,
+                                 @Value("${transaction.async.drain-timeout:10s}") Duration drainTimeout) {
+        this.transactionService = transactionService;
+        this.capacity = capacity;
+        this.workers = workers;
+        this.drainTimeout = drainTimeout;
+        this.queue = Sinks.many().unicast().onBackpressureBuffer(Queues.<AcceptedTransaction>get(capacity).get());
+
+        this.accepted = meterRegistry.counter("transaction.async.requests", "result", "accepted");
+        this.rejected = meterRegistry.counter("transaction.async.requests", "result", "rejected");
+        this.resubmitted = meterRegistry.counter("transaction.async.requests", "result", "resubmitted");
+        this.queueWait = Timer.builder("transaction.async.queue.wait")
+                .description("Doba od přijetí transakce po začátek zpracování workerem")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        meterRegistry.gauge("transaction.async.pending", pending);
+    }
+
+    @PostConstruct
+    void start() {
+        log.info("ASYNC: Fronta transakcí (kapacita={}, workers={})", capacity, workers);
+        pipeline = queue.asFlux()
+                .flatMap(this::execute, workers)
+                .subscribe(null,
+                        e -> {
+                            log.error("ASYNC: Zpracování fronty skončilo chybou: {}", e.getMessage());
+                            drained.countDown();
+                        },
+                        drained::countDown);
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        queue.tryEmitComplete();
+        if (!drained.await(drainTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+            log.warn("ASYNC: {} transakcí nedokončeno do {}, zůstávají PENDING pro AcceptedTransactionSweeper", pending.get(), drainTimeout);
+        }
+        if (pipeline != null) {
+            pipeline.dispose();
+        }
+    }
+
+    /**
+     * Přijme transakci: místo ve frontě se rezervuje před zápisem auditu, takže přijatá
+     * transakce vždy dostane worker. Vrací PENDING audit (internal_order_id = tracking ID).
+     */
+    public Mono<TransactionAudit> submit(InternalRequest request) {
+        return Mono.defer(() -> {
+            if (pending.incrementAndGet() > capacity) {
+                pending.decrementAndGet();
+                rejected.increment();
+                log.warn("ASYNC: Fronta je plná ({}), transakce {} odmítnuta", capacity, request.getInternalOrderId());
+                return Mono.error(new RateLimitException("Fronta asynchronního zpracování je plná", 1L));
+            }
+            AtomicBoolean enqueued = new AtomicBoolean();
+            return transactionService.accept(request)
+                    .doOnNext(audit -> {
+                        if (enqueue(request, audit)) {
+                            enqueued.set(true);
+                            accepted.increment();
+                        }
+                    })
+                    .doFinally(signal -> {
+                        // Validace, duplicita, chyba DB nebo zrušení - místo ve frontě se vrací
+                        if (!enqueued.get()) {
+                            pending.decrementAndGet();
+                        }
+                    });
+        });
+    }
+
+    /**
+     * Znovu zařadí přijatou transakci, kterou žádný worker nezačal zpracovávat (sweeper).
+     * Vrací false, pokud ve frontě není místo - transakce zůstane pro další běh sweeperu.
+     * Transakci, která už ve frontě tohoto uzlu čeká, znovu nezařadí (a místo jí nebere).
+     */
+    public boolean resubmit(TransactionAudit audit) {
+        if (isQueued(audit.getInternalOrderId())) {
+            return true;
+        }
+        if (pending.incrementAndGet() > capacity) {
+            pending.decrementAndGet();
+            return false;
+        }
+        InternalRequest request = new InternalRequest(audit.getInternalOrderId(), audit.getAmount(),
+                audit.getCurrency(), audit.getServiceType(), audit.getCreatedAt());
+        if (!enqueue(request, audit)) {
+            pending.decrementAndGet();
+            return false;
+        }
+        resubmitted.increment();
+        return true;
+    }
+
+    public int pending() {
+        return pending.get();
+    }
+
+    public boolean isQueued(String internalOrderId) {
+        return queuedOrderIds.contains(internalOrderId);
+    }
+
+    private boolean enqueue(InternalRequest request, TransactionAudit audit) {
+        // Přidává se před emitováním - worker může transakci dokončit dřív, než tryEmitNext vrátí
+        if (!queuedOrderIds.add(request.getInternalOrderId())) {
+            return false;
+        }
+        Sinks.EmitResult result;
+        synchronized (queue) { // unicast sink vyžaduje serializované emitování
+            result = queue.tryEmitNext(new AcceptedTransaction(request, audit, System.nanoTime()));
+        }
+        if (result.isFailure()) {
+            queuedOrderIds.remove(request.getInternalOrderId());
+            // Jen při ukončování aplikace - audit už je zapsaný, transakci převezme AcceptedTransactionSweeper
+            log.warn("ASYNC: Transakci {} nelze zařadit ({}), zůstává PENDING", request.getInternalOrderId(), result);
+            return false;
+        }
+        return true;
+    }
+
+    private Mono<Void> execute(AcceptedTransaction transaction) {
+        queueWait.record(System.nanoTime() - transaction.acceptedAt(), TimeUnit.NANOSECONDS);
+        return transactionService.processAccepted(transaction.request(), transaction.audit())
+                .doOnNext(response -> log.info("ASYNC: Transakce {} dokončena", transaction.request().getInternalOrderId()))
+                // Výsledek (i selhání s DLQ) je v auditu, volající ho zjistí přes status API
+                .onErrorResume(e -> {
+                    log.warn("ASYNC: Transakce {} selhala: {}", transaction.request().getInternalOrderId(), e.getMessage());
+                    return Mono.empty();
+                })
+                .doFinally(signal -> {
+                    queuedOrderIds.remove(transaction.request().getInternalOrderId());
+                    pending.decrementAndGet();
+                })
+                .then();
+    }
+
+    private record AcceptedTransaction(InternalRequest request, TransactionAudit audit, long acceptedAt) {
+    }
+}
@@ -0,0 +1,32 @@
+package krematos.service;
+
+import krematos.exception.ValidationException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Base64;
+
+/**
+ * Continuation token vyhledávání auditů: pozice (created_at, id) posledního vráceného řádku.
+ * Pro klienta neprůhledný řetězec (Base64URL), created_at v mikrosekundách jako v DB.
+ */
+record AuditCursor(Instant createdAt, long id) {
+
+    String encode() {
+        String raw = ChronoUnit.MICROS.between(Instant.EPOCH, createdAt) + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static AuditCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = raw.indexOf(':');
+            long micros = Long.parseLong(raw.substring(0, separator));
+            long id = Long.parseLong(raw.substring(separator + 1));
+            return new AuditCursor(Instant.EPOCH.plus(micros, ChronoUnit.MICROS), id);
+        } catch (RuntimeException e) {
+            throw new ValidationException("Neplatný continuation token", "after=" + token);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package krematos.service;
+
+import io.micrometer.core.instrument.Counter;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.util.concurrent.Queues;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Fronta v paměti, která položky z celé aplikace sbírá do dávek (RabbitMessagePublisher, TransactionAuditBatchLoader).
+ * - dávka = max. batchSize položek nebo batchWindow; zpracuje ji batchHandler, nejvýše maxConcurrentBatches najednou
+ * - bufferTimeout s férovým backpressure: když všechny sloty zpracovávají, okno počká na volný slot
+ *   místo OverflowException
+ * - pipeline skončená chybou se založí znovu nad novou frontou (unicast fronta nepřijme dalšího odběratele);
+ *   onFailure se zavolá po výměně fronty a před startem nové pipeline, aby vlastník dořešil osiřelé položky
+ */
+@Slf4j
+public class BatchingQueue<T> {
+
+    private final String name;
+    private final int batchSize;
+    private final Duration batchWindow;
+    private final int bufferSize;
+    private final int maxConcurrentBatches;
+    private final Counter restarts;
+    private final Function<List<T>, Mono<Void>> batchHandler;
+    private final Consumer<Throwable> onFailure;
+
+    private final Object emitLock = new Object();
+    private volatile Sinks.Many<T> queue;
+    private volatile Disposable pipeline;
+    private volatile boolean stopped;
+
+    public BatchingQueue(String name, int batchSize, Duration batchWindow, int bufferSize, int maxConcurrentBatches,
+                         Counter restarts, Function<List<T>, Mono<Void>> batchHandler, Consumer<Throwable> onFailure) {
+        this.name = name;
+        this.batchSize = batchSize;
+        this.batchWindow = batchWindow;
+        this.bufferSize = bufferSize;
+        this.maxConcurrentBatches = maxConcurrentBatches;
+        this.restarts = restarts;
+        this.batchHandler = batchHandler;
+        this.onFailure = onFailure;
+        this.queue = newQueue();
+    }
+
+    public void start() {
+        Sinks.Many<T> current = queue;
+        pipeline = current.asFlux()
+                // true = férový backpressure, okno nevyprodukuje dávku, kterou flatMap nemá kam přijmout
+                .bufferTimeout(batchSize, batchWindow, true)
+                .flatMap(batchHandler, maxConcurrentBatches)
+                .subscribe(null, e -> recover(current, e));
+    }
+
+    public void stop() {
+        stopped = true;
+        queue.tryEmitComplete();
+        if (pipeline != null) {
+            pipeline.dispose();
+        }
+    }
+
+    /**
+     * Zařadí položku do fronty. Selhání (plná nebo ukončená fronta) řeší volající.
+     */
+    public Sinks.EmitResult emit(T item) {
+        synchronized (emitLock) { // unicast sink vyžaduje serializované emitování
+            return queue.tryEmitNext(item);
+        }
+    }
+
+    private void recover(Sinks.Many<T> failedQueue, Throwable error) {
+        log.error("Pipeline {} selhala, zakládám novou: {}", name, error.toString());
+        restarts.increment();
+        synchronized (emitLock) {
+            if (queue == failedQueue) {
+                queue = newQueue();
+            }
+        }
+        onFailure.accept(error);
+        if (!stopped) {
+            start();
+        }
+    }
+
+    private Sinks.Many<T> newQueue() {
+        return Sinks.many().unicast().onBackpressureBuffer(Queues.<T>get(bufferSize).get());
+    }
+}
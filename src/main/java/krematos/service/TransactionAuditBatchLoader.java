@@ -0,0 +1,116 @@
+package krematos.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import krematos.model.TransactionAudit;
+import krematos.repository.TransactionRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Dávkové načítání auditů podle internal_order_id pro retry konzument.
+ * Při přehrávání velké DLQ běží desítky pokusů souběžně - místo dotazu na každou zprávu se ID
+ * sbírají do dávky (max. batch-size nebo batch-window) a načtou jediným
+ * WHERE internal_order_id = ANY(:ids). Plná fronta = přímý dotaz pro jedno ID.
+ * Dávky tvoří BatchingQueue (okno počká, dokud běží max-concurrent-batches dotazů).
+ * Dotaz bez výsledku do lookup timeoutu přejde na přímý dotaz; spadlá pipeline se založí znovu
+ * a čekající dotazy ze staré fronty dořeší timeout.
+ */
+@Slf4j
+@Component
+public class TransactionAuditBatchLoader {
+
+    private final TransactionRepository transactionRepository;
+    private final Duration lookupTimeout;
+
+    private final BatchingQueue<PendingLookup> queue;
+    private final DistributionSummary batchSizeSummary;
+    private final Counter fallbacks;
+
+    public TransactionAuditBatchLoader(TransactionRepository transactionRepository,
+                                       MeterRegistry meterRegistry,
+                                       @Value("${messaging.retry.lookup.batch-size:100}") int batchSize,
+                                       @Value("${messaging.retry.lookup.batch-window-ms:10}") long batchWindowMs,
+                                       @Value("${messaging.retry.lookup.buffer-size:10000}") int bufferSize,
+                                       @Value("${messaging.retry.lookup.max-concurrent-batches:2}") int maxConcurrentBatches,
+                                       @Value("${messaging.retry.lookup.timeout:2s}") Duration lookupTimeout) {
+        this.transactionRepository = transactionRepository;
+        this.lookupTimeout = lookupTimeout;
+        this.batchSizeSummary = DistributionSummary.builder("retry.status.lookup.batch.size")
+                .description("Počet ID v jednom dávkovém dotazu na stav transakcí")
+                .register(meterRegistry);
+        this.fallbacks = meterRegistry.counter("retry.status.lookup.fallbacks");
+        this.queue = new BatchingQueue<>("dávkového načítání", batchSize, Duration.ofMillis(batchWindowMs), bufferSize,
+                maxConcurrentBatches, meterRegistry.counter("retry.status.lookup.pipeline.restarts"),
+                this::loadBatch, error -> { });
+    }
+
+    @PostConstruct
+    void start() {
+        queue.start();
+    }
+
+    @PreDestroy
+    void stop() {
+        queue.stop();
+    }
+
+    /**
+     * Audit transakce, nebo prázdné Mono, pokud v DB není.
+     */
+    public Mono<TransactionAudit> load(String internalOrderId) {
+        return Mono.defer(() -> {
+            PendingLookup lookup = new PendingLookup(internalOrderId, Sinks.one());
+            Sinks.EmitResult result = queue.emit(lookup);
+            if (result.isFailure()) {
+                log.debug("Fronta dávkového načítání nepřijala {} ({}), čtu přímo", internalOrderId, result);
+                return transactionRepository.findByInternalOrderId(internalOrderId);
+            }
+            return lookup.result().asMono()
+                    .timeout(lookupTimeout, Mono.defer(() -> {
+                        log.warn("Dávkové načtení {} nedoběhlo do {}, čtu přímo", internalOrderId, lookupTimeout);
+                        fallbacks.increment();
+                        return transactionRepository.findByInternalOrderId(internalOrderId).map(Optional::of);
+                    }))
+                    .flatMap(Mono::justOrEmpty);
+        });
+    }
+
+    private Mono<Void> loadBatch(List<PendingLookup> batch) {
+        batchSizeSummary.record(batch.size());
+        String[] ids = batch.stream().map(PendingLookup::internalOrderId).distinct().toArray(String[]::new);
+
+        return transactionRepository.findAllByInternalOrderIds(ids)
+                .collectMap(TransactionAudit::getInternalOrderId)
+                .doOnNext(found -> {
+                    // Každý čekající dostane vlastní kopii - TransactionService audit mění
+                    for (PendingLookup lookup : batch) {
+                        TransactionAudit audit = found.get(lookup.internalOrderId());
+                        lookup.result().tryEmitValue(Optional.ofNullable(audit).map(TransactionAuditBatchLoader::copy));
+                    }
+                })
+                .onErrorResume(e -> {
+                    log.warn("Dávkové načtení {} auditů selhalo: {}", ids.length, e.getMessage());
+                    batch.forEach(lookup -> lookup.result().tryEmitError(e));
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    private static TransactionAudit copy(TransactionAudit audit) {
+        return audit.toBuilder().build();
+    }
+
+    private record PendingLookup(String internalOrderId, Sinks.One<Optional<TransactionAudit>> result) {
+    }
+}
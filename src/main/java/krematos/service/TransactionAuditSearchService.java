@@ -0,0 +1,75 @@
+package krematos.service;
+
+import krematos.exception.ValidationException;
+import krematos.model.AuditSearchCriteria;
+import krematos.model.AuditSearchResult;
+import krematos.model.TransactionAudit;
+import krematos.repository.TransactionAuditSearchRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+
+import java.time.Instant;
+
+/**
+ * Vyhledávání auditů pro podporu (např. všechny FAILED za období).
+ * Výsledek je Flux streamovaný přímo z DB kurzoru - nic se neskládá do seznamu,
+ * rychlost čtení řídí odběratel (backpressure až k fetchSize kurzoru).
+ */
+@Service
+@Slf4j
+public class TransactionAuditSearchService {
+
+        private final TransactionAuditSearchRepository searchRepository;
+        private final int defaultLimit;
+        private final int maxLimit;
+        private final int fetchSize;
+
+        public TransactionAuditSearchService(TransactionAuditSearchRepository searchRepository,
+                                             @Value("${audit.search.default-limit:1000}") int defaultLimit,
+                                             @Value("${audit.search.max-limit:100000}") int maxLimit,
+                                             @Value("${audit.search.fetch-size:500}") int fetchSize) {
+                this.searchRepository = searchRepository;
+                this.defaultLimit = defaultLimit;
+                this.maxLimit = maxLimit;
+                this.fetchSize = fetchSize;
+        }
+
+        public Flux<AuditSearchResult> search(String status, String currency, String serviceType,
+                                              Instant createdFrom, Instant createdTo,
+                                              Integer limit, String after) {
+                return Flux.defer(() -> {
+                        int effectiveLimit = limit == null ? defaultLimit : limit;
+                        if (effectiveLimit < 1 || effectiveLimit > maxLimit) {
+                                return Flux.error(new ValidationException("Neplatný limit",
+                                                String.format("limit musí být 1 - %d", maxLimit)));
+                        }
+                        if (createdFrom != null && createdTo != null && !createdFrom.isBefore(createdTo)) {
+                                return Flux.error(new ValidationException("createdFrom musí být před createdTo"));
+                        }
+                        AuditCursor cursor = after == null ? null : AuditCursor.decode(after);
+                        AuditSearchCriteria criteria = new AuditSearchCriteria(status, currency, serviceType,
+                                        createdFrom, createdTo,
+                                        cursor == null ? null : cursor.createdAt(),
+                                        cursor == null ? null : cursor.id());
+                        log.debug("Vyhledávání auditů: {} (limit {})", criteria, effectiveLimit);
+                        return searchRepository.search(criteria, effectiveLimit, Math.min(fetchSize, effectiveLimit))
+                                        .map(this::toResult);
+                });
+        }
+
+        private AuditSearchResult toResult(TransactionAudit audit) {
+                return AuditSearchResult.builder()
+                                .internalOrderId(audit.getInternalOrderId())
+                                .amount(audit.getAmount())
+                                .currency(audit.getCurrency())
+                                .serviceType(audit.getServiceType())
+                                .status(audit.getStatus())
+                                .details(audit.getDetails())
+                                .createdAt(audit.getCreatedAt())
+                                .updatedAt(audit.getUpdatedAt())
+                                .cursor(new AuditCursor(audit.getCreatedAt(), audit.getId()).encode())
+                                .build();
+        }
+}
@@ -0,0 +1,47 @@
+package krematos.service;
+
+import krematos.exception.ValidationException;
+import krematos.model.ReportGranularity;
+import krematos.model.TransactionReportRow;
+import krematos.repository.TransactionRollupRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Historický reporting počtů a částek transakcí - čte jen minutové rollupy, nikdy transaction_audit.
+ * Data jsou zpožděná o interval flushe (rollup.flush-interval), probíhající minuta je neúplná.
+ */
+@Service
+@Slf4j
+public class TransactionReportService {
+
+        private final TransactionRollupRepository rollupRepository;
+        private final long maxPeriods;
+
+        public TransactionReportService(TransactionRollupRepository rollupRepository,
+                                        @Value("${report.max-periods:10000}") long maxPeriods) {
+                this.rollupRepository = rollupRepository;
+                this.maxPeriods = maxPeriods;
+        }
+
+        public Flux<TransactionReportRow> report(Instant from, Instant to, ReportGranularity granularity) {
+                return Flux.defer(() -> {
+                        if (!from.isBefore(to)) {
+                                return Flux.error(new ValidationException("from musí být před to"));
+                        }
+                        // Strop počtu období drží velikost odpovědi i čtení z rollupu v mezích
+                        long periods = Duration.between(from, to).dividedBy(granularity.period());
+                        if (periods > maxPeriods) {
+                                return Flux.error(new ValidationException("Příliš dlouhé období pro zvolenou granularitu",
+                                                String.format("max. %d období, zvolte hrubší granularitu", maxPeriods)));
+                        }
+                        log.debug("Report transakcí {} - {} po {}", from, to, granularity);
+                        return rollupRepository.report(from, to, granularity.truncUnit());
+                });
+        }
+}
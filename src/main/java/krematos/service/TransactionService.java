@@ -1,24 +1,41 @@
 package krematos.service;
 
+import krematos.exception.DuplicateTransactionException;
 import krematos.exception.ExternalServiceException;
+import krematos.exception.PaymentOutcomeUnknownException;
 import krematos.exception.ValidationException;
 import krematos.connector.ExternalSystemConnector;
+import krematos.connector.PaymentConnector;
+import krematos.connector.PaymentConnectorRegistry;
 import krematos.model.*;
 import krematos.repository.TransactionRepository;
+import krematos.spool.AuditWriteAheadLog;
+import krematos.stats.TransactionRollupCollector;
+import krematos.stats.TransactionStatsAggregator;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
 import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Optional;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class TransactionService {
 
-        private final ExternalSystemConnector externalSystemConnector;
+        private final PaymentConnectorRegistry connectorRegistry;
         private final TransactionRepository transactionRepository;
+        private final TransactionStatusCache statusCache;
+        private final TransactionStatsAggregator statsAggregator;
+        private final TransactionRollupCollector rollupCollector;
+        private final AuditWriteAheadLog auditWal;
+        private final TransactionAuditBatchLoader auditLoader;
 
         /**
          * Hlavní "Orchestrátor".
@@ -26,17 +43,66 @@ public class TransactionService {
          * rozložen do kroků pro lepší srozumitelnost a údržbu.
          */
         public Mono<InternalResponse> process(InternalRequest request) {
+                return process(request, true);
+        }
+
+        /**
+         * Zpracování zprávy z retry fronty.
+         * Na rozdíl od process() neukládá při selhání požadavek znovu do DLQ -
+         * o dalším pokusu rozhoduje konzument (zpožďovací fronty).
+         */
+        public Mono<InternalResponse> processRetry(InternalRequest request) {
+                return process(request, false);
+        }
+
+        /**
+         * Asynchronní příjem (202): jen validace a PENDING audit s attempt_count = 0 (zatím bez pokusu).
+         * Externí volání provede později worker přes processAccepted() - volající nedrží spojení
+         * po dobu latence externího API.
+         */
+        public Mono<TransactionAudit> accept(InternalRequest request) {
+                log.info("--- PŘIJATA TRANSAKCE (async): {} ---", request.getInternalOrderId());
+                return validateRequest(request).flatMap(valid -> createPendingAudit(valid, 0));
+        }
+
+        /**
+         * Dokončení transakce přijaté přes accept(): volání externího API a výsledek do auditu.
+         * Pokus si nejdřív zabere řádek (attempt_count 0 -> 1); transakci znovu zařazenou sweeperem
+         * tak externí API dostane jen jednou - prázdné Mono = zpracovává ji jiný worker nebo uzel.
+         * Při selhání jde požadavek do DLQ stejně jako u synchronního process().
+         */
+        public Mono<InternalResponse> processAccepted(InternalRequest request, TransactionAudit audit) {
+                // PENDING ve WAL (DB nedostupná) nemá v DB řádek, sweeper ho nevidí - není o co soutěžit
+                Mono<Boolean> claimed = audit.getId() == null ? Mono.just(true)
+                                : transactionRepository.claimAcceptedAttempt(audit.getId(), audit.getCreatedAt())
+                                                .map(rows -> rows > 0);
+                return claimed.flatMap(won -> {
+                        if (!won) {
+                                log.info("Transakce {} už je zpracovávána jiným workerem", request.getInternalOrderId());
+                                return Mono.<InternalResponse>empty();
+                        }
+                        audit.setAttemptCount(1);
+                        return execute(request, audit, true);
+                });
+        }
+
+        private Mono<InternalResponse> process(InternalRequest request, boolean deadLetterOnFailure) {
                 log.info("--- ZAČÁTEK TRANSAKCE: {} ---", request.getInternalOrderId());
 
                 return validateRequest(request) // Krok 1: Audit (PENDING)
-                                .flatMap(this::createPendingAudit) // Krok 1: Vytvoření záznamu v DB
-                                .flatMap(audit -> timedExternalCall(request) // Krok 2: Měření latence externího API
-                                                .switchIfEmpty(Mono.error(new ExternalServiceException(
-                                                                "Prázdná odpověď od externího systému",
-                                                                "External API", request.getInternalOrderId()))) // switchIfEmpty pro prázdnou odpověď
-                                                .flatMap(response -> handleSuccess(audit, response, request)) // Úspěch
-                                                .onErrorResume(error -> handleFailure(audit, error)) //  Chyba
-                                );
+                                .flatMap(deadLetterOnFailure ? this::createPendingAudit : this::reusePendingAudit) // Krok 1: Vytvoření záznamu v DB
+                                .flatMap(audit -> isCompleted(audit)
+                                                ? Mono.just(alreadyCompleted(audit)) // Retry už dokončené transakce - bez volání API
+                                                : execute(request, audit, deadLetterOnFailure));
+        }
+
+        private Mono<InternalResponse> execute(InternalRequest request, TransactionAudit audit, boolean deadLetterOnFailure) {
+                return timedExternalCall(request, deadLetterOnFailure) // Krok 2: Měření latence externího API
+                                .switchIfEmpty(Mono.error(new ExternalServiceException(
+                                                "Prázdná odpověď od externího systému",
+                                                "External API", request.getInternalOrderId()))) // switchIfEmpty pro prázdnou odpověď
+                                .flatMap(response -> handleSuccess(audit, response, request)) // Úspěch
+                                .onErrorResume(error -> handleFailure(audit, error)); //  Chyba
         }
 
         /**
@@ -62,24 +128,108 @@ public class TransactionService {
 
         // ---  Vytvoření záznamu v DB ---
         private Mono<TransactionAudit> createPendingAudit(InternalRequest request) {
+                return createPendingAudit(request, 1);
+        }
+
+        private Mono<TransactionAudit> createPendingAudit(InternalRequest request, int attemptCount) {
                 TransactionAudit audit = TransactionAudit.builder()
                                 .internalOrderId(request.getInternalOrderId())
                                 .amount(request.getAmount())
                                 .currency(request.getCurrencyCode())
                                 .serviceType(request.getServiceType())
                                 .status(AuditStatus.PENDING.name())
-                                .createdAt(Instant.now())
+                                .attemptCount(attemptCount)
+                                // Postgres ukládá mikrosekundy - stejná hodnota pak trefí řádek v UPDATE podle (id, created_at)
+                                .createdAt(Instant.now().truncatedTo(ChronoUnit.MICROS))
                                 .build();
 
                 return transactionRepository.save(audit)
-                                .doOnSuccess(a -> log.debug("Audit uložen: PENDING (ID: {})", a.getId()));
+                                .doOnSuccess(a -> log.debug("Audit uložen: PENDING (ID: {})", a.getId()))
+                                // internal_order_id je unikátní - opakované odeslání téže objednávky = 409
+                                .onErrorMap(DuplicateKeyException.class, e -> new DuplicateTransactionException(
+                                                "Transakce s tímto ID již byla přijata",
+                                                request.getInternalOrderId(), e))
+                                // Degradovaný režim: DB nedostupná -> PENDING do lokálního WAL, request pokračuje
+                                .onErrorResume(auditWal::canAbsorb, e -> writeAheadPending(audit, e));
+        }
+
+        // Bez DB hlídá duplicitu objednávky WAL (jen na tomto uzlu) - ještě před voláním externího API
+        private Mono<TransactionAudit> writeAheadPending(TransactionAudit audit, Throwable dbError) {
+                if (!auditWal.reserve(audit.getInternalOrderId())) {
+                        return Mono.error(new DuplicateTransactionException("Transakce s tímto ID již byla přijata",
+                                        audit.getInternalOrderId(), null));
+                }
+                return writeAhead(audit, dbError)
+                                .doOnError(e -> auditWal.release(audit.getInternalOrderId()));
+        }
+
+        /**
+         * Retry: naváže na existující záznam místo zakládání nového (internal_order_id je unikátní)
+         * a zvýší čítač pokusů. Transakce dokončená mezitím (SUCCESS) se vrací beze změny a externí API
+         * se znovu nevolá - nejdřív podle near-cache, jinak podle dávkově načteného auditu.
+         */
+        private Mono<TransactionAudit> reusePendingAudit(InternalRequest request) {
+                String orderId = request.getInternalOrderId();
+                Optional<TransactionStatusCache.Entry> cached = statusCache.get(orderId)
+                                .filter(entry -> AuditStatus.SUCCESS.name().equals(entry.status().getStatus()));
+                if (cached.isPresent()) {
+                        return Mono.just(fromStatus(cached.get().status()));
+                }
+                return auditLoader.load(orderId)
+                                .flatMap(audit -> isCompleted(audit) ? Mono.just(audit) : startRetryAttempt(audit))
+                                .switchIfEmpty(Mono.defer(() -> createPendingAudit(request)));
+        }
+
+        private Mono<TransactionAudit> startRetryAttempt(TransactionAudit audit) {
+                Instant now = Instant.now().truncatedTo(ChronoUnit.MICROS);
+                return transactionRepository.startRetryAttempt(audit.getId(), audit.getCreatedAt(), now)
+                                .map(attempts -> {
+                                        audit.setStatus(AuditStatus.PENDING.name());
+                                        audit.setUpdatedAt(now);
+                                        audit.setAttemptCount(attempts);
+                                        statusCache.put(audit);
+                                        log.debug("Audit znovu použit pro retry: PENDING (ID: {}, pokus {})", audit.getId(), attempts);
+                                        return audit;
+                                })
+                                // Žádný řádek = mezitím dokončeno jinou cestou -> aktuální stav z DB
+                                .switchIfEmpty(Mono.defer(() -> transactionRepository.findByInternalOrderId(audit.getInternalOrderId())));
+        }
+
+        private static boolean isCompleted(TransactionAudit audit) {
+                return AuditStatus.SUCCESS.name().equals(audit.getStatus());
+        }
+
+        // Retry dokončené transakce = úspěch bez volání API, bez zápisu a bez započtení do statistik
+        private InternalResponse alreadyCompleted(TransactionAudit audit) {
+                log.info("Transakce {} už je dokončená ({}), retry bez volání externího API",
+                                audit.getInternalOrderId(), audit.getDetails());
+                return new InternalResponse(true, "OK: již zpracováno", audit.getInternalOrderId());
+        }
+
+        private static TransactionAudit fromStatus(TransactionStatusResponse status) {
+                return TransactionAudit.builder()
+                                .internalOrderId(status.getInternalOrderId())
+                                .status(status.getStatus())
+                                .details(status.getDetails())
+                                .createdAt(status.getCreatedAt())
+                                .updatedAt(status.getUpdatedAt())
+                                .attemptCount(status.getAttemptCount())
+                                .build();
         }
 
         // ---  Měření latence externího volání
-        private Mono<ExternalApiResponse> timedExternalCall(InternalRequest request) {
+        private Mono<ExternalApiResponse> timedExternalCall(InternalRequest request, boolean deadLetterOnFailure) {
                 ExternalApiRequest externalRequest = mapToExternal(request);
+                // Konektor podle typu služby a měny (connectors.routes), jinak výchozí external.api
+                PaymentConnector connector = connectorRegistry.resolve(request.getServiceType(), request.getCurrencyCode());
                 Instant startTime = Instant.now();
-                return externalSystemConnector.sendRequest(externalRequest)
+                Mono<ExternalApiResponse> call = deadLetterOnFailure
+                                ? connector.sendRequest(externalRequest)
+                                : connector.sendRequestWithoutFallback(externalRequest);
+                return call
+                                // Typ služby pro volbu prioritního pruhu při odložení do DLQ
+                                .contextWrite(ctx -> request.getServiceType() == null ? ctx
+                                                : ctx.put(ExternalSystemConnector.SERVICE_TYPE_CONTEXT_KEY, request.getServiceType()))
                                 .doOnSuccess(resp -> log.info("Externí volání dokončeno za {} ms",
                                                 Instant.now().toEpochMilli() - startTime.toEpochMilli()))
                                 .doOnError(error -> log.error("Chyba při externím volání po {} ms: {}",
@@ -91,24 +241,75 @@ public class TransactionService {
         private Mono<InternalResponse> handleSuccess(TransactionAudit audit, ExternalApiResponse response, InternalRequest request) {
                 audit.setStatus(AuditStatus.SUCCESS.name());
                 audit.setDetails("Potvrzeno ID: " + response.getConfirmationId());
-                audit.setUpdatedAt(Instant.now());
+                audit.setUpdatedAt(Instant.now().truncatedTo(ChronoUnit.MICROS));
 
-                return transactionRepository.save(audit)
-                                .doOnSuccess(a -> log.info("Audit aktualizován: SUCCESS"))
+                return updateAudit(audit)
+                                .doOnSuccess(a -> {
+                                        log.info("Audit aktualizován: SUCCESS");
+                                        recordOutcome(a);
+                                })
                                 .map(saved -> mapToInternal(response, request.getInternalOrderId()));
         }
 
         // ---  Zpracování chyby ---
+        // Bez odpovědi do timeoutu je výsledek neznámý - UNCERTAIN rescuer neodesílá do DLQ
         private Mono<InternalResponse> handleFailure(TransactionAudit audit, Throwable error) {
-                audit.setStatus(AuditStatus.FAILED.name());
+                audit.setStatus(error instanceof PaymentOutcomeUnknownException
+                                ? AuditStatus.UNCERTAIN.name() : AuditStatus.FAILED.name());
                 audit.setDetails(error.getMessage());
-                audit.setUpdatedAt(Instant.now());
+                audit.setUpdatedAt(Instant.now().truncatedTo(ChronoUnit.MICROS));
 
-                return transactionRepository.save(audit)
-                                .doOnSuccess(a -> log.error("Audit aktualizován: FAILED ({})", error.getMessage()))
+                return updateAudit(audit)
+                                .doOnSuccess(a -> {
+                                        log.error("Audit aktualizován: {} ({})", a.getStatus(), error.getMessage());
+                                        recordOutcome(a);
+                                })
                                 .then(Mono.error(error));
         }
 
+        // Konečný stav pro statistiky v paměti (actuator) a minutové rollupy pro reporting
+        private void recordOutcome(TransactionAudit audit) {
+                statsAggregator.record(audit);
+                rollupCollector.record(audit);
+        }
+
+        // UPDATE podle (id, created_at) - save() by hledal řádek jen podle id ve všech partitions
+        private Mono<TransactionAudit> updateAudit(TransactionAudit audit) {
+                // PENDING skončil ve WAL (řádek v DB zatím není) - výsledek musí jít za ním, replayer je sloučí
+                Mono<TransactionAudit> update = audit.getId() == null && auditWal.isEnabled()
+                                ? writeAhead(audit, null)
+                                : transactionRepository.updateOutcome(audit.getId(), audit.getCreatedAt(), audit.getStatus(),
+                                                                audit.getDetails(), audit.getUpdatedAt())
+                                                .doOnNext(rows -> {
+                                                        if (rows == 0) {
+                                                                log.warn("Audit {} nenalezen při aktualizaci na {}", audit.getId(), audit.getStatus());
+                                                        }
+                                                })
+                                                .thenReturn(audit)
+                                                .onErrorResume(auditWal::canAbsorb, e -> writeAhead(audit, e));
+                // Status API vrátí konečný stav z near-cache bez dotazu do DB; PENDING (retry) ji zneplatní
+                return update.doOnSuccess(statusCache::put);
+        }
+
+        // Snímek auditu do lokálního WAL; plný WAL = původní chyba DB (nebo výpadek) jde dál k volajícímu.
+        // Mimo event loop - zápis může založit nový segment a ve fsync=always čeká na disk.
+        private Mono<TransactionAudit> writeAhead(TransactionAudit audit, Throwable dbError) {
+                return Mono.fromCallable(() -> auditWal.append(audit))
+                                .subscribeOn(Schedulers.boundedElastic())
+                                .flatMap(stored -> {
+                                        if (!stored) {
+                                                return Mono.error(dbError != null ? dbError
+                                                                : new DataAccessResourceFailureException(
+                                                                                "Audit WAL je plný, výsledek transakce nelze uložit"));
+                                        }
+                                        if (dbError != null) {
+                                                log.warn("DB nedostupná ({}), audit {} ({}) uložen do WAL",
+                                                                dbError.getMessage(), audit.getInternalOrderId(), audit.getStatus());
+                                        }
+                                        return Mono.just(audit);
+                                });
+        }
+
         // --- Mappery (pomocné metody) ---
 
         private ExternalApiRequest mapToExternal(InternalRequest internal) {
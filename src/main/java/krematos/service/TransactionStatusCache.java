@@ -0,0 +1,83 @@
+package krematos.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import krematos.model.AuditStatus;
+import krematos.model.TransactionAudit;
+import krematos.model.TransactionStatusResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Optional;
+
+/**
+ * Lokální near-cache stavů transakcí pro status API (omezená velikostí i TTL).
+ * Plní ji TransactionService po dokončení transakce a čtení z DB; drží jen konečné stavy
+ * (SUCCESS / FAILED), PENDING se vždy čte z DB. Ostatní instance se o změně nedozví -
+ * TTL proto určuje, jak dlouho může být stav na jiném uzlu zastaralý (retry FAILED -> PENDING).
+ */
+@Component
+public class TransactionStatusCache {
+
+    private final Cache<String, Entry> cache;
+    // Lokální signál "transakce doběhla" pro sledování výsledku (SSE); best effort - zmeškaný signál dožene polling
+    private final Sinks.Many<String> completions = Sinks.many().multicast().directBestEffort();
+
+    // Původní klíče status-cache.* (před přesunem pod status.*) platí dál jako zastaralý alias
+    public TransactionStatusCache(MeterRegistry meterRegistry,
+                                  @Value("${status.cache.max-size:${status-cache.max-size:10000}}") long maxSize,
+                                  @Value("${status.cache.ttl:${status-cache.ttl:30s}}") Duration ttl) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "transaction.status");
+    }
+
+    public Optional<Entry> get(String internalOrderId) {
+        return Optional.ofNullable(cache.getIfPresent(internalOrderId));
+    }
+
+    // Vrací položku i pro PENDING (kvůli ETag), uloží ale jen konečný stav
+    public Entry put(TransactionAudit audit) {
+        Entry entry = new Entry(TransactionStatusResponse.from(audit), etag(audit));
+        if (isFinal(audit.getStatus())) {
+            cache.put(audit.getInternalOrderId(), entry);
+            completions.tryEmitNext(audit.getInternalOrderId());
+        } else {
+            cache.invalidate(audit.getInternalOrderId());
+        }
+        return entry;
+    }
+
+    // ID transakcí, které na tomto uzlu právě dosáhly konečného stavu
+    public Flux<String> completions() {
+        return completions.asFlux();
+    }
+
+    public void invalidate(String internalOrderId) {
+        cache.invalidate(internalOrderId);
+    }
+
+    static boolean isFinal(String status) {
+        return AuditStatus.SUCCESS.name().equals(status) || AuditStatus.FAILED.name().equals(status);
+    }
+
+    // Verze záznamu = stav + čas poslední změny; změní se při každém UPDATE výsledku
+    private static String etag(TransactionAudit audit) {
+        Instant version = audit.getUpdatedAt() != null ? audit.getUpdatedAt() : audit.getCreatedAt();
+        long micros = version == null ? 0 : ChronoUnit.MICROS.between(Instant.EPOCH, version);
+        return "\"" + audit.getStatus() + "-" + Long.toString(micros, 36) + "\"";
+    }
+
+    public record Entry(TransactionStatusResponse status, String etag) {
+    }
+}
@@ -0,0 +1,121 @@
+package krematos.service;
+
+import krematos.exception.ResourceNotFoundException;
+import krematos.exception.ValidationException;
+import krematos.model.AuditStatus;
+import krematos.model.BulkStatusResponse;
+import krematos.repository.TransactionRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Dotazy na stav transakcí pro volající, kteří po timeoutu zjišťují výsledek místo opakovaného odeslání.
+ * Konečné stavy se vrací z near-cache bez dotazu do DB.
+ */
+@Service
+@Slf4j
+public class TransactionStatusService {
+
+        private final TransactionRepository transactionRepository;
+        private final TransactionStatusCache statusCache;
+        private final int maxBulkIds;
+        private final Duration watchInterval;
+        private final Duration watchTimeout;
+
+        public TransactionStatusService(TransactionRepository transactionRepository,
+                                        TransactionStatusCache statusCache,
+                                        @Value("${status.bulk.max-ids:1000}") int maxBulkIds,
+                                        @Value("${status.watch.interval:1s}") Duration watchInterval,
+                                        @Value("${status.watch.timeout:5m}") Duration watchTimeout) {
+                this.transactionRepository = transactionRepository;
+                this.statusCache = statusCache;
+                this.maxBulkIds = maxBulkIds;
+                this.watchInterval = watchInterval;
+                this.watchTimeout = watchTimeout;
+        }
+
+        public Mono<TransactionStatusCache.Entry> findStatus(String internalOrderId) {
+                return Mono.justOrEmpty(statusCache.get(internalOrderId))
+                                .switchIfEmpty(Mono.defer(() -> transactionRepository.findByInternalOrderId(internalOrderId)
+                                                .map(statusCache::put)))
+                                .switchIfEmpty(Mono.error(() -> new ResourceNotFoundException("Transakce", internalOrderId)));
+        }
+
+        /**
+         * Sledování výsledku (SSE pro asynchronní příjem): aktuální stav a pak každá změna, dokud transakce
+         * nedosáhne konečného stavu nebo nevyprší status.watch.timeout. Stav se znovu čte po dokončení
+         * transakce na tomto uzlu, jinak jednou za status.watch.interval (transakci mohl dokončit jiný uzel).
+         */
+        public Flux<TransactionStatusCache.Entry> watchStatus(String internalOrderId) {
+                Flux<String> wakeUps = Flux.merge(
+                                                Flux.interval(watchInterval).map(tick -> internalOrderId),
+                                                statusCache.completions().filter(internalOrderId::equals))
+                                .onBackpressureDrop();
+                return findStatus(internalOrderId)
+                                .concatWith(wakeUps.concatMap(this::findStatus))
+                                .distinctUntilChanged(TransactionStatusCache.Entry::etag)
+                                // UNCERTAIN se mění až rekonciliací, sledování by jen čekalo na timeout
+                                .takeUntil(entry -> TransactionStatusCache.isFinal(entry.status().getStatus())
+                                                || AuditStatus.UNCERTAIN.name().equals(entry.status().getStatus()))
+                                .take(watchTimeout);
+        }
+
+        /**
+         * Hromadné zjištění stavu (rekonciliace). Co je v near-cache, se nečte z DB;
+         * zbytek se načte jediným dotazem WHERE internal_order_id = ANY(:ids).
+         */
+        public Mono<BulkStatusResponse> findStatuses(List<String> internalOrderIds) {
+                Set<String> ids = new LinkedHashSet<>(internalOrderIds);
+                if (ids.size() > maxBulkIds) {
+                        return Mono.error(new ValidationException("Příliš mnoho ID v jednom dotazu",
+                                        String.format("Požadováno %d, maximum je %d", ids.size(), maxBulkIds)));
+                }
+
+                Map<String, String> statuses = new LinkedHashMap<>();
+                List<String> misses = new ArrayList<>();
+                for (String id : ids) {
+                        statusCache.get(id).ifPresentOrElse(
+                                        entry -> statuses.put(id, entry.status().getStatus()),
+                                        () -> misses.add(id));
+                }
+                if (misses.isEmpty()) {
+                        return Mono.just(toResponse(ids, statuses));
+                }
+
+                return transactionRepository.findAllByInternalOrderIds(misses.toArray(String[]::new))
+                                .map(statusCache::put)
+                                .collectMap(entry -> entry.status().getInternalOrderId(), entry -> entry.status().getStatus())
+                                .map(found -> {
+                                        log.debug("Hromadný stav: {} ID, z cache {}, z DB {}", ids.size(),
+                                                        ids.size() - misses.size(), found.size());
+                                        statuses.putAll(found);
+                                        return toResponse(ids, statuses);
+                                });
+        }
+
+        // Pořadí odpovědi odpovídá pořadí v požadavku
+        private BulkStatusResponse toResponse(Set<String> ids, Map<String, String> statuses) {
+                Map<String, String> ordered = new LinkedHashMap<>();
+                List<String> notFound = new ArrayList<>();
+                for (String id : ids) {
+                        String status = statuses.get(id);
+                        if (status == null) {
+                                notFound.add(id);
+                        } else {
+                                ordered.put(id, status);
+                        }
+                }
+                return new BulkStatusResponse(ordered, notFound);
+        }
+}
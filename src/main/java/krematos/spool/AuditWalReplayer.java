@@ -0,0 +1,110 @@
+package krematos.spool;
+
+import krematos.model.TransactionAudit;
+import krematos.repository.TransactionAuditReplayRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Přehrává audit write-ahead log do transaction_audit, jakmile je Postgres zase dostupný.
+ * - dávka se před zápisem sloučí: z více snímků téže transakce (PENDING, pak SUCCESS) se zapíše jen poslední
+ * - celá dávka jde jedním příkazem; ve WAL se potvrdí, až když ho DB přijala - při nedostupnosti DB
+ *   se dávka zopakuje v dalším běhu (přehrání je idempotentní, at-least-once nevadí)
+ * - jiná chyba (data, constraint) by dávku blokovala navždy - dávka se půlí, dokud nezbude snímek,
+ *   který DB odmítá, a ten se odloží do audit.wal.parked (metrika audit.wal.records{result=parked})
+ * WAL je lokální pro instanci, proto bez ShedLock. Běží na vlákně scheduleru (block je v pořádku).
+ */
+@Slf4j
+@Component
+public class AuditWalReplayer {
+
+    private final AuditWriteAheadLog wal;
+    private final TransactionAuditReplayRepository replayRepository;
+    private final int batchSize;
+    private final Duration replayTimeout;
+
+    public AuditWalReplayer(AuditWriteAheadLog wal,
+                            TransactionAuditReplayRepository replayRepository,
+                            @Value("${audit.wal.replay-batch-size:500}") int batchSize,
+                            @Value("${audit.wal.replay-timeout:30s}") Duration replayTimeout) {
+        this.wal = wal;
+        this.replayRepository = replayRepository;
+        this.batchSize = batchSize;
+        this.replayTimeout = replayTimeout;
+    }
+
+    @Scheduled(fixedDelayString = "${audit.wal.replay-interval:5s}")
+    public void replay() {
+        long replayed = 0;
+        long applied = 0;
+        while (wal.hasPending()) {
+            List<AuditWriteAheadLog.Entry> batch = wal.peek(batchSize);
+            if (batch.isEmpty()) {
+                break;
+            }
+            long rows;
+            try {
+                rows = replayOrPark(batch);
+            } catch (RuntimeException e) {
+                log.warn("Přehrávání audit WAL přerušeno ({}), čeká {} záznamů", e.getMessage(), wal.depth());
+                break;
+            }
+            replayed += batch.size();
+            applied += rows;
+        }
+        if (replayed > 0) {
+            log.info("Z audit WAL přehráno {} snímků ({} řádků zapsáno, zbytek sloučen nebo přeskočen), zbývá {}",
+                    replayed, applied, wal.depth());
+        }
+    }
+
+    // Zapíše dávku a vrátí počet zapsaných řádků. Nedostupnost DB propaguje (nepotvrzený zbytek
+    // se přehraje v dalším běhu), jinou chybu zúží půlením dávky na snímek, který DB odmítá, a ten odloží.
+    private long replayOrPark(List<AuditWriteAheadLog.Entry> batch) {
+        try {
+            Long rows = replayRepository.replay(collapse(batch)).timeout(replayTimeout).block();
+            batch.forEach(wal::acknowledge);
+            return rows == null ? 0 : rows;
+        } catch (RuntimeException e) {
+            if (AuditWriteAheadLog.isDatabaseUnavailable(e)) {
+                throw e;
+            }
+            if (batch.size() > 1) {
+                int half = batch.size() / 2;
+                return replayOrPark(batch.subList(0, half)) + replayOrPark(batch.subList(half, batch.size()));
+            }
+            park(batch.get(0), e);
+            return 0;
+        }
+    }
+
+    private void park(AuditWriteAheadLog.Entry entry, RuntimeException error) {
+        if (!wal.park(entry)) {
+            throw new IllegalStateException("snímek " + entry.audit().getInternalOrderId()
+                    + " DB odmítá a odkládací log je plný", error);
+        }
+        log.error("Snímek auditu {} DB odmítá ({}), odložen do audit.wal.parked (celkem {})",
+                entry.audit().getInternalOrderId(), error.getMessage(), wal.parkedDepth());
+    }
+
+    // Poslední snímek pro každou transakci (internal_order_id + created_at) v pořadí prvního výskytu
+    static List<TransactionAudit> collapse(List<AuditWriteAheadLog.Entry> batch) {
+        Map<TransactionKey, TransactionAudit> latest = new LinkedHashMap<>();
+        for (AuditWriteAheadLog.Entry entry : batch) {
+            TransactionAudit audit = entry.audit();
+            latest.put(new TransactionKey(audit.getInternalOrderId(), audit.getCreatedAt()), audit);
+        }
+        return List.copyOf(latest.values());
+    }
+
+    private record TransactionKey(String internalOrderId, Instant createdAt) {
+    }
+}
@@ -0,0 +1,198 @@
+package krematos.spool;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.r2dbc.pool.ConnectionPoolException;
+import io.r2dbc.spi.R2dbcNonTransientResourceException;
+import io.r2dbc.spi.R2dbcTransientException;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import krematos.model.TransactionAudit;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Degradovaný režim auditu (audit.wal.enabled): když Postgres neodpovídá (failover, vyčerpaný pool),
+ * zápis do transaction_audit se místo selhání celého requestu uloží jako snímek TransactionAudit
+ * do lokálního write-ahead logu (SpoolLog). AuditWalReplayer ho po obnovení DB přehraje po dávkách.
+ * Ve WAL končí i výsledek transakce, jejíž PENDING záznam v DB ještě není (id == null).
+ * Unikátnost internal_order_id hlídá místo DB lokální množina objednávek s nepřehraným snímkem
+ * (reserve) - opakované odeslání téže objednávky na tento uzel skončí 409 ještě před voláním externího API.
+ * Nepokrývá duplicitu objednávky, kterou přijal jiný uzel nebo která byla v DB už před výpadkem. Snímek, který DB odmítne chybou dat, se odloží do podadresáře parked
+ * (audit.wal.parked.*) k ruční kontrole. Ve výchozím stavu vypnuto, bez WAL se chyba DB propaguje jako dřív.
+ */
+@Slf4j
+@Component
+public class AuditWriteAheadLog {
+
+    /**
+     * Snímek auditu připravený k přehrání; potvrzuje se přes acknowledge() až po zápisu do DB.
+     */
+    record Entry(SpoolLog.Entry record, TransactionAudit audit) {
+    }
+
+    private final boolean enabled;
+    private final SpoolLog spoolLog;
+    private final SpoolLog parkedLog;
+    private final ObjectMapper objectMapper;
+    // internal_order_id se snímkem ve WAL - po přehrání hlídá unikátnost zase DB
+    private final Set<String> pendingOrderIds = ConcurrentHashMap.newKeySet();
+
+    public AuditWriteAheadLog(ObjectMapper objectMapper,
+                              MeterRegistry meterRegistry,
+                              @Value("${audit.wal.enabled:false}") boolean enabled,
+                              @Value("${audit.wal.directory:./audit-wal}") String directory,
+                              @Value("${audit.wal.segment-size:64MB}") DataSize segmentSize,
+                              @Value("${audit.wal.max-segments:16}") int maxSegments,
+                              @Value("${audit.wal.fsync:interval}") FsyncMode fsyncMode) {
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.spoolLog = enabled
+                ? new SpoolLog("audit.wal", Path.of(directory), segmentSize, maxSegments, fsyncMode, meterRegistry)
+                : null;
+        this.parkedLog = enabled
+                ? new SpoolLog("audit.wal.parked", Path.of(directory, "parked"), segmentSize, maxSegments, fsyncMode,
+                meterRegistry)
+                : null;
+    }
+
+    @PostConstruct
+    void open() throws IOException {
+        if (enabled) {
+            spoolLog.open();
+            parkedLog.open();
+            spoolLog.forEachPending(payload -> {
+                try {
+                    pendingOrderIds.add(objectMapper.readValue(payload, TransactionAudit.class).getInternalOrderId());
+                } catch (IOException e) {
+                    // Nečitelný snímek vyřadí až replayer
+                }
+            });
+        }
+    }
+
+    @PreDestroy
+    void close() throws IOException {
+        if (enabled) {
+            spoolLog.close();
+            parkedLog.close();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Chyba, kterou WAL pokryje: DB nebo spojení z poolu nejsou k dispozici (ne chyba dat ani SQL).
+     */
+    public boolean canAbsorb(Throwable error) {
+        return enabled && isDatabaseUnavailable(error);
+    }
+
+    public static boolean isDatabaseUnavailable(Throwable error) {
+        for (Throwable e = error; e != null; e = e.getCause()) {
+            if (e instanceof DataAccessResourceFailureException
+                    || e instanceof TransientDataAccessException
+                    || e instanceof R2dbcTransientException
+                    || e instanceof R2dbcNonTransientResourceException
+                    || e instanceof ConnectionPoolException
+                    || e instanceof TimeoutException
+                    || e instanceof ConnectException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Uloží snímek auditu. Vrací false, pokud je WAL vypnutý nebo plný - volající pak propaguje chybu DB.
+     */
+    public boolean append(TransactionAudit audit) {
+        if (!enabled) {
+            return false;
+        }
+        try {
+            return spoolLog.append(objectMapper.writeValueAsBytes(audit));
+        } catch (JsonProcessingException e) {
+            log.error("Audit {} nelze serializovat do WAL", audit.getInternalOrderId(), e);
+            spoolLog.countDropped();
+            return false;
+        }
+    }
+
+    /**
+     * Zabere internal_order_id nové transakce zapisované do WAL. Vrací false, pokud tu už jiný
+     * nepřehraný snímek téže objednávky je - volající ji musí odmítnout jako duplicitní.
+     */
+    public boolean reserve(String internalOrderId) {
+        return pendingOrderIds.add(internalOrderId);
+    }
+
+    // Snímek se do WAL nakonec nezapsal
+    public void release(String internalOrderId) {
+        pendingOrderIds.remove(internalOrderId);
+    }
+
+    public boolean hasPending() {
+        return enabled && spoolLog.hasPending();
+    }
+
+    public long depth() {
+        return enabled ? spoolLog.depth() : 0;
+    }
+
+    // Až max nejstarších snímků v pořadí zápisu; zůstávají ve WAL, dokud je replayer nepotvrdí
+    List<Entry> peek(int max) {
+        List<Entry> batch = new ArrayList<>(max);
+        for (SpoolLog.Entry record : spoolLog.peek(max)) {
+            try {
+                batch.add(new Entry(record, objectMapper.readValue(record.payload(), TransactionAudit.class)));
+            } catch (IOException e) {
+                spoolLog.reject(record);
+            }
+        }
+        return batch;
+    }
+
+    void acknowledge(Entry entry) {
+        spoolLog.acknowledge(entry.record());
+        pendingOrderIds.remove(entry.audit().getInternalOrderId());
+    }
+
+    // Snímek, který DB odmítá (chyba dat) - přesune se do odkládacího logu; false, pokud je plný
+    boolean park(Entry entry) {
+        if (!spoolLog.park(entry.record(), parkedLog)) {
+            return false;
+        }
+        pendingOrderIds.remove(entry.audit().getInternalOrderId());
+        return true;
+    }
+
+    long parkedDepth() {
+        return enabled ? parkedLog.depth() : 0;
+    }
+
+    @Scheduled(fixedDelayString = "${audit.wal.fsync-interval:1s}")
+    public void flush() {
+        if (enabled) {
+            spoolLog.flush();
+            parkedLog.flush();
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package krematos.spool;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import krematos.model.ExternalApiRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lokální spool pro zprávy do DLQ, když RabbitMQ není dostupný (dřív se zpráva jen zalogovala
+ * jako CRITICAL a zahodila). Záznamy drží SpoolLog (segmenty namapované do paměti s CRC),
+ * fsync řídí spool.fsync:
+ * - none: stránky na disk zapisuje jádro samo - přežije pád procesu, ne výpadek napájení
+ * - interval: fsync na pozadí každých fsync-interval (výchozí)
+ * - always: fsync každého záznamu ještě před návratem z append
+ * Přehrání do RabbitMQ ve stejném pořadí zajišťuje DeadLetterSpoolReplayer. Doručení je at-least-once.
+ */
+@Slf4j
+@Component
+public class DeadLetterSpool {
+
+    /**
+     * Záznam připravený k přehrání; potvrzuje se přes acknowledge() až po potvrzení brokerem.
+     */
+    record Entry(SpoolLog.Entry record, SpooledDeadLetter message) {
+    }
+
+    private final SpoolLog spoolLog;
+    private final ObjectMapper objectMapper;
+
+    public DeadLetterSpool(ObjectMapper objectMapper,
+                           MeterRegistry meterRegistry,
+                           @Value("${spool.directory:./spool}") String directory,
+                           @Value("${spool.segment-size:64MB}") DataSize segmentSize,
+                           @Value("${spool.max-segments:16}") int maxSegments,
+                           @Value("${spool.fsync:interval}") FsyncMode fsyncMode) {
+        this.objectMapper = objectMapper;
+        this.spoolLog = new SpoolLog("spool", Path.of(directory), segmentSize, maxSegments, fsyncMode, meterRegistry);
+    }
+
+    // Po restartu se nepřehrané zprávy započítají do hloubky a replayer je po startu odešle
+    @PostConstruct
+    void open() throws IOException {
+        spoolLog.open();
+    }
+
+    @PreDestroy
+    void close() throws IOException {
+        spoolLog.close();
+    }
+
+    /**
+     * Uloží zprávu do spoolu. Vrací false, pokud se zpráva uložit nedá (spool je plný - max-segments,
+     * chyba serializace nebo zápisu) - volající ji pak musí považovat za ztracenou.
+     */
+    public boolean append(ExternalApiRequest request, String serviceType) {
+        byte[] payload;
+        try {
+            payload = objectMapper.writeValueAsBytes(new SpooledDeadLetter(serviceType, request));
+        } catch (JsonProcessingException e) {
+            log.error("Zprávu {} nelze serializovat do spoolu", request.getTransactionId(), e);
+            spoolLog.countDropped();
+            return false;
+        }
+        return spoolLog.append(payload);
+    }
+
+    public boolean hasPending() {
+        return spoolLog.hasPending();
+    }
+
+    public long depth() {
+        return spoolLog.depth();
+    }
+
+    /**
+     * Až max nejstarších nepřehraných zpráv v pořadí zápisu. Zprávy zůstávají ve spoolu,
+     * dokud je replayer nepotvrdí přes acknowledge().
+     */
+    List<Entry> peek(int max) {
+        List<Entry> batch = new ArrayList<>(max);
+        for (SpoolLog.Entry record : spoolLog.peek(max)) {
+            try {
+                batch.add(new Entry(record, objectMapper.readValue(record.payload(), SpooledDeadLetter.class)));
+            } catch (IOException e) {
+                spoolLog.reject(record);
+            }
+        }
+        return batch;
+    }
+
+    void acknowledge(Entry entry) {
+        spoolLog.acknowledge(entry.record());
+    }
+
+    @Scheduled(fixedDelayString = "${spool.fsync-interval:1s}")
+    public void flush() {
+        spoolLog.flush();
+    }
+}
@@ -0,0 +1,86 @@
+package krematos.spool;
+
+import krematos.connector.ExternalSystemConnector;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Přehrává spool do RabbitMQ DLQ v pořadí zápisu, jakmile je broker zase dostupný.
+ * - první zpráva běhu slouží jako sonda: dokud ji broker nepotvrdí, dál se nepokračuje
+ * - pak se posílají dávky (publisher je odešle s publisher confirms); záznam se ve spoolu označí
+ *   jako přehraný, až když broker potvrdil jeho i všechny předchozí - pořadí se tak nerozbije
+ * - po výpadku uprostřed dávky se nepotvrzený zbytek pošle znovu (at-least-once)
+ * Spool je lokální pro instanci, proto bez ShedLock. Běží na vlákně scheduleru (block je v pořádku).
+ */
+@Slf4j
+@Component
+public class DeadLetterSpoolReplayer {
+
+    private final DeadLetterSpool spool;
+    private final ExternalSystemConnector externalSystemConnector;
+    private final int batchSize;
+    private final Duration publishTimeout;
+
+    public DeadLetterSpoolReplayer(DeadLetterSpool spool,
+                                   ExternalSystemConnector externalSystemConnector,
+                                   @Value("${spool.replay-batch-size:100}") int batchSize,
+                                   @Value("${spool.replay-timeout:30s}") Duration publishTimeout) {
+        this.spool = spool;
+        this.externalSystemConnector = externalSystemConnector;
+        this.batchSize = batchSize;
+        this.publishTimeout = publishTimeout;
+    }
+
+    @Scheduled(fixedDelayString = "${spool.replay-interval:5s}")
+    public void replay() {
+        long replayed = 0;
+        int limit = 1;
+        while (spool.hasPending()) {
+            List<DeadLetterSpool.Entry> batch = spool.peek(limit);
+            if (batch.isEmpty()) {
+                break;
+            }
+            int published = publishInOrder(batch);
+            replayed += published;
+            if (published < batch.size()) {
+                log.warn("Přehrávání spoolu přerušeno - RabbitMQ zprávy nepotvrdil, čeká {} zpráv", spool.depth());
+                break;
+            }
+            limit = batchSize;
+        }
+        if (replayed > 0) {
+            log.info("Ze spoolu přehráno {} zpráv do DLQ, zbývá {}", replayed, spool.depth());
+        }
+    }
+
+    // Potvrdí nejdelší potvrzený prefix dávky; vrací jeho délku
+    private int publishInOrder(List<DeadLetterSpool.Entry> batch) {
+        List<Boolean> confirmed = Flux.fromIterable(batch)
+                // flatMapSequential přihlásí publish v pořadí dávky, výsledky vrací ve stejném pořadí
+                .flatMapSequential(entry -> externalSystemConnector
+                        .publishToDeadLetter(entry.message().request(), entry.message().serviceType())
+                        .thenReturn(true)
+                        .timeout(publishTimeout)
+                        .onErrorResume(e -> {
+                            log.debug("Zpráva {} ze spoolu nepotvrzena: {}",
+                                    entry.message().request().getTransactionId(), e.getMessage());
+                            return Mono.just(false);
+                        }))
+                .collectList()
+                .block();
+
+        int published = 0;
+        while (published < confirmed.size() && confirmed.get(published)) {
+            spool.acknowledge(batch.get(published));
+            published++;
+        }
+        return published;
+    }
+}
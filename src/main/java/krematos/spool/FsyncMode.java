@@ -0,0 +1,11 @@
+package krematos.spool;
+
+/**
+ * Kdy se zápisy do SpoolLog propíšou na disk (fsync namapovaných stránek):
+ * - NONE: stránky zapisuje jádro samo - přežije pád procesu, ne výpadek napájení
+ * - INTERVAL: fsync na pozadí v pravidelném intervalu
+ * - ALWAYS: fsync každého záznamu ještě před návratem z append
+ */
+public enum FsyncMode {
+    NONE, INTERVAL, ALWAYS
+}
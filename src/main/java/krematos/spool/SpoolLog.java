@@ -0,0 +1,370 @@
+package krematos.spool;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Append-only log ze segmentů namapovaných do paměti (SpoolSegment), společný pro spool DLQ zpráv
+ * a write-ahead log auditu. Zápis je kopie do stránky v page cache pod krátkým zámkem - většinou bez syscallu.
+ * Syscally jsou při rotaci segmentu (založení a předalokace souboru, jednou za segment-size) a podle režimu
+ * fsync (FsyncMode), proto append() volající spouštějí mimo event loop (Schedulers.boundedElastic).
+ * Čtení jde v pořadí zápisu; přehrané záznamy se označí na místě a segment se smaže, jakmile je celý přehraný.
+ * Metriky nesou prefix podle názvu logu: {name}.depth, {name}.bytes, {name}.segments, {name}.records{result},
+ * {name}.append.latency.
+ */
+@Slf4j
+final class SpoolLog {
+
+    /**
+     * Záznam připravený k přehrání; potvrzuje se přes acknowledge() až po úspěšném přehrání.
+     */
+    record Entry(long segment, int offset, int bytes, byte[] payload) {
+    }
+
+    private static final String LOCK_FILE = "spool.lock";
+
+    private final String name;
+    private final Path directory;
+    private final int segmentSize;
+    private final int maxSegments;
+    private final FsyncMode fsyncMode;
+
+    // Nejstarší segment první, poslední je aktivní pro zápis
+    private final Deque<SpoolSegment> segments = new ArrayDeque<>();
+    private int readOffset; // První nepřehraný záznam v nejstarším segmentu
+    private long nextSequence = 1;
+    private volatile boolean dirty;
+
+    private final AtomicLong pendingRecords = new AtomicLong();
+    private final AtomicLong pendingBytes = new AtomicLong();
+
+    private final Timer appendLatency;
+    private final Counter appended;
+    private final Counter replayed;
+    private final Counter dropped;
+    private final Counter corrupted;
+    private final Counter parked;
+
+    private FileChannel lockChannel;
+    private FileLock lock;
+
+    SpoolLog(String name, Path directory, DataSize segmentSize, int maxSegments, FsyncMode fsyncMode,
+             MeterRegistry meterRegistry) {
+        if (segmentSize.toBytes() > Integer.MAX_VALUE || segmentSize.toBytes() < 1024) {
+            throw new IllegalArgumentException(name + ": velikost segmentu musí být mezi 1KB a 2GB: " + segmentSize);
+        }
+        this.name = name;
+        this.directory = directory;
+        this.segmentSize = (int) segmentSize.toBytes();
+        this.maxSegments = maxSegments;
+        this.fsyncMode = fsyncMode;
+
+        this.appendLatency = Timer.builder(name + ".append.latency")
+                .description("Doba zápisu jednoho záznamu (včetně fsync v režimu always)")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.appended = meterRegistry.counter(name + ".records", "result", "appended");
+        this.replayed = meterRegistry.counter(name + ".records", "result", "replayed");
+        this.dropped = meterRegistry.counter(name + ".records", "result", "dropped");
+        this.corrupted = meterRegistry.counter(name + ".records", "result", "corrupted");
+        this.parked = meterRegistry.counter(name + ".records", "result", "parked");
+        Gauge.builder(name + ".depth", pendingRecords, AtomicLong::get)
+                .description("Počet záznamů čekajících na přehrání")
+                .register(meterRegistry);
+        Gauge.builder(name + ".bytes", pendingBytes, AtomicLong::get)
+                .description("Objem záznamů čekajících na přehrání")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder(name + ".segments", this, SpoolLog::segmentCount)
+                .description("Počet segmentových souborů na disku")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Otevře log a obnoví stav po restartu - nepřehrané záznamy ze všech segmentů se započítají
+     * do hloubky. Adresář smí používat jen jedna instance (file lock).
+     */
+    synchronized void open() throws IOException {
+        Files.createDirectories(directory);
+        lockChannel = FileChannel.open(directory.resolve(LOCK_FILE), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        try {
+            lock = lockChannel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            lock = null; // Zámek drží jiný log ve stejné JVM
+        }
+        if (lock == null) {
+            lockChannel.close();
+            throw new IllegalStateException("Adresář " + directory.toAbsolutePath() + " (" + name + ") používá jiná instance");
+        }
+
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(directory)) {
+            files = listing.filter(SpoolSegment::isSegmentFile)
+                    .sorted((a, b) -> Long.compare(SpoolSegment.sequenceOf(a), SpoolSegment.sequenceOf(b)))
+                    .toList();
+        }
+        for (int i = 0; i < files.size(); i++) {
+            SpoolSegment segment = SpoolSegment.open(files.get(i));
+            nextSequence = segment.sequence() + 1;
+            boolean pending = recover(segment, segments.isEmpty());
+            if (i < files.size() - 1) {
+                segment.seal(); // Zapisuje se jen do posledního segmentu
+                if (!pending) {
+                    segment.delete(); // Celý přehraný - zůstal po pádu mezi přehráním a smazáním
+                    continue;
+                }
+            }
+            segments.addLast(segment);
+        }
+        if (segments.isEmpty() || segments.peekLast().isSealed()) {
+            segments.addLast(SpoolSegment.create(directory, nextSequence++, segmentSize));
+        }
+        advance();
+        log.info("{} otevřen v {}: {} záznamů čeká na přehrání ({} segmentů, fsync {})",
+                name, directory.toAbsolutePath(), pendingRecords.get(), segments.size(), fsyncMode);
+    }
+
+    // Projde segment, započítá nepřehrané záznamy a nastaví pozici zápisu; vrací, zda v něm něco čeká
+    private boolean recover(SpoolSegment segment, boolean head) {
+        SpoolSegment.Slot slot = segment.read(0);
+        boolean foundPending = false;
+        while (slot.state() == SpoolSegment.State.PENDING || slot.state() == SpoolSegment.State.CONSUMED) {
+            if (slot.state() == SpoolSegment.State.PENDING) {
+                if (!foundPending && head) {
+                    readOffset = slot.offset();
+                }
+                foundPending = true;
+                pendingRecords.incrementAndGet();
+                pendingBytes.addAndGet(SpoolSegment.recordBytes(slot.payload().length));
+            }
+            slot = segment.read(slot.next());
+        }
+        if (slot.state() == SpoolSegment.State.CORRUPT) {
+            corrupted.increment();
+            log.warn("{}: segment {} je od offsetu {} poškozený (CRC), zbytek segmentu se přeskočí",
+                    name, segment, slot.offset());
+        }
+        if (head && !foundPending) {
+            readOffset = slot.offset();
+        }
+        segment.recover(slot);
+        return foundPending;
+    }
+
+    synchronized void close() throws IOException {
+        if (fsyncMode != FsyncMode.NONE) {
+            segments.forEach(SpoolSegment::force);
+        }
+        if (lock != null) {
+            lock.release();
+            lockChannel.close();
+        }
+    }
+
+    /**
+     * Zapíše záznam za poslední. Vrací false, pokud se zapsat nedá (log je plný - max-segments,
+     * záznam je větší než segment, chyba při zakládání segmentu).
+     */
+    boolean append(byte[] payload) {
+        long start = System.nanoTime();
+        if (SpoolSegment.recordBytes(payload.length) + SpoolSegment.HEADER_BYTES > segmentSize) {
+            log.error("{}: záznam ({} B) je větší než segment", name, payload.length);
+            dropped.increment();
+            return false;
+        }
+
+        SpoolSegment segment;
+        synchronized (this) {
+            segment = segments.peekLast();
+            if (!segment.append(payload)) {
+                if (segments.size() >= maxSegments) {
+                    dropped.increment();
+                    log.error("{} je plný ({} segmentů)", name, segments.size());
+                    return false;
+                }
+                try {
+                    segment = SpoolSegment.create(directory, nextSequence++, segmentSize);
+                } catch (IOException e) {
+                    dropped.increment();
+                    log.error("{}: nepodařilo se založit nový segment v {}", name, directory, e);
+                    return false;
+                }
+                segments.addLast(segment);
+                segment.append(payload);
+            }
+            pendingRecords.incrementAndGet();
+            pendingBytes.addAndGet(SpoolSegment.recordBytes(payload.length));
+            dirty = true;
+        }
+        if (fsyncMode == FsyncMode.ALWAYS) {
+            segment.force();
+        }
+        appended.increment();
+        appendLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return true;
+    }
+
+    // Záznam, který se nepodařilo ani serializovat - jen do metriky
+    void countDropped() {
+        dropped.increment();
+    }
+
+    boolean hasPending() {
+        return pendingRecords.get() > 0;
+    }
+
+    long depth() {
+        return pendingRecords.get();
+    }
+
+    /**
+     * Až max nejstarších nepřehraných záznamů v pořadí zápisu. Záznamy zůstávají v logu,
+     * dokud je volající nepotvrdí přes acknowledge().
+     */
+    synchronized List<Entry> peek(int max) {
+        List<Entry> batch = new ArrayList<>(max);
+        int offset = readOffset;
+        for (SpoolSegment segment : segments) {
+            SpoolSegment.Slot slot = segment.read(offset);
+            while (batch.size() < max
+                    && (slot.state() == SpoolSegment.State.PENDING || slot.state() == SpoolSegment.State.CONSUMED)) {
+                if (slot.state() == SpoolSegment.State.PENDING) {
+                    batch.add(new Entry(segment.sequence(), slot.offset(),
+                            SpoolSegment.recordBytes(slot.payload().length), slot.payload()));
+                }
+                slot = segment.read(slot.next());
+            }
+            if (batch.size() >= max || slot.state() == SpoolSegment.State.EMPTY) {
+                break;
+            }
+            offset = 0;
+        }
+        return batch;
+    }
+
+    /**
+     * Projde všechny nepřehrané záznamy v pořadí zápisu bez jejich potvrzení
+     * (obnova pomocných indexů nad logem po restartu).
+     */
+    synchronized void forEachPending(Consumer<byte[]> action) {
+        int offset = readOffset;
+        for (SpoolSegment segment : segments) {
+            SpoolSegment.Slot slot = segment.read(offset);
+            while (slot.state() == SpoolSegment.State.PENDING || slot.state() == SpoolSegment.State.CONSUMED) {
+                if (slot.state() == SpoolSegment.State.PENDING) {
+                    action.accept(slot.payload());
+                }
+                slot = segment.read(slot.next());
+            }
+            offset = 0;
+        }
+    }
+
+    /**
+     * Označí záznam jako přehraný a posune čtecí pozici; celé přehrané segmenty (kromě aktivního) se smažou.
+     */
+    synchronized void acknowledge(Entry entry) {
+        if (consume(entry)) {
+            replayed.increment();
+        }
+    }
+
+    // Záznam s platným CRC, který už nejde načíst (např. nekompatibilní změna DTO) - vyřadí se
+    synchronized void reject(Entry entry) {
+        if (consume(entry)) {
+            corrupted.increment();
+            log.error("{}: záznam {}@{} nelze načíst, vyřazuje se", name, entry.segment(), entry.offset());
+        }
+    }
+
+    /**
+     * Přesune záznam, který nejde přehrát, do odkládacího logu, aby neblokoval záznamy za ním.
+     * Vrací false, pokud se do odkládacího logu zapsat nedá - záznam pak zůstane tady.
+     */
+    synchronized boolean park(Entry entry, SpoolLog target) {
+        if (!target.append(entry.payload())) {
+            return false;
+        }
+        if (consume(entry)) {
+            parked.increment();
+        }
+        return true;
+    }
+
+    private boolean consume(Entry entry) {
+        for (SpoolSegment segment : segments) {
+            if (segment.sequence() == entry.segment()) {
+                segment.markConsumed(entry.offset());
+                pendingRecords.decrementAndGet();
+                pendingBytes.addAndGet(-entry.bytes());
+                dirty = true;
+                advance();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void advance() {
+        while (true) {
+            SpoolSegment head = segments.peekFirst();
+            SpoolSegment.Slot slot = head.read(readOffset);
+            if (slot.state() == SpoolSegment.State.CONSUMED) {
+                readOffset = slot.next();
+            } else if (slot.state() == SpoolSegment.State.PENDING || segments.size() == 1) {
+                return;
+            } else if (slot.state() == SpoolSegment.State.END || slot.state() == SpoolSegment.State.CORRUPT) {
+                segments.pollFirst();
+                readOffset = 0;
+                try {
+                    head.delete();
+                    log.debug("{}: segment {} přehrán a smazán", name, head);
+                } catch (IOException e) {
+                    log.warn("{}: nepodařilo se smazat přehraný segment {}", name, head, e);
+                }
+            } else {
+                return;
+            }
+        }
+    }
+
+    /**
+     * fsync v režimu interval - mimo zámek, zápisy mezitím pokračují do page cache
+     * a zachytí je další běh.
+     */
+    void flush() {
+        if (fsyncMode != FsyncMode.INTERVAL || !dirty) {
+            return;
+        }
+        List<SpoolSegment> snapshot;
+        synchronized (this) {
+            dirty = false;
+            snapshot = List.copyOf(segments);
+        }
+        snapshot.forEach(SpoolSegment::force);
+    }
+
+    private synchronized int segmentCount() {
+        return segments.size();
+    }
+}
@@ -0,0 +1,178 @@
+package krematos.spool;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Jeden segment spoolu - předalokovaný soubor namapovaný do paměti (MappedByteBuffer).
+ * Záznam: [int délka][int CRC32 payloadu][payload], zarovnaný na 8 bajtů.
+ * - délka > 0 = čeká na přehrání, délka < 0 = už přehraný (označí se přepsáním znaménka na místě)
+ * - 0 = sem se ještě nezapisovalo, END_OF_SEGMENT = segment je plný, pokračuje se dalším
+ * Délka se zapisuje až po payloadu a CRC - napůl zapsaný záznam tak po pádu vypadá jako konec dat,
+ * poškozený (např. po výpadku napájení) odhalí CRC.
+ * Není thread-safe, synchronizaci drží DeadLetterSpool.
+ */
+final class SpoolSegment {
+
+    static final int HEADER_BYTES = 8;
+    private static final int END_OF_SEGMENT = Integer.MIN_VALUE;
+    private static final String PREFIX = "spool-";
+    private static final String SUFFIX = ".seg";
+
+    enum State { PENDING, CONSUMED, EMPTY, END, CORRUPT }
+
+    /**
+     * Výsledek čtení na daném offsetu; payload je jen u PENDING, next = offset dalšího záznamu.
+     */
+    record Slot(State state, int offset, byte[] payload, int next) {
+    }
+
+    private final long sequence;
+    private final Path path;
+    private final MappedByteBuffer buffer;
+    private int writePosition;
+
+    private SpoolSegment(long sequence, Path path, MappedByteBuffer buffer) {
+        this.sequence = sequence;
+        this.path = path;
+        this.buffer = buffer;
+    }
+
+    // Nový segment dané velikosti (násobek 8); soubor je řídký, místo na disku zabírají až zapsané stránky
+    static SpoolSegment create(Path directory, long sequence, int size) throws IOException {
+        Path path = directory.resolve(String.format("%s%020d%s", PREFIX, sequence, SUFFIX));
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return new SpoolSegment(sequence, path, channel.map(FileChannel.MapMode.READ_WRITE, 0, size & ~7));
+        }
+    }
+
+    // Existující segment po restartu; pozici zápisu určí až recover()
+    static SpoolSegment open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return new SpoolSegment(sequenceOf(path), path, channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size() & ~7));
+        }
+    }
+
+    static boolean isSegmentFile(Path path) {
+        String name = path.getFileName().toString();
+        return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+    }
+
+    static long sequenceOf(Path path) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+
+    static int recordBytes(int payloadLength) {
+        return (HEADER_BYTES + payloadLength + 7) & ~7;
+    }
+
+    long sequence() {
+        return sequence;
+    }
+
+    int capacity() {
+        return buffer.capacity();
+    }
+
+    /**
+     * Zapíše záznam za poslední. Pokud se nevejde, uzavře segment značkou END_OF_SEGMENT
+     * a vrátí false - volající založí další segment.
+     */
+    boolean append(byte[] payload) {
+        int size = recordBytes(payload.length);
+        if (writePosition + size > buffer.capacity()) {
+            seal();
+            return false;
+        }
+        buffer.put(writePosition + HEADER_BYTES, payload);
+        buffer.putInt(writePosition + 4, crc(payload));
+        buffer.putInt(writePosition, payload.length);
+        writePosition += size;
+        return true;
+    }
+
+    // Po uzavření už do segmentu nic nepřibude (ani po restartu)
+    void seal() {
+        if (writePosition < buffer.capacity()) {
+            buffer.putInt(writePosition, END_OF_SEGMENT);
+        }
+        writePosition = buffer.capacity();
+    }
+
+    boolean isSealed() {
+        return writePosition >= buffer.capacity();
+    }
+
+    Slot read(int offset) {
+        if (offset + HEADER_BYTES > buffer.capacity()) {
+            return new Slot(State.END, offset, null, offset);
+        }
+        int length = buffer.getInt(offset);
+        if (length == 0) {
+            return new Slot(State.EMPTY, offset, null, offset);
+        }
+        if (length == END_OF_SEGMENT) {
+            return new Slot(State.END, offset, null, offset);
+        }
+        int payloadLength = Math.abs(length);
+        if (offset + recordBytes(payloadLength) > buffer.capacity()) {
+            return new Slot(State.CORRUPT, offset, null, offset);
+        }
+        byte[] payload = new byte[payloadLength];
+        buffer.get(offset + HEADER_BYTES, payload);
+        if (crc(payload) != buffer.getInt(offset + 4)) {
+            return new Slot(State.CORRUPT, offset, null, offset);
+        }
+        int next = offset + recordBytes(payloadLength);
+        return length > 0
+                ? new Slot(State.PENDING, offset, payload, next)
+                : new Slot(State.CONSUMED, offset, null, next);
+    }
+
+    void markConsumed(int offset) {
+        int length = buffer.getInt(offset);
+        if (length > 0) {
+            buffer.putInt(offset, -length);
+        }
+    }
+
+    /**
+     * Po restartu: zápis pokračuje za posledním platným záznamem (stop = stav slotu, kde čtení skončilo).
+     * Nedopsaný nebo poškozený záznam se nepřepisuje - segment se na něm uzavře a pokračuje se novým,
+     * takže se zbytky starých dat nikdy nepletou s novými záznamy.
+     */
+    void recover(Slot stop) {
+        writePosition = stop.offset();
+        if (stop.state() != State.EMPTY) {
+            seal();
+        }
+    }
+
+    // fsync namapovaných stránek (msync) - blokující, volá se mimo event loop
+    void force() {
+        buffer.force();
+    }
+
+    // Mapování zůstává platné do GC bufferu, smazání souboru na něj nemá vliv
+    void delete() throws IOException {
+        Files.deleteIfExists(path);
+    }
+
+    private static int crc(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    @Override
+    public String toString() {
+        return path.getFileName().toString();
+    }
+}
@@ -0,0 +1,9 @@
+package krematos.spool;
+
+import krematos.model.ExternalApiRequest;
+
+/**
+ * Payload záznamu ve spoolu - stejná data, jaká by šla do DLQ (tělo zprávy + typ služby pro pruh a hlavičku).
+ */
+public record SpooledDeadLetter(String serviceType, ExternalApiRequest request) {
+}
@@ -0,0 +1,77 @@
+package krematos.stats;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Kruhový buffer bucketů (BUCKET_MILLIS) pokrývající poslední hodinu.
+ * Zápis je bez zámků: LongAdder pro počet a součet částky (v haléřích / centech).
+ * Bucket se při přechodu na nové časové okno vynuluje tím vláknem, které vyhraje CAS;
+ * ostatní zapisovatelé na dokončení vynulování jen krátce čekají (spin).
+ */
+final class RollingCounter {
+
+    static final long BUCKET_MILLIS = 10_000;
+    static final int BUCKETS = 360; // 360 x 10 s = 1 h
+
+    private static final long RESETTING = Long.MIN_VALUE;
+
+    private final Bucket[] buckets = new Bucket[BUCKETS];
+
+    RollingCounter() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = new Bucket();
+        }
+    }
+
+    void add(long nowMillis, long amountMinor) {
+        long epoch = nowMillis / BUCKET_MILLIS;
+        Bucket bucket = buckets[(int) (epoch % BUCKETS)];
+        while (true) {
+            long current = bucket.epoch.get();
+            if (current == epoch) {
+                bucket.count.increment();
+                bucket.amountMinor.add(amountMinor);
+                return;
+            }
+            if (current == RESETTING || current > epoch) {
+                // Jiné vlákno bucket právě nuluje (nebo zápis přišel pozdě do už recyklovaného bucketu)
+                if (current > epoch) {
+                    return;
+                }
+                Thread.onSpinWait();
+                continue;
+            }
+            if (bucket.epoch.compareAndSet(current, RESETTING)) {
+                bucket.count.reset();
+                bucket.amountMinor.reset();
+                bucket.epoch.set(epoch);
+            }
+        }
+    }
+
+    // Součet bucketů v okně (now - windowMillis, now]; přesnost je na jeden bucket
+    Snapshot sum(long nowMillis, long windowMillis) {
+        long currentEpoch = nowMillis / BUCKET_MILLIS;
+        long oldestEpoch = currentEpoch - Math.max(1, windowMillis / BUCKET_MILLIS) + 1;
+        long count = 0;
+        long amountMinor = 0;
+        for (Bucket bucket : buckets) {
+            long epoch = bucket.epoch.get();
+            if (epoch >= oldestEpoch && epoch <= currentEpoch) {
+                count += bucket.count.sum();
+                amountMinor += bucket.amountMinor.sum();
+            }
+        }
+        return new Snapshot(count, amountMinor);
+    }
+
+    record Snapshot(long count, long amountMinor) {
+    }
+
+    private static final class Bucket {
+        private final AtomicLong epoch = new AtomicLong(-1);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder amountMinor = new LongAdder();
+    }
+}
@@ -0,0 +1,78 @@
+package krematos.stats;
+
+import krematos.model.RollupDelta;
+import krematos.model.TransactionAudit;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Přírůstky pro transaction_rollup nasčítané v paměti mezi dvěma zápisy do DB.
+ * Přičtení (merge) i odebrání (remove) jsou atomické operace ConcurrentHashMap nad jedním klíčem -
+ * výsledek zapsaný souběžně s drain() skončí buď v odebrané hodnotě, nebo v nové položce, nikdy mezi.
+ * TransactionRollupFlusher přírůstky periodicky odebere přes drain() a při chybě DB je vrátí zpět
+ * přes restore(), takže se nic neztratí. Zápis je at-least-once: když upsert v DB doběhl, ale flusher
+ * dostal chybu (timeout, ztracené spojení), vrácené přírůstky se přičtou podruhé.
+ */
+@Component
+public class TransactionRollupCollector {
+
+    private final ConcurrentHashMap<Key, Delta> pending = new ConcurrentHashMap<>();
+
+    // Minuta podle času výsledku (updatedAt), ne podle času zápisu do DB
+    public void record(TransactionAudit audit) {
+        Instant at = audit.getUpdatedAt() != null ? audit.getUpdatedAt() : Instant.now();
+        Key key = new Key(at.truncatedTo(ChronoUnit.MINUTES),
+                TransactionStatsAggregator.orUnknown(audit.getStatus()),
+                TransactionStatsAggregator.orUnknown(audit.getCurrency()),
+                TransactionStatsAggregator.orUnknown(audit.getServiceType()));
+        add(key, 1, TransactionStatsAggregator.toMinor(audit.getAmount()));
+    }
+
+    /**
+     * Odebere všechny nasčítané přírůstky. Pozdní výsledky do už odebrané minuty
+     * (updatedAt se nastavuje před zápisem do DB) založí novou položku a zapíší se dalším drain().
+     */
+    public List<RollupDelta> drain() {
+        List<RollupDelta> deltas = new ArrayList<>();
+        for (Key key : pending.keySet()) {
+            Delta delta = pending.remove(key);
+            if (delta != null && (delta.count() != 0 || delta.amountMinor() != 0)) {
+                deltas.add(new RollupDelta(key.bucketStart(), key.status(), key.currency(), key.serviceType(),
+                        delta.count(), delta.amountMinor()));
+            }
+        }
+        return deltas;
+    }
+
+    // Vrátí přírůstky, které se nepodařilo zapsat - přičtou se k dalšímu drain()
+    public void restore(List<RollupDelta> deltas) {
+        for (RollupDelta delta : deltas) {
+            add(new Key(delta.bucketStart(), delta.status(), delta.currency(), delta.serviceType()),
+                    delta.count(), delta.amountMinor());
+        }
+    }
+
+    public int pendingKeys() {
+        return pending.size();
+    }
+
+    private void add(Key key, long count, long amountMinor) {
+        pending.merge(key, new Delta(count, amountMinor), Delta::plus);
+    }
+
+    private record Key(Instant bucketStart, String status, String currency, String serviceType) {
+    }
+
+    // Neměnná hodnota - merge ji nahradí součtem, takže odebraná hodnota se už nemění
+    private record Delta(long count, long amountMinor) {
+
+        Delta plus(Delta other) {
+            return new Delta(count + other.count, amountMinor + other.amountMinor);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package krematos.stats;
+
+import krematos.model.TransactionAudit;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Statistiky výsledků transakcí v paměti (klouzavá okna 1m / 5m / 1h) pro dashboardy,
+ * aby nemusely spouštět COUNT(*) GROUP BY nad transaction_audit.
+ * Plní ji TransactionService po zapsání konečného stavu; zápis je bez zámků.
+ * Hodnoty jsou za tuto instanci a přibližné na hranici 10s bucketu.
+ */
+@Component
+@Slf4j
+public class TransactionStatsAggregator {
+
+    static final Map<String, Duration> WINDOWS = Map.of(
+            "1m", Duration.ofMinutes(1),
+            "5m", Duration.ofMinutes(5),
+            "1h", Duration.ofHours(1));
+
+    // Částky v DB mají 2 desetinná místa (NUMERIC(19, 2))
+    private static final int AMOUNT_SCALE = 2;
+    private static final String OTHER = "OTHER";
+    private static final String UNKNOWN = "UNKNOWN";
+
+    private final ConcurrentHashMap<Key, RollingCounter> counters = new ConcurrentHashMap<>();
+    private final int maxKeys;
+    private final LongSupplier clock;
+
+    @Autowired
+    public TransactionStatsAggregator(@Value("${stats.max-keys:1000}") int maxKeys) {
+        this(maxKeys, System::currentTimeMillis);
+    }
+
+    TransactionStatsAggregator(int maxKeys, LongSupplier clock) {
+        this.maxKeys = maxKeys;
+        this.clock = clock;
+    }
+
+    public void record(TransactionAudit audit) {
+        Key key = new Key(orUnknown(audit.getStatus()), orUnknown(audit.getCurrency()), orUnknown(audit.getServiceType()));
+        RollingCounter counter = counters.get(key);
+        if (counter == null) {
+            // serviceType je volný text od klienta - počet kombinací je omezený, zbytek jde pod OTHER
+            Key effectiveKey = counters.size() >= maxKeys ? new Key(key.status(), key.currency(), OTHER) : key;
+            counter = counters.computeIfAbsent(effectiveKey, k -> new RollingCounter());
+        }
+        counter.add(clock.getAsLong(), toMinor(audit.getAmount()));
+    }
+
+    /**
+     * Souhrn pro každé okno: celkem, podle stavu, měny a typu služby.
+     * Částky se sčítají jen v rámci jedné měny (amounts: měna -> součet).
+     */
+    public Map<String, WindowStats> snapshot() {
+        long now = clock.getAsLong();
+        Map<String, WindowStats> result = new LinkedHashMap<>();
+        for (String window : new String[]{"1m", "5m", "1h"}) {
+            result.put(window, windowStats(now, WINDOWS.get(window)));
+        }
+        return result;
+    }
+
+    private WindowStats windowStats(long now, Duration window) {
+        GroupStats total = new GroupStats();
+        Map<String, GroupStats> byStatus = new TreeMap<>();
+        Map<String, GroupStats> byCurrency = new TreeMap<>();
+        Map<String, GroupStats> byServiceType = new TreeMap<>();
+        counters.forEach((key, counter) -> {
+            RollingCounter.Snapshot snapshot = counter.sum(now, window.toMillis());
+            if (snapshot.count() == 0) {
+                return;
+            }
+            total.add(key.currency(), snapshot);
+            byStatus.computeIfAbsent(key.status(), k -> new GroupStats()).add(key.currency(), snapshot);
+            byCurrency.computeIfAbsent(key.currency(), k -> new GroupStats()).add(key.currency(), snapshot);
+            byServiceType.computeIfAbsent(key.serviceType(), k -> new GroupStats()).add(key.currency(), snapshot);
+        });
+        return new WindowStats(total, byStatus, byCurrency, byServiceType);
+    }
+
+    static long toMinor(BigDecimal amount) {
+        if (amount == null) {
+            return 0;
+        }
+        return amount.setScale(AMOUNT_SCALE, RoundingMode.HALF_UP).unscaledValue().longValue();
+    }
+
+    static String orUnknown(String value) {
+        return value == null || value.isBlank() ? UNKNOWN : value;
+    }
+
+    private record Key(String status, String currency, String serviceType) {
+    }
+
+    public record WindowStats(GroupStats total,
+                              Map<String, GroupStats> byStatus,
+                              Map<String, GroupStats> byCurrency,
+                              Map<String, GroupStats> byServiceType) {
+    }
+
+    public static final class GroupStats {
+        private long count;
+        private final Map<String, BigDecimal> amounts = new TreeMap<>();
+
+        private void add(String currency, RollingCounter.Snapshot snapshot) {
+            count += snapshot.count();
+            amounts.merge(currency, BigDecimal.valueOf(snapshot.amountMinor(), AMOUNT_SCALE), BigDecimal::add);
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public Map<String, BigDecimal> getAmounts() {
+            return amounts;
+        }
+    }
+}
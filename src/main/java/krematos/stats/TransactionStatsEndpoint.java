@@ -0,0 +1,31 @@
+package krematos.stats;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * /actuator/transactionstats - statistiky z paměti, bez dotazu do DB.
+ * /actuator/transactionstats/{window} vrátí jen jedno okno (1m, 5m, 1h).
+ */
+@Component
+@Endpoint(id = "transactionstats")
+@RequiredArgsConstructor
+public class TransactionStatsEndpoint {
+
+    private final TransactionStatsAggregator aggregator;
+
+    @ReadOperation
+    public Map<String, TransactionStatsAggregator.WindowStats> stats() {
+        return aggregator.snapshot();
+    }
+
+    @ReadOperation
+    public TransactionStatsAggregator.WindowStats window(@Selector String window) {
+        return aggregator.snapshot().get(window);
+    }
+}
@@ -1,3 +1,5 @@
+-- Výchozí schéma = původní schema.sql (spring.sql.init). Na existující DB se přeskočí díky baseline-on-migrate,
+-- proto sem nepatří nic nového - další tabulky až v migracích od V2.
 CREATE TABLE IF NOT EXISTS transaction_audit (
     id SERIAL PRIMARY KEY,
     internal_order_id VARCHAR(255) NOT NULL,
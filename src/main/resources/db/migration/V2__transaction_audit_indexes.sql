@@ -0,0 +1,29 @@
+-- Indexy pro všechny dotazy aplikace - bez nich je každý dotaz sekvenční scan celé tabulky.
+
+-- Starší verze retry konzumenta zakládaly pro každý pokus nový řádek se stejným internal_order_id.
+-- Před vytvořením unikátního indexu se starší duplicity přesunou stranou (nemažou se bez stopy),
+-- v hlavní tabulce zůstane vždy nejnovější záznam.
+CREATE TABLE IF NOT EXISTS transaction_audit_superseded (LIKE transaction_audit INCLUDING DEFAULTS);
+
+WITH superseded AS (
+    DELETE FROM transaction_audit t
+    USING transaction_audit newer
+    WHERE newer.internal_order_id = t.internal_order_id
+      AND newer.id > t.id
+    RETURNING t.*
+)
+INSERT INTO transaction_audit_superseded SELECT * FROM superseded;
+
+-- findByInternalOrderId + ochrana proti dvojímu zpracování téže objednávky
+CREATE UNIQUE INDEX IF NOT EXISTS ux_transaction_audit_internal_order_id
+    ON transaction_audit (internal_order_id);
+
+-- Rescuer: status = 'FAILED' AND notification_sent = FALSE, keyset podle id, filtr updated_at
+CREATE INDEX IF NOT EXISTS ix_transaction_audit_failed_not_notified
+    ON transaction_audit (id, updated_at)
+    WHERE status = 'FAILED' AND notification_sent = FALSE;
+
+-- Úklid: status = 'PENDING', keyset podle id, filtr created_at
+CREATE INDEX IF NOT EXISTS ix_transaction_audit_pending
+    ON transaction_audit (id, created_at)
+    WHERE status = 'PENDING';
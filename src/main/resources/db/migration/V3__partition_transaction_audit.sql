@@ -0,0 +1,114 @@
+-- Přechod transaction_audit na nativní range partitioning podle created_at (denní partitions, hranice v UTC).
+-- Retence se pak řeší odpojením/smazáním celé partition místo DELETE/UPDATE po řádcích.
+--
+-- Omezení partitioned tabulky: primární i unikátní klíč musí obsahovat klíč partitioningu.
+-- Globální unikátnost internal_order_id proto hlídá samostatná (nepartitionovaná) tabulka
+-- transaction_order_key, plněná triggerem. Zároveň nese created_at, takže vyhledání podle
+-- internal_order_id trefí jedinou partition (run-time pruning v nested loop).
+--
+-- created_at / updated_at se mění na TIMESTAMPTZ: aplikace pracuje s Instant a porovnání
+-- timestamptz s timestamptz je immutable, takže pruning proběhne už při plánování dotazu.
+
+ALTER TABLE transaction_audit RENAME TO transaction_audit_legacy;
+ALTER SEQUENCE transaction_audit_id_seq OWNED BY NONE;
+
+CREATE TABLE transaction_audit (
+    id BIGINT NOT NULL DEFAULT nextval('transaction_audit_id_seq'),
+    internal_order_id VARCHAR(255) NOT NULL,
+    amount NUMERIC(19, 2),
+    currency VARCHAR(3),
+    service_type VARCHAR(50),
+    status VARCHAR(50),
+    details TEXT,
+    external_reference_id VARCHAR(255),
+    created_at TIMESTAMPTZ NOT NULL,
+    updated_at TIMESTAMPTZ,
+    notification_sent BOOLEAN NOT NULL DEFAULT FALSE,
+    PRIMARY KEY (id, created_at)
+) PARTITION BY RANGE (created_at);
+
+ALTER SEQUENCE transaction_audit_id_seq OWNED BY transaction_audit.id;
+
+-- Řádky mimo existující partitions (chybějící údržba, velmi stará data z migrace)
+CREATE TABLE transaction_audit_default PARTITION OF transaction_audit DEFAULT;
+
+-- Jediné místo s DDL pro partition - volá ho migrace i TransactionPartitionMaintenance
+CREATE OR REPLACE FUNCTION create_transaction_audit_partition(p_day DATE) RETURNS TEXT AS $$
+DECLARE
+    partition_name TEXT := 'transaction_audit_p' || to_char(p_day, 'YYYYMMDD');
+BEGIN
+    EXECUTE format('CREATE TABLE IF NOT EXISTS %I PARTITION OF transaction_audit FOR VALUES FROM (%L) TO (%L)',
+            partition_name,
+            p_day::timestamp AT TIME ZONE 'UTC',
+            (p_day + 1)::timestamp AT TIME ZONE 'UTC');
+    RETURN partition_name;
+END
+$$ LANGUAGE plpgsql;
+
+-- Denní partitions pro posledních 90 dní existujících dat a týden dopředu; starší řádky skončí v default partition
+DO $$
+DECLARE
+    first_day DATE;
+    day DATE;
+BEGIN
+    SELECT GREATEST(
+                   COALESCE(min(COALESCE(created_at, updated_at))::date, current_date),
+                   current_date - 90)
+    INTO first_day
+    FROM transaction_audit_legacy;
+
+    day := first_day;
+    WHILE day <= current_date + 7 LOOP
+        PERFORM create_transaction_audit_partition(day);
+        day := day + 1;
+    END LOOP;
+END
+$$;
+
+-- Původní sloupce jsou TIMESTAMP zapsaný v časové zóně session - stejná zóna se použije pro převod
+INSERT INTO transaction_audit (id, internal_order_id, amount, currency, service_type, status, details,
+                               external_reference_id, created_at, updated_at, notification_sent)
+SELECT id, internal_order_id, amount, currency, service_type, status, details,
+       external_reference_id,
+       COALESCE(created_at, updated_at, now())::timestamptz,
+       updated_at::timestamptz,
+       COALESCE(notification_sent, FALSE)
+FROM transaction_audit_legacy;
+
+DROP TABLE transaction_audit_legacy;
+
+-- Globálně unikátní internal_order_id + created_at pro pruning při vyhledání podle ID objednávky
+CREATE TABLE transaction_order_key (
+    internal_order_id VARCHAR(255) PRIMARY KEY,
+    created_at TIMESTAMPTZ NOT NULL
+);
+
+INSERT INTO transaction_order_key (internal_order_id, created_at)
+SELECT internal_order_id, created_at FROM transaction_audit;
+
+-- Retence maže klíče po rozsazích created_at
+CREATE INDEX ix_transaction_order_key_created_at ON transaction_order_key (created_at);
+
+CREATE OR REPLACE FUNCTION transaction_audit_register_order_key() RETURNS TRIGGER AS $$
+BEGIN
+    -- Duplicitní internal_order_id skončí unique_violation (23505) stejně jako dřív unikátní index
+    INSERT INTO transaction_order_key (internal_order_id, created_at) VALUES (NEW.internal_order_id, NEW.created_at);
+    RETURN NEW;
+END
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER transaction_audit_register_order_key
+    BEFORE INSERT ON transaction_audit
+    FOR EACH ROW EXECUTE FUNCTION transaction_audit_register_order_key();
+
+-- Indexy z V2, nyní jako partitioned indexy (automaticky se zakládají i na nových partitions)
+CREATE INDEX ix_transaction_audit_internal_order_id
+    ON transaction_audit (internal_order_id, created_at);
+
+CREATE INDEX ix_transaction_audit_failed_not_notified
+    ON transaction_audit (id, updated_at)
+    WHERE status = 'FAILED' AND notification_sent = FALSE;
+
+CREATE INDEX ix_transaction_audit_pending
+    ON transaction_audit (id, created_at)
+    WHERE status = 'PENDING';
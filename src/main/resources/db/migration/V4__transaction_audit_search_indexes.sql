@@ -0,0 +1,10 @@
+-- Indexy pro keyset stránkování vyhledávání auditů (ORDER BY created_at, id).
+-- Partitioned indexy - na nových partitions se zakládají automaticky.
+
+-- Vyhledávání podle stavu (typicky FAILED) v časovém rozsahu
+CREATE INDEX ix_transaction_audit_status_created_at_id
+    ON transaction_audit (status, created_at, id);
+
+-- Vyhledávání bez filtru stavu
+CREATE INDEX ix_transaction_audit_created_at_id
+    ON transaction_audit (created_at, id);
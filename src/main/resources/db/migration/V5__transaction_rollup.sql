@@ -0,0 +1,13 @@
+-- Minutové agregace konečných stavů transakcí pro reporting (počet a součet částky).
+-- Plní je TransactionRollupFlusher přírůstky z paměti každé instance (INSERT ... ON CONFLICT DO UPDATE),
+-- reporty pak čtou jen tuto tabulku místo skenování transaction_audit.
+-- Chybějící měna / typ služby se ukládá jako 'UNKNOWN' (sloupce klíče nesmí být NULL).
+CREATE TABLE transaction_rollup (
+    bucket_start TIMESTAMPTZ NOT NULL,
+    status VARCHAR(50) NOT NULL,
+    currency VARCHAR(50) NOT NULL,
+    service_type VARCHAR(50) NOT NULL,
+    tx_count BIGINT NOT NULL,
+    amount_sum NUMERIC(21, 2) NOT NULL,
+    PRIMARY KEY (bucket_start, status, currency, service_type)
+);
@@ -0,0 +1,4 @@
+-- Počet pokusů o zpracování transakce. Retry z DLQ znovu použije existující řádek a jen zvýší čítač
+-- (místo zakládání nového PENDING záznamu pro každý pokus).
+-- ADD COLUMN s konstantním DEFAULT je v Postgres 11+ jen změna metadat - bez přepisu partitions.
+ALTER TABLE transaction_audit ADD COLUMN attempt_count INTEGER NOT NULL DEFAULT 1;
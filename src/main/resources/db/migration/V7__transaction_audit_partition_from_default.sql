@@ -0,0 +1,40 @@
+-- Založení partition pro den, jehož řádky už leží v default partition (výpadek údržby, data z migrace).
+-- CREATE TABLE ... PARTITION OF v takovém případě selže, protože Postgres při založení prověří, že default
+-- partition žádné řádky nového rozsahu neobsahuje. Funkce proto řádky nejdřív přesune do samostatné tabulky
+-- a tu připojí (ATTACH) - vše v jedné transakci, takže se nic neztratí ani nezdvojí.
+-- Přesun nespouští trigger s transaction_order_key (klíče už existují). Jakákoli chyba se propaguje volajícímu.
+
+CREATE OR REPLACE FUNCTION create_transaction_audit_partition(p_day DATE) RETURNS TEXT AS $$
+DECLARE
+    partition_name TEXT := 'transaction_audit_p' || to_char(p_day, 'YYYYMMDD');
+    lower_bound TIMESTAMPTZ := p_day::timestamp AT TIME ZONE 'UTC';
+    upper_bound TIMESTAMPTZ := (p_day + 1)::timestamp AT TIME ZONE 'UTC';
+BEGIN
+    -- Idempotentní jako dřív: existující tabulka (připojená i odpojená retencí) se nechá být
+    IF to_regclass(partition_name) IS NOT NULL THEN
+        RETURN partition_name;
+    END IF;
+
+    -- Zablokuje zápisy do default partition, aby mezi přesunem a ATTACH nepřibyl další řádek téhož dne
+    LOCK TABLE transaction_audit_default IN EXCLUSIVE MODE;
+
+    IF NOT EXISTS (SELECT 1 FROM transaction_audit_default
+                   WHERE created_at >= lower_bound AND created_at < upper_bound) THEN
+        EXECUTE format('CREATE TABLE %I PARTITION OF transaction_audit FOR VALUES FROM (%L) TO (%L)',
+                partition_name, lower_bound, upper_bound);
+        RETURN partition_name;
+    END IF;
+
+    EXECUTE format('CREATE TABLE %I (LIKE transaction_audit INCLUDING DEFAULTS INCLUDING CONSTRAINTS)',
+            partition_name);
+    EXECUTE format('WITH moved AS (DELETE FROM transaction_audit_default '
+                       'WHERE created_at >= %L AND created_at < %L RETURNING *) '
+                       'INSERT INTO %I SELECT * FROM moved',
+            lower_bound, upper_bound, partition_name);
+    -- Indexy (i primární klíč) doplní ATTACH podle partitioned indexů
+    EXECUTE format('ALTER TABLE transaction_audit ATTACH PARTITION %I FOR VALUES FROM (%L) TO (%L)',
+            partition_name, lower_bound, upper_bound);
+    RAISE NOTICE 'Partition % založena přesunem řádků z default partition', partition_name;
+    RETURN partition_name;
+END
+$$ LANGUAGE plpgsql;
@@ -0,0 +1,3 @@
+-- Úklid PENDING transakcí už checkpoint neukládá - každý běh začíná od začátku (už označené řádky
+-- partial index přeskočí). Tabulka zůstala jen na vývojových DB, kde ji založila dřívější podoba V1.
+DROP TABLE IF EXISTS job_checkpoint;
@@ -0,0 +1,38 @@
+-- create_transaction_audit_partition vrací název partition jen tehdy, když ji opravdu založila,
+-- pro už existující tabulku vrací NULL - metrika partitions.created tak počítá jen skutečně založené partitions.
+-- Tělo je jinak stejné jako ve V7.
+
+CREATE OR REPLACE FUNCTION create_transaction_audit_partition(p_day DATE) RETURNS TEXT AS $$
+DECLARE
+    partition_name TEXT := 'transaction_audit_p' || to_char(p_day, 'YYYYMMDD');
+    lower_bound TIMESTAMPTZ := p_day::timestamp AT TIME ZONE 'UTC';
+    upper_bound TIMESTAMPTZ := (p_day + 1)::timestamp AT TIME ZONE 'UTC';
+BEGIN
+    -- Existující tabulka (připojená i odpojená retencí) se nechá být; NULL = nic se nezaložilo
+    IF to_regclass(partition_name) IS NOT NULL THEN
+        RETURN NULL;
+    END IF;
+
+    -- Zablokuje zápisy do default partition, aby mezi přesunem a ATTACH nepřibyl další řádek téhož dne
+    LOCK TABLE transaction_audit_default IN EXCLUSIVE MODE;
+
+    IF NOT EXISTS (SELECT 1 FROM transaction_audit_default
+                   WHERE created_at >= lower_bound AND created_at < upper_bound) THEN
+        EXECUTE format('CREATE TABLE %I PARTITION OF transaction_audit FOR VALUES FROM (%L) TO (%L)',
+                partition_name, lower_bound, upper_bound);
+        RETURN partition_name;
+    END IF;
+
+    EXECUTE format('CREATE TABLE %I (LIKE transaction_audit INCLUDING DEFAULTS INCLUDING CONSTRAINTS)',
+            partition_name);
+    EXECUTE format('WITH moved AS (DELETE FROM transaction_audit_default '
+                       'WHERE created_at >= %L AND created_at < %L RETURNING *) '
+                       'INSERT INTO %I SELECT * FROM moved',
+            lower_bound, upper_bound, partition_name);
+    -- Indexy (i primární klíč) doplní ATTACH podle partitioned indexů
+    EXECUTE format('ALTER TABLE transaction_audit ATTACH PARTITION %I FOR VALUES FROM (%L) TO (%L)',
+            partition_name, lower_bound, upper_bound);
+    RAISE NOTICE 'Partition % založena přesunem řádků z default partition', partition_name;
+    RETURN partition_name;
+END
+$$ LANGUAGE plpgsql;
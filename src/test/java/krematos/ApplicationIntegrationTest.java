@@ -44,6 +44,7 @@ import static org.assertj.core.api.Assertions.assertThat;
                 "connector.retry.max-attempts=3",
                 "connector.retry.delay-ms=100", // Rychlejší retry pro testy
                 "server.port=8080",
+                "spool.directory=target/spool/${random.uuid}",
                 "external.api.base-url=http://localhost:8080/mock-external",
                 "spring.security.oauth2.client.registration.external-api-client.client-id=test-client",
                 "spring.security.oauth2.client.registration.external-api-client.client-secret=test-secret",
@@ -30,7 +30,8 @@ import java.time.LocalDateTime;
 import static org.assertj.core.api.Assertions.assertThat;
 
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
-        "security.api-key=test-api-key"
+        "security.api-key=test-api-key",
+        "spool.directory=target/spool/${random.uuid}"
 })
 @Testcontainers
 @TestMethodOrder(MethodOrderer.OrderAnnotation.class)
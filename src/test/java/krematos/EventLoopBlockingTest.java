@@ -0,0 +1,219 @@
+package krematos;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import krematos.model.BulkStatusRequest;
+import krematos.model.ExternalApiResponse;
+import krematos.model.InternalRequest;
+import krematos.model.TransactionAudit;
+import krematos.repository.TransactionRepository;
+import krematos.spool.DeadLetterSpool;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springdoc.core.service.OpenAPIService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.blockhound.BlockHound;
+import reactor.blockhound.BlockingOperationError;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.HttpResources;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+/**
+ * Celá aplikace (Netty server, security, WebClient s OAuth2, Caffeine, publisher do RabbitMQ, springdoc)
+ * s nainstalovaným BlockHound: žádné blokující volání nesmí proběhnout na Netty event loopu
+ * ani na Reactor parallel vláknech. DB je nahrazená mockem repozitáře, externí API a token endpoint
+ * MockWebServerem, RabbitMQ neběží (DLQ publish selže na virtuálních vláknech blockingScheduleru
+ * a zpráva se zapíše do spoolu).
+ *
+ * Běží ve vlastním forku (surefire execution blockhound) - BlockHound zůstává v JVM nainstalovaný.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+                "security.api-key=blockhound-key",
+                "spring.flyway.enabled=false",
+                "spring.r2dbc.url=r2dbc:postgresql://localhost:1/none",
+                "spring.rabbitmq.host=localhost",
+                "spring.rabbitmq.port=1",
+                "messaging.consumer.enabled=false",
+                "connector.retry.delay-ms=10",
+                "spool.directory=target/spool/${random.uuid}",
+                "spring.security.oauth2.client.registration.external-api-client.client-id=test-client",
+                "spring.security.oauth2.client.registration.external-api-client.client-secret=test-secret",
+                "spring.security.oauth2.client.registration.external-api-client.authorization-grant-type=client_credentials",
+                "spring.security.oauth2.client.registration.external-api-client.provider=mock-provider"
+})
+class EventLoopBlockingTest {
+
+        private static final List<String> violations = new CopyOnWriteArrayList<>();
+        private static final MockWebServer externalApi = new MockWebServer();
+        private static final ObjectMapper objectMapper = new ObjectMapper();
+
+        static {
+                // install() načte i integrace Reactoru a Netty (která vlákna jsou neblokující)
+                BlockHound.install(builder -> builder
+                                // SecureRandom čte /dev/urandom, který nikdy neblokuje (trace ID v GlobalExceptionHandler)
+                                .allowBlockingCallsInside("java.util.UUID", "randomUUID")
+                                .blockingMethodCallback(method -> {
+                                        violations.add(method + " na vlákně " + Thread.currentThread().getName());
+                                        throw new BlockingOperationError(method);
+                                }));
+                externalApi.setDispatcher(new ExternalApiDispatcher());
+                try {
+                        externalApi.start();
+                } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                }
+        }
+
+        @Autowired
+        private WebTestClient webTestClient;
+
+        @Autowired
+        private OpenAPIService openAPIService;
+
+        @Autowired
+        private DeadLetterSpool deadLetterSpool;
+
+        @MockBean
+        private TransactionRepository transactionRepository;
+
+        @DynamicPropertySource
+        static void properties(DynamicPropertyRegistry registry) {
+                registry.add("external.api.base-url", () -> externalApi.url("/").toString());
+                registry.add("spring.security.oauth2.client.provider.mock-provider.token-uri",
+                                () -> externalApi.url("/token").toString());
+        }
+
+        @AfterAll
+        static void tearDown() throws IOException {
+                externalApi.shutdown();
+        }
+
+        @BeforeEach
+        void setUp() {
+                violations.clear();
+                webTestClient = webTestClient.mutate().responseTimeout(Duration.ofSeconds(30)).build();
+                when(transactionRepository.save(any(TransactionAudit.class))).thenAnswer(invocation -> {
+                        TransactionAudit audit = invocation.getArgument(0);
+                        audit.setId(1L);
+                        return Mono.just(audit);
+                });
+                when(transactionRepository.updateOutcome(any(), any(), any(), any(), any())).thenReturn(Mono.just(1));
+                when(transactionRepository.findAllByInternalOrderIds(any())).thenReturn(Flux.empty());
+        }
+
+        @Test
+        void shouldNotBlockEventLoopWhenProcessingTransactionAndQueryingStatus() {
+                post("BH-OK").expectStatus().isOk();
+
+                webTestClient.get().uri("/api/middleware/v1/transaction/BH-OK")
+                                .header("X-API-KEY", "blockhound-key")
+                                .exchange()
+                                .expectStatus().isOk();
+
+                webTestClient.post().uri("/api/middleware/v1/transactions/status")
+                                .header("X-API-KEY", "blockhound-key")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .bodyValue(new BulkStatusRequest(List.of("BH-OK", "BH-MISSING")))
+                                .exchange()
+                                .expectStatus().isOk();
+
+                assertThat(violations).isEmpty();
+        }
+
+        @Test
+        void shouldServeOpenApiDocumentPreloadedAtStartup() {
+                // springdoc.pre-loading-enabled sestaví dokument na vlastním vlákně až po startu kontextu -
+                // dotaz během sestavování by čekal na zámek springdoc na event loopu
+                await().atMost(Duration.ofSeconds(30))
+                                .until(() -> openAPIService.getCachedOpenAPI(Locale.getDefault()) != null);
+
+                webTestClient.get().uri("/v3/api-docs")
+                                .exchange()
+                                .expectStatus().isOk();
+
+                assertThat(violations).isEmpty();
+        }
+
+        @Test
+        void shouldNotBlockEventLoopWhenExternalApiFailsAndMessageGoesToDeadLetter() {
+                // Po vyčerpání retry jde zpráva do DLQ - spojení a kanál do RabbitMQ se otevírají na blockingScheduleru,
+                // broker neběží, takže zpráva skončí v lokálním spoolu
+                post("BH-FAIL").expectStatus().is5xxServerError();
+
+                assertThat(deadLetterSpool.hasPending()).isTrue();
+                assertThat(violations).isEmpty();
+        }
+
+        @Test
+        void shouldDetectBlockingCallOnEventLoop() {
+                // Kontrola, že BlockHound opravdu hlídá vlákna reactor-netty (jinak by testy výše nic nedokazovaly)
+                assertThatThrownBy(() -> HttpResources.get().onServer(true).next()
+                                .submit(() -> {
+                                        Thread.sleep(1);
+                                        return null;
+                                })
+                                .get(5, TimeUnit.SECONDS))
+                                .isInstanceOf(ExecutionException.class)
+                                .hasCauseInstanceOf(BlockingOperationError.class);
+
+                assertThat(violations).singleElement().asString().contains("sleep");
+        }
+
+        private WebTestClient.ResponseSpec post(String orderId) {
+                return webTestClient.post().uri("/api/middleware/v1/transaction")
+                                .header("X-API-KEY", "blockhound-key")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .bodyValue(new InternalRequest(orderId, new BigDecimal("10.00"), "CZK", "PAYMENT", Instant.now()))
+                                .exchange();
+        }
+
+        // Token endpoint (client_credentials) a externí API; BH-FAIL simuluje výpadek (503)
+        private static class ExternalApiDispatcher extends Dispatcher {
+
+                @Override
+                public MockResponse dispatch(RecordedRequest request) {
+                        if ("/token".equals(request.getPath())) {
+                                return json("{\"access_token\":\"bh-token\",\"token_type\":\"Bearer\",\"expires_in\":3600}");
+                        }
+                        if (request.getBody().clone().readUtf8().contains("BH-FAIL")) {
+                                return new MockResponse().setResponseCode(503);
+                        }
+                        try {
+                                return json(objectMapper.writeValueAsString(new ExternalApiResponse(200, "EXT-BH", "COMPLETED", 1L)));
+                        } catch (IOException e) {
+                                return new MockResponse().setResponseCode(500);
+                        }
+                }
+
+                private static MockResponse json(String body) {
+                        return new MockResponse().setHeader("Content-Type", "application/json").setBody(body);
+                }
+        }
+}
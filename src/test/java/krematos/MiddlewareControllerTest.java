@@ -2,10 +2,18 @@ package krematos;
 
 import krematos.connector.ExternalApiException;
 import krematos.exception.ExternalServiceException;
+import krematos.exception.ResourceNotFoundException;
 import krematos.controller.MiddlewareController;
+import krematos.model.BulkStatusRequest;
+import krematos.model.BulkStatusResponse;
 import krematos.model.InternalRequest;
 import krematos.model.InternalResponse;
+import krematos.model.TransactionAudit;
+import krematos.model.TransactionStatusResponse;
+import krematos.service.AsyncTransactionQueue;
 import krematos.service.TransactionService;
+import krematos.service.TransactionStatusCache;
+import krematos.service.TransactionStatusService;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -18,10 +26,14 @@ import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
 import org.springframework.http.HttpStatus;
 import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.Instant;
+import java.util.List;
+import java.util.Map;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
@@ -41,6 +53,12 @@ class MiddlewareControllerTest {
         @MockBean
         private TransactionService transactionService;
 
+        @MockBean
+        private TransactionStatusService transactionStatusService;
+
+        @MockBean
+        private AsyncTransactionQueue asyncTransactionQueue;
+
         private InternalRequest validRequest;
         private final String API_URL = "/api/middleware/v1/transaction";
 
@@ -126,4 +144,112 @@ class MiddlewareControllerTest {
                                                 .contains("Externí služba je dočasně nedostupná"));
 
         }
+
+        @Test
+        @DisplayName("STAV: Vrátí stav transakce s ETag hlavičkou")
+        void shouldReturnTransactionStatusWithEtag() {
+                when(transactionStatusService.findStatus("INT-ORDER-999"))
+                                .thenReturn(Mono.just(statusEntry()));
+
+                webTestClient.get().uri(API_URL + "/INT-ORDER-999")
+                                .exchange()
+                                .expectStatus().isOk()
+                                .expectHeader().valueEquals("ETag", "\"SUCCESS-1\"")
+                                .expectBody()
+                                .jsonPath("$.internalOrderId").isEqualTo("INT-ORDER-999")
+                                .jsonPath("$.status").isEqualTo("SUCCESS");
+        }
+
+        @Test
+        @DisplayName("STAV: Shodný If-None-Match vrátí 304 Not Modified bez těla")
+        void shouldReturn304WhenEtagMatches() {
+                when(transactionStatusService.findStatus("INT-ORDER-999"))
+                                .thenReturn(Mono.just(statusEntry()));
+
+                webTestClient.get().uri(API_URL + "/INT-ORDER-999")
+                                .header("If-None-Match", "\"SUCCESS-1\"")
+                                .exchange()
+                                .expectStatus().isNotModified()
+                                .expectBody().isEmpty();
+        }
+
+        @Test
+        @DisplayName("STAV: Neexistující transakce vrátí 404")
+        void shouldReturn404ForUnknownTransaction() {
+                when(transactionStatusService.findStatus("UNKNOWN"))
+                                .thenReturn(Mono.error(new ResourceNotFoundException("Transakce", "UNKNOWN")));
+
+                webTestClient.get().uri(API_URL + "/UNKNOWN")
+                                .exchange()
+                                .expectStatus().isNotFound()
+                                .expectBody()
+                                .jsonPath("$.errorCode").isEqualTo("RESOURCE_NOT_FOUND");
+        }
+
+        @Test
+        @DisplayName("HROMADNÝ STAV: Vrátí mapu stavů a nenalezená ID")
+        void shouldReturnBulkStatuses() {
+                when(transactionStatusService.findStatuses(List.of("A", "B")))
+                                .thenReturn(Mono.just(new BulkStatusResponse(Map.of("A", "SUCCESS"), List.of("B"))));
+
+                webTestClient.post().uri("/api/middleware/v1/transactions/status")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .bodyValue(new BulkStatusRequest(List.of("A", "B")))
+                                .exchange()
+                                .expectStatus().isOk()
+                                .expectBody()
+                                .jsonPath("$.statuses.A").isEqualTo("SUCCESS")
+                                .jsonPath("$.notFound[0]").isEqualTo("B");
+        }
+
+        @Test
+        @DisplayName("ASYNC: Přijatá transakce vrátí 202 s tracking ID a odkazem na stav")
+        void shouldReturn202AcceptedWithTrackingId() {
+                when(asyncTransactionQueue.submit(any(InternalRequest.class)))
+                                .thenReturn(Mono.just(TransactionAudit.builder()
+                                                .internalOrderId("INT-ORDER-999")
+                                                .status("PENDING")
+                                                .build()));
+
+                webTestClient.post().uri(API_URL + "/async")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .bodyValue(validRequest)
+                                .exchange()
+                                .expectStatus().isAccepted()
+                                .expectHeader().location("/api/middleware/v1/transaction/INT-ORDER-999")
+                                .expectBody()
+                                .jsonPath("$.internalOrderId").isEqualTo("INT-ORDER-999")
+                                .jsonPath("$.status").isEqualTo("PENDING")
+                                .jsonPath("$.eventsUrl").isEqualTo("/api/middleware/v1/transaction/INT-ORDER-999/events");
+        }
+
+        @Test
+        @DisplayName("ASYNC: Stream událostí pošle stavy až po konečný výsledek")
+        void shouldStreamStatusUntilFinal() {
+                TransactionStatusCache.Entry pending = new TransactionStatusCache.Entry(TransactionStatusResponse.builder()
+                                .internalOrderId("INT-ORDER-999")
+                                .status("PENDING")
+                                .build(), "\"PENDING-1\"");
+                when(transactionStatusService.watchStatus("INT-ORDER-999"))
+                                .thenReturn(Flux.just(pending, statusEntry()));
+
+                List<String> statuses = webTestClient.get().uri(API_URL + "/INT-ORDER-999/events")
+                                .accept(MediaType.TEXT_EVENT_STREAM)
+                                .exchange()
+                                .expectStatus().isOk()
+                                .returnResult(TransactionStatusResponse.class)
+                                .getResponseBody()
+                                .map(TransactionStatusResponse::getStatus)
+                                .collectList()
+                                .block(Duration.ofSeconds(5));
+
+                assertThat(statuses).containsExactly("PENDING", "SUCCESS");
+        }
+
+        private TransactionStatusCache.Entry statusEntry() {
+                return new TransactionStatusCache.Entry(TransactionStatusResponse.builder()
+                                .internalOrderId("INT-ORDER-999")
+                                .status("SUCCESS")
+                                .build(), "\"SUCCESS-1\"");
+        }
 }
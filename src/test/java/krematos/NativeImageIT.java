@@ -0,0 +1,284 @@
+package krematos;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import krematos.config.RetryLane;
+import krematos.model.ExternalApiResponse;
+import krematos.model.InternalRequest;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.junit.jupiter.api.extension.TestWatcher;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.containers.RabbitMQContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * End-to-end test nativní binárky (ne JVM): ověří, že runtime hints a reachability metadata
+ * pokrývají skutečně používané cesty - R2DBC + Flyway, OAuth2 client_credentials, Jackson DTO
+ * přes WebClient, reactor-rabbitmq konzument, springdoc a actuator. Zaloguje dobu startu a RSS.
+ * Výstup binárky se drží v paměti (posledních OUTPUT_LINES řádků) a vypíše se jen při selhání testu nebo startu.
+ *
+ *   mvn -Pnative verify        (GraalVM jako JAVA_HOME, běžící Docker)
+ *
+ * Cestu k binárce předává failsafe v profilu native (native.binary).
+ */
+@Slf4j
+@EnabledIfSystemProperty(named = "native.binary", matches = ".+")
+@Testcontainers(disabledWithoutDocker = true)
+class NativeImageIT {
+
+        private static final String API_KEY = "native-it-key";
+        private static final Duration START_TIMEOUT = Duration.ofSeconds(30);
+        // Orientační strop - JVM varianta má po startu přes 200 MB
+        private static final long MAX_RSS_MB = 150;
+        private static final int OUTPUT_LINES = 500;
+
+        @Container
+        static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15-alpine");
+
+        @Container
+        static RabbitMQContainer rabbit = new RabbitMQContainer("rabbitmq:3-management-alpine");
+
+        private static final ObjectMapper objectMapper = new ObjectMapper()
+                        .registerModule(new JavaTimeModule())
+                        .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        private static final HttpClient http = HttpClient.newHttpClient();
+
+        private static MockWebServer externalApi;
+        private static Process application;
+        private static String baseUrl;
+        private static long startMillis;
+        private static final Deque<String> output = new ArrayDeque<>();
+
+        @RegisterExtension
+        static final TestWatcher dumpOutputOnFailure = new TestWatcher() {
+                @Override
+                public void testFailed(ExtensionContext context, Throwable cause) {
+                        log.error("Test {} selhal, výstup nativní binárky:\n{}", context.getDisplayName(), output());
+                }
+        };
+
+        @BeforeAll
+        static void startBinary() throws Exception {
+                externalApi = new MockWebServer();
+                externalApi.setDispatcher(new ExternalApiDispatcher());
+                externalApi.start();
+
+                int port = freePort();
+                baseUrl = "http://localhost:" + port;
+                String database = postgres.getHost() + ":" + postgres.getFirstMappedPort() + "/" + postgres.getDatabaseName();
+                List<String> command = List.of(Path.of(System.getProperty("native.binary")).toAbsolutePath().toString(),
+                                "--server.port=" + port,
+                                "--security.api-key=" + API_KEY,
+                                "--spring.r2dbc.url=r2dbc:postgresql://" + database,
+                                "--spring.r2dbc.username=" + postgres.getUsername(),
+                                "--spring.r2dbc.password=" + postgres.getPassword(),
+                                "--spring.flyway.url=jdbc:postgresql://" + database,
+                                "--spring.flyway.user=" + postgres.getUsername(),
+                                "--spring.flyway.password=" + postgres.getPassword(),
+                                "--spring.rabbitmq.host=" + rabbit.getHost(),
+                                "--spring.rabbitmq.port=" + rabbit.getAmqpPort(),
+                                "--external.api.base-url=" + externalApi.url("/"),
+                                "--spring.security.oauth2.client.provider.external-system-client.token-uri=" + externalApi.url("/token"));
+
+                long startNanos = System.nanoTime();
+                application = new ProcessBuilder(command).redirectErrorStream(true).start();
+                awaitStarted(application);
+                startMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        }
+
+        @AfterAll
+        static void stopBinary() throws Exception {
+                if (application != null) {
+                        application.destroy();
+                        application.waitFor(30, TimeUnit.SECONDS);
+                }
+                if (externalApi != null) {
+                        externalApi.shutdown();
+                }
+        }
+
+        @Test
+        void shouldStartQuicklyWithSmallFootprint() throws Exception {
+                long rssMb = rssMb(application.pid());
+                log.info("Nativní binárka: start {} ms, RSS {} MB", startMillis, rssMb);
+
+                assertThat(rssMb).isLessThan(MAX_RSS_MB);
+        }
+
+        @Test
+        void shouldReportDatabaseAndRabbitHealthy() throws Exception {
+                HttpResponse<String> response = get("/actuator/health");
+
+                assertThat(response.statusCode()).isEqualTo(200);
+                JsonNode health = objectMapper.readTree(response.body());
+                assertThat(health.path("status").asText()).isEqualTo("UP");
+                assertThat(health.path("components").path("r2dbc").path("status").asText()).isEqualTo("UP");
+                assertThat(health.path("components").path("rabbit").path("status").asText()).isEqualTo("UP");
+        }
+
+        @Test
+        void shouldProcessTransactionThroughExternalApiAndPersistIt() throws Exception {
+                InternalRequest request = new InternalRequest("NATIVE-001", new BigDecimal("250.75"), "CZK", "PAYMENT",
+                                Instant.now());
+
+                HttpResponse<String> response = http.send(HttpRequest.newBuilder(URI.create(baseUrl + "/api/middleware/v1/transaction"))
+                                .header("X-API-KEY", API_KEY)
+                                .header("Content-Type", "application/json")
+                                .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(request)))
+                                .build(), HttpResponse.BodyHandlers.ofString());
+
+                assertThat(response.statusCode()).isEqualTo(200);
+                assertThat(objectMapper.readTree(response.body()).path("success").asBoolean()).isTrue();
+
+                HttpResponse<String> status = get("/api/middleware/v1/transaction/NATIVE-001");
+                assertThat(status.statusCode()).isEqualTo(200);
+                assertThat(objectMapper.readTree(status.body()).path("status").asText()).isEqualTo("SUCCESS");
+        }
+
+        @Test
+        void shouldConsumeRetryQueuesWithReactorRabbitmq() throws Exception {
+                // Konzument retry front se přihlašuje po startu kontextu - chvíli se počká
+                long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+                String queues;
+                do {
+                        queues = rabbit.execInContainer("rabbitmqctl", "list_queues", "-q", "name", "consumers").getStdout();
+                        if (queues.contains(RetryLane.LOW.queueName() + "\t1")) {
+                                break;
+                        }
+                        Thread.sleep(200);
+                } while (System.nanoTime() < deadline);
+
+                assertThat(queues).contains(RetryLane.LOW.queueName() + "\t1", RetryLane.HIGH.queueName() + "\t1");
+        }
+
+        @Test
+        void shouldServeOpenApiDocument() throws Exception {
+                HttpResponse<String> response = get("/v3/api-docs");
+
+                assertThat(response.statusCode()).isEqualTo(200);
+                assertThat(objectMapper.readTree(response.body()).path("paths").has("/api/middleware/v1/transaction")).isTrue();
+        }
+
+        private static HttpResponse<String> get(String path) throws Exception {
+                return http.send(HttpRequest.newBuilder(URI.create(baseUrl + path))
+                                .header("X-API-KEY", API_KEY)
+                                .GET()
+                                .build(), HttpResponse.BodyHandlers.ofString());
+        }
+
+        private static void awaitStarted(Process process) throws Exception {
+                CompletableFuture<Void> started = CompletableFuture.runAsync(() -> {
+                        try (BufferedReader reader = new BufferedReader(
+                                        new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+                                String line;
+                                while ((line = reader.readLine()) != null) {
+                                        capture(line);
+                                        if (line.contains("Started Main in")) {
+                                                // Výstup se dál čte, aby se proces nezablokoval na plném bufferu
+                                                CompletableFuture.runAsync(() -> reader.lines().forEach(NativeImageIT::capture));
+                                                return;
+                                        }
+                                }
+                        } catch (IOException e) {
+                                throw new IllegalStateException(e);
+                        }
+                        throw new IllegalStateException("Nativní binárka skončila před dokončením startu");
+                });
+                try {
+                        started.get(START_TIMEOUT.toSeconds(), TimeUnit.SECONDS);
+                } catch (Exception e) {
+                        log.error("Nativní binárka nenastartovala, výstup:\n{}", output());
+                        throw e;
+                }
+        }
+
+        private static void capture(String line) {
+                synchronized (output) {
+                        if (output.size() == OUTPUT_LINES) {
+                                output.removeFirst();
+                        }
+                        output.addLast(line);
+                }
+        }
+
+        private static String output() {
+                synchronized (output) {
+                        return String.join(System.lineSeparator(), output);
+                }
+        }
+
+        private static long rssMb(long pid) throws IOException {
+                for (String line : Files.readAllLines(Path.of("/proc", String.valueOf(pid), "status"))) {
+                        if (line.startsWith("VmRSS:")) {
+                                return Long.parseLong(line.replaceAll("\\D", "")) / 1024;
+                        }
+                }
+                throw new IllegalStateException("VmRSS nenalezeno pro PID " + pid);
+        }
+
+        private static int freePort() throws IOException {
+                try (ServerSocket socket = new ServerSocket(0)) {
+                        return socket.getLocalPort();
+                }
+        }
+
+        // Token endpoint (client_credentials) a externí API; bez Bearer tokenu vrací 401
+        private static class ExternalApiDispatcher extends Dispatcher {
+
+                @Override
+                public MockResponse dispatch(RecordedRequest request) {
+                        try {
+                                if ("/token".equals(request.getPath())) {
+                                        return json("{\"access_token\":\"native-token\",\"token_type\":\"Bearer\",\"expires_in\":3600}");
+                                }
+                                if ("/v1/process".equals(request.getPath())
+                                                && "Bearer native-token".equals(request.getHeader("Authorization"))) {
+                                        return json(objectMapper.writeValueAsString(
+                                                        new ExternalApiResponse(200, "EXT-NATIVE", "COMPLETED", 5L)));
+                                }
+                                return new MockResponse().setResponseCode(401);
+                        } catch (IOException e) {
+                                return new MockResponse().setResponseCode(500);
+                        }
+                }
+
+                private static MockResponse json(String body) {
+                        return new MockResponse().setHeader("Content-Type", "application/json").setBody(body);
+                }
+        }
+}
@@ -0,0 +1,168 @@
+package krematos;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.condition.EnabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Porovná start aplikace bez optimalizací a s AOT + CDS archivem (jako v Dockerfile):
+ * doba do "Started Main" (ApplicationReady) a RSS procesu hned po startu.
+ * Měří zabalený JAR - spouští se ručně po buildu s profilem fast-startup:
+ *
+ *   mvn -Pfast-startup package -DskipTests
+ *   mvn test -Dtest=StartupBenchmarkTest -Dstartup.benchmark=true
+ *
+ * DB ani RabbitMQ nejsou potřeba - migrace se vypne, spojení se otevírají až při prvním použití.
+ */
+@EnabledOnOs(OS.LINUX) // RSS z /proc
+@EnabledIfSystemProperty(named = "startup.benchmark", matches = "true")
+class StartupBenchmarkTest {
+
+        private static final int RUNS = 3;
+        private static final Duration START_TIMEOUT = Duration.ofMinutes(2);
+
+        @TempDir
+        Path workDir;
+
+        @Test
+        void aotAndCdsStartFasterThanPlainJar() throws Exception {
+                Path jar = extractApplication();
+                Path archive = jar.resolveSibling("application.jsa");
+                trainCdsArchive(jar, archive);
+
+                Result plain = measure(jar, List.of());
+                Result optimised = measure(jar, List.of("-XX:SharedArchiveFile=" + archive, "-Dspring.aot.enabled=true"));
+
+                System.out.printf("%n%-12s %14s %10s%n", "varianta", "start (ms)", "RSS (MB)");
+                System.out.printf("%-12s %14d %10d%n", "plain", plain.startMillis(), plain.rssMb());
+                System.out.printf("%-12s %14d %10d%n", "aot+cds", optimised.startMillis(), optimised.rssMb());
+
+                assertThat(optimised.startMillis()).isLessThan(plain.startMillis());
+        }
+
+        // Rozbalený layout (lib/ vedle JAR) - CDS archiv vyžaduje stabilní classpath
+        private Path extractApplication() throws Exception {
+                Path packaged;
+                try (Stream<Path> files = Files.list(Path.of("target"))) {
+                        packaged = files.filter(p -> p.toString().endsWith(".jar") && !p.toString().endsWith("-plain.jar"))
+                                        .findFirst()
+                                        .orElseThrow(() -> new IllegalStateException("Chybí target/*.jar - spusťte mvn -Pfast-startup package"));
+                }
+                Path destination = workDir.resolve("app");
+                run(List.of(java(), "-Djarmode=tools", "-jar", packaged.toAbsolutePath().toString(),
+                                "extract", "--destination", destination.toString()));
+                return destination.resolve(packaged.getFileName());
+        }
+
+        // Stejný tréninkový běh jako v Dockerfile: kontext se nastartuje a hned ukončí
+        private void trainCdsArchive(Path jar, Path archive) throws Exception {
+                List<String> command = new ArrayList<>(List.of(java(), "-XX:ArchiveClassesAtExit=" + archive,
+                                "-Dspring.context.exit=onRefresh", "-Dspring.aot.enabled=true",
+                                "-jar", jar.toString(), "--db.migrate-on-startup=false"));
+                run(command);
+                assertThat(archive).exists();
+        }
+
+        private Result measure(Path jar, List<String> jvmOptions) throws Exception {
+                List<Long> starts = new ArrayList<>();
+                List<Long> rss = new ArrayList<>();
+                for (int i = 0; i < RUNS; i++) {
+                        List<String> command = new ArrayList<>();
+                        command.add(java());
+                        command.addAll(jvmOptions);
+                        command.addAll(List.of("-jar", jar.toString(), "--server.port=" + freePort(),
+                                        "--db.migrate-on-startup=false"));
+
+                        long startNanos = System.nanoTime();
+                        Process process = new ProcessBuilder(command)
+                                        .directory(jar.getParent().toFile())
+                                        .redirectErrorStream(true)
+                                        .start();
+                        try {
+                                awaitStarted(process);
+                                starts.add(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+                                rss.add(rssMb(process.pid()));
+                        } finally {
+                                process.destroy();
+                                process.waitFor(30, TimeUnit.SECONDS);
+                        }
+                }
+                return new Result(median(starts), median(rss));
+        }
+
+        private static void awaitStarted(Process process) throws Exception {
+                CompletableFuture<Void> started = CompletableFuture.runAsync(() -> {
+                        try (BufferedReader reader = new BufferedReader(
+                                        new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+                                String line;
+                                while ((line = reader.readLine()) != null) {
+                                        if (line.contains("Started Main in")) {
+                                                // Výstup se dál čte, aby se proces nezablokoval na plném bufferu
+                                                CompletableFuture.runAsync(() -> reader.lines().forEach(l -> { }));
+                                                return;
+                                        }
+                                }
+                        } catch (IOException e) {
+                                throw new IllegalStateException(e);
+                        }
+                        throw new IllegalStateException("Aplikace skončila před dokončením startu");
+                });
+                started.get(START_TIMEOUT.toSeconds(), TimeUnit.SECONDS);
+        }
+
+        private static long rssMb(long pid) throws IOException {
+                for (String line : Files.readAllLines(Path.of("/proc", String.valueOf(pid), "status"))) {
+                        if (line.startsWith("VmRSS:")) {
+                                return Long.parseLong(line.replaceAll("\\D", "")) / 1024;
+                        }
+                }
+                throw new IllegalStateException("VmRSS nenalezeno pro PID " + pid);
+        }
+
+        private void run(List<String> command) throws Exception {
+                Process process = new ProcessBuilder(command)
+                                .directory(workDir.toFile())
+                                .redirectErrorStream(true)
+                                .redirectOutput(workDir.resolve("build.log").toFile())
+                                .start();
+                assertThat(process.waitFor(START_TIMEOUT.toSeconds(), TimeUnit.SECONDS)).isTrue();
+                assertThat(process.exitValue())
+                                .as("%s%n%s", command, Files.readString(workDir.resolve("build.log")))
+                                .isZero();
+        }
+
+        private static String java() {
+                return Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        }
+
+        private static int freePort() throws IOException {
+                try (ServerSocket socket = new ServerSocket(0)) {
+                        return socket.getLocalPort();
+                }
+        }
+
+        private static long median(List<Long> values) {
+                return values.stream().sorted().toList().get(values.size() / 2);
+        }
+
+        private record Result(long startMillis, long rssMb) {
+        }
+}
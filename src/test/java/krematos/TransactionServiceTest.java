@@ -2,28 +2,44 @@ package krematos;
 
 import krematos.connector.ExternalApiException;
 import krematos.connector.ExternalSystemConnector;
+import krematos.connector.PaymentConnectorRegistry;
+import krematos.exception.DuplicateTransactionException;
+import krematos.exception.PaymentOutcomeUnknownException;
 import krematos.exception.ValidationException;
 import krematos.controller.GlobalExceptionHandler;
 import krematos.model.*;
 import krematos.repository.TransactionRepository;
+import krematos.service.TransactionAuditBatchLoader;
 import krematos.service.TransactionService;
+import krematos.service.TransactionStatusCache;
+import krematos.spool.AuditWriteAheadLog;
+import krematos.stats.TransactionRollupCollector;
+import krematos.stats.TransactionStatsAggregator;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.context.annotation.Import;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DuplicateKeyException;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 
 import java.math.BigDecimal;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeoutException;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -33,12 +49,32 @@ class TransactionServiceTest {
         @Mock
         private ExternalSystemConnector externalSystemConnector;
 
+        @Mock
+        private PaymentConnectorRegistry connectorRegistry;
+
         @Mock
         private TransactionRepository transactionRepository;
 
+        @Mock
+        private TransactionStatusCache statusCache;
+
+        @Mock
+        private TransactionStatsAggregator statsAggregator;
+
+        @Mock
+        private TransactionRollupCollector rollupCollector;
+
+        @Mock
+        private AuditWriteAheadLog auditWal;
+
+        @Mock
+        private TransactionAuditBatchLoader auditLoader;
+
         @InjectMocks
         private TransactionService transactionService;
 
+        private static final Instant CREATED_AT = Instant.parse("2025-01-15T10:00:00Z");
+
         private InternalRequest validRequest;
         private TransactionAudit pendingAudit;
 
@@ -55,7 +91,10 @@ class TransactionServiceTest {
                                 .id(1L)
                                 .internalOrderId("ORDER-123")
                                 .status(AuditStatus.PENDING.name())
+                                .createdAt(CREATED_AT)
                                 .build();
+
+                lenient().when(connectorRegistry.resolve(any(), any())).thenReturn(externalSystemConnector);
         }
 
         @Test
@@ -64,6 +103,8 @@ class TransactionServiceTest {
                 // Given
                 when(transactionRepository.save(any(TransactionAudit.class)))
                                 .thenReturn(Mono.just(pendingAudit));
+                when(transactionRepository.updateOutcome(any(), any(), any(), any(), any()))
+                                .thenReturn(Mono.just(1));
 
                 ExternalApiResponse apiResponse = new ExternalApiResponse(
                                 200,
@@ -83,8 +124,14 @@ class TransactionServiceTest {
                                 .verifyComplete();
 
                 // Verify interactions
-                verify(transactionRepository, times(2)).save(any(TransactionAudit.class));
+                verify(transactionRepository, times(1)).save(any(TransactionAudit.class));
+                verify(transactionRepository).updateOutcome(eq(1L), eq(CREATED_AT), eq(AuditStatus.SUCCESS.name()),
+                                eq("Potvrzeno ID: CONFIRM-1"), any(Instant.class));
                 verify(externalSystemConnector, times(1)).sendRequest(any(ExternalApiRequest.class));
+                // Konečný stav jde do near-cache pro status API
+                verify(statusCache).put(argThat(audit -> AuditStatus.SUCCESS.name().equals(audit.getStatus())));
+                verify(statsAggregator).record(argThat(audit -> AuditStatus.SUCCESS.name().equals(audit.getStatus())));
+                verify(rollupCollector).record(argThat(audit -> AuditStatus.SUCCESS.name().equals(audit.getStatus())));
         }
 
         @Test
@@ -94,6 +141,9 @@ class TransactionServiceTest {
                 when(transactionRepository.save(any(TransactionAudit.class)))
                                 .thenReturn(Mono.just(pendingAudit));
 
+                when(transactionRepository.updateOutcome(any(), any(), any(), any(), any()))
+                                .thenReturn(Mono.just(1));
+
                 when(externalSystemConnector.sendRequest(any()))
                                 .thenReturn(Mono.error(new RuntimeException("Connection timed out")));
 
@@ -103,13 +153,29 @@ class TransactionServiceTest {
                                                 "Connection timed out".equals(throwable.getMessage()))
                                 .verify();
 
-                // Verify status FAILED
-                ArgumentCaptor<TransactionAudit> auditCaptor = ArgumentCaptor.forClass(TransactionAudit.class);
-                verify(transactionRepository, times(2)).save(auditCaptor.capture());
+                // Verify status FAILED - UPDATE podle (id, created_at), aby se trefila jediná partition
+                verify(transactionRepository).updateOutcome(eq(1L), eq(CREATED_AT), eq(AuditStatus.FAILED.name()),
+                                eq("Connection timed out"), any(Instant.class));
+        }
 
-                TransactionAudit failedAudit = auditCaptor.getAllValues().get(1);
-                assertThat(failedAudit.getStatus()).isEqualTo(AuditStatus.FAILED.name());
-                assertThat(failedAudit.getDetails()).isEqualTo("Connection timed out");
+        @Test
+        @DisplayName("API TIMEOUT: Outcome unknown, audit is saved as UNCERTAIN instead of FAILED")
+        void process_ExternalApiTimeoutLeavesOutcomeUncertain() {
+                when(transactionRepository.save(any(TransactionAudit.class)))
+                                .thenReturn(Mono.just(pendingAudit));
+                when(transactionRepository.updateOutcome(any(), any(), any(), any(), any()))
+                                .thenReturn(Mono.just(1));
+                when(externalSystemConnector.sendRequest(any()))
+                                .thenReturn(Mono.error(new PaymentOutcomeUnknownException("External API", "ORDER-123",
+                                                new TimeoutException())));
+
+                StepVerifier.create(transactionService.process(validRequest))
+                                .expectError(PaymentOutcomeUnknownException.class)
+                                .verify();
+
+                // FAILED by rescuer poslal do DLQ a platba by se mohla provést dvakrát
+                verify(transactionRepository).updateOutcome(eq(1L), eq(CREATED_AT), eq(AuditStatus.UNCERTAIN.name()),
+                                any(), any(Instant.class));
         }
 
         @Test
@@ -159,6 +225,9 @@ class TransactionServiceTest {
                 when(transactionRepository.save(any(TransactionAudit.class)))
                                 .thenReturn(Mono.just(pendingAudit));
 
+                when(transactionRepository.updateOutcome(any(), any(), any(), any(), any()))
+                                .thenReturn(Mono.just(1));
+
                 when(externalSystemConnector.sendRequest(any()))
                                 .thenReturn(Mono.empty());
 
@@ -167,13 +236,246 @@ class TransactionServiceTest {
                                 .expectErrorMatches(e -> e.getMessage().contains("Prázdná odpověď"))
                                 .verify();
 
-                verify(transactionRepository, times(2)).save(any());
+                verify(transactionRepository, times(1)).save(any());
 
                 // Verify FAILED status
-                ArgumentCaptor<TransactionAudit> auditCaptor = ArgumentCaptor.forClass(TransactionAudit.class);
-                verify(transactionRepository, times(2)).save(auditCaptor.capture());
+                verify(transactionRepository).updateOutcome(eq(1L), eq(CREATED_AT), eq(AuditStatus.FAILED.name()),
+                                any(), any(Instant.class));
+        }
 
-                TransactionAudit failedAudit = auditCaptor.getAllValues().get(1);
-                assertThat(failedAudit.getStatus()).isEqualTo(AuditStatus.FAILED.name());
+        @Test
+        @DisplayName("DUPLICATE: Same internalOrderId is rejected with DuplicateTransactionException")
+        void process_DuplicateOrderId() {
+                // Given
+                when(transactionRepository.save(any(TransactionAudit.class)))
+                                .thenReturn(Mono.error(new DuplicateKeyException("ux_transaction_audit_internal_order_id")));
+
+                // When & Then
+                StepVerifier.create(transactionService.process(validRequest))
+                                .expectError(DuplicateTransactionException.class)
+                                .verify();
+
+                verifyNoInteractions(externalSystemConnector);
+        }
+
+        @Test
+        @DisplayName("RETRY: Existing audit record is reused and its attempt counter incremented")
+        void processRetry_ReusesExistingAudit() {
+                // Given
+                TransactionAudit failedAudit = TransactionAudit.builder()
+                                .id(1L)
+                                .internalOrderId("ORDER-123")
+                                .status(AuditStatus.FAILED.name())
+                                .createdAt(CREATED_AT)
+                                .build();
+                when(statusCache.get("ORDER-123")).thenReturn(Optional.empty());
+                when(auditLoader.load("ORDER-123")).thenReturn(Mono.just(failedAudit));
+                when(transactionRepository.startRetryAttempt(eq(1L), eq(CREATED_AT), any(Instant.class)))
+                                .thenReturn(Mono.just(2));
+                when(transactionRepository.updateOutcome(any(), any(), any(), any(), any()))
+                                .thenReturn(Mono.just(1));
+                when(externalSystemConnector.sendRequestWithoutFallback(any(ExternalApiRequest.class)))
+                                .thenReturn(Mono.just(new ExternalApiResponse(200, "CONFIRM-1", "COMPLETED", 1L)));
+
+                // When & Then
+                StepVerifier.create(transactionService.processRetry(validRequest))
+                                .assertNext(response -> assertThat(response.getSuccess()).isTrue())
+                                .verifyComplete();
+
+                InOrder inOrder = inOrder(transactionRepository);
+                inOrder.verify(transactionRepository).startRetryAttempt(eq(1L), eq(CREATED_AT), any(Instant.class));
+                inOrder.verify(transactionRepository).updateOutcome(eq(1L), eq(CREATED_AT), eq(AuditStatus.SUCCESS.name()),
+                                any(), any(Instant.class));
+                assertThat(failedAudit.getAttemptCount()).isEqualTo(2);
+                verify(transactionRepository, never()).save(any());
+        }
+
+        @Test
+        @DisplayName("RETRY: Transaction already completed (near-cache) is acknowledged without DB or external call")
+        void processRetry_CompletedInCache_SkipsExternalCall() {
+                // Given
+                TransactionAudit completed = TransactionAudit.builder()
+                                .internalOrderId("ORDER-123")
+                                .status(AuditStatus.SUCCESS.name())
+                                .details("Potvrzeno ID: CONFIRM-1")
+                                .createdAt(CREATED_AT)
+                                .build();
+                when(statusCache.get("ORDER-123")).thenReturn(Optional.of(
+                                new TransactionStatusCache.Entry(TransactionStatusResponse.from(completed), "\"SUCCESS-1\"")));
+
+                // When & Then
+                StepVerifier.create(transactionService.processRetry(validRequest))
+                                .assertNext(response -> assertThat(response.getSuccess()).isTrue())
+                                .verifyComplete();
+
+                verifyNoInteractions(externalSystemConnector, transactionRepository, auditLoader, statsAggregator);
+        }
+
+        @Test
+        @DisplayName("RETRY: Transaction completed through another path is not reopened or re-sent")
+        void processRetry_CompletedInDatabase_SkipsExternalCall() {
+                // Given
+                TransactionAudit failedAudit = TransactionAudit.builder()
+                                .id(1L)
+                                .internalOrderId("ORDER-123")
+                                .status(AuditStatus.FAILED.name())
+                                .createdAt(CREATED_AT)
+                                .build();
+                TransactionAudit completed = failedAudit.toBuilder().status(AuditStatus.SUCCESS.name()).build();
+                when(statusCache.get("ORDER-123")).thenReturn(Optional.empty());
+                when(auditLoader.load("ORDER-123")).thenReturn(Mono.just(failedAudit));
+                // Mezi načtením a UPDATE transakci dokončila jiná cesta - podmínka status <> 'SUCCESS' nic nezmění
+                when(transactionRepository.startRetryAttempt(eq(1L), eq(CREATED_AT), any(Instant.class)))
+                                .thenReturn(Mono.empty());
+                when(transactionRepository.findByInternalOrderId("ORDER-123")).thenReturn(Mono.just(completed));
+
+                // When & Then
+                StepVerifier.create(transactionService.processRetry(validRequest))
+                                .assertNext(response -> assertThat(response.getSuccess()).isTrue())
+                                .verifyComplete();
+
+                verifyNoInteractions(externalSystemConnector);
+                verify(transactionRepository, never()).updateOutcome(any(), any(), any(), any(), any());
+        }
+
+        @Test
+        @DisplayName("ASYNC: Accept writes the PENDING audit only, the external call runs in processAccepted")
+        void accept_WritesPendingAuditWithoutExternalCall() {
+                // Given
+                when(transactionRepository.save(any(TransactionAudit.class))).thenReturn(Mono.just(pendingAudit));
+                when(transactionRepository.claimAcceptedAttempt(1L, CREATED_AT)).thenReturn(Mono.just(1));
+                when(transactionRepository.updateOutcome(any(), any(), any(), any(), any())).thenReturn(Mono.just(1));
+                when(externalSystemConnector.sendRequest(any(ExternalApiRequest.class)))
+                                .thenReturn(Mono.just(new ExternalApiResponse(200, "CONFIRM-1", "COMPLETED", 1L)));
+
+                // When & Then
+                StepVerifier.create(transactionService.accept(validRequest))
+                                .assertNext(audit -> assertThat(audit.getStatus()).isEqualTo(AuditStatus.PENDING.name()))
+                                .verifyComplete();
+                verifyNoInteractions(externalSystemConnector);
+                // attempt_count = 0 - sweeper pozná, že transakci žádný worker nezačal
+                verify(transactionRepository).save(argThat(audit -> audit.getAttemptCount() == 0));
+
+                StepVerifier.create(transactionService.processAccepted(validRequest, pendingAudit))
+                                .assertNext(response -> assertThat(response.getSuccess()).isTrue())
+                                .verifyComplete();
+                verify(transactionRepository).updateOutcome(eq(1L), eq(CREATED_AT), eq(AuditStatus.SUCCESS.name()),
+                                any(), any(Instant.class));
+        }
+
+        @Test
+        @DisplayName("ASYNC: A transaction already claimed by another worker is not sent to the external API again")
+        void processAccepted_SkipsTransactionClaimedElsewhere() {
+                when(transactionRepository.claimAcceptedAttempt(1L, CREATED_AT)).thenReturn(Mono.just(0));
+
+                StepVerifier.create(transactionService.processAccepted(validRequest, pendingAudit))
+                                .verifyComplete();
+
+                verifyNoInteractions(externalSystemConnector);
+                verify(transactionRepository, never()).updateOutcome(any(), any(), any(), any(), any());
+        }
+
+        @Test
+        @DisplayName("DEGRADED: DB is unavailable, PENDING and outcome go to the audit WAL and the request succeeds")
+        void process_DatabaseDown_WritesAheadToWal() {
+                // Given
+                DataAccessResourceFailureException dbDown = new DataAccessResourceFailureException("Failed to obtain R2DBC Connection");
+                when(transactionRepository.save(any(TransactionAudit.class))).thenReturn(Mono.error(dbDown));
+                when(auditWal.canAbsorb(dbDown)).thenReturn(true);
+                when(auditWal.reserve("ORDER-123")).thenReturn(true);
+                when(auditWal.isEnabled()).thenReturn(true);
+                // Audit je tentýž (mutovaný) objekt - stav se zaznamená v okamžiku zápisu
+                List<String> walStatuses = new ArrayList<>();
+                when(auditWal.append(any(TransactionAudit.class))).thenAnswer(invocation -> {
+                        walStatuses.add(invocation.<TransactionAudit>getArgument(0).getStatus());
+                        return true;
+                });
+                when(externalSystemConnector.sendRequest(any(ExternalApiRequest.class)))
+                                .thenReturn(Mono.just(new ExternalApiResponse(200, "CONFIRM-1", "COMPLETED", 1L)));
+
+                // When & Then
+                StepVerifier.create(transactionService.process(validRequest))
+                                .assertNext(response -> assertThat(response.getSuccess()).isTrue())
+                                .verifyComplete();
+
+                // Řádek v DB není (id == null) - výsledek jde do WAL za PENDING, UPDATE se nezkouší
+                assertThat(walStatuses).containsExactly(AuditStatus.PENDING.name(), AuditStatus.SUCCESS.name());
+                verify(transactionRepository, never()).updateOutcome(any(), any(), any(), any(), any());
+                verify(statusCache).put(argThat(audit -> AuditStatus.SUCCESS.name().equals(audit.getStatus())));
+        }
+
+        @Test
+        @DisplayName("DEGRADED: A resubmitted order already waiting in the audit WAL is rejected before the external call")
+        void process_DatabaseDown_RejectsOrderPendingInWal() {
+                // Given
+                DataAccessResourceFailureException dbDown = new DataAccessResourceFailureException("Failed to obtain R2DBC Connection");
+                when(transactionRepository.save(any(TransactionAudit.class))).thenReturn(Mono.error(dbDown));
+                when(auditWal.canAbsorb(dbDown)).thenReturn(true);
+                when(auditWal.reserve("ORDER-123")).thenReturn(false);
+
+                // When & Then
+                StepVerifier.create(transactionService.process(validRequest))
+                                .expectError(DuplicateTransactionException.class)
+                                .verify();
+
+                verify(auditWal, never()).append(any());
+                verifyNoInteractions(externalSystemConnector);
+        }
+
+        @Test
+        @DisplayName("DEGRADED: A WAL that cannot store the PENDING snapshot releases the order ID")
+        void process_DatabaseDown_WalFullReleasesOrder() {
+                // Given
+                DataAccessResourceFailureException dbDown = new DataAccessResourceFailureException("Failed to obtain R2DBC Connection");
+                when(transactionRepository.save(any(TransactionAudit.class))).thenReturn(Mono.error(dbDown));
+                when(auditWal.canAbsorb(dbDown)).thenReturn(true);
+                when(auditWal.reserve("ORDER-123")).thenReturn(true);
+                when(auditWal.append(any(TransactionAudit.class))).thenReturn(false);
+
+                // When & Then
+                StepVerifier.create(transactionService.process(validRequest))
+                                .expectErrorMatches(e -> e == dbDown)
+                                .verify();
+
+                verify(auditWal).release("ORDER-123");
+                verifyNoInteractions(externalSystemConnector);
+        }
+
+        @Test
+        @DisplayName("DEGRADED: Outcome UPDATE fails on a DB outage and goes to the audit WAL")
+        void process_DatabaseDownOnUpdate_WritesOutcomeToWal() {
+                // Given
+                DataAccessResourceFailureException dbDown = new DataAccessResourceFailureException("Connection refused");
+                when(transactionRepository.save(any(TransactionAudit.class))).thenReturn(Mono.just(pendingAudit));
+                when(transactionRepository.updateOutcome(any(), any(), any(), any(), any())).thenReturn(Mono.error(dbDown));
+                when(auditWal.canAbsorb(dbDown)).thenReturn(true);
+                when(auditWal.append(any(TransactionAudit.class))).thenReturn(true);
+                when(externalSystemConnector.sendRequest(any(ExternalApiRequest.class)))
+                                .thenReturn(Mono.just(new ExternalApiResponse(200, "CONFIRM-1", "COMPLETED", 1L)));
+
+                // When & Then
+                StepVerifier.create(transactionService.process(validRequest))
+                                .assertNext(response -> assertThat(response.getSuccess()).isTrue())
+                                .verifyComplete();
+
+                verify(auditWal).append(argThat(audit -> audit.getId() == 1L
+                                && AuditStatus.SUCCESS.name().equals(audit.getStatus())));
+        }
+
+        @Test
+        @DisplayName("DB DOWN: Without an audit WAL the database error fails the request as before")
+        void process_DatabaseDown_WalCannotAbsorb() {
+                // Given
+                DataAccessResourceFailureException dbDown = new DataAccessResourceFailureException("Failed to obtain R2DBC Connection");
+                when(transactionRepository.save(any(TransactionAudit.class))).thenReturn(Mono.error(dbDown));
+                when(auditWal.canAbsorb(dbDown)).thenReturn(false);
+
+                // When & Then
+                StepVerifier.create(transactionService.process(validRequest))
+                                .expectErrorMatches(e -> e == dbDown)
+                                .verify();
+
+                verify(auditWal, never()).append(any());
+                verifyNoInteractions(externalSystemConnector);
         }
 }
@@ -0,0 +1,85 @@
+package krematos.archive;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import krematos.model.TransactionAudit;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ArchiveFileWriterTest {
+
+        private final ObjectMapper objectMapper = new ObjectMapper()
+                        .registerModule(new JavaTimeModule())
+                        .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+        @TempDir
+        Path directory;
+
+        @Test
+        void shouldRotateFilesAndWriteManifestWithChecksums() throws Exception {
+                ArchiveManifest manifest;
+                try (ArchiveFileWriter writer = new ArchiveFileWriter(directory, "transaction_audit_p20250101", 2, objectMapper)) {
+                        for (long id = 1; id <= 5; id++) {
+                                writer.append(audit(id));
+                        }
+                        manifest = writer.finish();
+                }
+
+                assertThat(manifest.rows()).isEqualTo(5);
+                assertThat(manifest.minId()).isEqualTo(1L);
+                assertThat(manifest.maxId()).isEqualTo(5L);
+                assertThat(manifest.files()).extracting(ArchiveManifest.ArchivedFile::rows).containsExactly(2L, 2L, 1L);
+                assertThat(directory.resolve("transaction_audit_p20250101.manifest.json")).exists();
+
+                for (ArchiveManifest.ArchivedFile file : manifest.files()) {
+                        byte[] content = Files.readAllBytes(directory.resolve(file.name()));
+                        assertThat(HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content)))
+                                        .isEqualTo(file.sha256());
+                        assertThat(content.length).isEqualTo(file.bytes());
+                }
+                List<String> lines = readLines(directory.resolve("transaction_audit_p20250101-0003.ndjson.gz"));
+                assertThat(lines).hasSize(1);
+                assertThat(objectMapper.readValue(lines.get(0), TransactionAudit.class).getId()).isEqualTo(5L);
+        }
+
+        @Test
+        void shouldLeaveNoPartialFileOrManifestWhenNotFinished() throws Exception {
+                try (ArchiveFileWriter writer = new ArchiveFileWriter(directory, "transaction_audit_p20250102", 10, objectMapper)) {
+                        writer.append(audit(1L));
+                }
+
+                try (var files = Files.list(directory)) {
+                        assertThat(files).isEmpty();
+                }
+        }
+
+        private List<String> readLines(Path file) throws Exception {
+                try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                                new GZIPInputStream(Files.newInputStream(file)), StandardCharsets.UTF_8))) {
+                        return reader.lines().toList();
+                }
+        }
+
+        private TransactionAudit audit(long id) {
+                return TransactionAudit.builder()
+                                .id(id)
+                                .internalOrderId("TX-" + id)
+                                .status("SUCCESS")
+                                .createdAt(Instant.parse("2025-01-01T10:00:00Z"))
+                                .build();
+        }
+}
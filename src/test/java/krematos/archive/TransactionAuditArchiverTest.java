@@ -0,0 +1,91 @@
+package krematos.archive;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import krematos.model.TransactionAudit;
+import krematos.repository.TransactionPartitionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TransactionAuditArchiverTest {
+
+        private static final LocalDate DAY = LocalDate.of(2025, 1, 1);
+
+        @Mock
+        private TransactionPartitionRepository partitionRepository;
+
+        @TempDir
+        Path directory;
+
+        private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+        private TransactionAuditArchiver archiver;
+
+        @BeforeEach
+        void setUp() {
+                ObjectMapper objectMapper = new ObjectMapper()
+                                .registerModule(new JavaTimeModule())
+                                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+                archiver = new TransactionAuditArchiver(partitionRepository, objectMapper, meterRegistry,
+                                directory.toString(), 1000, 2, Schedulers.boundedElastic());
+        }
+
+        @Test
+        void shouldDropPartitionOnlyAfterManifestIsWritten() {
+                when(partitionRepository.streamPartition(eq(DAY), anyInt()))
+                                .thenReturn(Flux.range(1, 5).map(id -> audit((long) id)));
+                when(partitionRepository.dropPartition(DAY)).thenReturn(Mono.empty());
+
+                StepVerifier.create(archiver.archiveDetachedPartition(DAY))
+                                .assertNext(manifest -> {
+                                        assertThat(manifest.rows()).isEqualTo(5);
+                                        assertThat(directory.resolve("transaction_audit_p20250101.manifest.json")).exists();
+                                })
+                                .verifyComplete();
+
+                verify(partitionRepository).dropPartition(DAY);
+                assertThat(meterRegistry.get("archive.rows").counter().count()).isEqualTo(5.0);
+        }
+
+        @Test
+        void shouldKeepPartitionWhenStreamingFails() {
+                when(partitionRepository.streamPartition(eq(DAY), anyInt()))
+                                .thenReturn(Flux.concat(Flux.just(audit(1L)), Flux.error(new IllegalStateException("connection reset"))));
+
+                StepVerifier.create(archiver.archiveDetachedPartition(DAY))
+                                .expectError(IllegalStateException.class)
+                                .verify();
+
+                verify(partitionRepository, never()).dropPartition(DAY);
+                assertThat(directory.resolve("transaction_audit_p20250101.manifest.json")).doesNotExist();
+        }
+
+        private TransactionAudit audit(Long id) {
+                return TransactionAudit.builder()
+                                .id(id)
+                                .internalOrderId("TX-" + id)
+                                .status("SUCCESS")
+                                .createdAt(Instant.parse("2025-01-01T10:00:00Z"))
+                                .build();
+        }
+}
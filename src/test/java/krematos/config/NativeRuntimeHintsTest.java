@@ -0,0 +1,40 @@
+package krematos.config;
+
+import krematos.archive.ArchiveManifest;
+import krematos.model.ExternalApiRequest;
+import krematos.model.ExternalApiResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.predicate.RuntimeHintsPredicates;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class NativeRuntimeHintsTest {
+
+        private final RuntimeHints hints = registeredHints();
+
+        @Test
+        void shouldRegisterLombokAccessorsOfJsonTypesForJackson() {
+                // Odpověď externího API se deserializuje přes settery (@JsonProperty na poli)
+                assertThat(RuntimeHintsPredicates.reflection().onMethod(ExternalApiResponse.class, "setConfirmationId"))
+                                .accepts(hints);
+                // RabbitMQ zpráva do retry fronty se serializuje přes gettery
+                assertThat(RuntimeHintsPredicates.reflection().onMethod(ExternalApiRequest.class, "getTransactionId"))
+                                .accepts(hints);
+                // Vnořený record manifestu archivu se dohledá přes typ komponenty
+                assertThat(RuntimeHintsPredicates.reflection().onType(ArchiveManifest.ArchivedFile.class))
+                                .accepts(hints);
+        }
+
+        @Test
+        void shouldRegisterAmqpClientVersionResource() {
+                assertThat(RuntimeHintsPredicates.resource().forResource("rabbitmq-amqp-client.properties"))
+                                .accepts(hints);
+        }
+
+        private static RuntimeHints registeredHints() {
+                RuntimeHints hints = new RuntimeHints();
+                new NativeRuntimeHints().registerHints(hints, NativeRuntimeHintsTest.class.getClassLoader());
+                return hints;
+        }
+}
@@ -0,0 +1,139 @@
+package krematos.config;
+
+import io.r2dbc.postgresql.PostgresqlConnectionConfiguration;
+import io.r2dbc.postgresql.PostgresqlConnectionFactory;
+import krematos.consumer.FailedTransactionRescuer;
+import krematos.scheduler.TransactionCleanupSchedular;
+import net.javacrumbs.shedlock.core.DefaultLockingTaskExecutor;
+import net.javacrumbs.shedlock.core.LockConfiguration;
+import net.javacrumbs.shedlock.core.LockExtender;
+import net.javacrumbs.shedlock.core.LockingTaskExecutor;
+import net.javacrumbs.shedlock.spring.annotation.SchedulerLock;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Dvě "instance" aplikace (každá s vlastním R2DBC připojením a LockProviderem) nad jednou DB:
+ * cleanup i rescuer smí v jednu chvíli běžet jen na jedné z nich.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class R2dbcLockProviderTest {
+
+        @Container
+        static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15-alpine");
+
+        private static LockingTaskExecutor instanceA;
+        private static LockingTaskExecutor instanceB;
+
+        @BeforeAll
+        static void setUp() {
+                Flyway.configure()
+                                .dataSource(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword())
+                                .locations("classpath:db/migration")
+                                .load()
+                                .migrate();
+                instanceA = new DefaultLockingTaskExecutor(new R2dbcLockProvider(databaseClient(), Duration.ofSeconds(5)));
+                instanceB = new DefaultLockingTaskExecutor(new R2dbcLockProvider(databaseClient(), Duration.ofSeconds(5)));
+        }
+
+        @Test
+        void cleanupJobRunsOnlyOnOneInstanceAndCanExtendItsLock() throws Exception {
+                String name = lockName(TransactionCleanupSchedular.class, "cleanupOldPendingTransactions");
+
+                // Cleanup prodlužuje zámek po každém chunku (LockExtender)
+                assertThat(runConcurrently(name, () -> LockExtender.extendActiveLock(Duration.ofMinutes(5), Duration.ZERO)))
+                                .isEqualTo(1);
+        }
+
+        @Test
+        void rescuerJobRunsOnlyOnOneInstance() throws Exception {
+                String name = lockName(FailedTransactionRescuer.class, "rescueStuckTransactions");
+
+                assertThat(runConcurrently(name, () -> { })).isEqualTo(1);
+        }
+
+        @Test
+        void releasedLockCanBeTakenByOtherInstance() {
+                AtomicInteger runs = new AtomicInteger();
+
+                instanceA.executeWithLock((Runnable) runs::incrementAndGet, lock("releaseTest"));
+                instanceB.executeWithLock((Runnable) runs::incrementAndGet, lock("releaseTest"));
+
+                assertThat(runs).hasValue(2);
+        }
+
+        // Spustí úlohu na obou instancích naráz; vrátí počet běhů a ověří, že se nikdy nepřekryly
+        private static int runConcurrently(String name, Runnable insideLock) throws Exception {
+                AtomicInteger runs = new AtomicInteger();
+                AtomicInteger running = new AtomicInteger();
+                AtomicInteger maxRunning = new AtomicInteger();
+                CountDownLatch start = new CountDownLatch(1);
+                Runnable job = () -> {
+                        runs.incrementAndGet();
+                        maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                        insideLock.run();
+                        sleep(500);
+                        running.decrementAndGet();
+                };
+
+                List<CompletableFuture<Void>> futures = List.of(instanceA, instanceB).stream()
+                                .map(executor -> CompletableFuture.runAsync(() -> {
+                                        await(start);
+                                        executor.executeWithLock(job, lock(name));
+                                }))
+                                .toList();
+                start.countDown();
+                CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).get();
+
+                assertThat(maxRunning).hasValue(1);
+                return runs.get();
+        }
+
+        private static LockConfiguration lock(String name) {
+                return new LockConfiguration(Instant.now(), name, Duration.ofMinutes(5), Duration.ZERO);
+        }
+
+        private static String lockName(Class<?> job, String method) throws NoSuchMethodException {
+                return job.getMethod(method).getAnnotation(SchedulerLock.class).name();
+        }
+
+        private static DatabaseClient databaseClient() {
+                return DatabaseClient.create(new PostgresqlConnectionFactory(PostgresqlConnectionConfiguration.builder()
+                                .host(postgres.getHost())
+                                .port(postgres.getFirstMappedPort())
+                                .database(postgres.getDatabaseName())
+                                .username(postgres.getUsername())
+                                .password(postgres.getPassword())
+                                .build()));
+        }
+
+        private static void await(CountDownLatch latch) {
+                try {
+                        latch.await();
+                } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                }
+        }
+
+        private static void sleep(long millis) {
+                try {
+                        Thread.sleep(millis);
+                } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                }
+        }
+}
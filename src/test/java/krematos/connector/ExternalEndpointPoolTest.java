@@ -0,0 +1,116 @@
+package krematos.connector;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ExternalEndpointPoolTest {
+
+        private static final String FAST = "http://fast.example";
+        private static final String SLOW = "http://slow.example";
+
+        private final AtomicLong clock = new AtomicLong(TimeUnit.SECONDS.toNanos(1));
+        private MeterRegistry meterRegistry;
+        private ExternalEndpointPool pool;
+
+        @BeforeEach
+        void setUp() {
+                meterRegistry = new SimpleMeterRegistry();
+                pool = new ExternalEndpointPool(meterRegistry, "default", new String[] { FAST, SLOW }, "http://unused", 3,
+                                Duration.ofSeconds(30), Duration.ofMinutes(5), 50, Duration.ofSeconds(10), clock::get);
+        }
+
+        @Test
+        void shouldPreferFasterEndpointUntilItIsBusy() {
+                call(FAST, 10, false);
+                call(SLOW, 200, false);
+
+                assertThat(pool.select(List.of()).baseUrl()).isEqualTo(FAST);
+
+                // Rozpracované požadavky zvyšují cenu - při 20 souběžných na rychlém vyjde levněji pomalý
+                ExternalEndpointPool.Endpoint fast = endpoint(FAST);
+                List<Disposable> inFlight = new ArrayList<>();
+                for (int i = 0; i < 20; i++) {
+                        inFlight.add(pool.route(new ArrayList<>(List.of(endpoint(SLOW))), endpoint -> Mono.never(), e -> true)
+                                        .subscribe());
+                }
+                assertThat(fast.outstanding()).isEqualTo(20);
+
+                assertThat(pool.select(List.of()).baseUrl()).isEqualTo(SLOW);
+                inFlight.forEach(Disposable::dispose);
+                assertThat(fast.outstanding()).isZero();
+        }
+
+        @Test
+        void shouldEjectAfterConsecutiveFailuresAndReadmitLater() {
+                for (int i = 0; i < 3; i++) {
+                        call(SLOW, 5, true);
+                }
+
+                assertThat(meterRegistry.get("external.api.endpoint.ejected").tag("endpoint", SLOW).gauge().value()).isEqualTo(1.0);
+                for (int i = 0; i < 10; i++) {
+                        assertThat(pool.select(List.of()).baseUrl()).isEqualTo(FAST);
+                }
+
+                clock.addAndGet(Duration.ofSeconds(31).toNanos());
+
+                assertThat(meterRegistry.get("external.api.endpoint.ejected").tag("endpoint", SLOW).gauge().value()).isZero();
+                assertThat(pool.select(List.of(endpoint(FAST))).baseUrl()).isEqualTo(SLOW);
+        }
+
+        @Test
+        void shouldNotEjectMoreThanMaxEjectionPercent() {
+                for (int i = 0; i < 3; i++) {
+                        call(SLOW, 5, true);
+                        call(FAST, 5, true);
+                }
+
+                // 50 % ze dvou = jeden vyřazený, druhý zůstává v rotaci i přes chyby
+                assertThat(meterRegistry.get("external.api.endpoint.ejections").counters())
+                                .extracting(Counter::count).containsExactlyInAnyOrder(1.0, 0.0);
+        }
+
+        @Test
+        void shouldFallBackToBaseUrlWithoutEndpointList() {
+                ExternalEndpointPool single = new ExternalEndpointPool(new SimpleMeterRegistry(), "default", new String[] { " " },
+                                "http://base.example/", 3, Duration.ofSeconds(30), Duration.ofMinutes(5), 50,
+                                Duration.ofSeconds(10), clock::get);
+
+                assertThat(single.endpoints()).extracting(ExternalEndpointPool.Endpoint::baseUrl)
+                                .containsExactly("http://base.example/");
+                assertThat(single.endpoints().get(0).resolve("/v1/process").toString())
+                                .isEqualTo("http://base.example/v1/process");
+        }
+
+        // Jeden pokus na daný endpoint trvající millis; ostatní endpointy jsou "vyzkoušené", takže se nevolí
+        private void call(String url, long millis, boolean fail) {
+                List<ExternalEndpointPool.Endpoint> tried = new ArrayList<>(pool.endpoints());
+                tried.remove(endpoint(url));
+                pool.route(tried, endpoint -> Mono.fromCallable(() -> {
+                                        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+                                        if (fail) {
+                                                throw WebClientResponseException.create(503, "Service Unavailable", null, null, null);
+                                        }
+                                        return endpoint.baseUrl();
+                                }), e -> true)
+                                .onErrorResume(e -> Mono.empty())
+                                .block();
+        }
+
+        private ExternalEndpointPool.Endpoint endpoint(String url) {
+                return pool.endpoints().stream().filter(e -> e.baseUrl().equals(url)).findFirst().orElseThrow();
+        }
+}
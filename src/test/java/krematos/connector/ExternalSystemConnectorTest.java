@@ -1,8 +1,15 @@
 package krematos.connector;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import krematos.config.RabbitMQConfig;
 import krematos.model.ExternalApiRequest;
 import krematos.model.ExternalApiResponse;
+import krematos.config.RetryLane;
+import krematos.publisher.RabbitMessagePublisher;
+import krematos.publisher.PublishException;
+import krematos.publisher.RetryLaneSelector;
+import krematos.spool.DeadLetterSpool;
 import okhttp3.mockwebserver.MockResponse;
 import okhttp3.mockwebserver.MockWebServer;
 import org.junit.jupiter.api.AfterEach;
@@ -18,20 +25,26 @@ import org.springframework.security.oauth2.core.AuthorizationGrantType;
 import org.springframework.security.oauth2.core.OAuth2AccessToken;
 import org.springframework.web.reactive.function.client.WebClient;
 import reactor.core.publisher.Mono;
-
-import reactor.rabbitmq.Sender;
 import reactor.test.StepVerifier;
 
 import java.io.IOException;
 import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
 class ExternalSystemConnectorTest {
 
+        // Původní volání + 3 opakování
+        private static final int MAX_CALLS = 4;
+
         private ExternalSystemConnector connector;
 
         private MockWebServer mockWebServer;
@@ -40,7 +53,10 @@ class ExternalSystemConnectorTest {
         private ReactiveOAuth2AuthorizedClientManager authorizedClientManager;
 
         @Mock
-        private Sender rabbitSender;
+        private RabbitMessagePublisher rabbitPublisher;
+
+        @Mock
+        private DeadLetterSpool deadLetterSpool;
 
         private final ObjectMapper objectMapper = new ObjectMapper();
 
@@ -70,17 +86,23 @@ class ExternalSystemConnectorTest {
                                 accessToken);
 
                 // Mock authorizedClientManager to return the authorized client
-                when(authorizedClientManager.authorize(any()))
+                // (lenient - testy spoolu externí API nevolají)
+                lenient().when(authorizedClientManager.authorize(any()))
                                 .thenReturn(Mono.just(authorizedClient));
 
-                WebClient.Builder webClientBuilder = WebClient.builder();
+                connector = connector(new String[0]);
+        }
 
-                connector = new ExternalSystemConnector(
-                                webClientBuilder,
+        private ExternalSystemConnector connector(String[] endpoints) {
+                return new ExternalSystemConnector(
+                                WebClient.builder(),
                                 authorizedClientManager,
-                                rabbitSender,
+                                rabbitPublisher,
+                                new RetryLaneSelector(new BigDecimal("100000"), new String[] { "EXPRESS" }),
+                                deadLetterSpool,
                                 objectMapper,
-                                mockWebServer.url("/").toString());
+                                new ExternalEndpointPool(new SimpleMeterRegistry(), endpoints, mockWebServer.url("/").toString(),
+                                                5, Duration.ofSeconds(30), Duration.ofMinutes(5), 50, Duration.ofSeconds(10)));
         }
 
         @AfterEach
@@ -127,6 +149,30 @@ class ExternalSystemConnectorTest {
                 assertEquals(3, mockWebServer.getRequestCount());
         }
 
+        @Test
+        void shouldRetryOnAnotherEndpointAfter5xx() throws Exception {
+                try (MockWebServer secondRegion = new MockWebServer()) {
+                        secondRegion.start();
+                        ExternalSystemConnector multiRegion = connector(new String[] {
+                                        mockWebServer.url("/").toString(), secondRegion.url("/").toString() });
+                        for (int i = 0; i < 4; i++) {
+                                mockWebServer.enqueue(new MockResponse().setResponseCode(503));
+                                secondRegion.enqueue(new MockResponse().setResponseCode(503));
+                        }
+                        when(rabbitPublisher.publish(any(), any(), any(), any())).thenReturn(Mono.empty());
+
+                        StepVerifier.create(multiRegion.sendRequest(createTestRequest()))
+                                        .expectError()
+                                        .verify();
+
+                        // Po 503 jde opakování na druhý region, oba dostaly alespoň jeden z pokusů
+                        assertEquals(MAX_CALLS, mockWebServer.getRequestCount() + secondRegion.getRequestCount());
+                        assertTrue(mockWebServer.getRequestCount() >= 1);
+                        assertTrue(secondRegion.getRequestCount() >= 1);
+                        assertEquals("/v1/process", secondRegion.takeRequest().getPath());
+                }
+        }
+
         @Test
         void shouldExhaustRetriesAndSendToDlqOnRepeated5xx() {
                 ExternalApiRequest request = createTestRequest();
@@ -135,17 +181,40 @@ class ExternalSystemConnectorTest {
                         mockWebServer.enqueue(new MockResponse().setResponseCode(503));
                 }
 
-                when(rabbitSender.send(any(Mono.class))).thenReturn(Mono.empty());
+                when(rabbitPublisher.publish(any(), any(), any(), any())).thenReturn(Mono.empty());
 
                 StepVerifier.create(connector.sendRequest(request))
                         .expectErrorMatches(throwable -> throwable.getMessage()
                                 .contains("Externí služba není dostupná po 3 pokusech"))
                         .verify();
 
-                verify(rabbitSender, times(1)).send(any(Mono.class));
+                verify(rabbitPublisher, times(1)).publish(
+                        eq(RabbitMQConfig.FAILED_TRANSACTION_EXCHANGE),
+                        eq(RabbitMQConfig.FAILED_TRANSACTION_ROUTING_KEY),
+                        any(),
+                        any());
         }
 
 
+        @Test
+        void shouldSendPriorityServiceTypeToHighLaneWithHeader() {
+                ExternalApiRequest request = createTestRequest();
+
+                mockWebServer.enqueue(new MockResponse().setResponseCode(400).setBody("Bad Request"));
+                when(rabbitPublisher.publish(any(), any(), any(), any())).thenReturn(Mono.empty());
+
+                StepVerifier.create(connector.sendRequest(request)
+                                .contextWrite(ctx -> ctx.put(ExternalSystemConnector.SERVICE_TYPE_CONTEXT_KEY, "EXPRESS")))
+                        .expectError()
+                        .verify();
+
+                verify(rabbitPublisher).publish(
+                        eq(RabbitMQConfig.FAILED_TRANSACTION_EXCHANGE),
+                        eq(RetryLane.HIGH.routingKey()),
+                        argThat(props -> "EXPRESS".equals(props.getHeaders().get(RabbitMQConfig.SERVICE_TYPE_HEADER))),
+                        any());
+        }
+
         @Test
         void shouldHandle4xxClientErrorAndSendToDlq() {
                 ExternalApiRequest request = createTestRequest();
@@ -154,7 +223,7 @@ class ExternalSystemConnectorTest {
                         .setResponseCode(400)
                         .setBody("Bad Request Details"));
 
-                when(rabbitSender.send(any(Mono.class))).thenReturn(Mono.empty());
+                when(rabbitPublisher.publish(any(), any(), any(), any())).thenReturn(Mono.empty());
 
                 StepVerifier.create(connector.sendRequest(request))
                         .expectErrorMatches(throwable -> throwable.getMessage()
@@ -163,9 +232,45 @@ class ExternalSystemConnectorTest {
                         .verify();
 
                 assertEquals(1, mockWebServer.getRequestCount());
-                verify(rabbitSender, times(1)).send(any(Mono.class));
+                verify(rabbitPublisher, times(1)).publish(any(), any(), any(), any());
+        }
+
+
+        @Test
+        void shouldSpoolDeadLetterWhenRabbitDoesNotConfirm() {
+                ExternalApiRequest request = createTestRequest();
+
+                when(rabbitPublisher.publish(any(), any(), any(), any())).thenReturn(Mono.error(
+                                new PublishException("Kanál uzavřen", RabbitMQConfig.FAILED_TRANSACTION_EXCHANGE,
+                                                RetryLane.LOW.routingKey())));
+                when(deadLetterSpool.append(request, "PAYMENT")).thenReturn(true);
+
+                StepVerifier.create(connector.sendToDeadLetter(request, "PAYMENT"))
+                        .verifyComplete();
+
+                verify(deadLetterSpool).append(request, "PAYMENT");
         }
 
+        @Test
+        void shouldQueueBehindSpoolBacklogToKeepOrder() {
+                ExternalApiRequest request = createTestRequest();
+
+                AtomicReference<String> appendThread = new AtomicReference<>();
+                when(deadLetterSpool.hasPending()).thenReturn(true);
+                when(deadLetterSpool.append(request, null)).thenAnswer(invocation -> {
+                        appendThread.set(Thread.currentThread().getName());
+                        return true;
+                });
+
+                StepVerifier.create(connector.sendToDeadLetter(request, null))
+                        .verifyComplete();
+
+                verify(deadLetterSpool).append(request, null);
+                // Zápis do spoolu (rotace segmentu, fsync) nesmí běžet na vlákně volajícího
+                // boundedElastic, případně loomBoundedElastic (Reactor na virtuálních vláknech)
+                assertTrue(appendThread.get().matches("(?i).*boundedElastic-\\d+"), appendThread.get());
+                verify(rabbitPublisher, never()).publish(any(), any(), any(), any());
+        }
 
         @Test
         void shouldHandleSerializationErrorInDlq() throws Exception {
@@ -0,0 +1,101 @@
+package krematos.connector;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import krematos.exception.ExternalServiceException;
+import krematos.exception.PaymentOutcomeUnknownException;
+import krematos.model.ExternalApiRequest;
+import krematos.model.ExternalApiResponse;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HttpPaymentConnectorTest {
+
+        private final ObjectMapper objectMapper = new ObjectMapper();
+        private final AtomicInteger deadLettered = new AtomicInteger();
+        private MeterRegistry meterRegistry;
+        private MockWebServer mockWebServer;
+
+        @BeforeEach
+        void setUp() throws IOException {
+                meterRegistry = new SimpleMeterRegistry();
+                mockWebServer = new MockWebServer();
+                mockWebServer.start();
+        }
+
+        @AfterEach
+        void tearDown() throws IOException {
+                mockWebServer.shutdown();
+        }
+
+        @Test
+        void shouldRejectRequestsOverConcurrencyLimit() throws Exception {
+                HttpPaymentConnector connector = connector(new ConnectorPolicy(Duration.ofSeconds(5), 0, Duration.ofMillis(10), 1));
+                mockWebServer.enqueue(new MockResponse()
+                                .setBody(objectMapper.writeValueAsString(new ExternalApiResponse(200, "OK", "COMPLETED", 1L)))
+                                .addHeader("Content-Type", "application/json")
+                                .setHeadersDelay(2, TimeUnit.SECONDS));
+
+                Disposable slow = connector.sendRequestWithoutFallback(request("REF-1")).subscribe();
+                try {
+                        assertThat(meterRegistry.get("connector.in.flight").tag("connector", "card").gauge().value()).isEqualTo(1.0);
+                        StepVerifier.create(connector.sendRequestWithoutFallback(request("REF-2")))
+                                        .expectErrorMatches(t -> t instanceof ExternalServiceException e
+                                                        && e.getHttpStatus() == HttpStatus.SERVICE_UNAVAILABLE)
+                                        .verify(Duration.ofSeconds(2));
+                } finally {
+                        slow.dispose();
+                }
+
+                assertThat(meterRegistry.get("connector.rejected").tag("connector", "card").counter().count()).isEqualTo(1.0);
+                assertThat(meterRegistry.get("connector.in.flight").tag("connector", "card").gauge().value()).isZero();
+        }
+
+        @Test
+        void shouldNeitherRetryNorDeadLetterTimedOutAttempt() {
+                HttpPaymentConnector connector = connector(new ConnectorPolicy(Duration.ofMillis(300), 3, Duration.ofMillis(10), 10));
+                mockWebServer.enqueue(new MockResponse().setHeadersDelay(3, TimeUnit.SECONDS));
+
+                StepVerifier.create(connector.sendRequest(request("REF-1")))
+                                .expectErrorMatches(t -> t instanceof PaymentOutcomeUnknownException e
+                                                && e.getHttpStatus() == HttpStatus.GATEWAY_TIMEOUT
+                                                && t.getCause() instanceof TimeoutException)
+                                .verify(Duration.ofSeconds(5));
+
+                // Platba mohla projít - žádný další pokus na endpoint ani pozdější opakování přes DLQ
+                assertThat(meterRegistry.get("external.api.endpoint.requests").tag("connector", "card")
+                                .tag("result", "failure").timer().count()).isEqualTo(1);
+                assertThat(deadLettered).hasValue(0);
+                assertThat(meterRegistry.get("connector.in.flight").tag("connector", "card").gauge().value()).isZero();
+        }
+
+        private HttpPaymentConnector connector(ConnectorPolicy policy) {
+                ExternalEndpointPool pool = new ExternalEndpointPool(meterRegistry, "card", new String[0],
+                                mockWebServer.url("/").toString(), 5, Duration.ofSeconds(30), Duration.ofMinutes(5), 50,
+                                Duration.ofSeconds(10), System::nanoTime);
+                return new HttpPaymentConnector("card", "Card API", WebClient.create(), pool, policy,
+                                request -> Mono.fromRunnable(deadLettered::incrementAndGet), meterRegistry);
+        }
+
+        private static ExternalApiRequest request(String reference) {
+                return new ExternalApiRequest(reference, BigDecimal.valueOf(50), "001");
+        }
+}
@@ -0,0 +1,95 @@
+package krematos.connector;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import krematos.config.ConnectorProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.oauth2.client.ReactiveOAuth2AuthorizedClientManager;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class PaymentConnectorRegistryTest {
+
+        @Mock
+        private ExternalSystemConnector defaultConnector;
+
+        @Mock
+        private ReactiveOAuth2AuthorizedClientManager authorizedClientManager;
+
+        @BeforeEach
+        void setUp() {
+                when(defaultConnector.name()).thenReturn(ExternalSystemConnector.DEFAULT_NAME);
+        }
+
+        @Test
+        void shouldRouteBySpecificRuleFirstAndFallBackToDefault() {
+                PaymentConnectorRegistry registry = registry(List.of(
+                                new ConnectorProperties.Route("PAYMENT", "EUR", "sepa"),
+                                new ConnectorProperties.Route("PAYMENT", null, "card"),
+                                new ConnectorProperties.Route(null, "EUR", "card")));
+                PaymentConnector sepa = registry.get("sepa");
+                PaymentConnector card = registry.get("card");
+
+                assertThat(registry.resolve("PAYMENT", "eur")).isSameAs(sepa);
+                assertThat(registry.resolve("PAYMENT", "CZK")).isSameAs(card);
+                assertThat(registry.resolve("REFUND", "EUR")).isSameAs(card);
+                assertThat(registry.resolve("REFUND", "CZK")).isSameAs(defaultConnector);
+                assertThat(registry.resolve(null, null)).isSameAs(defaultConnector);
+                registry.destroy();
+        }
+
+        @Test
+        void shouldFailFastOnRouteToUnknownConnector() {
+                assertThatThrownBy(() -> registry(List.of(new ConnectorProperties.Route("PAYMENT", null, "missing"))))
+                                .isInstanceOf(IllegalStateException.class)
+                                .hasMessageContaining("neznámý konektor");
+        }
+
+        @Test
+        void shouldTakeMissingOutlierThresholdsFromGlobalConfiguration() {
+                ConnectorProperties.Outlier defaults = new ConnectorProperties.Outlier(7, Duration.ofSeconds(45),
+                                Duration.ofMinutes(10), 30, Duration.ofSeconds(20));
+
+                ConnectorProperties.Outlier merged = new ConnectorProperties.Outlier(2, null, null, null, Duration.ofSeconds(5))
+                                .orElse(defaults);
+
+                assertThat(merged).isEqualTo(new ConnectorProperties.Outlier(2, Duration.ofSeconds(45),
+                                Duration.ofMinutes(10), 30, Duration.ofSeconds(5)));
+                assertThat(instance("http://card.example").outlier().orElse(defaults)).isEqualTo(defaults);
+
+                // Instance s vlastními prahy se založí spolu s instancemi bez nich
+                ConnectorProperties properties = new ConnectorProperties(Map.of(
+                                "card", new ConnectorProperties.Instance("http://card.example", null, null, null, null, null,
+                                                null, null, null, new ConnectorProperties.Outlier(2, null, null, null, null)),
+                                "sepa", instance("http://sepa.example")), List.of());
+                PaymentConnectorRegistry registry = new PaymentConnectorRegistry(defaultConnector, properties,
+                                WebClient.builder(), authorizedClientManager, new SimpleMeterRegistry(), 5,
+                                Duration.ofSeconds(30), Duration.ofMinutes(5), 50, Duration.ofSeconds(10));
+                assertThat(registry.get("card")).isNotNull();
+                registry.destroy();
+        }
+
+        private PaymentConnectorRegistry registry(List<ConnectorProperties.Route> routes) {
+                ConnectorProperties properties = new ConnectorProperties(Map.of(
+                                "sepa", instance("http://sepa.example"),
+                                "card", instance("http://card.example")), routes);
+                return new PaymentConnectorRegistry(defaultConnector, properties, WebClient.builder(),
+                                authorizedClientManager, new SimpleMeterRegistry(), 5, Duration.ofSeconds(30),
+                                Duration.ofMinutes(5), 50, Duration.ofSeconds(10));
+        }
+
+        private static ConnectorProperties.Instance instance(String baseUrl) {
+                return new ConnectorProperties.Instance(baseUrl, null, null, null, null, null, null, null, null, null);
+        }
+}
@@ -0,0 +1,228 @@
+package krematos.consumer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rabbitmq.client.AMQP;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import krematos.config.RabbitMQConfig;
+import krematos.config.RetryLane;
+import krematos.config.RetryTiers;
+import krematos.exception.ExternalServiceException;
+import krematos.exception.PaymentOutcomeUnknownException;
+import krematos.model.ExternalApiRequest;
+import krematos.model.InternalRequest;
+import krematos.model.InternalResponse;
+import krematos.publisher.PublishException;
+import krematos.publisher.RabbitMessagePublisher;
+import krematos.service.TransactionService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.rabbitmq.AcknowledgableDelivery;
+import reactor.rabbitmq.ConsumeOptions;
+import reactor.rabbitmq.Receiver;
+import reactor.test.StepVerifier;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class FailedTransactionConsumerTest {
+
+        @Mock
+        private TransactionService transactionService;
+
+        @Mock
+        private Receiver receiver;
+
+        @Mock
+        private RabbitMessagePublisher rabbitPublisher;
+
+        private final RetryTiers retryTiers = new RetryTiers(List.of(Duration.ofSeconds(10), Duration.ofMinutes(1)));
+
+        private final ObjectMapper objectMapper = new ObjectMapper();
+
+        private FailedTransactionConsumer consumer;
+
+        @BeforeEach
+        void setUp() {
+                consumer = new FailedTransactionConsumer(transactionService, receiver, objectMapper,
+                                rabbitPublisher, retryTiers, new SimpleMeterRegistry(), 10, 4, 10, 50, 4);
+        }
+
+        @Test
+        void shouldAckWholeBatchWithSingleMultipleAck() throws Exception {
+                AcknowledgableDelivery first = delivery("TX-1");
+                AcknowledgableDelivery second = delivery("TX-2");
+                when(receiver.consumeManualAck(anyString(), any(ConsumeOptions.class)))
+                                .thenReturn(Flux.just(first, second));
+                when(transactionService.processRetry(any(InternalRequest.class)))
+                                .thenReturn(Mono.just(new InternalResponse(true, "OK", "TX")));
+
+                StepVerifier.create(consumer.consumeLane(RetryLane.LOW))
+                                .expectNextCount(1)
+                                .verifyComplete();
+
+                verify(first, never()).ack(anyBoolean());
+                verify(second).ack(true);
+        }
+
+        @Test
+        void shouldRouteFirstFailureToFirstDelayTierAndAckOriginal() throws Exception {
+                AcknowledgableDelivery delivery = delivery("TX-EXT");
+                when(receiver.consumeManualAck(anyString(), any(ConsumeOptions.class)))
+                                .thenReturn(Flux.just(delivery));
+                when(transactionService.processRetry(any(InternalRequest.class)))
+                                .thenReturn(Mono.error(new ExternalServiceException("down", "API", "TX-EXT")));
+                when(rabbitPublisher.publish(any(), any(), any(), any())).thenReturn(Mono.empty());
+
+                StepVerifier.create(consumer.consumeLane(RetryLane.LOW))
+                                .expectNextCount(1)
+                                .verifyComplete();
+
+                verify(rabbitPublisher).publish(eq(RabbitMQConfig.RETRY_DELAY_EXCHANGE), eq("delay.10s.low"),
+                                argThat(props -> Integer.valueOf(1).equals(props.getHeaders().get(RabbitMQConfig.RETRY_ATTEMPT_HEADER))),
+                                any());
+                verify(delivery).ack(true);
+                verify(delivery, never()).nack(anyBoolean(), anyBoolean());
+        }
+
+        @Test
+        void shouldUseNextTierAccordingToAttemptHeader() throws Exception {
+                AcknowledgableDelivery delivery = delivery("TX-2ND", 1);
+                when(receiver.consumeManualAck(anyString(), any(ConsumeOptions.class)))
+                                .thenReturn(Flux.just(delivery));
+                when(transactionService.processRetry(any(InternalRequest.class)))
+                                .thenReturn(Mono.error(new RuntimeException("DB down")));
+                when(rabbitPublisher.publish(any(), any(), any(), any())).thenReturn(Mono.empty());
+
+                StepVerifier.create(consumer.consumeLane(RetryLane.LOW))
+                                .expectNextCount(1)
+                                .verifyComplete();
+
+                verify(rabbitPublisher).publish(eq(RabbitMQConfig.RETRY_DELAY_EXCHANGE), eq("delay.1m.low"), any(), any());
+        }
+
+        @Test
+        void shouldParkTimedOutRetryForReconciliation() throws Exception {
+                AcknowledgableDelivery delivery = delivery("TX-TIMEOUT");
+                when(receiver.consumeManualAck(anyString(), any(ConsumeOptions.class)))
+                                .thenReturn(Flux.just(delivery));
+                when(transactionService.processRetry(any(InternalRequest.class)))
+                                .thenReturn(Mono.error(new PaymentOutcomeUnknownException("API", "TX-TIMEOUT", null)));
+                when(rabbitPublisher.publish(any(), any(), any(), any())).thenReturn(Mono.empty());
+
+                StepVerifier.create(consumer.consumeLane(RetryLane.LOW))
+                                .expectNextCount(1)
+                                .verifyComplete();
+
+                verify(rabbitPublisher).publish(eq(RabbitMQConfig.RETRY_DELAY_EXCHANGE),
+                                eq(RabbitMQConfig.PARKING_ROUTING_KEY), any(), any());
+                verify(delivery).ack(true);
+        }
+
+        @Test
+        void shouldParkMessageWhenAllTiersAreExhausted() throws Exception {
+                AcknowledgableDelivery delivery = delivery("TX-LAST", 2);
+                when(receiver.consumeManualAck(anyString(), any(ConsumeOptions.class)))
+                                .thenReturn(Flux.just(delivery));
+                when(transactionService.processRetry(any(InternalRequest.class)))
+                                .thenReturn(Mono.error(new ExternalServiceException("down", "API", "TX-LAST")));
+                when(rabbitPublisher.publish(any(), any(), any(), any())).thenReturn(Mono.empty());
+
+                StepVerifier.create(consumer.consumeLane(RetryLane.LOW))
+                                .expectNextCount(1)
+                                .verifyComplete();
+
+                verify(rabbitPublisher).publish(eq(RabbitMQConfig.RETRY_DELAY_EXCHANGE),
+                                eq(RabbitMQConfig.PARKING_ROUTING_KEY), any(), any());
+                verify(delivery).ack(true);
+        }
+
+        @Test
+        void shouldRequeueWhenDelayTierPublishFailsBeforeAckingRest() throws Exception {
+                AcknowledgableDelivery failing = delivery("TX-DB");
+                AcknowledgableDelivery ok = delivery("TX-OK");
+                when(receiver.consumeManualAck(anyString(), any(ConsumeOptions.class)))
+                                .thenReturn(Flux.just(failing, ok));
+                when(transactionService.processRetry(argThat(r -> r != null && "TX-DB".equals(r.getInternalOrderId()))))
+                                .thenReturn(Mono.error(new RuntimeException("DB down")));
+                when(transactionService.processRetry(argThat(r -> r != null && "TX-OK".equals(r.getInternalOrderId()))))
+                                .thenReturn(Mono.just(new InternalResponse(true, "OK", "TX-OK")));
+                when(rabbitPublisher.publish(any(), any(), any(), any()))
+                                .thenReturn(Mono.error(new PublishException("nack", "x", "y")));
+
+                StepVerifier.create(consumer.consumeLane(RetryLane.LOW))
+                                .expectNextCount(1)
+                                .verifyComplete();
+
+                InOrder inOrder = inOrder(failing, ok);
+                inOrder.verify(failing).nack(false, true);
+                inOrder.verify(ok).ack(true);
+        }
+
+        @Test
+        void shouldKeepHighLaneAndRestoreServiceTypeOnRetry() throws Exception {
+                AcknowledgableDelivery delivery = mock(AcknowledgableDelivery.class);
+                lenient().when(delivery.getBody()).thenReturn(objectMapper.writeValueAsBytes(
+                                new ExternalApiRequest("TX-VIP", BigDecimal.TEN, "CZK")));
+                lenient().when(delivery.getProperties()).thenReturn(new AMQP.BasicProperties.Builder()
+                                .headers(Map.of(RabbitMQConfig.SERVICE_TYPE_HEADER, "EXPRESS"))
+                                .build());
+                when(receiver.consumeManualAck(eq(RetryLane.HIGH.queueName()), any(ConsumeOptions.class)))
+                                .thenReturn(Flux.just(delivery));
+                when(receiver.consumeManualAck(eq(RetryLane.LOW.queueName()), any(ConsumeOptions.class)))
+                                .thenReturn(Flux.empty());
+                when(transactionService.processRetry(argThat(r -> r != null && "EXPRESS".equals(r.getServiceType()))))
+                                .thenReturn(Mono.error(new RuntimeException("API down")));
+                when(rabbitPublisher.publish(any(), any(), any(), any())).thenReturn(Mono.empty());
+
+                StepVerifier.create(consumer.consume())
+                                .expectNextCount(1)
+                                .verifyComplete();
+
+                verify(rabbitPublisher).publish(eq(RabbitMQConfig.RETRY_DELAY_EXCHANGE), eq("delay.10s.high"), any(), any());
+                verify(delivery).ack(true);
+        }
+
+        @Test
+        void shouldRejectUnreadableMessageWithoutRequeue() {
+                AcknowledgableDelivery delivery = mock(AcknowledgableDelivery.class);
+                when(delivery.getBody()).thenReturn("not-json".getBytes());
+                when(receiver.consumeManualAck(anyString(), any(ConsumeOptions.class)))
+                                .thenReturn(Flux.just(delivery));
+
+                StepVerifier.create(consumer.consumeLane(RetryLane.LOW))
+                                .expectNextCount(1)
+                                .verifyComplete();
+
+                verify(delivery).nack(false, false);
+                verifyNoInteractions(transactionService);
+        }
+
+        private AcknowledgableDelivery delivery(String transactionId) throws Exception {
+                return delivery(transactionId, 0);
+        }
+
+        private AcknowledgableDelivery delivery(String transactionId, int attempt) throws Exception {
+                AcknowledgableDelivery delivery = mock(AcknowledgableDelivery.class);
+                lenient().when(delivery.getBody()).thenReturn(objectMapper.writeValueAsBytes(
+                                new ExternalApiRequest(transactionId, BigDecimal.TEN, "CZK")));
+                lenient().when(delivery.getProperties()).thenReturn(new AMQP.BasicProperties.Builder()
+                                .headers(Map.of(RabbitMQConfig.RETRY_ATTEMPT_HEADER, attempt))
+                                .build());
+                return delivery;
+        }
+}
@@ -0,0 +1,105 @@
+package krematos.consumer;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import krematos.connector.ExternalSystemConnector;
+import krematos.model.ExternalApiRequest;
+import krematos.model.TransactionAudit;
+import krematos.publisher.PublishException;
+import krematos.repository.TransactionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class FailedTransactionRescuerTest {
+
+        @Mock
+        private TransactionRepository transactionRepository;
+
+        @Mock
+        private ExternalSystemConnector externalSystemConnector;
+
+        private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+        private FailedTransactionRescuer rescuer;
+
+        @BeforeEach
+        void setUp() {
+                rescuer = new FailedTransactionRescuer(transactionRepository, externalSystemConnector,
+                                meterRegistry, 2, 60000, 7);
+        }
+
+        @Test
+        void shouldPageByLastIdAndMarkEachChunkWithSingleUpdate() {
+                Instant cutoff = Instant.now();
+                Instant createdAfter = cutoff.minus(Duration.ofDays(7));
+                when(transactionRepository.findStuckFailedTransactions(eq(cutoff), eq(createdAfter), eq(0L), anyInt()))
+                                .thenReturn(Flux.just(audit(1L), audit(2L)));
+                when(transactionRepository.findStuckFailedTransactions(eq(cutoff), eq(createdAfter), eq(2L), anyInt()))
+                                .thenReturn(Flux.just(audit(5L)));
+                when(externalSystemConnector.publishToDeadLetter(any(ExternalApiRequest.class), any()))
+                                .thenReturn(Mono.empty());
+                when(transactionRepository.markAsNotified(any(Long[].class), any(), any()))
+                                .thenAnswer(invocation -> Mono.just(((Long[]) invocation.getArgument(0)).length));
+
+                StepVerifier.create(rescuer.rescue(cutoff))
+                                .expectNext(3L)
+                                .verifyComplete();
+
+                // Rozsah created_at chunku omezí UPDATE na partitions, ve kterých řádky leží
+                verify(transactionRepository).markAsNotified(argThat(ids -> ids.length == 2 && ids[0] == 1L && ids[1] == 2L),
+                                eq(createdAt(1L)), eq(createdAt(2L)));
+                verify(transactionRepository).markAsNotified(argThat(ids -> ids.length == 1 && ids[0] == 5L),
+                                eq(createdAt(5L)), eq(createdAt(5L)));
+                // Poslední chunk byl neúplný - další stránka se už nenačítá
+                verify(transactionRepository, times(2)).findStuckFailedTransactions(any(), any(), any(), anyInt());
+                assertThat(meterRegistry.get("rescuer.chunks").counter().count()).isEqualTo(2.0);
+        }
+
+        @Test
+        void shouldNotMarkRowsWhosePublishFailed() {
+                Instant cutoff = Instant.now();
+                when(transactionRepository.findStuckFailedTransactions(eq(cutoff), any(), eq(0L), anyInt()))
+                                .thenReturn(Flux.just(audit(1L)));
+                when(externalSystemConnector.publishToDeadLetter(any(ExternalApiRequest.class), any()))
+                                .thenReturn(Mono.error(new PublishException("nack", "x", "y")));
+
+                StepVerifier.create(rescuer.rescue(cutoff))
+                                .expectNext(0L)
+                                .verifyComplete();
+
+                verify(transactionRepository, never()).markAsNotified(any(Long[].class), any(), any());
+                assertThat(meterRegistry.get("rescuer.rows").tag("result", "failed").counter().count()).isEqualTo(1.0);
+        }
+
+        private TransactionAudit audit(Long id) {
+                return TransactionAudit.builder()
+                                .id(id)
+                                .internalOrderId("TX-" + id)
+                                .amount(BigDecimal.TEN)
+                                .currency("CZK")
+                                .status("FAILED")
+                                .createdAt(createdAt(id))
+                                .build();
+        }
+
+        private Instant createdAt(Long id) {
+                return Instant.parse("2025-01-15T10:00:00Z").plusSeconds(id);
+        }
+}
@@ -0,0 +1,58 @@
+package krematos.consumer;
+
+import krematos.config.RetryLane;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WeightedLaneGateTest {
+
+        @Test
+        void shouldGrantImmediatelyWhileCapacityIsAvailable() {
+                WeightedLaneGate gate = new WeightedLaneGate(2, 4);
+                List<RetryLane> granted = new ArrayList<>();
+
+                gate.acquire(RetryLane.LOW).doOnSuccess(v -> granted.add(RetryLane.LOW)).subscribe();
+                gate.acquire(RetryLane.HIGH).doOnSuccess(v -> granted.add(RetryLane.HIGH)).subscribe();
+
+                assertThat(granted).containsExactly(RetryLane.LOW, RetryLane.HIGH);
+        }
+
+        @Test
+        void shouldPreferHighLaneButNotStarveLowLane() {
+                WeightedLaneGate gate = new WeightedLaneGate(1, 2);
+                List<RetryLane> granted = new ArrayList<>();
+                gate.acquire(RetryLane.LOW).subscribe(); // obsadí jediné místo
+
+                for (int i = 0; i < 3; i++) {
+                        gate.acquire(RetryLane.LOW).doOnSuccess(v -> granted.add(RetryLane.LOW)).subscribe();
+                        gate.acquire(RetryLane.HIGH).doOnSuccess(v -> granted.add(RetryLane.HIGH)).subscribe();
+                }
+                for (int i = 0; i < 6; i++) {
+                        gate.release();
+                }
+
+                assertThat(granted).containsExactly(
+                                RetryLane.HIGH, RetryLane.HIGH, RetryLane.LOW,
+                                RetryLane.HIGH, RetryLane.LOW, RetryLane.LOW);
+        }
+
+        @Test
+        void shouldDropCancelledWaiter() {
+                WeightedLaneGate gate = new WeightedLaneGate(1, 4);
+                List<RetryLane> granted = new ArrayList<>();
+                gate.acquire(RetryLane.HIGH).subscribe();
+
+                Disposable cancelled = gate.acquire(RetryLane.HIGH).subscribe();
+                gate.acquire(RetryLane.LOW).doOnSuccess(v -> granted.add(RetryLane.LOW)).subscribe();
+                cancelled.dispose();
+                gate.release();
+
+                assertThat(granted).containsExactly(RetryLane.LOW);
+                assertThat(gate.waiting(RetryLane.HIGH)).isZero();
+        }
+}
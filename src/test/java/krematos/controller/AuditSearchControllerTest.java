@@ -0,0 +1,68 @@
+package krematos.controller;
+
+import krematos.Main;
+import krematos.model.AuditSearchResult;
+import krematos.service.TransactionAuditSearchService;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.security.oauth2.client.reactive.ReactiveOAuth2ClientAutoConfiguration;
+import org.springframework.boot.autoconfigure.security.oauth2.resource.reactive.ReactiveOAuth2ResourceServerAutoConfiguration;
+import org.springframework.boot.autoconfigure.security.reactive.ReactiveSecurityAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.when;
+
+@WebFluxTest(controllers = AuditSearchController.class, excludeAutoConfiguration = {
+                Main.class,
+                ReactiveSecurityAutoConfiguration.class,
+                ReactiveOAuth2ClientAutoConfiguration.class,
+                ReactiveOAuth2ResourceServerAutoConfiguration.class
+})
+class AuditSearchControllerTest {
+
+        @Autowired
+        private WebTestClient webTestClient;
+
+        @MockBean
+        private TransactionAuditSearchService auditSearchService;
+
+        @Test
+        @DisplayName("VYHLEDÁVÁNÍ: Výsledky se streamují jako NDJSON, každý řádek nese cursor")
+        void shouldStreamResultsAsNdjson() {
+                Instant from = Instant.parse("2025-01-01T00:00:00Z");
+                when(auditSearchService.search(eq("FAILED"), isNull(), isNull(), eq(from), isNull(), eq(2), any()))
+                                .thenReturn(Flux.just(result("TX-1", "c1"), result("TX-2", "c2")));
+
+                String body = webTestClient.get()
+                                .uri("/api/middleware/v1/audit/transactions?status=FAILED&createdFrom=2025-01-01T00:00:00Z&limit=2")
+                                .accept(MediaType.APPLICATION_NDJSON)
+                                .exchange()
+                                .expectStatus().isOk()
+                                .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+                                .expectBody(String.class)
+                                .returnResult()
+                                .getResponseBody();
+
+                assertThat(body.lines()).hasSize(2);
+                assertThat(body.lines().toList().get(1)).contains("\"internalOrderId\":\"TX-2\"").contains("\"cursor\":\"c2\"");
+        }
+
+        private AuditSearchResult result(String internalOrderId, String cursor) {
+                return AuditSearchResult.builder()
+                                .internalOrderId(internalOrderId)
+                                .status("FAILED")
+                                .cursor(cursor)
+                                .build();
+        }
+}
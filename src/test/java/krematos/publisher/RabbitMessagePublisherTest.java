@@ -0,0 +1,235 @@
+package krematos.publisher;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.amqp.core.Binding;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.rabbitmq.OutboundMessage;
+import reactor.rabbitmq.OutboundMessageResult;
+import reactor.rabbitmq.SendOptions;
+import reactor.rabbitmq.Sender;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@SuppressWarnings({ "unchecked", "rawtypes" })
+class RabbitMessagePublisherTest {
+
+        private static final String EXCHANGE = "test.exchange";
+        private static final String ROUTING_KEY = "test.key";
+
+        @Mock
+        private Sender sender;
+
+        private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+        private RabbitMessagePublisher publisher;
+
+        @BeforeEach
+        void setUp() {
+                Binding binding = new Binding("test.queue", Binding.DestinationType.QUEUE,
+                                EXCHANGE, ROUTING_KEY, Map.of());
+                publisher = new RabbitMessagePublisher(sender, List.of(binding), List.of(), meterRegistry,
+                                10, 20, 1024, 2, Duration.ofMillis(500));
+                publisher.start();
+        }
+
+        @AfterEach
+        void tearDown() {
+                publisher.stop();
+        }
+
+        @Test
+        void shouldCompleteWhenBrokerAcks() {
+                stubResults(true, false);
+
+                StepVerifier.create(publisher.publish(EXCHANGE, ROUTING_KEY, null, "{}".getBytes()))
+                                .expectComplete()
+                                .verify(Duration.ofSeconds(2));
+
+                assertThat(meterRegistry.get("rabbit.publish.results").tag("result", "ack").counter().count())
+                                .isEqualTo(1.0);
+                assertThat(meterRegistry.get("rabbit.publish.latency").timer().count()).isEqualTo(1);
+        }
+
+        @Test
+        void shouldFailWhenMessageIsReturnedAsUnroutable() {
+                stubResults(true, true);
+
+                StepVerifier.create(publisher.publish(EXCHANGE, ROUTING_KEY, null, "{}".getBytes()))
+                                .expectError(PublishException.class)
+                                .verify(Duration.ofSeconds(2));
+
+                assertThat(meterRegistry.get("rabbit.publish.results").tag("result", "returned").counter().count())
+                                .isEqualTo(1.0);
+        }
+
+        @Test
+        void shouldFailWhenBrokerNacks() {
+                stubResults(false, false);
+
+                StepVerifier.create(publisher.publish(EXCHANGE, ROUTING_KEY, null, "{}".getBytes()))
+                                .expectError(PublishException.class)
+                                .verify(Duration.ofSeconds(2));
+        }
+
+        @Test
+        void shouldSendMessagesPublishedWithinWindowAsOneBatch() {
+                stubResults(true, false);
+
+                StepVerifier.create(Flux.range(0, 5)
+                                                .flatMap(i -> publisher.publish(EXCHANGE, ROUTING_KEY, null, new byte[] { i.byteValue() }))
+                                                .then())
+                                .expectComplete()
+                                .verify(Duration.ofSeconds(2));
+
+                verify(sender, times(1)).sendWithTypedPublishConfirms(any(Publisher.class), any(SendOptions.class));
+                assertThat(meterRegistry.get("rabbit.publish.batch.size").summary().max()).isEqualTo(5.0);
+        }
+
+        @Test
+        void shouldKeepPublishingWhenConfirmsAreSlowerThanBatchWindow() {
+                // Broker pod flow control: potvrzení trvá déle než okno dávky, oba sloty flatMap jsou obsazené
+                when(sender.sendWithTypedPublishConfirms(any(Publisher.class), any(SendOptions.class)))
+                                .thenAnswer(invocation -> Flux.from((Publisher<OutboundMessage>) invocation.getArgument(0))
+                                                .collectList()
+                                                .delayElement(Duration.ofMillis(100))
+                                                .flatMapMany(Flux::fromIterable)
+                                                .map(message -> new OutboundMessageResult(message, true, false)));
+
+                StepVerifier.create(Flux.interval(Duration.ofMillis(5)).take(40)
+                                                .flatMap(i -> publisher.publish(EXCHANGE, ROUTING_KEY, null, new byte[] { i.byteValue() }))
+                                                .then())
+                                .expectComplete()
+                                .verify(Duration.ofSeconds(5));
+
+                assertThat(meterRegistry.get("rabbit.publish.results").tag("result", "ack").counter().count())
+                                .isEqualTo(40.0);
+                assertThat(meterRegistry.get("rabbit.publish.pipeline.restarts").counter().count()).isZero();
+        }
+
+        @Test
+        void shouldFailWhenBrokerDoesNotConfirmInTime() {
+                when(sender.sendWithTypedPublishConfirms(any(Publisher.class), any(SendOptions.class)))
+                                .thenReturn(Flux.never());
+
+                StepVerifier.create(publisher.publish(EXCHANGE, ROUTING_KEY, null, "{}".getBytes()))
+                                .expectErrorMatches(e -> e instanceof PublishException
+                                                && e.getMessage().contains("nepotvrdil"))
+                                .verify(Duration.ofSeconds(2));
+
+                assertThat(meterRegistry.get("rabbit.publish.pending").gauge().value()).isZero();
+        }
+
+        @Test
+        void shouldNotFailMessageAlreadyHandedToChannelWhenCallerTimesOut() {
+                // Jedna zpráva na dávku, jedna dávka najednou - druhá zpráva čeká ve frontě, než první dávka vyprší
+                RabbitMessagePublisher serial = serialPublisher();
+                when(sender.sendWithTypedPublishConfirms(any(Publisher.class), any(SendOptions.class)))
+                                .thenAnswer(invocation -> Flux.from((Publisher<OutboundMessage>) invocation.getArgument(0))
+                                                .thenMany(Flux.never()))
+                                .thenAnswer(invocation -> Flux.from((Publisher<OutboundMessage>) invocation.getArgument(0))
+                                                .delayElements(Duration.ofMillis(300))
+                                                .map(message -> new OutboundMessageResult(message, true, false)));
+                try {
+                        serial.publish(EXCHANGE, ROUTING_KEY, null, "first".getBytes()).subscribe(null, e -> { });
+
+                        // Odeslána v 500 ms, timeout volajícího v 700 ms, potvrzení v 800 ms
+                        StepVerifier.create(Mono.delay(Duration.ofMillis(200))
+                                                        .then(serial.publish(EXCHANGE, ROUTING_KEY, null, "second".getBytes())))
+                                        .expectComplete()
+                                        .verify(Duration.ofSeconds(2));
+                } finally {
+                        serial.stop();
+                }
+        }
+
+        @Test
+        void shouldDropMessageAbandonedByCallerBeforeItReachesChannel() {
+                RabbitMessagePublisher serial = serialPublisher();
+                List<String> sent = new CopyOnWriteArrayList<>();
+                when(sender.sendWithTypedPublishConfirms(any(Publisher.class), any(SendOptions.class)))
+                                .thenAnswer(invocation -> Flux.from((Publisher<OutboundMessage>) invocation.getArgument(0))
+                                                .doOnNext(message -> sent.add(new String(message.getBody())))
+                                                .thenMany(Flux.never()));
+                try {
+                        // first drží slot do 500 ms, second do 1000 ms; third vyprší ve frontě v 650 ms
+                        serial.publish(EXCHANGE, ROUTING_KEY, null, "first".getBytes()).subscribe(null, e -> { });
+                        Mono.delay(Duration.ofMillis(100))
+                                        .then(serial.publish(EXCHANGE, ROUTING_KEY, null, "second".getBytes()))
+                                        .subscribe(null, e -> { });
+
+                        StepVerifier.create(Mono.delay(Duration.ofMillis(150))
+                                                        .then(serial.publish(EXCHANGE, ROUTING_KEY, null, "third".getBytes())))
+                                        .expectError(PublishException.class)
+                                        .verify(Duration.ofSeconds(2));
+
+                        // Volající už dostal chybu (a zprávu uložil do spoolu) - dávka s third jde ke kanálu prázdná
+                        await().atMost(Duration.ofSeconds(2)).untilAsserted(() -> verify(sender, times(3))
+                                        .sendWithTypedPublishConfirms(any(Publisher.class), any(SendOptions.class)));
+                        assertThat(sent).containsExactly("first", "second");
+                } finally {
+                        serial.stop();
+                }
+        }
+
+        @Test
+        void shouldFailPendingMessagesAndResubscribeWhenPipelineFails() {
+                when(sender.sendWithTypedPublishConfirms(any(Publisher.class), any(SendOptions.class)))
+                                .thenThrow(new IllegalStateException("channel pool closed"))
+                                .thenAnswer(invocation -> Flux.from((Publisher<OutboundMessage>) invocation.getArgument(0))
+                                                .map(message -> new OutboundMessageResult(message, true, false)));
+
+                StepVerifier.create(publisher.publish(EXCHANGE, ROUTING_KEY, null, "{}".getBytes()))
+                                .expectError(PublishException.class)
+                                .verify(Duration.ofSeconds(2));
+
+                StepVerifier.create(publisher.publish(EXCHANGE, ROUTING_KEY, null, "{}".getBytes()))
+                                .expectComplete()
+                                .verify(Duration.ofSeconds(2));
+
+                assertThat(meterRegistry.get("rabbit.publish.pipeline.restarts").counter().count()).isEqualTo(1.0);
+        }
+
+        @Test
+        void shouldRejectRouteWithoutDeclaredBinding() {
+                assertThatThrownBy(() -> publisher.verifyRoute(EXCHANGE, "retry.key"))
+                                .isInstanceOf(IllegalStateException.class)
+                                .hasMessageContaining("retry.key");
+        }
+
+        private RabbitMessagePublisher serialPublisher() {
+                Binding binding = new Binding("test.queue", Binding.DestinationType.QUEUE,
+                                EXCHANGE, ROUTING_KEY, Map.of());
+                RabbitMessagePublisher serial = new RabbitMessagePublisher(sender, List.of(binding), List.of(),
+                                new SimpleMeterRegistry(), 1, 20, 1024, 1, Duration.ofMillis(500));
+                serial.start();
+                return serial;
+        }
+
+        @SuppressWarnings({ "unchecked", "rawtypes" })
+        private void stubResults(boolean ack, boolean returned) {
+                when(sender.sendWithTypedPublishConfirms(any(Publisher.class), any(SendOptions.class)))
+                                .thenAnswer(invocation -> Flux.from((Publisher<OutboundMessage>) invocation.getArgument(0))
+                                                .map(message -> new OutboundMessageResult(message, ack, returned)));
+        }
+}
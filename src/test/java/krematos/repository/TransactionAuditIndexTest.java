@@ -0,0 +1,182 @@
+package krematos.repository;
+
+import krematos.model.AuditSearchCriteria;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.r2dbc.repository.Query;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Ověřuje přes EXPLAIN, že každý dotaz TransactionRepository používá index z migrací
+ * a sahá jen do denních partitions odpovídajících podmínce na created_at (partition pruning).
+ * Tabulka je v testu prázdná, proto se sekvenční scan vypne (enable_seqscan = off) -
+ * test tím kontroluje, že vhodný index existuje a jeho predikát odpovídá dotazu.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class TransactionAuditIndexTest {
+
+        @Container
+        static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15-alpine");
+
+        // Migrace V3 založí denní partitions od dnešního dne (UTC) na týden dopředu
+        private static final LocalDate TODAY = LocalDate.now(ZoneOffset.UTC);
+
+        private static Connection connection;
+
+        @BeforeAll
+        static void migrate() throws Exception {
+                Flyway.configure()
+                                .dataSource(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword())
+                                .locations("classpath:db/migration")
+                                .load()
+                                .migrate();
+
+                connection = DriverManager.getConnection(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword());
+                try (Statement statement = connection.createStatement()) {
+                        statement.execute("SET enable_seqscan = off");
+                }
+        }
+
+        @AfterAll
+        static void close() throws Exception {
+                connection.close();
+        }
+
+        @Test
+        @DisplayName("findByInternalOrderId najde created_at v transaction_order_key a čte jedinou partition")
+        void findByInternalOrderIdUsesOrderKeyAndPartitionIndex() throws Exception {
+                String sql = bind(queryOf("findByInternalOrderId", String.class),
+                                Map.of("internalOrderId", "'ORDER-1'"));
+
+                assertThat(explain(sql))
+                                .contains("transaction_order_key_pkey")
+                                .contains("internal_order_id_created_at_idx")
+                                .doesNotContain("Seq Scan");
+        }
+
+        @Test
+        @DisplayName("findAllByInternalOrderIds hledá indexem a rozsah created_at bere z transaction_order_key")
+        void findAllByInternalOrderIdsUsesOrderKeyAndPartitionIndex() throws Exception {
+                String sql = bind(queryOf("findAllByInternalOrderIds", String[].class),
+                                Map.of("internalOrderIds", "ARRAY['ORDER-1', 'ORDER-2']::varchar[]"));
+
+                assertThat(explain(sql))
+                                .contains("transaction_order_key_pkey")
+                                .contains("internal_order_id_created_at_idx")
+                                .doesNotContain("Seq Scan");
+        }
+
+        @Test
+        @DisplayName("findStuckFailedTransactions používá částečný index FAILED / notification_sent jen v partitions okna")
+        void findStuckFailedTransactionsUsesPartialIndex() throws Exception {
+                String sql = bind(queryOf("findStuckFailedTransactions", Instant.class, Instant.class, Long.class, int.class),
+                                Map.of("cutoffTime", at(TODAY, "12:00"), "createdAfter", at(TODAY, "00:00"),
+                                                "lastId", "0", "limit", "500"));
+
+                assertThat(explain(sql))
+                                .contains(partition(TODAY) + "_id_updated_at_idx")
+                                .doesNotContain(partition(TODAY.plusDays(1)))
+                                .doesNotContain("transaction_audit_default");
+        }
+
+        @Test
+        @DisplayName("markAsNotified používá primární klíč partitions z rozsahu created_at")
+        void markAsNotifiedUsesPrimaryKey() throws Exception {
+                String sql = bind(queryOf("markAsNotified", Long[].class, Instant.class, Instant.class),
+                                Map.of("ids", "ARRAY[1, 2, 3]::bigint[]",
+                                                "createdFrom", at(TODAY, "08:00"), "createdTo", at(TODAY, "09:00")));
+
+                assertThat(explain(sql))
+                                .contains(partition(TODAY) + "_pkey")
+                                .doesNotContain(partition(TODAY.plusDays(1)))
+                                .doesNotContain("transaction_audit_default");
+        }
+
+        @Test
+        @DisplayName("failStalePendingChunk používá částečný index PENDING jen v partitions okna")
+        void failStalePendingChunkUsesPartialIndex() throws Exception {
+                String sql = bind(queryOf("failStalePendingChunk", Instant.class, Instant.class, Long.class, int.class),
+                                Map.of("cutoffTime", at(TODAY, "12:00"), "createdAfter", at(TODAY, "00:00"),
+                                                "lastId", "0", "limit", "1000"));
+
+                assertThat(explain(sql))
+                                .contains(partition(TODAY) + "_id_created_at_idx")
+                                .doesNotContain(partition(TODAY.plusDays(1)))
+                                .doesNotContain("transaction_audit_default");
+        }
+
+        @Test
+        @DisplayName("updateOutcome aktualizuje řádek v jediné partition")
+        void updateOutcomeTouchesSinglePartition() throws Exception {
+                String sql = bind(queryOf("updateOutcome", Long.class, Instant.class, String.class, String.class, Instant.class),
+                                Map.of("id", "1", "createdAt", at(TODAY, "08:00"), "status", "'SUCCESS'",
+                                                "details", "NULL", "updatedAt", "now()"));
+
+                assertThat(explain(sql))
+                                .contains(partition(TODAY) + "_pkey")
+                                .doesNotContain(partition(TODAY.plusDays(1)))
+                                .doesNotContain("transaction_audit_default");
+        }
+
+        @Test
+        @DisplayName("Vyhledávání auditů podle stavu pokračuje od kurzoru seekem v indexu (status, created_at, id)")
+        void auditSearchUsesKeysetIndex() throws Exception {
+                TransactionAuditSearchRepository.SearchQuery query = TransactionAuditSearchRepository.SearchQuery.of(
+                                new AuditSearchCriteria("FAILED", null, null, null, null, Instant.now(), 10L), 1000);
+                String sql = bind(query.sql(), Map.of("status", "'FAILED'", "afterCreatedAt", at(TODAY, "00:00"),
+                                "afterId", "10", "limit", "1000"));
+
+                assertThat(explain(sql))
+                                .contains("_status_created_at_id_idx")
+                                .doesNotContain("Sort")
+                                .doesNotContain("Seq Scan");
+        }
+
+        // SQL přímo z @Query anotace - test hlídá skutečný dotaz aplikace, ne jeho kopii
+        private static String queryOf(String method, Class<?>... parameterTypes) throws NoSuchMethodException {
+                return TransactionRepository.class.getMethod(method, parameterTypes).getAnnotation(Query.class).value();
+        }
+
+        private static String partition(LocalDate day) {
+                return TransactionPartitionRepository.partitionName(day);
+        }
+
+        private static String at(LocalDate day, String time) {
+                return "'" + day + "T" + time + ":00Z'::timestamptz";
+        }
+
+        private static String bind(String sql, Map<String, String> literals) {
+                String bound = sql;
+                for (Map.Entry<String, String> literal : literals.entrySet()) {
+                        bound = bound.replace(":" + literal.getKey(), literal.getValue());
+                }
+                return bound;
+        }
+
+        private static String explain(String sql) throws Exception {
+                StringBuilder plan = new StringBuilder();
+                try (Statement statement = connection.createStatement();
+                                ResultSet resultSet = statement.executeQuery("EXPLAIN " + sql)) {
+                        while (resultSet.next()) {
+                                plan.append(resultSet.getString(1)).append('\n');
+                        }
+                }
+                return plan.toString();
+        }
+}
@@ -0,0 +1,94 @@
+package krematos.scheduler;
+
+import krematos.model.AuditStatus;
+import krematos.model.TransactionAudit;
+import krematos.repository.TransactionRepository;
+import krematos.service.AsyncTransactionQueue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AcceptedTransactionSweeperTest {
+
+        private static final Instant NOW = Instant.parse("2025-01-15T10:05:30Z");
+
+        @Mock
+        private TransactionRepository transactionRepository;
+
+        @Mock
+        private AsyncTransactionQueue asyncTransactionQueue;
+
+        private AcceptedTransactionSweeper sweeper;
+
+        @BeforeEach
+        void setUp() {
+                sweeper = new AcceptedTransactionSweeper(transactionRepository, asyncTransactionQueue,
+                                Duration.ofMinutes(1), 100);
+        }
+
+        @Test
+        void shouldResubmitUnclaimedTransactionsOlderThanThreshold() {
+                Instant cutoff = NOW.minus(Duration.ofMinutes(1));
+                when(transactionRepository.findUnclaimedAccepted(eq(cutoff), eq(cutoff.minus(Duration.ofDays(1))), eq(100)))
+                                .thenReturn(Flux.just(accepted("ORDER-1"), accepted("ORDER-2")));
+                when(asyncTransactionQueue.resubmit(any())).thenReturn(true);
+
+                StepVerifier.create(sweeper.sweep(NOW))
+                                .expectNext(2L)
+                                .verifyComplete();
+
+                verify(asyncTransactionQueue, times(2)).resubmit(any());
+        }
+
+        @Test
+        void shouldStopWhenQueueIsFull() {
+                when(transactionRepository.findUnclaimedAccepted(any(), any(), anyInt()))
+                                .thenReturn(Flux.just(accepted("ORDER-1"), accepted("ORDER-2"), accepted("ORDER-3")));
+                when(asyncTransactionQueue.resubmit(any())).thenReturn(true, false);
+
+                // Zbytek zůstane s attempt_count = 0 pro další běh
+                StepVerifier.create(sweeper.sweep(NOW))
+                                .expectNext(1L)
+                                .verifyComplete();
+
+                verify(asyncTransactionQueue, times(2)).resubmit(any());
+        }
+
+        @Test
+        void shouldSkipTransactionsStillQueuedOnThisNode() {
+                when(transactionRepository.findUnclaimedAccepted(any(), any(), anyInt()))
+                                .thenReturn(Flux.just(accepted("ORDER-1"), accepted("ORDER-2")));
+                when(asyncTransactionQueue.isQueued("ORDER-1")).thenReturn(true);
+                when(asyncTransactionQueue.resubmit(any())).thenReturn(true);
+
+                // ORDER-1 ještě čeká ve frontě (attempt_count = 0) - duplicita by jen zabrala místo
+                StepVerifier.create(sweeper.sweep(NOW))
+                                .expectNext(1L)
+                                .verifyComplete();
+
+                verify(asyncTransactionQueue).resubmit(argThat(audit -> "ORDER-2".equals(audit.getInternalOrderId())));
+                verify(asyncTransactionQueue, times(1)).resubmit(any());
+        }
+
+        private static TransactionAudit accepted(String orderId) {
+                return TransactionAudit.builder()
+                                .id(1L)
+                                .internalOrderId(orderId)
+                                .status(AuditStatus.PENDING.name())
+                                .attemptCount(0)
+                                .createdAt(NOW.minus(Duration.ofMinutes(5)))
+                                .build();
+        }
+}
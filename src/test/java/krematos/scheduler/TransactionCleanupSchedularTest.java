@@ -0,0 +1,65 @@
+package krematos.scheduler;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import krematos.repository.TransactionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TransactionCleanupSchedularTest {
+
+        @Mock
+        private TransactionRepository transactionRepository;
+
+        private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+        private TransactionCleanupSchedular schedular;
+
+        @BeforeEach
+        void setUp() {
+                schedular = new TransactionCleanupSchedular(transactionRepository, meterRegistry, 2, 0,
+                                Duration.ofMinutes(5), 7);
+        }
+
+        @Test
+        void shouldCleanInChunksUsingIdAsKeysetCursor() throws Exception {
+                Instant cutoff = Instant.now();
+                // Okno created_at [cutoff - 7 dní, cutoff) omezí UPDATE na odpovídající denní partitions
+                Instant createdAfter = cutoff.minus(Duration.ofDays(7));
+                when(transactionRepository.failStalePendingChunk(eq(cutoff), eq(createdAfter), eq(0L), anyInt()))
+                                .thenReturn(Flux.just(4L, 3L));
+                when(transactionRepository.failStalePendingChunk(eq(cutoff), eq(createdAfter), eq(4L), anyInt()))
+                                .thenReturn(Flux.just(7L));
+
+                assertThat(schedular.cleanup(cutoff)).isEqualTo(3);
+
+                assertThat(meterRegistry.get("cleanup.rows").counter().count()).isEqualTo(3.0);
+                assertThat(meterRegistry.get("cleanup.checkpoint.id").gauge().value()).isZero();
+        }
+
+        @Test
+        void shouldStartEveryRunFromBeginning() throws Exception {
+                Instant cutoff = Instant.now();
+                when(transactionRepository.failStalePendingChunk(eq(cutoff), any(), eq(0L), anyInt()))
+                                .thenReturn(Flux.just(42L))
+                                .thenReturn(Flux.empty());
+
+                assertThat(schedular.cleanup(cutoff)).isEqualTo(1);
+                assertThat(schedular.cleanup(cutoff)).isZero();
+
+                verify(transactionRepository, times(2)).failStalePendingChunk(any(), any(), eq(0L), anyInt());
+        }
+}
@@ -0,0 +1,143 @@
+package krematos.scheduler;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import krematos.archive.TransactionAuditArchiver;
+import krematos.repository.TransactionPartitionRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Instant;
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TransactionPartitionMaintenanceTest {
+
+        private static final LocalDate TODAY = LocalDate.of(2025, 6, 30);
+
+        @Mock
+        private TransactionPartitionRepository partitionRepository;
+
+        @Mock
+        private TransactionAuditArchiver archiver;
+
+        private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+        @Test
+        void shouldCreatePartitionsForTodayAndDaysAhead() {
+                TransactionPartitionMaintenance maintenance = maintenance("drop");
+                when(partitionRepository.createPartition(any()))
+                                .thenAnswer(invocation -> Mono.just(TransactionPartitionRepository.partitionName(invocation.getArgument(0))));
+                // Dnešní partition už existuje - funkce nic nezaložila
+                when(partitionRepository.createPartition(TODAY)).thenReturn(Mono.empty());
+
+                StepVerifier.create(maintenance.ensureUpcomingPartitions(TODAY))
+                                .expectNext(2L)
+                                .verifyComplete();
+
+                assertThat(meterRegistry.counter("partitions.created").count()).isEqualTo(2);
+
+                verify(partitionRepository).createPartition(TODAY);
+                verify(partitionRepository).createPartition(TODAY.plusDays(2));
+                verify(partitionRepository, never()).createPartition(TODAY.plusDays(3));
+        }
+
+        @Test
+        void shouldFailStartupWhenPartitionCannotBeCreated() {
+                TransactionPartitionMaintenance maintenance = maintenance("drop");
+                when(partitionRepository.createPartition(any()))
+                                .thenReturn(Mono.error(new DataIntegrityViolationException(
+                                                "updated partition constraint for default partition would be violated")));
+
+                assertThatThrownBy(maintenance::ensurePartitionsOnStartup)
+                                .isInstanceOf(IllegalStateException.class)
+                                .hasCauseInstanceOf(DataIntegrityViolationException.class);
+        }
+
+        @Test
+        void shouldStartWhenDatabaseIsUnavailable() {
+                TransactionPartitionMaintenance maintenance = maintenance("drop");
+                when(partitionRepository.createPartition(any()))
+                                .thenReturn(Mono.error(new DataAccessResourceFailureException("Connection refused")));
+
+                maintenance.ensurePartitionsOnStartup();
+
+                assertThat(meterRegistry.counter("partitions.failures").count()).isEqualTo(1);
+        }
+
+        @Test
+        void shouldDetachAndDropOnlyPartitionsOlderThanRetention() {
+                TransactionPartitionMaintenance maintenance = maintenance("drop");
+                LocalDate expired = TODAY.minusDays(31);
+                LocalDate boundary = TODAY.minusDays(30);
+                when(partitionRepository.findAttachedPartitionDays()).thenReturn(Flux.just(expired, boundary, TODAY));
+                when(partitionRepository.detachPartition(expired)).thenReturn(Mono.empty());
+                when(partitionRepository.dropPartition(expired)).thenReturn(Mono.empty());
+                when(partitionRepository.deleteOrderKeysCreatedBefore(Instant.parse("2025-05-31T00:00:00Z")))
+                                .thenReturn(Mono.just(10L));
+
+                StepVerifier.create(maintenance.applyRetention(TODAY))
+                                .expectNext(1L)
+                                .verifyComplete();
+
+                InOrder inOrder = inOrder(partitionRepository);
+                inOrder.verify(partitionRepository).detachPartition(expired);
+                inOrder.verify(partitionRepository).dropPartition(expired);
+                verify(partitionRepository, never()).detachPartition(boundary);
+        }
+
+        @Test
+        void shouldKeepDetachedTableInDetachMode() {
+                TransactionPartitionMaintenance maintenance = maintenance("detach");
+                LocalDate expired = TODAY.minusDays(45);
+                when(partitionRepository.findAttachedPartitionDays()).thenReturn(Flux.just(expired));
+                when(partitionRepository.detachPartition(expired)).thenReturn(Mono.empty());
+                when(partitionRepository.deleteOrderKeysCreatedBefore(any())).thenReturn(Mono.just(0L));
+
+                StepVerifier.create(maintenance.applyRetention(TODAY))
+                                .expectNext(1L)
+                                .verifyComplete();
+
+                verify(partitionRepository, never()).dropPartition(any());
+        }
+
+        @Test
+        void shouldArchiveBeforeDroppingAndPickUpPreviouslyDetachedPartitions() {
+                TransactionPartitionMaintenance maintenance = maintenance("archive");
+                LocalDate leftover = TODAY.minusDays(60);
+                LocalDate expired = TODAY.minusDays(31);
+                when(partitionRepository.findDetachedPartitionDays()).thenReturn(Flux.just(leftover));
+                when(partitionRepository.findAttachedPartitionDays()).thenReturn(Flux.just(expired, TODAY));
+                when(partitionRepository.detachPartition(expired)).thenReturn(Mono.empty());
+                when(archiver.archiveDetachedPartition(any())).thenReturn(Mono.empty());
+                when(archiver.archiveDefaultPartitionBefore(TODAY.minusDays(30))).thenReturn(Mono.empty());
+                when(partitionRepository.deleteOrderKeysCreatedBefore(any())).thenReturn(Mono.just(0L));
+
+                StepVerifier.create(maintenance.applyRetention(TODAY))
+                                .expectNext(1L)
+                                .verifyComplete();
+
+                InOrder inOrder = inOrder(partitionRepository, archiver);
+                inOrder.verify(archiver).archiveDetachedPartition(leftover);
+                inOrder.verify(partitionRepository).detachPartition(expired);
+                inOrder.verify(archiver).archiveDetachedPartition(expired);
+                // DROP dělá archiver až po zapsání manifestu
+                verify(partitionRepository, never()).dropPartition(any());
+        }
+
+        private TransactionPartitionMaintenance maintenance(String retentionMode) {
+                return new TransactionPartitionMaintenance(partitionRepository, archiver, meterRegistry, 2, 30, retentionMode);
+        }
+}
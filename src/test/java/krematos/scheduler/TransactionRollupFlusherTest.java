@@ -0,0 +1,72 @@
+package krematos.scheduler;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import krematos.model.RollupDelta;
+import krematos.model.TransactionAudit;
+import krematos.repository.TransactionRollupRepository;
+import krematos.stats.TransactionRollupCollector;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class TransactionRollupFlusherTest {
+
+    @Mock
+    private TransactionRollupRepository rollupRepository;
+
+    private final TransactionRollupCollector collector = new TransactionRollupCollector();
+
+    private TransactionRollupFlusher flusher;
+
+    @BeforeEach
+    void setUp() {
+        flusher = new TransactionRollupFlusher(collector, rollupRepository, new SimpleMeterRegistry(), Duration.ofSeconds(5));
+    }
+
+    @Test
+    void shouldSkipDatabaseWhenNothingToFlush() {
+        StepVerifier.create(flusher.flush())
+                .expectNext(0L)
+                .verifyComplete();
+
+        verifyNoInteractions(rollupRepository);
+    }
+
+    @Test
+    void shouldRestoreDeltasWhenUpsertFails() {
+        collector.record(audit());
+        when(rollupRepository.upsert(anyList())).thenReturn(Mono.error(new RuntimeException("DB down")));
+
+        StepVerifier.create(flusher.flush())
+                .verifyErrorMessage("DB down");
+
+        // Přírůstek se neztratil - další flush ho zapíše
+        assertThat(collector.drain()).containsExactly(
+                new RollupDelta(Instant.parse("2025-01-15T10:05:00Z"), "SUCCESS", "CZK", "PAYMENT", 1, 1000));
+    }
+
+    private static TransactionAudit audit() {
+        TransactionAudit audit = new TransactionAudit();
+        audit.setStatus("SUCCESS");
+        audit.setCurrency("CZK");
+        audit.setServiceType("PAYMENT");
+        audit.setAmount(BigDecimal.TEN);
+        audit.setUpdatedAt(Instant.parse("2025-01-15T10:05:10Z"));
+        return audit;
+    }
+}
@@ -0,0 +1,149 @@
+package krematos.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import krematos.exception.ExternalServiceException;
+import krematos.exception.RateLimitException;
+import krematos.exception.ValidationException;
+import krematos.model.AuditStatus;
+import krematos.model.InternalRequest;
+import krematos.model.InternalResponse;
+import krematos.model.TransactionAudit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AsyncTransactionQueueTest {
+
+        @Mock
+        private TransactionService transactionService;
+
+        private AsyncTransactionQueue queue;
+
+        @BeforeEach
+        void setUp() {
+                queue = new AsyncTransactionQueue(transactionService, new SimpleMeterRegistry(), 2, 4, Duration.ofSeconds(1));
+                queue.start();
+        }
+
+        @AfterEach
+        void tearDown() throws InterruptedException {
+                queue.stop();
+        }
+
+        @Test
+        void shouldAcceptAndProcessInBackground() {
+                InternalRequest request = request("ORDER-1");
+                TransactionAudit audit = pending("ORDER-1");
+                Sinks.One<InternalResponse> external = Sinks.one();
+                when(transactionService.accept(request)).thenReturn(Mono.just(audit));
+                when(transactionService.processAccepted(request, audit)).thenReturn(external.asMono());
+
+                StepVerifier.create(queue.submit(request))
+                                .assertNext(accepted -> assertThat(accepted.getStatus()).isEqualTo("PENDING"))
+                                .verifyComplete();
+
+                // Odpověď odešla dřív, než externí volání doběhlo
+                verify(transactionService).processAccepted(request, audit);
+                assertThat(queue.pending()).isEqualTo(1);
+
+                external.tryEmitValue(new InternalResponse(true, "OK", "ORDER-1"));
+                assertThat(queue.pending()).isZero();
+        }
+
+        @Test
+        void shouldRejectWhenFullBeforeWritingAudit() {
+                when(transactionService.accept(any())).thenAnswer(invocation ->
+                                Mono.just(pending(invocation.<InternalRequest>getArgument(0).getInternalOrderId())));
+                when(transactionService.processAccepted(any(), any())).thenReturn(Mono.never());
+
+                StepVerifier.create(queue.submit(request("ORDER-1"))).expectNextCount(1).verifyComplete();
+                StepVerifier.create(queue.submit(request("ORDER-2"))).expectNextCount(1).verifyComplete();
+                StepVerifier.create(queue.submit(request("ORDER-3")))
+                                .expectErrorSatisfies(e -> assertThat(e).isInstanceOf(RateLimitException.class)
+                                                .extracting("retryAfterSeconds").isEqualTo(1L))
+                                .verify();
+
+                verify(transactionService, never()).accept(eq(request("ORDER-3")));
+        }
+
+        @Test
+        void shouldReleaseSlotOnRejectedRequestAndFailedProcessing() {
+                InternalRequest invalid = request("ORDER-1");
+                InternalRequest failing = request("ORDER-2");
+                TransactionAudit audit = pending("ORDER-2");
+                when(transactionService.accept(invalid))
+                                .thenReturn(Mono.error(new ValidationException("Neplatná částka v požadavku", "ORDER-1", "Amount: 0")));
+                when(transactionService.accept(failing)).thenReturn(Mono.just(audit));
+                when(transactionService.processAccepted(failing, audit))
+                                .thenReturn(Mono.error(new ExternalServiceException("Externí služba není dostupná", "API", "ORDER-2")));
+
+                StepVerifier.create(queue.submit(invalid)).expectError(ValidationException.class).verify();
+                StepVerifier.create(queue.submit(failing)).expectNextCount(1).verifyComplete();
+
+                assertThat(queue.pending()).isZero();
+        }
+
+        @Test
+        void shouldResubmitAuditOnlyWhileThereIsCapacity() {
+                when(transactionService.processAccepted(any(), any())).thenReturn(Mono.never());
+
+                assertThat(queue.resubmit(pending("ORDER-1"))).isTrue();
+                assertThat(queue.resubmit(pending("ORDER-2"))).isTrue();
+                assertThat(queue.resubmit(pending("ORDER-3"))).isFalse();
+
+                // Požadavek se složí z auditu - externí API dostane stejná data jako při přijetí
+                verify(transactionService).processAccepted(argThat(request -> "ORDER-1".equals(request.getInternalOrderId())
+                                && new BigDecimal("10.00").equals(request.getAmount())
+                                && "CZK".equals(request.getCurrencyCode())), any());
+                assertThat(queue.pending()).isEqualTo(2);
+        }
+
+        @Test
+        void shouldNotResubmitTransactionStillWaitingInQueue() {
+                Sinks.One<InternalResponse> external = Sinks.one();
+                when(transactionService.processAccepted(any(), any())).thenReturn(external.asMono());
+
+                assertThat(queue.resubmit(pending("ORDER-1"))).isTrue();
+                assertThat(queue.isQueued("ORDER-1")).isTrue();
+                assertThat(queue.resubmit(pending("ORDER-1"))).isTrue();
+
+                verify(transactionService, times(1)).processAccepted(any(), any());
+                assertThat(queue.pending()).isEqualTo(1);
+
+                // Po dokončení workerem ji sweeper smí zařadit znovu (pokud zůstala nezpracovaná)
+                external.tryEmitValue(new InternalResponse(true, "OK", "ORDER-1"));
+                assertThat(queue.isQueued("ORDER-1")).isFalse();
+                assertThat(queue.pending()).isZero();
+        }
+
+        private static InternalRequest request(String orderId) {
+                return new InternalRequest(orderId, new BigDecimal("10.00"), "CZK", "PAYMENT", Instant.parse("2025-01-15T10:00:00Z"));
+        }
+
+        private static TransactionAudit pending(String orderId) {
+                return TransactionAudit.builder()
+                                .id(1L)
+                                .internalOrderId(orderId)
+                                .amount(new BigDecimal("10.00"))
+                                .currency("CZK")
+                                .serviceType("PAYMENT")
+                                .status(AuditStatus.PENDING.name())
+                                .build();
+        }
+}
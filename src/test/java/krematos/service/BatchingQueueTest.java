@@ -0,0 +1,63 @@
+package krematos.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+class BatchingQueueTest {
+
+        private final Counter restarts = new SimpleMeterRegistry().counter("restarts");
+        private final List<List<Integer>> batches = new CopyOnWriteArrayList<>();
+
+        private BatchingQueue<Integer> queue;
+
+        @AfterEach
+        void tearDown() {
+                queue.stop();
+        }
+
+        @Test
+        void shouldCollectItemsIntoBatchesOfAtMostBatchSize() {
+                queue = new BatchingQueue<>("test", 3, Duration.ofMillis(50), 100, 2, restarts,
+                                batch -> Mono.fromRunnable(() -> batches.add(batch)), error -> { });
+                queue.start();
+
+                for (int i = 1; i <= 5; i++) {
+                        assertThat(queue.emit(i)).isEqualTo(Sinks.EmitResult.OK);
+                }
+
+                // Plná dávka odejde hned, zbytek po uplynutí okna
+                await().atMost(Duration.ofSeconds(2)).untilAsserted(() ->
+                                assertThat(batches).containsExactly(List.of(1, 2, 3), List.of(4, 5)));
+        }
+
+        @Test
+        void shouldRestartPipelineOnNewQueueAfterFailure() {
+                AtomicReference<Throwable> failure = new AtomicReference<>();
+                queue = new BatchingQueue<>("test", 1, Duration.ofMillis(10), 100, 1, restarts,
+                                batch -> batch.contains(1)
+                                                ? Mono.error(new IllegalStateException("channel pool closed"))
+                                                : Mono.fromRunnable(() -> batches.add(batch)),
+                                failure::set);
+                queue.start();
+
+                queue.emit(1);
+                await().atMost(Duration.ofSeconds(2)).until(() -> failure.get() != null);
+                queue.emit(2);
+
+                await().atMost(Duration.ofSeconds(2)).untilAsserted(() -> assertThat(batches).containsExactly(List.of(2)));
+                assertThat(failure.get()).hasMessage("channel pool closed");
+                assertThat(restarts.count()).isEqualTo(1.0);
+        }
+}
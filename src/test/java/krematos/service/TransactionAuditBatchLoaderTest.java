@@ -0,0 +1,111 @@
+package krematos.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import krematos.model.AuditStatus;
+import krematos.model.TransactionAudit;
+import krematos.repository.TransactionRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TransactionAuditBatchLoaderTest {
+
+        @Mock
+        private TransactionRepository transactionRepository;
+
+        private TransactionAuditBatchLoader loader;
+
+        @BeforeEach
+        void setUp() {
+                loader = new TransactionAuditBatchLoader(transactionRepository, new SimpleMeterRegistry(), 10, 50, 100, 2,
+                                Duration.ofMillis(500));
+                loader.start();
+        }
+
+        @AfterEach
+        void tearDown() {
+                loader.stop();
+        }
+
+        @Test
+        void shouldLoadConcurrentLookupsWithSingleQuery() {
+                when(transactionRepository.findAllByInternalOrderIds(any()))
+                                .thenReturn(Flux.just(audit("TX-1", AuditStatus.SUCCESS), audit("TX-2", AuditStatus.FAILED)));
+
+                List<String> statuses = Flux.merge(loader.load("TX-1"), loader.load("TX-2"), loader.load("TX-3"), loader.load("TX-1"))
+                                .map(TransactionAudit::getStatus)
+                                .collectList()
+                                .block(Duration.ofSeconds(5));
+
+                assertThat(statuses).containsExactlyInAnyOrder("SUCCESS", "SUCCESS", "FAILED");
+                ArgumentCaptor<String[]> ids = ArgumentCaptor.forClass(String[].class);
+                verify(transactionRepository, times(1)).findAllByInternalOrderIds(ids.capture());
+                assertThat(ids.getValue()).containsExactlyInAnyOrder("TX-1", "TX-2", "TX-3");
+                verify(transactionRepository, never()).findByInternalOrderId(any());
+        }
+
+        @Test
+        void shouldPropagateDatabaseErrorToEveryWaiter() {
+                when(transactionRepository.findAllByInternalOrderIds(any()))
+                                .thenReturn(Flux.error(new DataAccessResourceFailureException("Connection refused")));
+
+                StepVerifier.create(Flux.merge(loader.load("TX-1"), loader.load("TX-2")))
+                                .expectError(DataAccessResourceFailureException.class)
+                                .verify(Duration.ofSeconds(5));
+                StepVerifier.create(loader.load("TX-3"))
+                                .expectError(DataAccessResourceFailureException.class)
+                                .verify(Duration.ofSeconds(5));
+        }
+
+        @Test
+        void shouldServeBurstWhileBatchQueriesAreSlowerThanWindow() {
+                when(transactionRepository.findAllByInternalOrderIds(any()))
+                                .thenAnswer(invocation -> Flux.fromArray((String[]) invocation.getArgument(0))
+                                                .map(id -> audit(id, AuditStatus.PENDING))
+                                                .delaySubscription(Duration.ofMillis(100)));
+
+                StepVerifier.create(Flux.interval(Duration.ofMillis(5)).take(40)
+                                                .flatMap(i -> loader.load("TX-" + i)))
+                                .expectNextCount(40)
+                                .expectComplete()
+                                .verify(Duration.ofSeconds(5));
+
+                verify(transactionRepository, never()).findByInternalOrderId(any());
+        }
+
+        @Test
+        void shouldFallBackToDirectQueryWhenBatchDoesNotAnswer() {
+                when(transactionRepository.findAllByInternalOrderIds(any())).thenReturn(Flux.never());
+                when(transactionRepository.findByInternalOrderId("TX-1"))
+                                .thenReturn(Mono.just(audit("TX-1", AuditStatus.SUCCESS)));
+
+                StepVerifier.create(loader.load("TX-1"))
+                                .assertNext(audit -> assertThat(audit.getStatus()).isEqualTo("SUCCESS"))
+                                .expectComplete()
+                                .verify(Duration.ofSeconds(5));
+        }
+
+        private static TransactionAudit audit(String orderId, AuditStatus status) {
+                return TransactionAudit.builder()
+                                .id(1L)
+                                .internalOrderId(orderId)
+                                .status(status.name())
+                                .build();
+        }
+}
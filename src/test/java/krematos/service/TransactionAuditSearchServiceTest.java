@@ -0,0 +1,79 @@
+package krematos.service;
+
+import krematos.exception.ValidationException;
+import krematos.model.AuditSearchCriteria;
+import krematos.model.TransactionAudit;
+import krematos.repository.TransactionAuditSearchRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TransactionAuditSearchServiceTest {
+
+        private static final Instant CREATED_AT = Instant.parse("2025-01-15T10:00:00.123456Z");
+
+        @Mock
+        private TransactionAuditSearchRepository searchRepository;
+
+        private TransactionAuditSearchService searchService;
+
+        @BeforeEach
+        void setUp() {
+                searchService = new TransactionAuditSearchService(searchRepository, 100, 1000, 50);
+        }
+
+        @Test
+        void shouldContinueAfterCursorOfLastStreamedRow() {
+                when(searchRepository.search(any(), anyInt(), anyInt()))
+                                .thenReturn(Flux.just(audit(42L)))
+                                .thenReturn(Flux.empty());
+
+                String cursor = searchService.search("FAILED", null, null, null, null, null, null)
+                                .blockLast()
+                                .getCursor();
+                StepVerifier.create(searchService.search("FAILED", null, null, null, null, 10, cursor))
+                                .verifyComplete();
+
+                ArgumentCaptor<AuditSearchCriteria> criteria = ArgumentCaptor.forClass(AuditSearchCriteria.class);
+                verify(searchRepository).search(any(), eq(100), eq(50));
+                verify(searchRepository).search(criteria.capture(), eq(10), eq(10));
+                assertThat(criteria.getValue().afterCreatedAt()).isEqualTo(CREATED_AT);
+                assertThat(criteria.getValue().afterId()).isEqualTo(42L);
+                assertThat(criteria.getValue().status()).isEqualTo("FAILED");
+        }
+
+        @Test
+        void shouldRejectInvalidTokenAndLimit() {
+                StepVerifier.create(searchService.search(null, null, null, null, null, null, "not-a-token"))
+                                .expectError(ValidationException.class)
+                                .verify();
+                StepVerifier.create(searchService.search(null, null, null, null, null, 5000, null))
+                                .expectError(ValidationException.class)
+                                .verify();
+
+                verifyNoInteractions(searchRepository);
+        }
+
+        private TransactionAudit audit(Long id) {
+                return TransactionAudit.builder()
+                                .id(id)
+                                .internalOrderId("TX-" + id)
+                                .status("FAILED")
+                                .createdAt(CREATED_AT)
+                                .build();
+        }
+}
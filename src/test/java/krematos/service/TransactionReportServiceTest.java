@@ -0,0 +1,52 @@
+package krematos.service;
+
+import krematos.exception.ValidationException;
+import krematos.model.ReportGranularity;
+import krematos.repository.TransactionRollupRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.time.Instant;
+
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TransactionReportServiceTest {
+
+        private static final Instant FROM = Instant.parse("2025-01-01T00:00:00Z");
+
+        @Mock
+        private TransactionRollupRepository rollupRepository;
+
+        private TransactionReportService reportService;
+
+        @BeforeEach
+        void setUp() {
+                reportService = new TransactionReportService(rollupRepository, 48);
+        }
+
+        @Test
+        void shouldReadRollupsWithDateTruncUnit() {
+                Instant to = FROM.plusSeconds(86_400);
+                when(rollupRepository.report(FROM, to, "hour")).thenReturn(Flux.empty());
+
+                StepVerifier.create(reportService.report(FROM, to, ReportGranularity.HOUR))
+                                .verifyComplete();
+
+                verify(rollupRepository).report(FROM, to, "hour");
+        }
+
+        @Test
+        void shouldRejectTooManyPeriodsWithoutQuery() {
+                StepVerifier.create(reportService.report(FROM, FROM.plusSeconds(86_400), ReportGranularity.MINUTE))
+                                .expectError(ValidationException.class)
+                                .verify();
+
+                verifyNoInteractions(rollupRepository);
+        }
+}
@@ -0,0 +1,143 @@
+package krematos.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import krematos.exception.ResourceNotFoundException;
+import krematos.exception.ValidationException;
+import krematos.model.AuditStatus;
+import krematos.model.TransactionAudit;
+import krematos.repository.TransactionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TransactionStatusServiceTest {
+
+        @Mock
+        private TransactionRepository transactionRepository;
+
+        private TransactionStatusCache statusCache;
+
+        private TransactionStatusService statusService;
+
+        @BeforeEach
+        void setUp() {
+                statusCache = new TransactionStatusCache(new SimpleMeterRegistry(), 100, Duration.ofMinutes(1));
+                statusService = new TransactionStatusService(transactionRepository, statusCache, 3,
+                                Duration.ofMillis(50), Duration.ofSeconds(5));
+        }
+
+        @Test
+        void shouldServeFinalStatusFromCacheWithoutSecondDbHit() {
+                when(transactionRepository.findByInternalOrderId("TX-1"))
+                                .thenReturn(Mono.just(audit("TX-1", AuditStatus.SUCCESS)));
+
+                StepVerifier.create(statusService.findStatus("TX-1"))
+                                .assertNext(entry -> assertThat(entry.status().getStatus()).isEqualTo("SUCCESS"))
+                                .verifyComplete();
+                StepVerifier.create(statusService.findStatus("TX-1"))
+                                .assertNext(entry -> assertThat(entry.etag()).startsWith("\"SUCCESS-"))
+                                .verifyComplete();
+
+                verify(transactionRepository, times(1)).findByInternalOrderId("TX-1");
+        }
+
+        @Test
+        void shouldAlwaysReadPendingFromDb() {
+                when(transactionRepository.findByInternalOrderId("TX-2"))
+                                .thenReturn(Mono.just(audit("TX-2", AuditStatus.PENDING)));
+
+                StepVerifier.create(statusService.findStatus("TX-2")).expectNextCount(1).verifyComplete();
+                StepVerifier.create(statusService.findStatus("TX-2")).expectNextCount(1).verifyComplete();
+
+                verify(transactionRepository, times(2)).findByInternalOrderId("TX-2");
+        }
+
+        @Test
+        void shouldFailWithNotFoundForUnknownTransaction() {
+                when(transactionRepository.findByInternalOrderId("NONE")).thenReturn(Mono.empty());
+
+                StepVerifier.create(statusService.findStatus("NONE"))
+                                .expectError(ResourceNotFoundException.class)
+                                .verify();
+        }
+
+        @Test
+        void shouldResolveCacheMissesWithSingleQueryAndReportNotFound() {
+                statusCache.put(audit("TX-CACHED", AuditStatus.FAILED));
+                when(transactionRepository.findAllByInternalOrderIds(new String[]{"TX-A", "TX-NONE"}))
+                                .thenReturn(Flux.just(audit("TX-A", AuditStatus.SUCCESS)));
+
+                StepVerifier.create(statusService.findStatuses(List.of("TX-A", "TX-CACHED", "TX-NONE", "TX-A")))
+                                .assertNext(response -> {
+                                        assertThat(response.getStatuses()).containsExactly(
+                                                        Map.entry("TX-A", "SUCCESS"), Map.entry("TX-CACHED", "FAILED"));
+                                        assertThat(response.getNotFound()).containsExactly("TX-NONE");
+                                })
+                                .verifyComplete();
+
+                verify(transactionRepository, times(1)).findAllByInternalOrderIds(any());
+        }
+
+        @Test
+        void shouldWatchStatusUntilFinalAndSkipUnchangedPolls() {
+                when(transactionRepository.findByInternalOrderId("TX-W"))
+                                .thenReturn(Mono.just(audit("TX-W", AuditStatus.PENDING)),
+                                                Mono.just(audit("TX-W", AuditStatus.PENDING)),
+                                                Mono.just(audit("TX-W", AuditStatus.SUCCESS)));
+
+                StepVerifier.create(statusService.watchStatus("TX-W").map(entry -> entry.status().getStatus()))
+                                .expectNext("PENDING", "SUCCESS")
+                                .verifyComplete();
+
+                verify(transactionRepository, times(3)).findByInternalOrderId("TX-W");
+        }
+
+        @Test
+        void shouldWakeUpWatcherWhenTransactionCompletesOnThisNode() {
+                TransactionStatusService slowPolling = new TransactionStatusService(transactionRepository, statusCache, 3,
+                                Duration.ofMinutes(1), Duration.ofMinutes(5));
+                when(transactionRepository.findByInternalOrderId("TX-L"))
+                                .thenReturn(Mono.just(audit("TX-L", AuditStatus.PENDING)));
+
+                StepVerifier.create(slowPolling.watchStatus("TX-L").map(entry -> entry.status().getStatus()))
+                                .expectNext("PENDING")
+                                .then(() -> statusCache.put(audit("TX-L", AuditStatus.SUCCESS)))
+                                .expectNext("SUCCESS")
+                                .expectComplete()
+                                .verify(Duration.ofSeconds(5));
+        }
+
+        @Test
+        void shouldRejectTooManyIds() {
+                StepVerifier.create(statusService.findStatuses(List.of("A", "B", "C", "D")))
+                                .expectError(ValidationException.class)
+                                .verify();
+
+                verifyNoInteractions(transactionRepository);
+        }
+
+        private TransactionAudit audit(String internalOrderId, AuditStatus status) {
+                return TransactionAudit.builder()
+                                .id(1L)
+                                .internalOrderId(internalOrderId)
+                                .status(status.name())
+                                .createdAt(Instant.parse("2025-01-15T10:00:00Z"))
+                                .updatedAt(Instant.parse("2025-01-15T10:00:01Z"))
+                                .build();
+        }
+}
@@ -0,0 +1,169 @@
+package krematos.spool;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.r2dbc.spi.R2dbcNonTransientResourceException;
+import krematos.model.AuditStatus;
+import krematos.model.TransactionAudit;
+import krematos.repository.TransactionAuditReplayRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.util.unit.DataSize;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class AuditWalReplayerTest {
+
+        private static final Instant CREATED_AT = Instant.parse("2025-01-15T10:00:00.123456Z");
+
+        @TempDir
+        Path directory;
+
+        @Mock
+        private TransactionAuditReplayRepository replayRepository;
+
+        private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        private AuditWriteAheadLog wal;
+        private AuditWalReplayer replayer;
+
+        @BeforeEach
+        void setUp() throws IOException {
+                wal = new AuditWriteAheadLog(new ObjectMapper().findAndRegisterModules(), meterRegistry, true,
+                                directory.toString(), DataSize.ofKilobytes(64), 4, FsyncMode.NONE);
+                wal.open();
+                replayer = new AuditWalReplayer(wal, replayRepository, 100, Duration.ofSeconds(5));
+        }
+
+        @AfterEach
+        void tearDown() throws IOException {
+                wal.close();
+        }
+
+        @Test
+        @SuppressWarnings("unchecked")
+        void shouldReplayLatestSnapshotPerTransactionAndAcknowledgeBatch() {
+                wal.append(audit("ORDER-1", AuditStatus.PENDING, null));
+                wal.append(audit("ORDER-2", AuditStatus.PENDING, null));
+                wal.append(audit("ORDER-1", AuditStatus.SUCCESS, CREATED_AT.plusSeconds(1)));
+                when(replayRepository.replay(any())).thenReturn(Mono.just(2L));
+
+                replayer.replay();
+
+                ArgumentCaptor<List<TransactionAudit>> captor = ArgumentCaptor.forClass(List.class);
+                verify(replayRepository).replay(captor.capture());
+                assertThat(captor.getValue()).extracting(TransactionAudit::getInternalOrderId, TransactionAudit::getStatus)
+                                .containsExactly(tuple("ORDER-1", "SUCCESS"), tuple("ORDER-2", "PENDING"));
+                assertThat(captor.getValue().get(0).getCreatedAt()).isEqualTo(CREATED_AT);
+                assertThat(captor.getValue().get(0).getAmount()).isEqualByComparingTo("10.50");
+                assertThat(wal.hasPending()).isFalse();
+        }
+
+        @Test
+        void shouldKeepSnapshotsWhileDatabaseIsDown() {
+                wal.append(audit("ORDER-1", AuditStatus.PENDING, null));
+                wal.append(audit("ORDER-2", AuditStatus.FAILED, CREATED_AT.plusSeconds(1)));
+                when(replayRepository.replay(any()))
+                                .thenReturn(Mono.error(new DataAccessResourceFailureException("Connection refused")));
+
+                replayer.replay();
+
+                assertThat(wal.depth()).isEqualTo(2);
+        }
+
+        @Test
+        void shouldParkSnapshotRejectedByDatabaseAndReplayTheRest() {
+                wal.append(audit("ORDER-1", AuditStatus.PENDING, null));
+                wal.append(audit("ORDER-BAD", AuditStatus.PENDING, null));
+                wal.append(audit("ORDER-3", AuditStatus.PENDING, null));
+                wal.append(audit("ORDER-4", AuditStatus.PENDING, null));
+                when(replayRepository.replay(any())).thenAnswer(invocation -> {
+                        List<TransactionAudit> audits = invocation.getArgument(0);
+                        return audits.stream().anyMatch(audit -> "ORDER-BAD".equals(audit.getInternalOrderId()))
+                                        ? Mono.error(new DataIntegrityViolationException("value too long"))
+                                        : Mono.just((long) audits.size());
+                });
+
+                replayer.replay();
+
+                // Dávka 4 -> 2 + 2 -> 1 + 1: odloží se jen vadný snímek, ostatní se zapíší
+                assertThat(wal.hasPending()).isFalse();
+                assertThat(wal.parkedDepth()).isEqualTo(1);
+                assertThat(meterRegistry.counter("audit.wal.records", "result", "parked").count()).isEqualTo(1);
+        }
+
+        @Test
+        void shouldNotParkSnapshotsWhenReplayTimesOut() {
+                wal.append(audit("ORDER-1", AuditStatus.PENDING, null));
+                when(replayRepository.replay(any())).thenReturn(Mono.never());
+                replayer = new AuditWalReplayer(wal, replayRepository, 100, Duration.ofMillis(50));
+
+                replayer.replay();
+
+                assertThat(wal.depth()).isEqualTo(1);
+                assertThat(wal.parkedDepth()).isZero();
+        }
+
+        @Test
+        void shouldHoldOrderIdUntilSnapshotIsReplayedAlsoAcrossRestart() throws IOException {
+                assertThat(wal.reserve("ORDER-1")).isTrue();
+                wal.append(audit("ORDER-1", AuditStatus.PENDING, null));
+                assertThat(wal.reserve("ORDER-1")).isFalse();
+
+                // Po restartu se množina obnoví z nepřehraných snímků
+                wal.close();
+                wal = new AuditWriteAheadLog(new ObjectMapper().findAndRegisterModules(), new SimpleMeterRegistry(), true,
+                                directory.toString(), DataSize.ofKilobytes(64), 4, FsyncMode.NONE);
+                wal.open();
+                replayer = new AuditWalReplayer(wal, replayRepository, 100, Duration.ofSeconds(5));
+                assertThat(wal.reserve("ORDER-1")).isFalse();
+
+                when(replayRepository.replay(any())).thenReturn(Mono.just(1L));
+                replayer.replay();
+
+                // Řádek je v DB - duplicitu teď odmítne unikátní klíč
+                assertThat(wal.reserve("ORDER-1")).isTrue();
+        }
+
+        @Test
+        void shouldAbsorbOnlyUnavailableDatabaseErrors() {
+                assertThat(wal.canAbsorb(new DataAccessResourceFailureException("Failed to obtain R2DBC Connection"))).isTrue();
+                assertThat(wal.canAbsorb(new IllegalStateException("wrapped",
+                                new R2dbcNonTransientResourceException("connection closed")))).isTrue();
+                assertThat(wal.canAbsorb(new DuplicateKeyException("ux_order"))).isFalse();
+                assertThat(wal.canAbsorb(new IllegalArgumentException("bad sql"))).isFalse();
+        }
+
+        private static TransactionAudit audit(String orderId, AuditStatus status, Instant updatedAt) {
+                return TransactionAudit.builder()
+                                .internalOrderId(orderId)
+                                .amount(new BigDecimal("10.50"))
+                                .currency("CZK")
+                                .serviceType("PAYMENT")
+                                .status(status.name())
+                                .createdAt(CREATED_AT)
+                                .updatedAt(updatedAt)
+                                .build();
+        }
+}
@@ -0,0 +1,113 @@
+package krematos.spool;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import krematos.connector.ExternalSystemConnector;
+import krematos.model.ExternalApiRequest;
+import krematos.publisher.PublishException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.util.unit.DataSize;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class DeadLetterSpoolReplayerTest {
+
+        @TempDir
+        Path directory;
+
+        @Mock
+        private ExternalSystemConnector externalSystemConnector;
+
+        private DeadLetterSpool spool;
+        private DeadLetterSpoolReplayer replayer;
+
+        @BeforeEach
+        void setUp() throws IOException {
+                spool = new DeadLetterSpool(new ObjectMapper(), new SimpleMeterRegistry(), directory.toString(),
+                                DataSize.ofKilobytes(64), 4, FsyncMode.NONE);
+                spool.open();
+                replayer = new DeadLetterSpoolReplayer(spool, externalSystemConnector, 2, Duration.ofSeconds(5));
+        }
+
+        @AfterEach
+        void tearDown() throws IOException {
+                spool.close();
+        }
+
+        @Test
+        void shouldReplayAllRecordsInOrderWhenBrokerIsBack() {
+                for (int i = 1; i <= 5; i++) {
+                        spool.append(request("TX-" + i), "PAYMENT");
+                }
+                when(externalSystemConnector.publishToDeadLetter(any(), eq("PAYMENT"))).thenReturn(Mono.empty());
+
+                replayer.replay();
+
+                assertThat(spool.hasPending()).isFalse();
+                InOrder order = inOrder(externalSystemConnector);
+                for (int i = 1; i <= 5; i++) {
+                        String id = "TX-" + i;
+                        order.verify(externalSystemConnector).publishToDeadLetter(
+                                        argThat(r -> id.equals(r.getTransactionId())), eq("PAYMENT"));
+                }
+        }
+
+        @Test
+        void shouldStopAfterFailedProbeWhileBrokerIsDown() {
+                for (int i = 1; i <= 5; i++) {
+                        spool.append(request("TX-" + i), "PAYMENT");
+                }
+                when(externalSystemConnector.publishToDeadLetter(any(), any()))
+                                .thenReturn(Mono.error(new PublishException("Spojení odmítnuto", "x", "y")));
+
+                replayer.replay();
+
+                // Jen sonda s nejstarší zprávou, zbytek se na mrtvý broker neposílá
+                verify(externalSystemConnector, times(1)).publishToDeadLetter(any(), any());
+                assertThat(spool.depth()).isEqualTo(5);
+        }
+
+        @Test
+        void shouldAcknowledgeOnlyConfirmedPrefixOfBatch() {
+                for (int i = 1; i <= 3; i++) {
+                        spool.append(request("TX-" + i), "PAYMENT");
+                }
+                when(externalSystemConnector.publishToDeadLetter(any(), any())).thenAnswer(invocation -> {
+                        ExternalApiRequest request = invocation.getArgument(0);
+                        return "TX-2".equals(request.getTransactionId())
+                                        ? Mono.error(new PublishException("nack", "x", "y"))
+                                        : Mono.empty();
+                });
+
+                replayer.replay();
+
+                // TX-3 mohl broker potvrdit, ale za nepotvrzeným TX-2 zůstává ve spoolu (pořadí)
+                assertThat(spool.peek(10)).extracting(e -> e.message().request().getTransactionId())
+                                .containsExactly("TX-2", "TX-3");
+        }
+
+        private static ExternalApiRequest request(String transactionId) {
+                return new ExternalApiRequest(transactionId, new BigDecimal("10.00"), "CZK");
+        }
+}
@@ -0,0 +1,163 @@
+package krematos.spool;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import krematos.model.ExternalApiRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class DeadLetterSpoolTest {
+
+        @TempDir
+        Path directory;
+
+        private final ObjectMapper objectMapper = new ObjectMapper();
+        private final List<DeadLetterSpool> opened = new ArrayList<>();
+        private MeterRegistry meterRegistry;
+
+        @AfterEach
+        void tearDown() throws IOException {
+                for (DeadLetterSpool spool : opened) {
+                        spool.close();
+                }
+        }
+
+        @Test
+        void shouldReturnRecordsInAppendOrderUntilAcknowledged() throws IOException {
+                DeadLetterSpool spool = open(DataSize.ofKilobytes(64), 4);
+
+                assertThat(spool.append(request("TX-1"), "PAYMENT")).isTrue();
+                assertThat(spool.append(request("TX-2"), null)).isTrue();
+                assertThat(spool.depth()).isEqualTo(2);
+                assertThat(meterRegistry.get("spool.depth").gauge().value()).isEqualTo(2.0);
+
+                List<DeadLetterSpool.Entry> batch = spool.peek(10);
+                assertThat(batch).extracting(e -> e.message().request().getTransactionId()).containsExactly("TX-1", "TX-2");
+                assertThat(batch.get(0).message().serviceType()).isEqualTo("PAYMENT");
+
+                spool.acknowledge(batch.get(0));
+
+                assertThat(spool.peek(10)).extracting(e -> e.message().request().getTransactionId()).containsExactly("TX-2");
+                assertThat(spool.depth()).isEqualTo(1);
+        }
+
+        @Test
+        void shouldRotateSegmentsAndDeleteFullyReplayedOnes() throws IOException {
+                DeadLetterSpool spool = open(DataSize.ofKilobytes(1), 10);
+                for (int i = 0; i < 30; i++) {
+                        assertThat(spool.append(request("TX-" + i), "PAYMENT")).isTrue();
+                }
+                assertThat(segmentFiles()).hasSizeGreaterThan(2);
+
+                List<DeadLetterSpool.Entry> all = spool.peek(100);
+                assertThat(all).extracting(e -> e.message().request().getTransactionId())
+                                .containsExactlyElementsOf(Stream.iterate(0, i -> i + 1).limit(30).map(i -> "TX-" + i).toList());
+                all.forEach(spool::acknowledge);
+
+                assertThat(spool.hasPending()).isFalse();
+                assertThat(meterRegistry.get("spool.bytes").gauge().value()).isZero();
+                // Zůstává jen aktivní segment
+                assertThat(segmentFiles()).hasSize(1);
+        }
+
+        @Test
+        void shouldRejectAppendWhenAllSegmentsAreFull() throws IOException {
+                DeadLetterSpool spool = open(DataSize.ofKilobytes(1), 1);
+
+                int accepted = 0;
+                while (spool.append(request("TX-" + accepted), "PAYMENT")) {
+                        accepted++;
+                }
+
+                assertThat(accepted).isPositive();
+                assertThat(spool.depth()).isEqualTo(accepted);
+                assertThat(meterRegistry.get("spool.records").tag("result", "dropped").counter().count()).isEqualTo(1.0);
+        }
+
+        @Test
+        void shouldRecoverPendingRecordsAfterRestart() throws IOException {
+                DeadLetterSpool first = open(DataSize.ofKilobytes(1), 10);
+                for (int i = 0; i < 20; i++) {
+                        first.append(request("TX-" + i), "PAYMENT");
+                }
+                first.peek(5).forEach(first::acknowledge);
+                first.close();
+                opened.remove(first);
+
+                DeadLetterSpool reopened = open(DataSize.ofKilobytes(1), 10);
+
+                assertThat(reopened.depth()).isEqualTo(15);
+                assertThat(reopened.peek(1).get(0).message().request().getTransactionId()).isEqualTo("TX-5");
+                // Nové zápisy pokračují za obnovenými
+                reopened.append(request("TX-NEW"), null);
+                List<DeadLetterSpool.Entry> all = reopened.peek(100);
+                assertThat(all).hasSize(16);
+                assertThat(all.get(15).message().request().getTransactionId()).isEqualTo("TX-NEW");
+        }
+
+        @Test
+        void shouldStopAtCorruptedRecordAndKeepAppending() throws IOException {
+                DeadLetterSpool first = open(DataSize.ofKilobytes(64), 4);
+                first.append(request("TX-1"), "PAYMENT");
+                first.append(request("TX-2"), "PAYMENT");
+                int secondOffset = first.peek(2).get(1).record().offset();
+                first.close();
+                opened.remove(first);
+
+                // Poškozený payload druhého záznamu (např. výpadek napájení během zápisu)
+                try (RandomAccessFile file = new RandomAccessFile(segmentFiles().get(0).toFile(), "rw")) {
+                        file.seek(secondOffset + SpoolSegment.HEADER_BYTES);
+                        file.write('X');
+                }
+
+                DeadLetterSpool reopened = open(DataSize.ofKilobytes(64), 4);
+                reopened.append(request("TX-3"), "PAYMENT");
+
+                assertThat(reopened.peek(10)).extracting(e -> e.message().request().getTransactionId())
+                                .containsExactly("TX-1", "TX-3");
+                assertThat(meterRegistry.get("spool.records").tag("result", "corrupted").counter().count()).isEqualTo(1.0);
+        }
+
+        @Test
+        void shouldRefuseDirectoryLockedByAnotherInstance() throws IOException {
+                open(DataSize.ofKilobytes(64), 4);
+
+                assertThatThrownBy(() -> open(DataSize.ofKilobytes(64), 4))
+                                .isInstanceOf(IllegalStateException.class)
+                                .hasMessageContaining("jiná instance");
+        }
+
+        private DeadLetterSpool open(DataSize segmentSize, int maxSegments) throws IOException {
+                meterRegistry = new SimpleMeterRegistry();
+                DeadLetterSpool spool = new DeadLetterSpool(objectMapper, meterRegistry, directory.toString(),
+                                segmentSize, maxSegments, FsyncMode.ALWAYS);
+                spool.open();
+                opened.add(spool);
+                return spool;
+        }
+
+        private List<Path> segmentFiles() throws IOException {
+                try (Stream<Path> files = Files.list(directory)) {
+                        return files.filter(SpoolSegment::isSegmentFile).sorted().toList();
+                }
+        }
+
+        private static ExternalApiRequest request(String transactionId) {
+                return new ExternalApiRequest(transactionId, new BigDecimal("10.00"), "CZK");
+        }
+}
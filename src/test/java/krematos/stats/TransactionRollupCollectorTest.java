@@ -0,0 +1,87 @@
+package krematos.stats;
+
+import krematos.model.RollupDelta;
+import krematos.model.TransactionAudit;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TransactionRollupCollectorTest {
+
+    private final TransactionRollupCollector collector = new TransactionRollupCollector();
+
+    @Test
+    void shouldDrainDeltasPerMinute() {
+        collector.record(audit("SUCCESS", "2025-01-15T10:04:10Z", "10.50"));
+        collector.record(audit("SUCCESS", "2025-01-15T10:04:50Z", "1"));
+        collector.record(audit("SUCCESS", "2025-01-15T10:05:20Z", "2"));
+
+        List<RollupDelta> deltas = collector.drain();
+
+        assertThat(deltas).containsExactlyInAnyOrder(
+                new RollupDelta(Instant.parse("2025-01-15T10:04:00Z"), "SUCCESS", "CZK", "PAYMENT", 2, 1150),
+                new RollupDelta(Instant.parse("2025-01-15T10:05:00Z"), "SUCCESS", "CZK", "PAYMENT", 1, 200));
+        // Odebrané přírůstky se podruhé nezapíší
+        assertThat(collector.pendingKeys()).isZero();
+        assertThat(collector.drain()).isEmpty();
+    }
+
+    @Test
+    void shouldNotLoseOutcomesRecordedConcurrentlyWithDrain() throws Exception {
+        int writers = 4;
+        int perWriter = 20_000;
+        List<RollupDelta> drained = new ArrayList<>();
+        ExecutorService executor = Executors.newFixedThreadPool(writers);
+        try {
+            CompletableFuture<?>[] futures = IntStream.range(0, writers)
+                    .mapToObj(i -> CompletableFuture.runAsync(() -> {
+                        for (int n = 0; n < perWriter; n++) {
+                            collector.record(audit("SUCCESS", "2025-01-15T10:04:10Z", "1"));
+                        }
+                    }, executor))
+                    .toArray(CompletableFuture[]::new);
+            CompletableFuture<Void> all = CompletableFuture.allOf(futures);
+            while (!all.isDone()) {
+                drained.addAll(collector.drain());
+            }
+            all.get();
+        } finally {
+            executor.shutdown();
+        }
+        drained.addAll(collector.drain());
+
+        assertThat(drained.stream().mapToLong(RollupDelta::count).sum()).isEqualTo((long) writers * perWriter);
+        assertThat(drained.stream().mapToLong(RollupDelta::amountMinor).sum()).isEqualTo(100L * writers * perWriter);
+    }
+
+    @Test
+    void shouldMergeRestoredDeltasWithNewOutcomes() {
+        collector.record(audit("FAILED", "2025-01-15T10:05:10Z", "5"));
+        List<RollupDelta> failedFlush = collector.drain();
+        collector.record(audit("FAILED", "2025-01-15T10:05:25Z", "5"));
+
+        collector.restore(failedFlush);
+
+        assertThat(collector.drain()).containsExactly(
+                new RollupDelta(Instant.parse("2025-01-15T10:05:00Z"), "FAILED", "CZK", "PAYMENT", 2, 1000));
+    }
+
+    private static TransactionAudit audit(String status, String updatedAt, String amount) {
+        TransactionAudit audit = new TransactionAudit();
+        audit.setStatus(status);
+        audit.setCurrency("CZK");
+        audit.setServiceType("PAYMENT");
+        audit.setAmount(new BigDecimal(amount));
+        audit.setUpdatedAt(Instant.parse(updatedAt));
+        return audit;
+    }
+}
@@ -0,0 +1,62 @@
+package krematos.stats;
+
+import krematos.model.TransactionAudit;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TransactionStatsAggregatorTest {
+
+    private final AtomicLong now = new AtomicLong(1_700_000_000_000L);
+    private final TransactionStatsAggregator aggregator = new TransactionStatsAggregator(2, now::get);
+
+    @Test
+    void shouldAggregateByStatusCurrencyAndServiceTypePerWindow() {
+        aggregator.record(audit("SUCCESS", "CZK", "PAYMENT", "100.50"));
+        aggregator.record(audit("FAILED", "CZK", "PAYMENT", "10"));
+        now.addAndGet(120_000); // +2 min: první dva záznamy vypadnou z okna 1m
+        aggregator.record(audit("SUCCESS", "CZK", "PAYMENT", "1.25"));
+
+        Map<String, TransactionStatsAggregator.WindowStats> stats = aggregator.snapshot();
+
+        TransactionStatsAggregator.WindowStats minute = stats.get("1m");
+        assertThat(minute.total().getCount()).isEqualTo(1);
+        assertThat(minute.total().getAmounts()).containsEntry("CZK", new BigDecimal("1.25"));
+
+        TransactionStatsAggregator.WindowStats fiveMinutes = stats.get("5m");
+        assertThat(fiveMinutes.total().getCount()).isEqualTo(3);
+        assertThat(fiveMinutes.byStatus().get("SUCCESS").getCount()).isEqualTo(2);
+        assertThat(fiveMinutes.byStatus().get("SUCCESS").getAmounts()).containsEntry("CZK", new BigDecimal("101.75"));
+        assertThat(fiveMinutes.byStatus().get("FAILED").getCount()).isEqualTo(1);
+        assertThat(fiveMinutes.byServiceType().get("PAYMENT").getCount()).isEqualTo(3);
+
+        now.addAndGet(3_600_000); // +1 h: vše mimo okna
+        assertThat(aggregator.snapshot().get("1h").total().getCount()).isZero();
+    }
+
+    @Test
+    void shouldFoldServiceTypesOverKeyLimitIntoOther() {
+        aggregator.record(audit("SUCCESS", "CZK", "A", "1"));
+        aggregator.record(audit("SUCCESS", "EUR", "B", "1"));
+        aggregator.record(audit("SUCCESS", "USD", "C", "1"));
+
+        TransactionStatsAggregator.WindowStats hour = aggregator.snapshot().get("1h");
+
+        assertThat(hour.total().getCount()).isEqualTo(3);
+        assertThat(hour.byServiceType()).containsOnlyKeys("A", "B", "OTHER");
+        assertThat(hour.byCurrency()).containsOnlyKeys("CZK", "EUR", "USD");
+    }
+
+    private static TransactionAudit audit(String status, String currency, String serviceType, String amount) {
+        TransactionAudit audit = new TransactionAudit();
+        audit.setStatus(status);
+        audit.setCurrency(currency);
+        audit.setServiceType(serviceType);
+        audit.setAmount(new BigDecimal(amount));
+        return audit;
+    }
+}